@@ -0,0 +1,97 @@
+package com.openclassrooms.go4lunch.model.bo;
+
+import androidx.annotation.NonNull;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compact restaurant record, projected from a nearby search result.
+ * Only the fields displayed by the app are kept, as primitives when possible.
+ */
+public class NearbyRestaurant {
+
+    /** Rating of a place never rated */
+    public static final float NO_RATING = Float.NaN;
+
+    /** Price level of a place without any price level */
+    public static final int NO_PRICE_LEVEL = -1;
+
+    /** Opening state : unknown, closed, open */
+    public static final byte OPEN_NOW_UNKNOWN = -1;
+    public static final byte OPEN_NOW_FALSE = 0;
+    public static final byte OPEN_NOW_TRUE = 1;
+
+    /** Google place ID */
+    private final String placeId;
+
+    /** Name */
+    private final String name;
+
+    /** Latitude */
+    private final double latitude;
+
+    /** Longitude */
+    private final double longitude;
+
+    /** Rating, from 1 to 5, or NO_RATING */
+    private final float rating;
+
+    /** Price level, from 0 to 4, or NO_PRICE_LEVEL */
+    private final int priceLevel;
+
+    /** Opening state, one of the OPEN_NOW_ constants */
+    private final byte openNow;
+
+    /** Reference of the first photo */
+    @Nullable
+    private final String photoReference;
+
+    /** Constructor with all parameters */
+    public NearbyRestaurant(String placeId, String name, double latitude, double longitude, float rating, int priceLevel, byte openNow, @Nullable String photoReference) {
+        this.placeId = placeId;
+        this.name = name;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.rating = rating;
+        this.priceLevel = priceLevel;
+        this.openNow = openNow;
+        this.photoReference = photoReference;
+    }
+
+    /** Getters */
+    public String getPlaceId() { return placeId; }
+
+    public String getName() { return name; }
+
+    public double getLatitude() { return latitude; }
+
+    public double getLongitude() { return longitude; }
+
+    public float getRating() { return rating; }
+
+    public boolean hasRating() { return !Float.isNaN(rating); }
+
+    public int getPriceLevel() { return priceLevel; }
+
+    public byte getOpenNow() { return openNow; }
+
+    public boolean isOpenNow() { return openNow == OPEN_NOW_TRUE; }
+
+    @Nullable
+    public String getPhotoReference() { return photoReference; }
+
+    /** To String */
+    @NonNull
+    @Override
+    public String toString() {
+        return "NearbyRestaurant{" +
+                "placeId='" + placeId + '\'' +
+                ", name='" + name + '\'' +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", rating=" + rating +
+                ", priceLevel=" + priceLevel +
+                ", openNow=" + openNow +
+                '}';
+    }
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.go4lunch.model.bo;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A page of a nearby search, projected into compact restaurant records
+ */
+public class NearbySearchPage {
+
+    /** Maps API status : OK, ZERO_RESULTS, OVER_QUERY_LIMIT, ... */
+    private final String status;
+
+    /** Token of the next page, if any */
+    @Nullable
+    private final String nextPageToken;
+
+    /** The restaurants of the page */
+    private final List<NearbyRestaurant> restaurants;
+
+    /** Constructor with all parameters */
+    public NearbySearchPage(String status, @Nullable String nextPageToken, List<NearbyRestaurant> restaurants) {
+        this.status = status;
+        this.nextPageToken = nextPageToken;
+        this.restaurants = restaurants;
+    }
+
+    /** Getters */
+    public String getStatus() { return status; }
+
+    @Nullable
+    public String getNextPageToken() { return nextPageToken; }
+
+    public List<NearbyRestaurant> getRestaurants() { return restaurants; }
+}
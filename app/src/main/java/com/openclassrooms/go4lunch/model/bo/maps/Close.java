@@ -0,0 +1,32 @@
+package com.openclassrooms.go4lunch.model.bo.maps;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+//Generated("jsonschema2pojo")
+public class Close {
+
+    @SerializedName("day")
+    @Expose
+    private Integer day;
+    @SerializedName("time")
+    @Expose
+    private String time;
+
+    public Integer getDay() {
+        return day;
+    }
+
+    public void setDay(Integer day) {
+        this.day = day;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    public void setTime(String time) {
+        this.time = time;
+    }
+
+}
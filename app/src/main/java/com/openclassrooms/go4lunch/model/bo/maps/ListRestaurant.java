@@ -10,6 +10,9 @@ public class ListRestaurant {
     @SerializedName("html_attributions")
     @Expose
     private List<Object> htmlAttributions;
+    @SerializedName("next_page_token")
+    @Expose
+    private String nextPageToken;
     @SerializedName("results")
     @Expose
     private List<Result> results;
@@ -25,6 +28,14 @@ public class ListRestaurant {
         this.htmlAttributions = htmlAttributions;
     }
 
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+
     public List<Result> getResults() {
         return results;
     }
@@ -1,5 +1,6 @@
 package com.openclassrooms.go4lunch.model.bo.maps;
 
+import java.util.List;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
@@ -9,6 +10,12 @@ public class OpeningHours {
     @SerializedName("open_now")
     @Expose
     private Boolean openNow;
+    @SerializedName("periods")
+    @Expose
+    private List<Period> periods;
+    @SerializedName("weekday_text")
+    @Expose
+    private List<String> weekdayText;
 
     public Boolean getOpenNow() {
         return openNow;
@@ -18,4 +25,20 @@ public class OpeningHours {
         this.openNow = openNow;
     }
 
+    public List<Period> getPeriods() {
+        return periods;
+    }
+
+    public void setPeriods(List<Period> periods) {
+        this.periods = periods;
+    }
+
+    public List<String> getWeekdayText() {
+        return weekdayText;
+    }
+
+    public void setWeekdayText(List<String> weekdayText) {
+        this.weekdayText = weekdayText;
+    }
+
 }
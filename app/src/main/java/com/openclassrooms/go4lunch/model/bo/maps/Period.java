@@ -0,0 +1,32 @@
+package com.openclassrooms.go4lunch.model.bo.maps;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+//Generated("jsonschema2pojo")
+public class Period {
+
+    @SerializedName("close")
+    @Expose
+    private Close close;
+    @SerializedName("open")
+    @Expose
+    private Open open;
+
+    public Close getClose() {
+        return close;
+    }
+
+    public void setClose(Close close) {
+        this.close = close;
+    }
+
+    public Open getOpen() {
+        return open;
+    }
+
+    public void setOpen(Open open) {
+        this.open = open;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.go4lunch.model.bo.maps;
+
+import java.util.List;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+//Generated("jsonschema2pojo")
+public class PlaceDetails {
+
+    @SerializedName("html_attributions")
+    @Expose
+    private List<Object> htmlAttributions;
+    @SerializedName("result")
+    @Expose
+    private PlaceDetailsResult result;
+    @SerializedName("status")
+    @Expose
+    private String status;
+
+    public List<Object> getHtmlAttributions() {
+        return htmlAttributions;
+    }
+
+    public void setHtmlAttributions(List<Object> htmlAttributions) {
+        this.htmlAttributions = htmlAttributions;
+    }
+
+    public PlaceDetailsResult getResult() {
+        return result;
+    }
+
+    public void setResult(PlaceDetailsResult result) {
+        this.result = result;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.openclassrooms.go4lunch.model.cache;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.DiskLruCacheWrapper;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemoryCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+
+import java.io.File;
+import java.security.MessageDigest;
+
+/**
+ * Glide configuration : separate memory and disk budgets for the restaurant photos and the workmate avatars,
+ * so that scrolling through hundreds of restaurant photos never evicts the few avatars shown everywhere.
+ *
+ * Glide has a single memory cache and a single disk cache : both are partitioned here.
+ *
+ * On disk, the avatars are requested with the AvatarSignature (see RestaurantPhotoLoader) : the disk cache keys hand
+ * their signature to the digest of Key.updateDiskCacheKey, and the signature marks the probe digest it is given,
+ * so the partition of a key is read through the Key API only.
+ * In memory, the keys of the engine support no digest and print their fields in no stable format : the partition is
+ * chosen by the size of the resource instead, the avatars decoded at the size of their small views taking the
+ * small resources budget. A lookup checks both partitions.
+ */
+@GlideModule
+public class ImageCacheGlideModule extends AppGlideModule {
+
+    /** Share of the memory budget computed by Glide kept for the avatars */
+    private static final float AVATAR_MEMORY_SHARE = 0.2f;
+
+    /** Largest resource of the avatar memory budget : a 48dp avatar at xxxhdpi, 192 x 192 ARGB_8888 pixels */
+    public static final int AVATAR_MAX_BYTES = 192 * 192 * 4;
+
+    /** Disk budgets, in bytes */
+    private static final long PHOTO_DISK_BYTES = 100L * 1024 * 1024;
+    private static final long AVATAR_DISK_BYTES = 10L * 1024 * 1024;
+
+    /** Disk cache directories, in the cache directory of the app */
+    private static final String PHOTO_DISK_DIRECTORY = "photos";
+    private static final String AVATAR_DISK_DIRECTORY = "avatars";
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        long memoryBytes = new MemorySizeCalculator.Builder(context).build().getMemoryCacheSize();
+        long avatarMemoryBytes = (long) (memoryBytes * AVATAR_MEMORY_SHARE);
+        builder.setMemoryCache(new PartitionedMemoryCache(
+            new LruResourceCache(memoryBytes - avatarMemoryBytes), new LruResourceCache(avatarMemoryBytes), AVATAR_MAX_BYTES));
+
+        File cacheDirectory = context.getCacheDir();
+        builder.setDiskCache(() -> new PartitionedDiskCache(
+            DiskLruCacheWrapper.create(new File(cacheDirectory, PHOTO_DISK_DIRECTORY), PHOTO_DISK_BYTES),
+            DiskLruCacheWrapper.create(new File(cacheDirectory, AVATAR_DISK_DIRECTORY), AVATAR_DISK_BYTES)));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+
+    /**
+     * Check if a disk cache key is the one of an avatar, i.e. holds the AvatarSignature
+     */
+    static boolean isAvatar(Key key) {
+        AvatarProbe probe = new AvatarProbe();
+        key.updateDiskCacheKey(probe);
+        return probe.avatar;
+    }
+
+    /**
+     * Signature of the workmate avatar requests, routing them to the avatar partitions of the caches
+     */
+    public static final class AvatarSignature implements Key {
+
+        /** The single instance */
+        public static final AvatarSignature INSTANCE = new AvatarSignature();
+
+        /** The name of the signature, also part of the disk cache keys */
+        private static final String NAME = "go4lunch.AvatarSignature";
+        private static final byte[] NAME_BYTES = NAME.getBytes(CHARSET);
+
+        private AvatarSignature() {
+        }
+
+        @Override
+        public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+            if (messageDigest instanceof AvatarProbe) {
+                ((AvatarProbe) messageDigest).avatar = true;
+            }
+            messageDigest.update(NAME_BYTES);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof AvatarSignature;
+        }
+
+        @Override
+        public int hashCode() {
+            return NAME.hashCode();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return NAME;
+        }
+    }
+
+    /**
+     * Digest discarding its input, marked by the AvatarSignature when a key holds it
+     */
+    private static class AvatarProbe extends MessageDigest {
+
+        /** True once the AvatarSignature updated the digest */
+        private boolean avatar;
+
+        private AvatarProbe() {
+            super("AvatarProbe");
+        }
+
+        @Override
+        protected void engineUpdate(byte input) {
+        }
+
+        @Override
+        protected void engineUpdate(byte[] input, int offset, int len) {
+        }
+
+        @Override
+        protected byte[] engineDigest() {
+            return new byte[0];
+        }
+
+        @Override
+        protected void engineReset() {
+        }
+    }
+
+    /**
+     * Memory cache made of a photo cache and an avatar cache, each with its own budget, the small resources
+     * going to the avatar cache
+     */
+    public static class PartitionedMemoryCache implements MemoryCache {
+
+        private final MemoryCache photos;
+        private final MemoryCache avatars;
+
+        /** Largest resource put in the avatar cache, in bytes */
+        private final int avatarMaxBytes;
+
+        public PartitionedMemoryCache(MemoryCache photos, MemoryCache avatars, int avatarMaxBytes) {
+            this.photos = photos;
+            this.avatars = avatars;
+            this.avatarMaxBytes = avatarMaxBytes;
+        }
+
+        @Override
+        public long getCurrentSize() {
+            return photos.getCurrentSize() + avatars.getCurrentSize();
+        }
+
+        @Override
+        public long getMaxSize() {
+            return photos.getMaxSize() + avatars.getMaxSize();
+        }
+
+        @Override
+        public void setSizeMultiplier(float multiplier) {
+            photos.setSizeMultiplier(multiplier);
+            avatars.setSizeMultiplier(multiplier);
+        }
+
+        @Nullable
+        @Override
+        public Resource<?> remove(@NonNull Key key) {
+            // a lookup never depends on the routing of the key
+            Resource<?> resource = avatars.remove(key);
+            return resource != null ? resource : photos.remove(key);
+        }
+
+        @Nullable
+        @Override
+        public Resource<?> put(@NonNull Key key, @Nullable Resource<?> resource) {
+            // the same key always has the same size : the key of the engine holds the size and the transformations
+            boolean avatar = resource != null && resource.getSize() <= avatarMaxBytes;
+            return (avatar ? avatars : photos).put(key, resource);
+        }
+
+        @Override
+        public void setResourceRemovedListener(@NonNull ResourceRemovedListener listener) {
+            photos.setResourceRemovedListener(listener);
+            avatars.setResourceRemovedListener(listener);
+        }
+
+        @Override
+        public void clearMemory() {
+            photos.clearMemory();
+            avatars.clearMemory();
+        }
+
+        @Override
+        public void trimMemory(int level) {
+            photos.trimMemory(level);
+            avatars.trimMemory(level);
+        }
+    }
+
+    /**
+     * Disk cache made of a photo cache and an avatar cache, each with its own directory and budget
+     */
+    public static class PartitionedDiskCache implements DiskCache {
+
+        private final DiskCache photos;
+        private final DiskCache avatars;
+
+        public PartitionedDiskCache(DiskCache photos, DiskCache avatars) {
+            this.photos = photos;
+            this.avatars = avatars;
+        }
+
+        private DiskCache cacheOf(Key key) {
+            return isAvatar(key) ? avatars : photos;
+        }
+
+        @Nullable
+        @Override
+        public File get(Key key) {
+            return cacheOf(key).get(key);
+        }
+
+        @Override
+        public void put(Key key, Writer writer) {
+            cacheOf(key).put(key, writer);
+        }
+
+        @Override
+        public void delete(Key key) {
+            cacheOf(key).delete(key);
+        }
+
+        @Override
+        public void clear() {
+            photos.clear();
+            avatars.clear();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.openclassrooms.go4lunch.model.cache;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit-rate counters of a category of images (restaurant photos, workmate avatars), thread safe.
+ *
+ * Each displayed image is counted once, by where it was served from : memory cache, disk cache or network.
+ */
+public class ImageCacheStats {
+
+    /** The images served from the memory cache */
+    private final AtomicLong memoryHits = new AtomicLong();
+
+    /** The images served from the disk cache */
+    private final AtomicLong diskHits = new AtomicLong();
+
+    /** The images downloaded */
+    private final AtomicLong networkLoads = new AtomicLong();
+
+    /** The images that failed to load */
+    private final AtomicLong failures = new AtomicLong();
+
+    /** The images prefetched, not counted as displayed */
+    private final AtomicLong prefetches = new AtomicLong();
+
+    /** Record where an image was served from */
+    public void recordMemoryHit() {
+        memoryHits.incrementAndGet();
+    }
+
+    public void recordDiskHit() {
+        diskHits.incrementAndGet();
+    }
+
+    public void recordNetworkLoad() {
+        networkLoads.incrementAndGet();
+    }
+
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public void recordPrefetch() {
+        prefetches.incrementAndGet();
+    }
+
+    /**
+     * Get the share of the displayed images served from a cache
+     * @return the hit rate, between 0 and 1, 0 before the first image
+     */
+    public double getHitRate() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + networkLoads.get() + failures.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /** Getters */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getNetworkLoads() {
+        return networkLoads.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getPrefetches() {
+        return prefetches.get();
+    }
+
+    /**
+     * Describe the counters, for the logs
+     * @return the counters and the hit rate
+     */
+    public String report() {
+        return String.format(Locale.US, "memory %d, disk %d, network %d, failed %d, prefetched %d, hit rate %.1f%%",
+            memoryHits.get(), diskHits.get(), networkLoads.get(), failures.get(), prefetches.get(), getHitRate() * 100);
+    }
+}
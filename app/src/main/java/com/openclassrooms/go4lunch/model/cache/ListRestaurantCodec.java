@@ -0,0 +1,269 @@
+package com.openclassrooms.go4lunch.model.cache;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Geometry;
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Northeast;
+import com.openclassrooms.go4lunch.model.bo.maps.OpeningHours;
+import com.openclassrooms.go4lunch.model.bo.maps.Photo;
+import com.openclassrooms.go4lunch.model.bo.maps.PlusCode;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.bo.maps.Southwest;
+import com.openclassrooms.go4lunch.model.bo.maps.Viewport;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact binary codec of ListRestaurant, so cached searches can be loaded without running Gson.
+ *
+ * Every nullable value is preceded by a presence flag, lists are preceded by their size.
+ * The html attributions are not kept, they are never displayed by the app.
+ */
+public final class ListRestaurantCodec {
+
+    /**
+     * Format version, to bump whenever the layout changes
+     */
+    public static final int VERSION = 1;
+
+    /** Utility class, no instance */
+    private ListRestaurantCodec() {
+    }
+
+    /**
+     * Write a list of restaurants
+     * @param out the output
+     * @param listRestaurant the list of restaurants to write
+     */
+    public static void write(DataOutput out, ListRestaurant listRestaurant) throws IOException {
+        writeString(out, listRestaurant.getStatus());
+        List<Result> results = listRestaurant.getResults();
+        int size = results == null ? 0 : results.size();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            writeResult(out, results.get(i));
+        }
+    }
+
+    /**
+     * Read a list of restaurants
+     * @param in the input
+     * @return the list of restaurants
+     */
+    public static ListRestaurant read(DataInput in) throws IOException {
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setHtmlAttributions(Collections.emptyList());
+        listRestaurant.setStatus(readString(in));
+        int size = in.readInt();
+        List<Result> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(readResult(in));
+        }
+        listRestaurant.setResults(results);
+        return listRestaurant;
+    }
+
+    /**
+     * Write a single place
+     */
+    public static void writeResult(DataOutput out, Result result) throws IOException {
+        writeString(out, result.getPlaceId());
+        writeString(out, result.getName());
+        writeString(out, result.getVicinity());
+        writeString(out, result.getBusinessStatus());
+        writeString(out, result.getIcon());
+        writeString(out, result.getIconBackgroundColor());
+        writeString(out, result.getIconMaskBaseUri());
+        writeString(out, result.getReference());
+        writeString(out, result.getScope());
+        writeDouble(out, result.getRating());
+        writeInteger(out, result.getPriceLevel());
+        writeInteger(out, result.getUserRatingsTotal());
+
+        // opening hours, as a tri-state : unknown, closed, open
+        OpeningHours openingHours = result.getOpeningHours();
+        writeBoolean(out, openingHours == null ? null : openingHours.getOpenNow());
+        out.writeBoolean(openingHours != null);
+
+        // geometry
+        Geometry geometry = result.getGeometry();
+        out.writeBoolean(geometry != null);
+        if (geometry != null) {
+            Location location = geometry.getLocation();
+            out.writeBoolean(location != null);
+            if (location != null) {
+                writeDouble(out, location.getLat());
+                writeDouble(out, location.getLng());
+            }
+            Viewport viewport = geometry.getViewport();
+            out.writeBoolean(viewport != null && viewport.getNortheast() != null && viewport.getSouthwest() != null);
+            if (viewport != null && viewport.getNortheast() != null && viewport.getSouthwest() != null) {
+                writeDouble(out, viewport.getNortheast().getLat());
+                writeDouble(out, viewport.getNortheast().getLng());
+                writeDouble(out, viewport.getSouthwest().getLat());
+                writeDouble(out, viewport.getSouthwest().getLng());
+            }
+        }
+
+        // plus code
+        PlusCode plusCode = result.getPlusCode();
+        out.writeBoolean(plusCode != null);
+        if (plusCode != null) {
+            writeString(out, plusCode.getCompoundCode());
+            writeString(out, plusCode.getGlobalCode());
+        }
+
+        // types
+        List<String> types = result.getTypes();
+        out.writeInt(types == null ? -1 : types.size());
+        if (types != null) {
+            for (String type : types) {
+                writeString(out, type);
+            }
+        }
+
+        // photos, without their html attributions
+        List<Photo> photos = result.getPhotos();
+        out.writeInt(photos == null ? -1 : photos.size());
+        if (photos != null) {
+            for (Photo photo : photos) {
+                writeString(out, photo.getPhotoReference());
+                writeInteger(out, photo.getWidth());
+                writeInteger(out, photo.getHeight());
+            }
+        }
+    }
+
+    /**
+     * Read a single place
+     */
+    public static Result readResult(DataInput in) throws IOException {
+        Result result = new Result();
+        result.setPlaceId(readString(in));
+        result.setName(readString(in));
+        result.setVicinity(readString(in));
+        result.setBusinessStatus(readString(in));
+        result.setIcon(readString(in));
+        result.setIconBackgroundColor(readString(in));
+        result.setIconMaskBaseUri(readString(in));
+        result.setReference(readString(in));
+        result.setScope(readString(in));
+        result.setRating(readDouble(in));
+        result.setPriceLevel(readInteger(in));
+        result.setUserRatingsTotal(readInteger(in));
+
+        // opening hours
+        Boolean openNow = readBoolean(in);
+        if (in.readBoolean()) {
+            OpeningHours openingHours = new OpeningHours();
+            openingHours.setOpenNow(openNow);
+            result.setOpeningHours(openingHours);
+        }
+
+        // geometry
+        if (in.readBoolean()) {
+            Geometry geometry = new Geometry();
+            if (in.readBoolean()) {
+                Location location = new Location();
+                location.setLat(readDouble(in));
+                location.setLng(readDouble(in));
+                geometry.setLocation(location);
+            }
+            if (in.readBoolean()) {
+                Northeast northeast = new Northeast();
+                northeast.setLat(readDouble(in));
+                northeast.setLng(readDouble(in));
+                Southwest southwest = new Southwest();
+                southwest.setLat(readDouble(in));
+                southwest.setLng(readDouble(in));
+                Viewport viewport = new Viewport();
+                viewport.setNortheast(northeast);
+                viewport.setSouthwest(southwest);
+                geometry.setViewport(viewport);
+            }
+            result.setGeometry(geometry);
+        }
+
+        // plus code
+        if (in.readBoolean()) {
+            PlusCode plusCode = new PlusCode();
+            plusCode.setCompoundCode(readString(in));
+            plusCode.setGlobalCode(readString(in));
+            result.setPlusCode(plusCode);
+        }
+
+        // types
+        int typeCount = in.readInt();
+        if (typeCount >= 0) {
+            List<String> types = new ArrayList<>(typeCount);
+            for (int i = 0; i < typeCount; i++) {
+                types.add(readString(in));
+            }
+            result.setTypes(types);
+        }
+
+        // photos
+        int photoCount = in.readInt();
+        if (photoCount >= 0) {
+            List<Photo> photos = new ArrayList<>(photoCount);
+            for (int i = 0; i < photoCount; i++) {
+                Photo photo = new Photo();
+                photo.setPhotoReference(readString(in));
+                photo.setWidth(readInteger(in));
+                photo.setHeight(readInteger(in));
+                photo.setHtmlAttributions(Collections.emptyList());
+                photos.add(photo);
+            }
+            result.setPhotos(photos);
+        }
+        return result;
+    }
+
+    /** Nullable values */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDouble(DataOutput out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static Double readDouble(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    private static void writeInteger(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeBoolean(DataOutput out, Boolean value) throws IOException {
+        out.writeByte(value == null ? -1 : (value ? 1 : 0));
+    }
+
+    private static Boolean readBoolean(DataInput in) throws IOException {
+        byte value = in.readByte();
+        return value < 0 ? null : value == 1;
+    }
+}
@@ -0,0 +1,291 @@
+package com.openclassrooms.go4lunch.model.cache;
+
+import android.util.Log;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of nearby searches, stored in a compact binary format (see ListRestaurantCodec).
+ *
+ * Freshness rules :
+ * - an entry younger than the fresh duration is served as is,
+ * - an entry younger than the max stale duration is served at once, but must be revalidated,
+ * - an older entry is deleted.
+ * The total size of the cache is capped, the least recently used files being deleted first.
+ */
+public class RestaurantDiskCache {
+
+    /**
+     * The tag for the log messages
+     */
+    private static final String TAG = RestaurantDiskCache.class.getSimpleName();
+
+    /**
+     * Default duration an entry is fresh
+     */
+    public static final long DEFAULT_FRESH_MS = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * Default duration an entry can be served stale
+     */
+    public static final long DEFAULT_MAX_STALE_MS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Default maximum size of the cache, in bytes
+     */
+    public static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Magic number at the beginning of each file
+     */
+    private static final int MAGIC = 0x47344C52;
+
+    /**
+     * Extension of the cache files
+     */
+    private static final String EXTENSION = ".bin";
+
+    /**
+     * The cache directory
+     */
+    private final File directory;
+
+    /**
+     * The maximum size of the cache, in bytes
+     */
+    private final long maxBytes;
+
+    /**
+     * The duration an entry is fresh, in milliseconds
+     */
+    private final long freshMs;
+
+    /**
+     * The duration an entry can be served stale, in milliseconds
+     */
+    private final long maxStaleMs;
+
+    /**
+     * Single thread executor for the reads and the writes, so they never run on the main thread
+     */
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Constructor with the default configuration
+     * @param directory the cache directory
+     */
+    public RestaurantDiskCache(File directory) {
+        this(directory, DEFAULT_MAX_BYTES, DEFAULT_FRESH_MS, DEFAULT_MAX_STALE_MS);
+    }
+
+    /**
+     * Constructor
+     * @param directory the cache directory
+     * @param maxBytes the maximum size of the cache, in bytes
+     * @param freshMs the duration an entry is fresh, in milliseconds
+     * @param maxStaleMs the duration an entry can be served stale, in milliseconds
+     */
+    public RestaurantDiskCache(File directory, long maxBytes, long freshMs, long maxStaleMs) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.freshMs = freshMs;
+        this.maxStaleMs = maxStaleMs;
+    }
+
+    /**
+     * Read a cached search, on the caller thread : call it from the IO executor
+     * @param key the key of the search (see RestaurantTileCache.keyOf)
+     * @return the cached entry, or null if absent, unreadable or too old
+     */
+    public Entry get(String key) {
+        File file = fileOf(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != ListRestaurantCodec.VERSION) {
+                throw new IOException("Unknown cache format");
+            }
+            long storedAt = in.readLong();
+            long age = now() - storedAt;
+            if (age >= maxStaleMs) {
+                deleteQuietly(file);
+                return null;
+            }
+            ListRestaurant listRestaurant = ListRestaurantCodec.read(in);
+            // keep track of the last use, for the eviction
+            file.setLastModified(now());
+            return new Entry(listRestaurant, age < freshMs, storedAt);
+        } catch (IOException e) {
+            Log.e(TAG, "get: unreadable cache entry " + key, e);
+            deleteQuietly(file);
+            return null;
+        }
+    }
+
+    /**
+     * Store a search, in the background
+     * @param key the key of the search (see RestaurantTileCache.keyOf)
+     * @param listRestaurant the result of the search
+     */
+    public void put(String key, ListRestaurant listRestaurant) {
+        ioExecutor.execute(() -> write(key, listRestaurant));
+    }
+
+    /**
+     * Get the executor of the reads and the writes of the cache
+     * @return the single thread IO executor
+     */
+    public Executor getIoExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * Store a search, on the caller thread
+     * @param key the key of the search
+     * @param listRestaurant the result of the search
+     */
+    void write(String key, ListRestaurant listRestaurant) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "write: unable to create " + directory);
+            return;
+        }
+        File file = fileOf(key);
+        // write in a temporary file first, so a reader never sees a partial entry
+        File tmp = new File(directory, file.getName() + ".tmp");
+        long storedAt = now();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(ListRestaurantCodec.VERSION);
+            out.writeLong(storedAt);
+            ListRestaurantCodec.write(out, listRestaurant);
+        } catch (IOException e) {
+            Log.e(TAG, "write: unable to write cache entry " + key, e);
+            deleteQuietly(tmp);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            deleteQuietly(tmp);
+            return;
+        }
+        // the last use, on the same clock as the reads
+        file.setLastModified(storedAt);
+        trimToSize();
+    }
+
+    /**
+     * Delete the least recently used files until the cache fits its maximum size
+     */
+    private void trimToSize() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (size <= maxBytes) {
+                break;
+            }
+            size -= file.length();
+            deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Get the total size of the cache, in bytes
+     * @return the size of the cache
+     */
+    public long size() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        long size = 0;
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Current time, in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Get the file of a key, keeping only file system safe characters
+     */
+    private File fileOf(String key) {
+        StringBuilder name = new StringBuilder(key.length() + EXTENSION.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            name.append((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') ? c : '_');
+        }
+        return new File(directory, name.append(EXTENSION).toString());
+    }
+
+    /**
+     * Delete a file, ignoring failures
+     */
+    private static void deleteQuietly(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e(TAG, "deleteQuietly: unable to delete " + file);
+        }
+    }
+
+    /**
+     * A cached search, with its freshness
+     */
+    public static class Entry {
+
+        /** The cached search */
+        private final ListRestaurant listRestaurant;
+
+        /** False when the entry must be revalidated */
+        private final boolean fresh;
+
+        /** The time the search was stored, in milliseconds */
+        private final long storedAt;
+
+        public Entry(ListRestaurant listRestaurant, boolean fresh, long storedAt) {
+            this.listRestaurant = listRestaurant;
+            this.fresh = fresh;
+            this.storedAt = storedAt;
+        }
+
+        /** Getters */
+        public ListRestaurant getListRestaurant() {
+            return listRestaurant;
+        }
+
+        public boolean isFresh() {
+            return fresh;
+        }
+
+        public long getStoredAt() {
+            return storedAt;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.openclassrooms.go4lunch.model.cache;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.util.Geohash;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of nearby searches, tiled by geohash cell.
+ *
+ * Entries are keyed by (cell, radius, type), so two searches made from positions inside the same cell
+ * share the same entry. Entries expire after a time to live, and the least recently used one is evicted
+ * when the cache is full.
+ */
+public class RestaurantTileCache {
+
+    /**
+     * Default geohash precision : 7 characters, cells of about 150m x 150m
+     */
+    public static final int DEFAULT_PRECISION = 7;
+
+    /**
+     * Default time to live of an entry
+     */
+    public static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * Default maximum number of entries
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    /**
+     * Maps API status of a successful search
+     */
+    private static final String STATUS_OK = "OK";
+
+    /**
+     * Maps API status of a successful search without any result
+     */
+    private static final String STATUS_ZERO_RESULTS = "ZERO_RESULTS";
+
+    /**
+     * The geohash precision, in characters
+     */
+    private final int precision;
+
+    /**
+     * The time to live of an entry, in milliseconds
+     */
+    private final long ttlMs;
+
+    /**
+     * The entries, in access order, the eldest being evicted first
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Number of searches served from the cache
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Number of searches not found in the cache (absent or expired)
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Number of entries evicted because the cache was full
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Constructor with the default configuration
+     */
+    public RestaurantTileCache() {
+        this(DEFAULT_PRECISION, DEFAULT_TTL_MS, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor
+     * @param precision the geohash precision, in characters
+     * @param ttlMs the time to live of an entry, in milliseconds
+     * @param maxEntries the maximum number of entries
+     */
+    public RestaurantTileCache(int precision, long ttlMs, int maxEntries) {
+        this.precision = precision;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the cached search for a location
+     * @param location the location of the search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search
+     * @return the cached list of restaurants, or null if absent or expired
+     */
+    public ListRestaurant get(String location, int radius, String type) {
+        String key = keyOf(location, radius, type);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && now() - entry.storedAt < ttlMs) {
+                hitCount.incrementAndGet();
+                return entry.listRestaurant;
+            }
+            if (entry != null) {
+                // expired, free it right away
+                entries.remove(key);
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Check if a search is cached and fresh, without counting a hit or a miss
+     * @param location the location of the search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search
+     * @return true if the search would be served from the cache
+     */
+    public boolean contains(String location, int radius, String type) {
+        String key = keyOf(location, radius, type);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null && now() - entry.storedAt < ttlMs;
+        }
+    }
+
+    /**
+     * Store a search result, only if the search succeeded
+     * @param location the location of the search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search
+     * @param listRestaurant the result of the search
+     */
+    public void put(String location, int radius, String type, ListRestaurant listRestaurant) {
+        put(location, radius, type, listRestaurant, now());
+    }
+
+    /**
+     * Store a search result fetched earlier, only if the search succeeded and is not expired yet
+     * @param location the location of the search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search
+     * @param listRestaurant the result of the search
+     * @param storedAt the time the search was fetched, in milliseconds : an entry promoted from the disk keeps its age
+     */
+    public void put(String location, int radius, String type, ListRestaurant listRestaurant, long storedAt) {
+        if (listRestaurant == null || !isCacheable(listRestaurant.getStatus()) || now() - storedAt >= ttlMs) {
+            return;
+        }
+        String key = keyOf(location, radius, type);
+        synchronized (entries) {
+            entries.put(key, new Entry(listRestaurant, storedAt));
+        }
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Get the geohash cell of a location, at the cache precision
+     * @param location the location (latitude,longitude)
+     * @return the geohash of the cell
+     */
+    public String cellOf(String location) {
+        return Geohash.encode(location, precision);
+    }
+
+    /** Getters */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Get the ratio of searches served from the cache
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Current time, in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Build the key of a search : searches made from the same cell share the same key.
+     * The url and the API key are left out on purpose : a cache serves the Nearby Search of one repository,
+     * built on the single url and key of the application, and the key is also the name of the disk cache file,
+     * where the API key must not be written
+     * @param location the location of the search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search
+     * @return the key of the search
+     */
+    public String keyOf(String location, int radius, String type) {
+        return cellOf(location) + '|' + radius + '|' + type;
+    }
+
+    /**
+     * Only successful searches are cached, errors like OVER_QUERY_LIMIT must be retried
+     * @param status the Maps API status of the search
+     * @return true if the search can be cached
+     */
+    public static boolean isCacheable(String status) {
+        return STATUS_OK.equals(status) || STATUS_ZERO_RESULTS.equals(status);
+    }
+
+    /**
+     * A cached search, with its storage time
+     */
+    private static class Entry {
+        private final ListRestaurant listRestaurant;
+        private final long storedAt;
+
+        private Entry(ListRestaurant listRestaurant, long storedAt) {
+            this.listRestaurant = listRestaurant;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -1,22 +1,40 @@
 package com.openclassrooms.go4lunch.model.repository;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+import androidx.arch.core.util.Function;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
 import com.openclassrooms.go4lunch.model.bo.Lunch;
 import com.openclassrooms.go4lunch.model.bo.Restaurant;
 import com.openclassrooms.go4lunch.model.bo.Workmate;
+import com.openclassrooms.go4lunch.model.store.LunchAttendees;
+import com.openclassrooms.go4lunch.model.store.LunchDayClock;
+import com.openclassrooms.go4lunch.model.store.LunchKeys;
+import com.openclassrooms.go4lunch.model.store.LunchWrites;
+import com.openclassrooms.go4lunch.model.store.TodayLunchIndex;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * LunchRepository is a Singleton class that provides methods to interact with the Lunch collection in Firestore
@@ -29,22 +47,55 @@ public class LunchRepository {
     private static final String TAG = LunchRepository.class.getSimpleName();
 
     /**
-     * The name of the collection in Firestore
+     * The name of the collection of the days in Firestore, each day document holds the lunches of that day
+     */
+    private static final String DAYS_COLLECTION_NAME = "lunchDays";
+
+    /**
+     * The name of the collection of the lunches of a day in Firestore
      */
     private static final String COLLECTION_NAME = "lunch";
 
     /**
-     * The path from the Lunch to the workmate id
+     * The name of the flat collection of the lunches in Firestore, before the partition by day
      */
-    private static final String LUNCH_WORKMATE_ID_FIELD = "workmates.idWorkmate";
+    private static final String LEGACY_COLLECTION_NAME = "lunch";
+
     /**
-     * The name of the field date lunch
+     * The field of the day of a Lunch, as written by the Lunch getters
      */
     private static final String LUNCH_DATE_LUNCH_FIELD = "dateLunch";
+
+    /**
+     * Margin after midnight before the rollover, in milliseconds, the day key changes at midnight exactly
+     */
+    private static final long ROLLOVER_MARGIN_MILLIS = 1_000;
+
+    /**
+     * The key of the current day, in the local time zone, computed once a day
+     */
+    private static final LunchDayClock DAY_CLOCK = new LunchDayClock();
+
+    /**
+     * The path from the Lunch to the workmate id, as written by the Lunch getters
+     */
+    private static final String LUNCH_WORKMATE_ID_FIELD = "workmate.idWorkmate";
+    /**
+     * The path from the Lunch to the name of the chosen restaurant, as written by the Lunch getters
+     */
+    private static final String LUNCH_RESTAURANT_CHOSEN_NAME_FIELD = "chosenRestaurant.name";
+    /**
+     * The path from the Lunch to the id of the chosen restaurant, as written by the Lunch getters
+     */
+    private static final String LUNCH_RESTAURANT_CHOSEN_ID_FIELD = "chosenRestaurant.id";
+
     /**
-     * The name of the field in the document restaurantChosen
+     * The day of the migration of the legacy lunches, and its task, shared by the reads and writes of the day
      */
-    private static final String LUNCH_RESTAURANT_CHOSEN_NAME_FIELD = "restaurantChoosed.name";
+    @Nullable
+    private static String legacyMigrationDay;
+    @Nullable
+    private static Task<Void> legacyMigration;
 
     /**
      * Get the list of workmates who have already chosen a restaurant for today's lunch as LiveData
@@ -56,6 +107,59 @@ public class LunchRepository {
      */
     private final MutableLiveData<Boolean> thatRestaurantIsChosenForToday = new MutableLiveData<>();
 
+    /**
+     * Index of today's lunches, by restaurant and by workmate, filled by the live mode or by a bulk load
+     */
+    private final TodayLunchIndex todayIndex = new TodayLunchIndex();
+
+    /**
+     * True once the index holds today's lunches, from the live mode or from a bulk load
+     */
+    private boolean indexed;
+
+    /**
+     * The day of the index and of the live mode, null before the first load
+     */
+    @Nullable
+    private String indexedDay;
+
+    /**
+     * The main thread, where the rollover runs like the Firestore listeners
+     */
+    @Nullable
+    private Handler mainHandler;
+
+    /**
+     * Rollover at midnight, scheduled while the index holds today's lunches
+     */
+    private final Runnable rollover = this::onDayChanged;
+
+    /**
+     * The index of today's lunches, republished after each change
+     */
+    private final MutableLiveData<TodayLunchIndex> todayIndexLiveData = new MutableLiveData<>();
+
+    /**
+     * Today's lunches, republished after each change
+     */
+    private final MutableLiveData<List<Lunch>> todayLunches = new MutableLiveData<>();
+
+    /**
+     * The snapshot listener of the live mode, null while off
+     */
+    @Nullable
+    private ListenerRegistration liveRegistration;
+
+    /**
+     * Number of users of the live mode, the listener is removed by the last one
+     */
+    private int liveUsers;
+
+    /**
+     * Number of documents read by the live mode : the first snapshot, then one per change
+     */
+    private long liveReadCount;
+
     /**
      * Empty constructor
      */
@@ -76,49 +180,384 @@ public class LunchRepository {
     }
 
     /**
-     * Get the Lunch collection
+     * Get the Lunch collection of today
      */
     public static CollectionReference getLunchCollection() {
-        return FirebaseFirestore.getInstance().collection(COLLECTION_NAME);
+        return getLunchCollection(toDay());
+    }
+
+    /**
+     * Get the Lunch collection of a day : the lunches are partitioned by day, so that the queries of today
+     * only touch today's lunches, and the past days can be archived or deleted as a whole
+     * @param day the key of the day, see LunchDayClock
+     */
+    public static CollectionReference getLunchCollection(String day) {
+        return FirebaseFirestore.getInstance().collection(DAYS_COLLECTION_NAME).document(day).collection(COLLECTION_NAME);
+    }
+
+    /**
+     * Move today's lunches of the flat collection, written before the partition by day, to the lunches of the day.
+     * Run once a day, before the first read or write of the day : one query, then one transaction writing each
+     * lunch under its key unless the workmate chose again since, and deleting it from the flat collection.
+     * The lunches of the previous days are left where they are. The legacy key is the UTC day : the migration only
+     * runs while the UTC day is the local day, or yesterday's lunches would be moved to today's partition.
+     * @param day the key of the day
+     * @return Task of the migration, shared until the next day, or until it fails
+     */
+    private static synchronized Task<Void> migrateLegacyLunches(String day) {
+        if (legacyMigration != null && day.equals(legacyMigrationDay)) {
+            return legacyMigration;
+        }
+        String legacyDayKey = DAY_CLOCK.getLegacyDayKey(day);
+        if (legacyDayKey == null) {
+            // not kept : the next read or write runs it, once the UTC day is the local day
+            return Tasks.forResult(null);
+        }
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        Task<Void> migration = db.collection(LEGACY_COLLECTION_NAME)
+            // the day key of the lunches shown as today's before the partition
+            .whereEqualTo(LUNCH_DATE_LUNCH_FIELD, legacyDayKey)
+            .get()
+            .continueWithTask(task -> {
+                if (!task.isSuccessful()) {
+                    return Tasks.forException(task.getException());
+                }
+                List<DocumentSnapshot> legacyLunches = task.getResult().getDocuments();
+                if (legacyLunches.isEmpty()) {
+                    return Tasks.forResult(null);
+                }
+                CollectionReference lunches = getLunchCollection(day);
+                return db.runTransaction(transaction -> {
+                    // every read of a transaction comes before its writes
+                    Map<String, DocumentSnapshot> keyedLunches = new HashMap<>();
+                    for (DocumentSnapshot legacyLunch : legacyLunches) {
+                        String workmateId = workmateIdOf(legacyLunch.toObject(Lunch.class));
+                        if (workmateId != null && !keyedLunches.containsKey(workmateId)) {
+                            keyedLunches.put(workmateId, transaction.get(lunches.document(LunchKeys.documentId(day, workmateId))));
+                        }
+                    }
+                    // the random ids may hold several lunches of a workmate, the first one is kept
+                    Set<String> migrated = new HashSet<>();
+                    for (DocumentSnapshot legacyLunch : legacyLunches) {
+                        Lunch lunch = legacyLunch.toObject(Lunch.class);
+                        String workmateId = workmateIdOf(lunch);
+                        if (workmateId == null) {
+                            continue;
+                        }
+                        if (!keyedLunches.get(workmateId).exists() && migrated.add(workmateId)) {
+                            lunch.setDateLunch(day);
+                            transaction.set(lunches.document(LunchKeys.documentId(day, workmateId)), lunch);
+                        }
+                        transaction.delete(legacyLunch.getReference());
+                    }
+                    return null;
+                });
+            });
+        legacyMigrationDay = day;
+        legacyMigration = migration;
+        migration.addOnFailureListener(e -> {
+            Log.e(TAG, "migrateLegacyLunches: Error moving the lunches of " + day, e);
+            forgetLegacyMigration(migration);
+        });
+        return migration;
+    }
+
+    /**
+     * Forget a failed migration, the next read or write of the day runs it again
+     */
+    private static synchronized void forgetLegacyMigration(Task<Void> migration) {
+        if (legacyMigration == migration) {
+            legacyMigration = null;
+        }
+    }
+
+    /** Get the workmate id of a lunch, null if the lunch or its workmate is missing */
+    @Nullable
+    private static String workmateIdOf(@Nullable Lunch lunch) {
+        return lunch != null && lunch.getWorkmate() != null ? lunch.getWorkmate().getIdWorkmate() : null;
     }
 
-    /** Today */
+    /** Today, in the local time zone */
     private static String toDay(){
-        return Instant.now().truncatedTo(ChronoUnit.DAYS).toString();
+        return DAY_CLOCK.getDayKey();
+    }
+
+    /**
+     * Choose a restaurant for today's lunch : one batch writes the lunch under its key, replacing any previous
+     * choice of the day, without any read. The lunches of the day written under a random id before the keys,
+     * when known by the index, are deleted by the same batch, see LunchWrites.
+     * @return Task of the batch
+     */
+    public Task<Void> createLunch(Restaurant restaurantChoosed, Workmate workmate) {
+        String day = toDay();
+        return commit(day, LunchWrites.choose(day, restaurantChoosed, workmate, isIndexed() ? todayIndex : null), restaurantChoosed);
     }
 
-    /** Create a lunch */
-    public void createLunch(Restaurant restaurantChoosed, Workmate workmate) {
-        Lunch lunch = new Lunch(toDay(), restaurantChoosed, workmate);
-        getLunchCollection().add(lunch);
+    /**
+     * Commit the writes of a choice or of a cancellation : one transaction when the plan reads first,
+     * one batch otherwise, nothing when the plan is empty
+     */
+    private static Task<Void> commit(String day, LunchWrites.Plan plan, Restaurant restaurant) {
+        if (plan.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+        // after the migration, which would otherwise bring back a lunch cancelled meanwhile
+        return migrateLegacyLunches(day).continueWithTask(migration -> write(day, plan, restaurant));
+    }
+
+    /** Write a plan, once the legacy lunches of the day are migrated */
+    private static Task<Void> write(String day, LunchWrites.Plan plan, Restaurant restaurant) {
+        CollectionReference lunches = getLunchCollection(day);
+        if (plan.isReadFirst()) {
+            return FirebaseFirestore.getInstance().runTransaction(transaction -> {
+                DocumentSnapshot snapshot = transaction.get(lunches.document(plan.getDocumentId()));
+                if (LunchWrites.isAt(snapshot.exists() ? snapshot.toObject(Lunch.class) : null, restaurant)) {
+                    for (String documentId : plan.getDeletedIds()) {
+                        transaction.delete(lunches.document(documentId));
+                    }
+                }
+                return null;
+            });
+        }
+        WriteBatch batch = FirebaseFirestore.getInstance().batch();
+        if (plan.getLunch() != null) {
+            batch.set(lunches.document(plan.getDocumentId()), plan.getLunch());
+        }
+        for (String documentId : plan.getDeletedIds()) {
+            batch.delete(lunches.document(documentId));
+        }
+        return batch.commit();
     }
 
     /** Get THE today lunch for a given workmate, if it exists. As Task (for ALARM purpose) */
     public static Task<QuerySnapshot> getTodayLunchByWorkmateTask(String id_workmate) {
-        return getLunchCollection()
+        String day = toDay();
+        return migrateLegacyLunches(day).continueWithTask(migration -> getLunchCollection(day)
                 .whereEqualTo(LUNCH_WORKMATE_ID_FIELD, id_workmate)
-                .whereEqualTo(LUNCH_DATE_LUNCH_FIELD, toDay())
-                .get();
+                .get());
     }
 
     /** Get ALL the today lunch for a given restaurant, if it exists. As Task.  */
     public static Task<QuerySnapshot> getTodayLunchByRestaurantTask(Restaurant restaurant) {
-        return getLunchCollection()
+        String day = toDay();
+        return migrateLegacyLunches(day).continueWithTask(migration -> getLunchCollection(day)
                 .whereEqualTo(LUNCH_RESTAURANT_CHOSEN_NAME_FIELD, restaurant.getName())
-                .whereEqualTo(LUNCH_DATE_LUNCH_FIELD, toDay())
-                .get();
+                .get());
     }
 
     /** Check if the current workmate has chosen a particular Restaurant for today. As Task */
     public static Task<QuerySnapshot> getTodayLunchByRestaurantAndWorkmate(Restaurant restaurant, String user_id) {
-        return getLunchCollection()
+        String day = toDay();
+        return migrateLegacyLunches(day).continueWithTask(migration -> getLunchCollection(day)
                 .whereEqualTo(LUNCH_RESTAURANT_CHOSEN_NAME_FIELD, restaurant.getName())
                 .whereEqualTo(LUNCH_WORKMATE_ID_FIELD, user_id)
-                .get();
+                .get());
+    }
+
+    /**
+     * Start the live mode : one snapshot listener on today's lunches, whose changes are applied to the index.
+     * While live, the queries below are answered from the index, without any read, and follow the changes.
+     * Every call must be balanced by a call to stopLiveMode.
+     */
+    public void startLiveMode() {
+        liveUsers++;
+        if (liveRegistration != null) {
+            return;
+        }
+        listenToDay(toDay());
+    }
+
+    /**
+     * Attach the snapshot listener of the live mode to the lunches of a day
+     */
+    private void listenToDay(String day) {
+        indexedDay = day;
+        scheduleRollover();
+        // the migrated lunches reach the listener as changes
+        migrateLegacyLunches(day);
+        liveRegistration = getLunchCollection(day)
+            .addSnapshotListener((snapshots, e) -> {
+                if (e != null) {
+                    Log.e(TAG, "startLiveMode: listen failed", e);
+                    return;
+                }
+                if (snapshots != null) {
+                    applyChanges(snapshots.getDocumentChanges());
+                }
+            });
+    }
+
+    /**
+     * Stop the live mode, once every user stopped it
+     */
+    public void stopLiveMode() {
+        liveUsers = Math.max(0, liveUsers - 1);
+        if (liveUsers > 0 || liveRegistration == null) {
+            return;
+        }
+        liveRegistration.remove();
+        liveRegistration = null;
+        cancelRollover();
+        todayIndex.clear();
+        indexed = false;
+        todayLunches.setValue(null);
+    }
+
+    /**
+     * Schedule the rollover at the next midnight, replacing the scheduled one
+     */
+    private void scheduleRollover() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        mainHandler.removeCallbacks(rollover);
+        mainHandler.postDelayed(rollover, DAY_CLOCK.getMillisUntilRollover() + ROLLOVER_MARGIN_MILLIS);
+    }
+
+    private void cancelRollover() {
+        if (mainHandler != null) {
+            mainHandler.removeCallbacks(rollover);
+        }
+    }
+
+    /**
+     * Move to the new day : the index is emptied, and the live mode listens to the new day
+     */
+    private void onDayChanged() {
+        String day = toDay();
+        if (day.equals(indexedDay)) {
+            // woken up early, the clock did not reach midnight yet
+            scheduleRollover();
+            return;
+        }
+        todayIndex.clear();
+        indexed = false;
+        publishIndex();
+        if (liveRegistration != null) {
+            liveRegistration.remove();
+            listenToDay(day);
+        } else {
+            indexedDay = null;
+        }
+    }
+
+    /**
+     * Fill the index of today's lunches with one query, unless the live mode keeps it up to date.
+     * Until the next load, the queries below are answered from the index, without any read.
+     * @return LiveData of the index, updated when loaded
+     */
+    public LiveData<TodayLunchIndex> loadTodayLunches() {
+        if (isLive()) {
+            return todayIndexLiveData;
+        }
+        String day = toDay();
+        migrateLegacyLunches(day)
+            .continueWithTask(migration -> getLunchCollection(day).get())
+            .addOnCompleteListener(task -> {
+                // the live mode may have started meanwhile, its snapshots are more recent
+                if (isLive()) {
+                    return;
+                }
+                if (task.isSuccessful()) {
+                    todayIndex.clear();
+                    for (QueryDocumentSnapshot document : task.getResult()) {
+                        todayIndex.put(document.getId(), document.toObject(Lunch.class));
+                    }
+                    indexed = true;
+                    indexedDay = day;
+                    scheduleRollover();
+                    publishIndex();
+                } else {
+                    Log.e(TAG, "loadTodayLunches: Error getting documents: ", task.getException());
+                }
+            });
+        return todayIndexLiveData;
+    }
+
+    /**
+     * Check if the queries below are answered from the index : it holds the lunches of the current day
+     */
+    public boolean isIndexed() {
+        return indexed && toDay().equals(indexedDay);
+    }
+
+    /**
+     * Check if the live mode is on
+     */
+    public boolean isLive() {
+        return liveRegistration != null;
+    }
+
+    /**
+     * Apply the changes of a snapshot to the index of today's lunches, then publish it
+     * @param changes the changes since the previous snapshot, every document for the first one
+     */
+    private void applyChanges(List<DocumentChange> changes) {
+        for (DocumentChange change : changes) {
+            String id = change.getDocument().getId();
+            switch (change.getType()) {
+                case ADDED:
+                case MODIFIED:
+                    todayIndex.put(id, change.getDocument().toObject(Lunch.class));
+                    break;
+                case REMOVED:
+                    todayIndex.remove(id);
+                    break;
+            }
+        }
+        liveReadCount += changes.size();
+        // the first snapshot is published even when empty, so the screens know there is no lunch yet
+        if (!changes.isEmpty() || !indexed) {
+            indexed = true;
+            publishIndex();
+        }
+    }
+
+    /**
+     * Publish the index and the lunches after a change
+     */
+    private void publishIndex() {
+        todayIndexLiveData.setValue(todayIndex);
+        todayLunches.setValue(todayIndex.getLunches());
+    }
+
+    /**
+     * Get today's lunches
+     * @return LiveData of the lunches, updated on each change, null until the first snapshot or load
+     */
+    public LiveData<List<Lunch>> getTodayLunches() {
+        return todayLunches;
+    }
+
+    /**
+     * Get the index of today's lunches
+     * @return LiveData of the index, updated on each change, empty until the first snapshot or load
+     */
+    public LiveData<TodayLunchIndex> getTodayLunchIndex() {
+        return todayIndexLiveData;
+    }
+
+    /** Getters */
+    public long getLiveReadCount() {
+        return liveReadCount;
+    }
+
+    /**
+     * Derive a LiveData from the index of today's lunches
+     * @param function the value derived from the index
+     * @return LiveData of the value, updated on each change
+     */
+    private <T> MediatorLiveData<T> fromTodayIndex(Function<TodayLunchIndex, T> function) {
+        MediatorLiveData<T> result = new MediatorLiveData<>();
+        result.addSource(todayIndexLiveData, index -> result.setValue(function.apply(index)));
+        return result;
     }
 
     /** Get the today lunch for a given workmate, if it exists. As LiveData */
     public LiveData<Lunch> getTodayLunch(String id_workmate) {
+        if (isIndexed()) {
+            return fromTodayIndex(index -> index.getLunchOf(id_workmate));
+        }
         MutableLiveData<Lunch> todayLunch = new MutableLiveData<>();
         getTodayLunchByWorkmateTask(id_workmate)
             .addOnCompleteListener(task -> {
@@ -139,6 +578,9 @@ public class LunchRepository {
 
     /** Get ALL the today lunch for a given restaurant, if it exists */
     public LiveData<ArrayList<Workmate>> getWorkmatesThatAlreadyChooseRestaurantForTodayLunchForThatRestaurant(Restaurant restaurant) {
+        if (isIndexed()) {
+            return fromTodayIndex(index -> index.getWorkmatesAt(restaurant));
+        }
         getTodayLunchByRestaurantTask(restaurant)
             .addOnCompleteListener(task -> {
                 if (task.isSuccessful()) {
@@ -156,8 +598,46 @@ public class LunchRepository {
         return workmatesAlreadyChooseRestaurantForTodayLunch;
     }
 
+    /**
+     * Get the attendees of today's lunch for a page of restaurants, to bind the "N workmates" of each row.
+     * With the index, they are answered locally and follow the changes, otherwise the page costs one whereIn
+     * query on the restaurant ids per MAX_IN_VALUES restaurants, instead of one query per restaurant.
+     * @param restaurants the restaurants of the page
+     * @return LiveData of the attendees by restaurant id, in page order, null if a query failed
+     */
+    public LiveData<Map<String, ArrayList<Workmate>>> getTodayAttendeesOf(List<Restaurant> restaurants) {
+        if (isIndexed()) {
+            return fromTodayIndex(index -> LunchAttendees.fromIndex(restaurants, index));
+        }
+        MutableLiveData<Map<String, ArrayList<Workmate>>> attendees = new MutableLiveData<>();
+        String day = toDay();
+        CollectionReference lunchCollection = getLunchCollection(day);
+        Task<Void> migration = migrateLegacyLunches(day);
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (List<String> ids : LunchAttendees.restaurantIdChunks(restaurants, LunchAttendees.MAX_IN_VALUES)) {
+            queries.add(migration.continueWithTask(migrated -> lunchCollection.whereIn(LUNCH_RESTAURANT_CHOSEN_ID_FIELD, ids).get()));
+        }
+        // the queries run in parallel, the page is bound once all of them answered
+        Tasks.<QuerySnapshot>whenAllSuccess(queries)
+            .addOnSuccessListener(snapshots -> {
+                List<Lunch> lunches = new ArrayList<>();
+                for (QuerySnapshot snapshot : snapshots) {
+                    lunches.addAll(snapshot.toObjects(Lunch.class));
+                }
+                attendees.setValue(LunchAttendees.group(restaurants, lunches));
+            })
+            .addOnFailureListener(e -> {
+                Log.e(TAG, "getTodayAttendeesOf: Error getting documents: ", e);
+                attendees.postValue(null);
+            });
+        return attendees;
+    }
+
     /** Check if the current workmates has chosen a particular Restaurant for today */
     public MutableLiveData<Boolean> checkIfCurrentWorkmateChoseThisRestaurantForLunch(Restaurant restaurant, String user_id) {
+        if (isIndexed()) {
+            return fromTodayIndex(index -> index.hasChosen(user_id, restaurant));
+        }
         getTodayLunchByRestaurantAndWorkmate(restaurant, user_id)
             .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
@@ -172,18 +652,14 @@ public class LunchRepository {
         return thatRestaurantIsChosenForToday;
     }
 
-    /** Delete a lunch, by specifying the restaurant and the user_id */
-    public void deleteLunch(Restaurant restaurant, String user_id) {
-        getTodayLunchByRestaurantAndWorkmate(restaurant, user_id)
-            .addOnCompleteListener(task -> {
-                if (task.isSuccessful()) {
-                    for (QueryDocumentSnapshot document : task.getResult()) {
-                        document.getReference().delete();
-                        Log.e(TAG, "lunch: " + document.toObject(Lunch.class).getChosenRestaurant().getName());
-                    }
-                } else {
-                    Log.e(TAG, "Error delete documents: ", task.getException());
-                }
-            });
+    /**
+     * Delete today's lunch of a workmate, if it is at the restaurant.
+     * With the index, the check is local and one batch deletes the lunch without any read,
+     * otherwise a transaction reads the lunch document only, then deletes it.
+     * @return Task of the deletion
+     */
+    public Task<Void> deleteLunch(Restaurant restaurant, String user_id) {
+        String day = toDay();
+        return commit(day, LunchWrites.cancel(day, restaurant, user_id, isIndexed() ? todayIndex : null), restaurant);
     }
 }
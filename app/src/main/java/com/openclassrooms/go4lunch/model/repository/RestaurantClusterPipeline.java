@@ -0,0 +1,225 @@
+package com.openclassrooms.go4lunch.model.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.store.RestaurantGridClusterer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Marker clustering pipeline of the map.
+ *
+ * The places and the zoom level of the camera are clustered on a background thread by a RestaurantGridClusterer,
+ * then only the changes since the clusters on screen are published to the UI : the markers of the removed clusters
+ * to remove, the markers of the added clusters to add, the others left untouched.
+ *
+ * A request superseded by a newer one before it runs is skipped, and the fraction of the zoom is ignored,
+ * so pinching the map does not recluster at every frame.
+ *
+ * LiveData only delivers its latest value : an observer stopped, recreated or not yet active misses the changes
+ * published meanwhile. Every update so carries the generation of the clusters it applies to, and the complete
+ * cluster set of its own generation. The UI applies the diff when its markers are of the base generation,
+ * and redraws every marker from the complete set otherwise.
+ */
+public class RestaurantClusterPipeline {
+
+    /** The tag for the log messages */
+    private static final String TAG = RestaurantClusterPipeline.class.getSimpleName();
+
+    /** The clusterer, only used on the background thread */
+    private final RestaurantGridClusterer clusterer;
+
+    /** The background thread of the clusterings */
+    private final ExecutorService executor;
+
+    /** The executor delivering the changes to the UI, in order */
+    private final Executor mainExecutor;
+
+    /** The changes of the clusters */
+    private final MutableLiveData<Update> updates = new MutableLiveData<>();
+
+    /** The generation of the last request, older requests are skipped */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** The last requested places and zoom level */
+    private volatile List<Result> places = Collections.emptyList();
+    private volatile int zoom = -1;
+
+    /** The clusters published and their generation, 0 being no cluster at all, only used on the background thread */
+    private List<RestaurantGridClusterer.Cluster> published = Collections.emptyList();
+    private long publishedGeneration;
+
+    /** The coordinates and place ids of the places, reused between two clusterings on the background thread */
+    private double[] latitudes = new double[64];
+    private double[] longitudes = new double[64];
+    private String[] placeIds = new String[64];
+
+    /** Number of clusterings run */
+    private long clusteringCount;
+
+    /**
+     * Constructor with the default cell size, delivering the changes on the main thread
+     */
+    public RestaurantClusterPipeline() {
+        this(new RestaurantGridClusterer(), Executors.newSingleThreadExecutor(), new Handler(Looper.getMainLooper())::post);
+    }
+
+    /**
+     * Constructor
+     * @param clusterer the clusterer
+     * @param executor the background executor of the clusterings, a single thread
+     * @param mainExecutor the executor delivering the changes to the UI
+     */
+    public RestaurantClusterPipeline(RestaurantGridClusterer clusterer, ExecutorService executor, Executor mainExecutor) {
+        this.clusterer = clusterer;
+        this.executor = executor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    /**
+     * Get the changes of the clusters
+     * @return LiveData of the changes, to apply to the markers on screen of their base generation
+     */
+    public LiveData<Update> getUpdates() {
+        return updates;
+    }
+
+    /**
+     * Cluster a new set of places
+     * @param places the places to show on the map
+     */
+    public void setPlaces(List<Result> places) {
+        // the copy is a reference copy, the places are read on the background thread
+        this.places = places == null ? Collections.emptyList() : new ArrayList<>(places);
+        schedule();
+    }
+
+    /**
+     * Cluster for a new zoom level of the camera, nothing is done within the same whole level
+     * @param zoom the zoom level
+     */
+    public void setZoom(float zoom) {
+        int level = (int) zoom;
+        if (level == this.zoom) {
+            return;
+        }
+        this.zoom = level;
+        schedule();
+    }
+
+    /**
+     * Stop the background thread
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Getters */
+    public long getClusteringCount() {
+        return clusteringCount;
+    }
+
+    private void schedule() {
+        if (zoom < 0) {
+            return;
+        }
+        long requested = generation.incrementAndGet();
+        executor.execute(() -> {
+            // a newer request will do the work
+            if (requested == generation.get()) {
+                run();
+            }
+        });
+    }
+
+    /**
+     * Cluster the last requested places, and publish the changes, on the background thread
+     */
+    private void run() {
+        List<Result> snapshot = places;
+        int count = 0;
+        ensureCapacity(snapshot.size());
+        for (Result result : snapshot) {
+            Location location = result.getGeometry() == null ? null : result.getGeometry().getLocation();
+            if (result.getPlaceId() == null || location == null || location.getLat() == null || location.getLng() == null) {
+                continue;
+            }
+            latitudes[count] = location.getLat();
+            longitudes[count] = location.getLng();
+            placeIds[count] = result.getPlaceId();
+            count++;
+        }
+        try {
+            List<RestaurantGridClusterer.Cluster> clusters = clusterer.cluster(latitudes, longitudes, placeIds, count, zoom);
+            RestaurantGridClusterer.Diff diff = RestaurantGridClusterer.diff(published, clusters);
+            published = clusters;
+            clusteringCount++;
+            if (!diff.isEmpty()) {
+                Update update = new Update(publishedGeneration, ++publishedGeneration, diff);
+                // setValue on the main thread, in order
+                mainExecutor.execute(() -> updates.setValue(update));
+            }
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "run: unable to cluster " + count + " places", e);
+        }
+    }
+
+    /**
+     * A change of the clusters : the diff from the clusters of the base generation, and the complete clusters of its generation
+     */
+    public static class Update {
+
+        /** The generation the diff applies to */
+        private final long baseGeneration;
+
+        /** The generation of the clusters after the diff */
+        private final long generation;
+
+        /** The diff, and the complete new cluster set */
+        private final RestaurantGridClusterer.Diff diff;
+
+        private Update(long baseGeneration, long generation, RestaurantGridClusterer.Diff diff) {
+            this.baseGeneration = baseGeneration;
+            this.generation = generation;
+            this.diff = diff;
+        }
+
+        /**
+         * Check if the diff can be applied to the markers on screen
+         * @param shownGeneration the generation of the markers on screen, 0 for no marker at all
+         * @return true to apply the diff, false to redraw every marker from getDiff().getClusters()
+         */
+        public boolean appliesTo(long shownGeneration) {
+            return shownGeneration == baseGeneration;
+        }
+
+        /** Getters */
+        public long getBaseGeneration() { return baseGeneration; }
+
+        public long getGeneration() { return generation; }
+
+        public RestaurantGridClusterer.Diff getDiff() { return diff; }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (latitudes.length < capacity) {
+            int newCapacity = Math.max(capacity, latitudes.length * 2);
+            latitudes = new double[newCapacity];
+            longitudes = new double[newCapacity];
+            placeIds = new String[newCapacity];
+        }
+    }
+}
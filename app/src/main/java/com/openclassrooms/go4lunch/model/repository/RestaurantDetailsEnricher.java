@@ -0,0 +1,368 @@
+package com.openclassrooms.go4lunch.model.repository;
+
+import android.util.Log;
+
+import com.openclassrooms.go4lunch.model.bo.Restaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.OpeningHours;
+import com.openclassrooms.go4lunch.model.bo.maps.Period;
+import com.openclassrooms.go4lunch.model.bo.maps.PlaceDetails;
+import com.openclassrooms.go4lunch.model.bo.maps.PlaceDetailsResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Enrichment of the restaurants with the Place Details fields nearby search never returns :
+ * phone, web site and closing hour of the day.
+ *
+ * The restaurants of the latest enrich() call are fetched first, a few requests at a time,
+ * and patched as soon as their details arrive. The details are cached per place id with a long
+ * time to live, so detail screens open without a network wait.
+ */
+public class RestaurantDetailsEnricher {
+
+    /** The tag for the log messages */
+    private static final String TAG = RestaurantDetailsEnricher.class.getSimpleName();
+
+    /** Default number of requests in flight */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 3;
+
+    /** Default time to live of the cached details, phones and web sites rarely change */
+    public static final long DEFAULT_TTL_MS = TimeUnit.DAYS.toMillis(7);
+
+    /** Maximum number of cached details */
+    private static final int MAX_CACHED = 512;
+
+    /** Maps API statuses of a place with details, and of a place which does not exist anymore */
+    private static final String STATUS_OK = "OK";
+    private static final String STATUS_NOT_FOUND = "NOT_FOUND";
+
+    /**
+     * Receives the patched restaurants
+     */
+    public interface Listener {
+        void onEnriched(Restaurant restaurant);
+    }
+
+    /** The restaurant repository, throttling the calls */
+    private final RestaurantRepository repository;
+
+    /** The prefix url and the API key of the Google Maps API */
+    private final String url;
+    private final String key;
+
+    /** The maximum number of requests in flight */
+    private final int maxInFlight;
+
+    /** The time to live of the cached details */
+    private final long ttlMs;
+
+    /** The cached details and their storage time, by place id, least recently used first */
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /** The place ids waiting for a request, highest priority first */
+    private final Deque<String> pending = new ArrayDeque<>();
+
+    /** The restaurants to patch, by place id, for the pending and running requests */
+    private final Map<String, List<Waiter>> waiters = new HashMap<>();
+
+    /** The place ids of the running requests */
+    private final List<String> running = new ArrayList<>();
+
+    /** Number of requests in flight */
+    private int inFlight;
+
+    /** Counters */
+    private long hitCount;
+    private long fetchCount;
+
+    /**
+     * Constructor with the default configuration
+     * @param repository the restaurant repository
+     * @param url the prefix url of the Google Maps API
+     * @param key the API key of the Google Maps API
+     */
+    public RestaurantDetailsEnricher(RestaurantRepository repository, String url, String key) {
+        this(repository, url, key, DEFAULT_MAX_IN_FLIGHT, DEFAULT_TTL_MS);
+    }
+
+    /**
+     * Constructor
+     * @param repository the restaurant repository
+     * @param url the prefix url of the Google Maps API
+     * @param key the API key of the Google Maps API
+     * @param maxInFlight the maximum number of requests in flight
+     * @param ttlMs the time to live of the cached details
+     */
+    public RestaurantDetailsEnricher(RestaurantRepository repository, String url, String key, int maxInFlight, long ttlMs) {
+        this.repository = repository;
+        this.url = url;
+        this.key = key;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Enrich restaurants : cached ones are patched at once, the others are fetched ahead of the older pending ones
+     * @param restaurants the restaurants, in priority order (e.g. the visible ones, nearest first)
+     * @param listener the receiver of each patched restaurant
+     */
+    public void enrich(List<Restaurant> restaurants, Listener listener) {
+        List<Restaurant> patched = new ArrayList<>();
+        synchronized (this) {
+            List<String> batch = new ArrayList<>();
+            for (Restaurant restaurant : restaurants) {
+                String placeId = restaurant.getId();
+                if (placeId == null) {
+                    continue;
+                }
+                PlaceDetailsResult details = getCached(placeId);
+                if (details != null) {
+                    hitCount++;
+                    patch(restaurant, details, Calendar.getInstance());
+                    patched.add(restaurant);
+                    continue;
+                }
+                List<Waiter> list = waiters.get(placeId);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    waiters.put(placeId, list);
+                }
+                list.add(new Waiter(restaurant, listener));
+                batch.add(placeId);
+            }
+            // the new batch goes ahead of the pending place ids, in its own order
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                String placeId = batch.get(i);
+                pending.remove(placeId);
+                if (!running.contains(placeId)) {
+                    pending.addFirst(placeId);
+                }
+            }
+        }
+        for (Restaurant restaurant : patched) {
+            listener.onEnriched(restaurant);
+        }
+        pump();
+    }
+
+    /**
+     * Get the cached details of a place
+     * @param placeId the id of the place
+     * @return the details, or null if absent or expired
+     */
+    public synchronized PlaceDetailsResult getCached(String placeId) {
+        Entry entry = cache.get(placeId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.storedAt >= ttlMs) {
+            cache.remove(placeId);
+            return null;
+        }
+        return entry.details;
+    }
+
+    /**
+     * Start requests while there is room
+     */
+    private void pump() {
+        while (true) {
+            String placeId;
+            synchronized (this) {
+                if (inFlight >= maxInFlight || pending.isEmpty()) {
+                    return;
+                }
+                placeId = pending.pollFirst();
+                inFlight++;
+                fetchCount++;
+                running.add(placeId);
+            }
+            repository.getPlaceDetails(url, placeId, key).enqueue(new Callback<PlaceDetails>() {
+                @Override
+                public void onResponse(Call<PlaceDetails> call, Response<PlaceDetails> response) {
+                    PlaceDetails body = response.body();
+                    PlaceDetailsResult details = null;
+                    if (response.isSuccessful() && body != null && STATUS_OK.equals(body.getStatus())) {
+                        details = body.getResult();
+                    } else if (body != null && STATUS_NOT_FOUND.equals(body.getStatus())) {
+                        // a closed place : remember it has no details, instead of asking again
+                        details = new PlaceDetailsResult();
+                    } else {
+                        Log.e(TAG, "enrich: no details for " + placeId + ", status " + (body == null ? response.code() : body.getStatus()));
+                    }
+                    finish(placeId, details);
+                }
+
+                @Override
+                public void onFailure(Call<PlaceDetails> call, Throwable t) {
+                    Log.e(TAG, "enrich: details of " + placeId + " failed", t);
+                    finish(placeId, null);
+                }
+            });
+        }
+    }
+
+    /**
+     * Cache the details of a place, patch its restaurants, then start the next request
+     * @param details the details, or null if the request failed
+     */
+    private void finish(String placeId, PlaceDetailsResult details) {
+        List<Waiter> list;
+        synchronized (this) {
+            inFlight--;
+            running.remove(placeId);
+            list = waiters.remove(placeId);
+            if (details != null) {
+                cache.put(placeId, new Entry(details, System.currentTimeMillis()));
+            }
+        }
+        if (details != null && list != null) {
+            Calendar now = Calendar.getInstance();
+            for (Waiter waiter : list) {
+                patch(waiter.restaurant, details, now);
+                waiter.listener.onEnriched(waiter.restaurant);
+            }
+        }
+        pump();
+    }
+
+    /**
+     * Patch a restaurant with the details of its place
+     * @param restaurant the restaurant
+     * @param details the details of the place
+     * @param now the current day and time
+     */
+    static void patch(Restaurant restaurant, PlaceDetailsResult details, Calendar now) {
+        String phone = details.getFormattedPhoneNumber() != null ? details.getFormattedPhoneNumber() : details.getInternationalPhoneNumber();
+        if (phone != null) {
+            restaurant.setPhone(phone);
+        }
+        if (details.getWebsite() != null) {
+            restaurant.setWebSite(details.getWebsite());
+        }
+        String hourClosed = closingHour(details.getOpeningHours(), now);
+        if (hourClosed != null) {
+            restaurant.setHourClosed(hourClosed);
+        }
+    }
+
+    /**
+     * Get the closing hour of the current opening period, or of the last one of the day.
+     * The current period may have opened the day before, and close after midnight
+     * @param openingHours the opening hours of the place
+     * @param now the current day and time
+     * @return the closing hour (HH:mm), or null if unknown or open all day long
+     */
+    public static String closingHour(OpeningHours openingHours, Calendar now) {
+        if (openingHours == null || openingHours.getPeriods() == null) {
+            return null;
+        }
+        // Google counts the days from 0 (sunday), Calendar from 1 (sunday)
+        int today = now.get(Calendar.DAY_OF_WEEK) - 1;
+        int yesterday = (today + 6) % 7;
+        int minute = now.get(Calendar.HOUR_OF_DAY) * 60 + now.get(Calendar.MINUTE);
+        int closing = -1;
+        for (Period period : openingHours.getPeriods()) {
+            if (period.getOpen() == null || period.getOpen().getDay() == null || period.getClose() == null) {
+                continue;
+            }
+            int open = minuteOf(period.getOpen().getTime());
+            int close = minuteOf(period.getClose().getTime());
+            if (open < 0 || close < 0) {
+                continue;
+            }
+            int openDay = period.getOpen().getDay();
+            boolean overnight = period.getClose().getDay() != null && period.getClose().getDay() != openDay;
+            if (openDay == today) {
+                // a period closing after midnight ends the next day
+                if (overnight) {
+                    close += 24 * 60;
+                }
+            } else if (openDay == yesterday && overnight) {
+                // a period opened yesterday only matters while it is still open
+                if (minute < close) {
+                    closing = close;
+                    break;
+                }
+                continue;
+            } else {
+                continue;
+            }
+            // the period open now wins, or else the latest one of the day
+            if (open <= minute && minute < close) {
+                closing = close;
+                break;
+            }
+            closing = Math.max(closing, close);
+        }
+        return closing < 0 ? null : String.format(Locale.US, "%02d:%02d", closing / 60 % 24, closing % 60);
+    }
+
+    /**
+     * Parse a Google time of day (HHmm)
+     * @return the minute of the day, or -1
+     */
+    private static int minuteOf(String time) {
+        if (time == null || time.length() != 4) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(time.substring(0, 2)) * 60 + Integer.parseInt(time.substring(2));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Getters */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getFetchCount() {
+        return fetchCount;
+    }
+
+    /**
+     * Cached details, with their storage time
+     */
+    private static class Entry {
+        private final PlaceDetailsResult details;
+        private final long storedAt;
+
+        private Entry(PlaceDetailsResult details, long storedAt) {
+            this.details = details;
+            this.storedAt = storedAt;
+        }
+    }
+
+    /**
+     * A restaurant waiting for the details of its place
+     */
+    private static class Waiter {
+        private final Restaurant restaurant;
+        private final Listener listener;
+
+        private Waiter(Restaurant restaurant, Listener listener) {
+            this.restaurant = restaurant;
+            this.listener = listener;
+        }
+    }
+}
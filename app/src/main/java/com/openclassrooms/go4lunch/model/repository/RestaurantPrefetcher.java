@@ -0,0 +1,259 @@
+package com.openclassrooms.go4lunch.model.repository;
+
+import android.location.Location;
+import android.util.Log;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.cache.RestaurantTileCache;
+import com.openclassrooms.go4lunch.model.service.MapsQuotaManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Movement-predictive prefetch of the restaurant searches.
+ *
+ * Reads the recent trail of location fixes, estimates the speed and the heading of the user,
+ * and warms the tile cache for the cells the user is about to enter, so the list is already local
+ * when the user stops walking.
+ *
+ * Prefetches go through the prefetch lane of the quota, only while the user waits for no search,
+ * one batch at a time, and within an hourly budget.
+ */
+public class RestaurantPrefetcher {
+
+    /** The tag for the log messages */
+    private static final String TAG = RestaurantPrefetcher.class.getSimpleName();
+
+    /** Maximum number of fixes kept in the trail */
+    private static final int TRAIL_SIZE = 6;
+
+    /** Age of the oldest fix used to estimate the movement, in milliseconds */
+    private static final long TRAIL_WINDOW_MS = 180_000;
+
+    /** Minimum time between the fixes used to estimate the movement, in milliseconds */
+    private static final long MIN_ESTIMATE_SPAN_MS = 10_000;
+
+    /** Below this speed the user is not moving, in meters per second */
+    private static final double MIN_SPEED_MPS = 0.5;
+
+    /** Above this speed the user is not walking, and will not stop in the cells ahead soon, in meters per second */
+    private static final double MAX_SPEED_MPS = 8;
+
+    /** How far ahead the path is predicted, in milliseconds */
+    private static final long LOOKAHEAD_MS = 180_000;
+
+    /** Distance between the sample points of the predicted path, in meters */
+    private static final double SAMPLE_STEP_METERS = 50;
+
+    /** Maximum number of cells prefetched for a fix */
+    private static final int MAX_CELLS_PER_FIX = 3;
+
+    /** Time without any user search before prefetching, in milliseconds */
+    private static final long MIN_IDLE_MS = 10_000;
+
+    /** Maximum number of prefetched searches per hour */
+    private static final int MAX_PREFETCHES_PER_HOUR = 20;
+
+    /** Meters per degree of latitude */
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    /** The restaurant repository, holding the caches to warm */
+    private final RestaurantRepository repository;
+
+    /** The search parameters */
+    private final String url;
+    private final int radius;
+    private final String type;
+    private final String key;
+
+    /** The recent fixes : latitude, longitude, time in milliseconds */
+    private final Deque<double[]> trail = new ArrayDeque<>();
+
+    /** The times of the prefetches of the last hour */
+    private final Deque<Long> prefetchTimes = new ArrayDeque<>();
+
+    /** The prefetches running, a new batch only starts once the previous one is done */
+    private final List<Call<ListRestaurant>> running = new ArrayList<>();
+
+    /** True once stopped, the fixes are then ignored */
+    private boolean stopped;
+
+    /** The last estimated movement */
+    private double speed;
+    private double heading;
+
+    /** Number of prefetched searches */
+    private long prefetchCount;
+
+    /**
+     * Constructor
+     * @param repository the restaurant repository
+     * @param url the prefix url of the Google Maps API
+     * @param radius the radius of the searches
+     * @param type the type of the searches (restaurant, bar, etc.)
+     * @param key the API key of the Google Maps API
+     */
+    public RestaurantPrefetcher(RestaurantRepository repository, String url, int radius, String type, String key) {
+        this.repository = repository;
+        this.url = url;
+        this.radius = radius;
+        this.type = type;
+        this.key = key;
+    }
+
+    /**
+     * Handle a new location fix
+     * @param location the fix
+     */
+    public void onLocation(Location location) {
+        onLocation(location.getLatitude(), location.getLongitude(), now());
+    }
+
+    /**
+     * Handle a new location fix : update the trail, and prefetch the cells ahead if the budgets allow it
+     * @param latitude the latitude of the fix
+     * @param longitude the longitude of the fix
+     * @param time the time of the fix, in milliseconds
+     */
+    public synchronized void onLocation(double latitude, double longitude, long time) {
+        if (stopped) {
+            return;
+        }
+        trail.addLast(new double[]{latitude, longitude, time});
+        while (trail.size() > TRAIL_SIZE || time - trail.peekFirst()[2] > TRAIL_WINDOW_MS) {
+            trail.removeFirst();
+        }
+        if (!estimateMovement() || !running.isEmpty() || !hasBudget(time)) {
+            return;
+        }
+
+        // walk the predicted path from the first step ahead, the current cell being searched by the user anyway,
+        // and keep the distinct cells not cached yet, nearest first
+        RestaurantTileCache tileCache = repository.getTileCache();
+        Map<String, String> cells = new LinkedHashMap<>();
+        double distance = speed * LOOKAHEAD_MS / 1000;
+        double north = Math.cos(Math.toRadians(heading));
+        double east = Math.sin(Math.toRadians(heading));
+        for (double d = SAMPLE_STEP_METERS; d <= distance && cells.size() < MAX_CELLS_PER_FIX; d += SAMPLE_STEP_METERS) {
+            double pointLatitude = latitude + d * north / METERS_PER_DEGREE;
+            double pointLongitude = longitude + d * east / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+            String point = pointLatitude + "," + pointLongitude;
+            String cell = tileCache.cellOf(point);
+            if (!cells.containsKey(cell) && !tileCache.contains(point, radius, type)) {
+                cells.put(cell, point);
+            }
+        }
+
+        for (String point : cells.values()) {
+            if (!hasBudget(time)) {
+                break;
+            }
+            prefetch(point, time);
+        }
+    }
+
+    /**
+     * Estimate the speed and the heading from the oldest and the newest fixes of the trail
+     * @return true if the user is walking
+     */
+    private boolean estimateMovement() {
+        if (trail.size() < 2) {
+            return false;
+        }
+        double[] first = trail.peekFirst();
+        double[] last = trail.peekLast();
+        long span = (long) (last[2] - first[2]);
+        if (span < MIN_ESTIMATE_SPAN_MS) {
+            return false;
+        }
+        double dNorth = (last[0] - first[0]) * METERS_PER_DEGREE;
+        double dEast = (last[1] - first[1]) * METERS_PER_DEGREE * Math.cos(Math.toRadians(last[0]));
+        speed = Math.sqrt(dNorth * dNorth + dEast * dEast) * 1000 / span;
+        heading = (Math.toDegrees(Math.atan2(dEast, dNorth)) + 360) % 360;
+        return speed >= MIN_SPEED_MPS && speed <= MAX_SPEED_MPS;
+    }
+
+    /**
+     * Check the idle time and the hourly budget
+     * @param time the current time, in milliseconds
+     * @return true if a prefetch may start
+     */
+    private boolean hasBudget(long time) {
+        while (!prefetchTimes.isEmpty() && time - prefetchTimes.peekFirst() > 3_600_000) {
+            prefetchTimes.removeFirst();
+        }
+        return prefetchTimes.size() < MAX_PREFETCHES_PER_HOUR
+            && time - repository.getLastUserSearchTime() >= MIN_IDLE_MS;
+    }
+
+    /**
+     * Prefetch the search of a point, in the prefetch lane of the quota
+     */
+    private void prefetch(String point, long time) {
+        prefetchTimes.addLast(time);
+        prefetchCount++;
+        Call<ListRestaurant> search = repository.getAllRestaurant(url, point, radius, type, key, MapsQuotaManager.Priority.PREFETCH);
+        running.add(search);
+        search.enqueue(new Callback<ListRestaurant>() {
+            @Override
+            public void onResponse(Call<ListRestaurant> call, Response<ListRestaurant> response) {
+                done(search);
+            }
+
+            @Override
+            public void onFailure(Call<ListRestaurant> call, Throwable t) {
+                done(search);
+                if (!search.isCanceled()) {
+                    Log.e(TAG, "prefetch: " + point + " failed", t);
+                }
+            }
+        });
+    }
+
+    private synchronized void done(Call<ListRestaurant> search) {
+        running.remove(search);
+    }
+
+    /**
+     * Stop prefetching, e.g. with the screen : the running prefetches are canceled and the next fixes ignored
+     */
+    public synchronized void stop() {
+        stopped = true;
+        trail.clear();
+        // a canceled call may fail at once, removing itself from the running ones
+        List<Call<ListRestaurant>> canceled = new ArrayList<>(running);
+        running.clear();
+        for (Call<ListRestaurant> search : canceled) {
+            search.cancel();
+        }
+    }
+
+    /** Getters */
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    public synchronized double getHeading() {
+        return heading;
+    }
+
+    public synchronized long getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    /**
+     * Current time, in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+}
@@ -1,20 +1,268 @@
 package com.openclassrooms.go4lunch.model.repository;
 
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.openclassrooms.go4lunch.MainApplication;
+import com.openclassrooms.go4lunch.model.bo.NearbySearchPage;
 import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.PlaceDetails;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.cache.RestaurantDiskCache;
+import com.openclassrooms.go4lunch.model.cache.RestaurantTileCache;
+import com.openclassrooms.go4lunch.model.service.CacheFirstCall;
+import com.openclassrooms.go4lunch.model.service.CallbackExecutorCall;
+import com.openclassrooms.go4lunch.model.service.CompletedCall;
+import com.openclassrooms.go4lunch.model.service.ListeningCall;
+import com.openclassrooms.go4lunch.model.service.MapsApiClient;
+import com.openclassrooms.go4lunch.model.service.MapsQuotaManager;
+import com.openclassrooms.go4lunch.model.service.MapsResilience;
+import com.openclassrooms.go4lunch.model.service.RestaurantFanOut;
+import com.openclassrooms.go4lunch.model.service.RestaurantPager;
+import com.openclassrooms.go4lunch.model.service.SingleFlight;
+import com.openclassrooms.go4lunch.model.store.OfflineRestaurantStore;
+import com.openclassrooms.go4lunch.model.store.RestaurantSpatialIndex;
+import com.openclassrooms.go4lunch.model.util.Geohash;
 import com.openclassrooms.go4lunch.model.service.RetrofitMapsApi;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
 import retrofit2.Call;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.Callback;
+import retrofit2.Response;
 
 /** The Restaurant repository, backed by retrofit browsing to Google Maps API */
 public class RestaurantRepository {
 
+    /** The tag for the log messages */
+    private static final String TAG = RestaurantRepository.class.getSimpleName();
+
+    /** The prefix url of the Google Maps API */
+    public static final String MAPS_API_URL = "https://maps.googleapis.com/maps/api/place/";
+
+    /** The radius of the searches around the user, in meters */
+    public static final int SEARCH_RADIUS_METERS = 1000;
+
+    /** The type of the places searched */
+    public static final String SEARCH_TYPE = "restaurant";
+
+    /** The name of the disk cache directory, inside the application cache directory */
+    private static final String DISK_CACHE_DIRECTORY = "nearbysearch";
+
+    /** The name of the restaurant database, inside the application files directory : it must survive cache cleanups */
+    private static final String OFFLINE_STORE_FILE = "restaurants.db";
+
+    /** The name of the file counting the Maps API requests of the day, inside the application files directory */
+    private static final String QUOTA_COUNTER_FILE = "maps_quota.bin";
+
+    /** Maximum radius of a nearby search, in meters */
+    private static final int MAX_RADIUS_METERS = 50_000;
+
+    /** Meters per degree of latitude */
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    /** Maps API status of a successful search */
+    private static final String STATUS_OK = "OK";
+
+    /** The endpoint names, for the latencies and the circuit breakers */
+    private static final String ENDPOINT_NEARBY_SEARCH = "nearbysearch";
+    private static final String ENDPOINT_NEXT_PAGE = "nearbysearch/pagetoken";
+    private static final String ENDPOINT_DETAILS = "details";
+
     /** The singleton instance */
     private static volatile RestaurantRepository instance;
 
+    /** The shared HTTP client layer */
+    private final MapsApiClient mapsApiClient;
+
+    /** The geohash tiled cache of the searches */
+    private final RestaurantTileCache tileCache;
+
+    /** The persistent cache of the searches, null when there is no application context */
+    @Nullable
+    private final RestaurantDiskCache diskCache;
+
+    /** The quota of the Google Maps API key, every network call goes through it */
+    private final MapsQuotaManager quotaManager;
+
+    /** The on-device database of the restaurants, null when there is no application context */
+    @Nullable
+    private final OfflineRestaurantStore offlineStore;
+
+    /** Deadlines, hedged requests and circuit breakers of the network calls */
+    private final MapsResilience resilience;
+
+    /** The executor of the callbacks of the calls returned, the main thread in the application */
+    private final Executor callbackExecutor;
+
+    /** Coalescing of the identical searches running at the same time */
+    private final SingleFlight<ListRestaurant> singleFlight = new SingleFlight<>();
+
+    /** Spatial index of every restaurant fetched during the session */
+    private final RestaurantSpatialIndex spatialIndex = new RestaurantSpatialIndex();
+
+    /** Walk through the pages of the searches */
+    private final RestaurantPager pager = new RestaurantPager();
+
+    /** The time of the last search the user waited for on the network, in milliseconds */
+    private volatile long lastUserSearchAt;
+
+    /** The keys of the stale searches being revalidated */
+    private final Set<String> revalidating = Collections.synchronizedSet(new HashSet<>());
+
     /** The empty constructor */
     public RestaurantRepository() {
+        this(MapsApiClient.getInstance(), new RestaurantTileCache(), createDiskCache(), createQuotaManager(), new MapsResilience(),
+            createOfflineStore(), createCallbackExecutor());
+    }
+
+    /**
+     * Constructor
+     * @param mapsApiClient the shared HTTP client layer
+     */
+    public RestaurantRepository(MapsApiClient mapsApiClient) {
+        this(mapsApiClient, new RestaurantTileCache());
+    }
+
+    /**
+     * Constructor
+     * @param mapsApiClient the shared HTTP client layer
+     * @param tileCache the geohash tiled cache of the searches
+     */
+    public RestaurantRepository(MapsApiClient mapsApiClient, RestaurantTileCache tileCache) {
+        this(mapsApiClient, tileCache, null);
+    }
+
+    /**
+     * Constructor
+     * @param mapsApiClient the shared HTTP client layer
+     * @param tileCache the geohash tiled cache of the searches
+     * @param diskCache the persistent cache of the searches, or null to disable it
+     */
+    public RestaurantRepository(MapsApiClient mapsApiClient, RestaurantTileCache tileCache, @Nullable RestaurantDiskCache diskCache) {
+        this(mapsApiClient, tileCache, diskCache, new MapsQuotaManager());
+    }
+
+    /**
+     * Constructor
+     * @param mapsApiClient the shared HTTP client layer
+     * @param tileCache the geohash tiled cache of the searches
+     * @param diskCache the persistent cache of the searches, or null to disable it
+     * @param quotaManager the quota of the Google Maps API key
+     */
+    public RestaurantRepository(MapsApiClient mapsApiClient, RestaurantTileCache tileCache, @Nullable RestaurantDiskCache diskCache,
+                                MapsQuotaManager quotaManager) {
+        this(mapsApiClient, tileCache, diskCache, quotaManager, new MapsResilience());
+    }
+
+    /**
+     * Constructor
+     * @param mapsApiClient the shared HTTP client layer
+     * @param tileCache the geohash tiled cache of the searches
+     * @param diskCache the persistent cache of the searches, or null to disable it
+     * @param quotaManager the quota of the Google Maps API key
+     * @param resilience the deadlines, hedged requests and circuit breakers of the network calls
+     */
+    public RestaurantRepository(MapsApiClient mapsApiClient, RestaurantTileCache tileCache, @Nullable RestaurantDiskCache diskCache,
+                                MapsQuotaManager quotaManager, MapsResilience resilience) {
+        this(mapsApiClient, tileCache, diskCache, quotaManager, resilience, null);
+    }
+
+    /**
+     * Constructor
+     * @param mapsApiClient the shared HTTP client layer
+     * @param tileCache the geohash tiled cache of the searches
+     * @param diskCache the persistent cache of the searches, or null to disable it
+     * @param quotaManager the quota of the Google Maps API key
+     * @param resilience the deadlines, hedged requests and circuit breakers of the network calls
+     * @param offlineStore the on-device database of the restaurants, or null to disable it
+     */
+    public RestaurantRepository(MapsApiClient mapsApiClient, RestaurantTileCache tileCache, @Nullable RestaurantDiskCache diskCache,
+                                MapsQuotaManager quotaManager, MapsResilience resilience, @Nullable OfflineRestaurantStore offlineStore) {
+        this(mapsApiClient, tileCache, diskCache, quotaManager, resilience, offlineStore, Runnable::run);
+    }
+
+    /**
+     * Constructor
+     * @param mapsApiClient the shared HTTP client layer
+     * @param tileCache the geohash tiled cache of the searches
+     * @param diskCache the persistent cache of the searches, or null to disable it
+     * @param quotaManager the quota of the Google Maps API key
+     * @param resilience the deadlines, hedged requests and circuit breakers of the network calls
+     * @param offlineStore the on-device database of the restaurants, or null to disable it
+     * @param callbackExecutor the executor of the callbacks of the calls returned, usually the main thread
+     */
+    public RestaurantRepository(MapsApiClient mapsApiClient, RestaurantTileCache tileCache, @Nullable RestaurantDiskCache diskCache,
+                                MapsQuotaManager quotaManager, MapsResilience resilience, @Nullable OfflineRestaurantStore offlineStore,
+                                Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        this.mapsApiClient = mapsApiClient;
+        this.tileCache = tileCache;
+        this.diskCache = diskCache;
+        this.quotaManager = quotaManager;
+        this.resilience = resilience;
+        this.offlineStore = offlineStore;
+    }
+
+    /**
+     * Create the persistent cache in the application cache directory
+     * @return the disk cache, or null outside of the application (unit tests)
+     */
+    @Nullable
+    private static RestaurantDiskCache createDiskCache() {
+        Application application = MainApplication.getApplication();
+        if (application == null) {
+            return null;
+        }
+        return new RestaurantDiskCache(new File(application.getCacheDir(), DISK_CACHE_DIRECTORY));
+    }
+
+    /**
+     * Create the quota manager, counting the requests of the day in the application files directory
+     * @return the quota manager, counting in memory only outside of the application (unit tests)
+     */
+    private static MapsQuotaManager createQuotaManager() {
+        Application application = MainApplication.getApplication();
+        if (application == null) {
+            return new MapsQuotaManager();
+        }
+        return new MapsQuotaManager(new File(application.getFilesDir(), QUOTA_COUNTER_FILE));
+    }
+
+    /**
+     * Create the restaurant database in the application files directory
+     * @return the database, or null outside of the application (unit tests)
+     */
+    @Nullable
+    private static OfflineRestaurantStore createOfflineStore() {
+        Application application = MainApplication.getApplication();
+        if (application == null) {
+            return null;
+        }
+        return new OfflineRestaurantStore(new File(application.getFilesDir(), OFFLINE_STORE_FILE));
+    }
+
+    /**
+     * Create the executor of the callbacks, on the main thread like the Retrofit calls
+     * @return the executor, running the callbacks on the thread completing the call outside of the application (unit tests)
+     */
+    private static Executor createCallbackExecutor() {
+        if (MainApplication.getApplication() == null) {
+            return Runnable::run;
+        }
+        return new Handler(Looper.getMainLooper())::post;
     }
 
     /**
@@ -35,23 +283,422 @@ public class RestaurantRepository {
      * @param radius the radius of the search
      * @param type the type of the search (restaurant, bar, etc.)
      * @param key the API key of the Google Maps API
-     * @return the asynchronous initiated call of the list of restaurants
+     * @return the asynchronous initiated call of the list of restaurants, already completed if the search is cached
      */
     public Call<ListRestaurant> getAllRestaurant(String url, String location, int radius, String type, String key) {
+        return getAllRestaurant(url, location, radius, type, key, MapsQuotaManager.Priority.USER);
+    }
+
+    /** Gets all the restaurants from the Google Maps API, in a given priority lane of the quota
+     * @param url the prefix url of the Google Maps API
+     * @param location the location to search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search (restaurant, bar, etc.)
+     * @param key the API key of the Google Maps API
+     * @param priority USER when the user waits for the answer, PREFETCH for background searches
+     * @return the asynchronous initiated call of the list of restaurants, already completed if the search is cached,
+     * its callbacks delivered on the main thread
+     */
+    public Call<ListRestaurant> getAllRestaurant(String url, String location, int radius, String type, String key, MapsQuotaManager.Priority priority) {
+        return onCallbackExecutor(searchCached(url, location, radius, type, key, priority));
+    }
 
-        // Build retrofit HTTP client
-        Retrofit retrofit=new Retrofit.Builder()
-            .baseUrl(url)
-            .addConverterFactory(GsonConverterFactory.create())
-            .build();
+    /** Gets all the restaurants from the caches, or else from the network, its callbacks delivered on the thread completing the call
+     * @see #getAllRestaurant(String, String, int, String, String, MapsQuotaManager.Priority)
+     */
+    private Call<ListRestaurant> searchCached(String url, String location, int radius, String type, String key, MapsQuotaManager.Priority priority) {
 
-        // Convert json data to model class object, generated with jsonschema2pojo
-        RetrofitMapsApi api=retrofit.create(RetrofitMapsApi.class);
+        // Get the pooled retrofit HTTP client, json data is converted to model class object, generated with jsonschema2pojo
+        RetrofitMapsApi api=mapsApiClient.getApi(url);
 
         // Create call of model class and enqueue for processing
         Call<ListRestaurant> call=api.getAllRestaurant(location,radius,type,key);
 
-        // Return the call
-        return call;
+        // Serve the search from the tile cache if the user is still in the same cell
+        ListRestaurant cached = tileCache.get(location, radius, type);
+        if (cached != null) {
+            return new CompletedCall<>(call, cached);
+        }
+
+        // Else the call reaching the network
+        String cacheKey = tileCache.keyOf(location, radius, type);
+        Call<ListRestaurant> network = searchNetwork(call, url, location, radius, type, priority);
+        if (diskCache == null) {
+            onNetworkSearch(priority);
+            return network;
+        }
+
+        // Looked up in the disk cache first, on its IO thread : a stale entry is served at once and revalidated in the background
+        return new CacheFirstCall<>(network, diskCache.getIoExecutor(), () -> {
+            RestaurantDiskCache.Entry entry = diskCache.get(cacheKey);
+            if (entry == null) {
+                onNetworkSearch(priority);
+                return null;
+            }
+            tileCache.put(location, radius, type, entry.getListRestaurant(), entry.getStoredAt());
+            spatialIndex.addSearch(location, radius, type, entry.getListRestaurant());
+            if (!entry.isFresh()) {
+                revalidate(guard(ENDPOINT_NEARBY_SEARCH, call.clone(), MapsQuotaManager.Priority.PREFETCH, ListRestaurant::getStatus),
+                    cacheKey, location, radius, type);
+            }
+            return entry.getListRestaurant();
+        });
+    }
+
+    /** Gets the restaurants from the network only, without looking the caches up
+     * @param call the call of the nearby search
+     * @param url the prefix url of the Google Maps API
+     * @param location the location to search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search (restaurant, bar, etc.)
+     * @param priority USER when the user waits for the answer, PREFETCH for background searches
+     * @return the call throttled by the quota, bounded by a deadline, hedged when slow, falling back to the restaurants already known around
+     * when the API fails, its result will be stored in the caches, and shared with the identical searches running at the same time
+     */
+    private Call<ListRestaurant> searchNetwork(Call<ListRestaurant> call, String url, String location, int radius, String type,
+                                               MapsQuotaManager.Priority priority) {
+        String cacheKey = tileCache.keyOf(location, radius, type);
+        String requestKey = url + '|' + location + '|' + radius + '|' + type;
+        Call<ListRestaurant> throttled = quotaManager.newCall(resilient(ENDPOINT_NEARBY_SEARCH, call, priority, ListRestaurant::getStatus),
+            priority, ListRestaurant::getStatus);
+        Call<ListRestaurant> stored = new ListeningCall<>(throttled, body -> store(cacheKey, location, radius, type, body));
+        return singleFlight.newCall(requestKey,
+            resilience.withFallback(ENDPOINT_NEARBY_SEARCH, stored, ListRestaurant::getStatus, () -> fallbackAround(location, radius, type)));
+    }
+
+    /** Guards a raw call of the API : its deadline and hedge inside the quota, so the wait for a token is not timed,
+     * and a refusal of the open circuit outside of it, so it never takes a token
+     * @param endpoint the name of the endpoint, for the latencies and the circuit breaker
+     * @param call the raw call
+     * @param priority the lane of the quota
+     * @param statusReader the reader of the Maps API status of the body
+     * @return the guarded call
+     */
+    private <T> Call<T> guard(String endpoint, Call<T> call, MapsQuotaManager.Priority priority, MapsQuotaManager.StatusReader<T> statusReader) {
+        Call<T> throttled = quotaManager.newCall(resilient(endpoint, call, priority, statusReader), priority, statusReader);
+        return resilience.withFallback(endpoint, throttled, statusReader, null);
+    }
+
+    /** Wraps a raw call with its deadline, hedge and circuit breaker, the hedge and the retry each taking a token of the quota
+     * @param endpoint the name of the endpoint, for the latencies and the circuit breaker
+     * @param call the raw call
+     * @param priority the lane of the quota
+     * @param statusReader the reader of the Maps API status of the body
+     * @return the resilient call
+     */
+    private <T> Call<T> resilient(String endpoint, Call<T> call, MapsQuotaManager.Priority priority, MapsQuotaManager.StatusReader<T> statusReader) {
+        return resilience.newCall(endpoint, call, statusReader, () -> quotaManager.tryAcquire(priority));
+    }
+
+    /** Gets the restaurants around a location from the on-device database only, without any network call
+     * @param location the location to search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search (restaurant, bar, etc.)
+     * @return the restaurants shaped like a nearby search response, nearest first, or null if there is no database
+     */
+    @Nullable
+    public ListRestaurant getOfflineRestaurants(String location, int radius, String type) {
+        return offlineStore == null ? null : offlineStore.query(location, radius, type);
+    }
+
+    /** Gets the restaurants inside a map viewport, from the spatial index when the viewport was already searched,
+     * or else from a nearby search around the viewport center
+     * @param url the prefix url of the Google Maps API
+     * @param south the south latitude of the viewport
+     * @param west the west longitude of the viewport
+     * @param north the north latitude of the viewport
+     * @param east the east longitude of the viewport
+     * @param type the type of the search (restaurant, bar, etc.)
+     * @param key the API key of the Google Maps API
+     * @return the asynchronous initiated call of the list of restaurants, already completed if the viewport is covered
+     */
+    public Call<ListRestaurant> getRestaurantsInViewport(String url, double south, double west, double north, double east, String type, String key) {
+        double centerLatitude = (south + north) / 2;
+        double centerLongitude = (west + east) / 2;
+        String center = centerLatitude + "," + centerLongitude;
+
+        // the viewport was already searched : answer locally
+        if (spatialIndex.isCovered(south, west, north, east, type)) {
+            ListRestaurant listRestaurant = new ListRestaurant();
+            listRestaurant.setHtmlAttributions(Collections.emptyList());
+            listRestaurant.setResults(spatialIndex.queryViewport(south, west, north, east, type));
+            listRestaurant.setStatus(STATUS_OK);
+            return onCallbackExecutor(new CompletedCall<>(mapsApiClient.getApi(url).getAllRestaurant(center, 0, type, key), listRestaurant));
+        }
+
+        // or else search the circle enclosing the viewport, its result feeds the spatial index
+        double halfHeight = (north - south) / 2 * METERS_PER_DEGREE;
+        double halfWidth = (east - west) / 2 * METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLatitude));
+        int radius = (int) Math.min(MAX_RADIUS_METERS, Math.ceil(Math.sqrt(halfHeight * halfHeight + halfWidth * halfWidth)));
+        return getAllRestaurant(url, center, Math.max(1, radius), type, key);
+    }
+
+    /** Gets the restaurants from the Google Maps API, decoded in streaming into compact records,
+     * throttled by the quota in the user lane, bounded by a deadline and hedged when slow like the other searches
+     * @param url the prefix url of the Google Maps API
+     * @param location the location to search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search (restaurant, bar, etc.)
+     * @param key the API key of the Google Maps API
+     * @return the asynchronous initiated call of the page of compact restaurants
+     */
+    public Call<NearbySearchPage> getNearbyRestaurants(String url, String location, int radius, String type, String key) {
+        return onCallbackExecutor(guard(ENDPOINT_NEARBY_SEARCH, mapsApiClient.getApi(url).getNearbyRestaurants(location, radius, type, key),
+            MapsQuotaManager.Priority.USER, NearbySearchPage::getStatus));
+    }
+
+    /** Gets the details nearby search does not return (phone, web site, opening periods) of a place,
+     * in the prefetch lane of the quota so they never delay a search
+     * @param url the prefix url of the Google Maps API
+     * @param placeId the id of the place
+     * @param key the API key of the Google Maps API
+     * @return the asynchronous initiated call of the details
+     */
+    public Call<PlaceDetails> getPlaceDetails(String url, String placeId, String key) {
+        return onCallbackExecutor(guard(ENDPOINT_DETAILS, mapsApiClient.getApi(url).getPlaceDetails(placeId, key),
+            MapsQuotaManager.Priority.PREFETCH, PlaceDetails::getStatus));
+    }
+
+    /** Gets all the restaurants from the Google Maps API, page after page, following the next page tokens
+     * @param url the prefix url of the Google Maps API
+     * @param location the location to search (latitude,longitude)
+     * @param radius the radius of the search
+     * @param type the type of the search (restaurant, bar, etc.)
+     * @param key the API key of the Google Maps API
+     * @param maxPages the maximum number of pages to fetch, at most RestaurantPager.MAX_PAGES
+     * @return the restaurants already received as LiveData, updated as soon as each page arrives, null if the first page failed
+     */
+    public LiveData<ArrayList<Result>> getAllRestaurantPages(String url, String location, int radius, String type, String key, int maxPages) {
+        MutableLiveData<ArrayList<Result>> restaurants = new MutableLiveData<>();
+        ArrayList<Result> received = new ArrayList<>();
+        RetrofitMapsApi api = mapsApiClient.getApi(url);
+
+        // the next page tokens are short lived and the caches do not keep them : the first page only goes through the caches
+        // when no other page is wanted, else it comes from the API with a fresh token, like the next ones
+        Call<ListRestaurant> firstPage;
+        if (maxPages <= 1) {
+            firstPage = searchCached(url, location, radius, type, key, MapsQuotaManager.Priority.USER);
+        } else {
+            onNetworkSearch(MapsQuotaManager.Priority.USER);
+            firstPage = searchNetwork(api.getAllRestaurant(location, radius, type, key), url, location, radius, type, MapsQuotaManager.Priority.USER);
+        }
+        pager.start(
+            firstPage,
+            // the next pages feed the spatial index and the database too, the area is recorded once the last page arrived
+            pageToken -> new ListeningCall<>(guard(ENDPOINT_NEXT_PAGE, api.getNextRestaurantPage(pageToken, key),
+                MapsQuotaManager.Priority.USER, ListRestaurant::getStatus), this::storePage),
+            maxPages,
+            new RestaurantPager.PageListener() {
+                @Override
+                public void onPage(ListRestaurant page, int pageIndex, boolean last) {
+                    if (page.getResults() != null) {
+                        received.addAll(page.getResults());
+                    }
+                    // post a copy, the observers never see the list growing under their feet
+                    restaurants.postValue(new ArrayList<>(received));
+                    // every page fetched : the area is covered, unless the last page was capped too
+                    if (last && pageIndex > 0 && RestaurantTileCache.isCacheable(page.getStatus())) {
+                        spatialIndex.addLastPage(location, radius, type, page);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    Log.e(TAG, "getAllRestaurantPages: stopped after " + received.size() + " restaurants", t);
+                    if (received.isEmpty()) {
+                        restaurants.postValue(null);
+                    }
+                }
+            });
+        return restaurants;
+    }
+
+    /** Gets the restaurants of several types around several locations, RestaurantFanOut.DEFAULT_MAX_PARALLEL searches at a time
+     * @see #getAllRestaurantFanOut(String, List, int, List, String, int)
+     */
+    public LiveData<ArrayList<Result>> getAllRestaurantFanOut(String url, List<String> locations, int radius, List<String> types, String key) {
+        return getAllRestaurantFanOut(url, locations, radius, types, key, RestaurantFanOut.DEFAULT_MAX_PARALLEL);
+    }
+
+    /** Gets the restaurants of several types around several locations, the searches running concurrently
+     * @param url the prefix url of the Google Maps API
+     * @param locations the locations to search around (latitude,longitude), e.g. the office and the user position
+     * @param radius the radius of the searches
+     * @param types the types of the searches (restaurant, cafe, bakery, etc.)
+     * @param key the API key of the Google Maps API
+     * @param maxParallel the maximum number of searches running at the same time
+     * @return the restaurants merged by place id as LiveData, updated as soon as each search finishes, null if every search failed
+     */
+    public LiveData<ArrayList<Result>> getAllRestaurantFanOut(String url, List<String> locations, int radius, List<String> types, String key, int maxParallel) {
+        MutableLiveData<ArrayList<Result>> restaurants = new MutableLiveData<>();
+
+        // each branch goes through the caches, the coalescing and the quota like a single search
+        new RestaurantFanOut(
+            locations,
+            types,
+            maxParallel,
+            (location, type) -> searchCached(url, location, radius, type, key, MapsQuotaManager.Priority.USER),
+            (merged, finished, total, failed) -> {
+                if (total > 0 && failed == total) {
+                    Log.e(TAG, "getAllRestaurantFanOut: every search failed");
+                    restaurants.postValue(null);
+                } else if (failed < finished || finished == total) {
+                    restaurants.postValue(new ArrayList<>(merged));
+                }
+            }).start();
+        return restaurants;
+    }
+
+    /**
+     * Deliver the callbacks of a call returned to the callers through the callback executor, the caches, the quota and
+     * the resilience layer completing the calls on their own threads
+     */
+    private <T> Call<T> onCallbackExecutor(Call<T> call) {
+        return new CallbackExecutorCall<>(call, callbackExecutor);
+    }
+
+    /**
+     * Refresh a stale search in the background, only once at a time for a given key
+     */
+    private void revalidate(Call<ListRestaurant> call, String cacheKey, String location, int radius, String type) {
+        if (!revalidating.add(cacheKey)) {
+            return;
+        }
+        call.enqueue(new Callback<ListRestaurant>() {
+            @Override
+            public void onResponse(Call<ListRestaurant> call, Response<ListRestaurant> response) {
+                revalidating.remove(cacheKey);
+                if (response.isSuccessful() && response.body() != null) {
+                    store(cacheKey, location, radius, type, response.body());
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ListRestaurant> call, Throwable t) {
+                revalidating.remove(cacheKey);
+                Log.e(TAG, "revalidate: " + cacheKey + " failed, keeping the stale entry", t);
+            }
+        });
+    }
+
+    /**
+     * Build a search result from the restaurants already fetched around a location, served while the API is failing
+     * @return the restaurants within the radius, or null if none is known
+     */
+    @Nullable
+    private ListRestaurant fallbackAround(String location, int radius, String type) {
+        double[] latLng = Geohash.parseLocation(location);
+        List<Result> results = spatialIndex.queryRadius(latLng[0], latLng[1], radius, type);
+        // the database also knows the restaurants of the previous sessions, nearest first, and the session ones it misses follow
+        if (offlineStore != null) {
+            List<Result> offline = new ArrayList<>(offlineStore.query(location, radius, type).getResults());
+            Set<String> known = new HashSet<>();
+            for (Result result : offline) {
+                known.add(result.getPlaceId());
+            }
+            for (Result result : results) {
+                if (!known.contains(result.getPlaceId())) {
+                    offline.add(result);
+                }
+            }
+            results = offline;
+        }
+        if (results.isEmpty()) {
+            return null;
+        }
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setHtmlAttributions(Collections.emptyList());
+        listRestaurant.setResults(results);
+        listRestaurant.setStatus(STATUS_OK);
+        return listRestaurant;
+    }
+
+    /**
+     * Keep track of the searches the user waits for on the network, the prefetches wait for the user to be idle
+     * @param priority the priority lane of the search
+     */
+    private void onNetworkSearch(MapsQuotaManager.Priority priority) {
+        if (priority == MapsQuotaManager.Priority.USER) {
+            lastUserSearchAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Store a successful search in the memory and disk caches, and in the restaurant database
+     */
+    private void store(String cacheKey, String location, int radius, String type, ListRestaurant listRestaurant) {
+        if (!RestaurantTileCache.isCacheable(listRestaurant.getStatus())) {
+            return;
+        }
+        tileCache.put(location, radius, type, listRestaurant);
+        spatialIndex.addSearch(location, radius, type, listRestaurant);
+        if (diskCache != null) {
+            diskCache.put(cacheKey, listRestaurant);
+        }
+        if (offlineStore != null) {
+            offlineStore.upsert(listRestaurant);
+        }
+    }
+
+    /**
+     * Store a next page of a search in the spatial index and the database, without the search caches keyed by the first page
+     * @param listRestaurant the page
+     */
+    private void storePage(ListRestaurant listRestaurant) {
+        if (!RestaurantTileCache.isCacheable(listRestaurant.getStatus())) {
+            return;
+        }
+        spatialIndex.addAll(listRestaurant);
+        if (offlineStore != null) {
+            offlineStore.upsert(listRestaurant);
+        }
+    }
+
+    /**
+     * Gets the coalescing of the identical searches, to read how many duplicate calls were absorbed
+     * @return the single flight
+     */
+    public SingleFlight<ListRestaurant> getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Gets the resilience layer, to read the p50, p95 and p99 latencies of each endpoint
+     * @return the resilience layer
+     */
+    public MapsResilience getResilience() {
+        return resilience;
+    }
+
+    /**
+     * Gets the quota of the Google Maps API key, to read the budget left today
+     * @return the quota manager
+     */
+    public MapsQuotaManager getQuotaManager() {
+        return quotaManager;
+    }
+
+    /**
+     * Gets the time of the last search the user waited for on the network, so background work can wait for idle periods
+     * @return the time in milliseconds, 0 if none yet
+     */
+    public long getLastUserSearchTime() {
+        return lastUserSearchAt;
+    }
+
+    /**
+     * Gets the spatial index of every restaurant fetched during the session
+     * @return the spatial index
+     */
+    public RestaurantSpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * Gets the geohash tiled cache, to read its hit and miss counters
+     * @return the tile cache
+     */
+    public RestaurantTileCache getTileCache() {
+        return tileCache;
     }
 }
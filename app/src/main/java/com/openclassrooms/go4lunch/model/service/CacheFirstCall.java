@@ -0,0 +1,142 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A Call looking its body up in a local cache first, on an IO executor, and only reaching the network on a miss.
+ * The lookup never runs on the thread enqueuing the call, which is usually the main thread.
+ * @param <T> the type of the body
+ */
+public class CacheFirstCall<T> implements Call<T> {
+
+    /**
+     * Lookup of the body in the cache
+     * @param <T> the type of the body
+     */
+    public interface Lookup<T> {
+        /**
+         * Read the body from the cache, on the IO executor
+         * @return the cached body, or null to reach the network
+         */
+        @Nullable
+        T lookup();
+    }
+
+    /**
+     * The network call, run on a cache miss
+     */
+    private final Call<T> network;
+
+    /**
+     * The executor of the lookups
+     */
+    private final Executor ioExecutor;
+
+    /**
+     * The lookup in the cache
+     */
+    private final Lookup<T> lookup;
+
+    /**
+     * Execution status
+     */
+    private volatile boolean executed;
+
+    /**
+     * Cancellation status
+     */
+    private volatile boolean canceled;
+
+    /**
+     * Constructor
+     * @param network the network call, run on a cache miss
+     * @param ioExecutor the executor of the lookups
+     * @param lookup the lookup in the cache
+     */
+    public CacheFirstCall(Call<T> network, Executor ioExecutor, Lookup<T> lookup) {
+        this.network = network;
+        this.ioExecutor = ioExecutor;
+        this.lookup = lookup;
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        markExecuted();
+        // a synchronous call already blocks its caller, the lookup runs on it
+        T body = lookup.lookup();
+        if (canceled) {
+            throw new IOException("Canceled");
+        }
+        return body != null ? Response.success(body) : network.execute();
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        markExecuted();
+        ioExecutor.execute(() -> {
+            T body = canceled ? null : lookup.lookup();
+            if (canceled) {
+                callback.onFailure(this, new IOException("Canceled"));
+            } else if (body != null) {
+                callback.onResponse(this, Response.success(body));
+            } else {
+                network.enqueue(new Callback<T>() {
+                    @Override
+                    public void onResponse(Call<T> call, Response<T> response) {
+                        callback.onResponse(CacheFirstCall.this, response);
+                    }
+
+                    @Override
+                    public void onFailure(Call<T> call, Throwable t) {
+                        callback.onFailure(CacheFirstCall.this, t);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        network.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<T> clone() {
+        return new CacheFirstCall<>(network.clone(), ioExecutor, lookup);
+    }
+
+    @Override
+    public Request request() {
+        return network.request();
+    }
+
+    /**
+     * A call can only be executed once, like the retrofit ones
+     */
+    private synchronized void markExecuted() {
+        if (executed) {
+            throw new IllegalStateException("Already executed.");
+        }
+        executed = true;
+    }
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A Call decorator delivering the callbacks through an executor, like the Retrofit calls deliver them on the main thread.
+ * The wrapped calls complete on the threads of the caches, the quota or the resilience layer : the outermost call of
+ * the repositories is wrapped, so a callback may touch the views or call setValue.
+ * @param <T> the type of the body
+ */
+public class CallbackExecutorCall<T> implements Call<T> {
+
+    /**
+     * The decorated call
+     */
+    private final Call<T> delegate;
+
+    /**
+     * The executor of the callbacks
+     */
+    private final Executor callbackExecutor;
+
+    /**
+     * Constructor
+     * @param delegate the decorated call
+     * @param callbackExecutor the executor of the callbacks, usually the main thread
+     */
+    public CallbackExecutorCall(Call<T> delegate, Executor callbackExecutor) {
+        this.delegate = delegate;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        return delegate.execute();
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        delegate.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                callbackExecutor.execute(() -> {
+                    // canceled meanwhile, like Retrofit the caller hears of a failure
+                    if (delegate.isCanceled()) {
+                        callback.onFailure(CallbackExecutorCall.this, new IOException("Canceled"));
+                    } else {
+                        callback.onResponse(CallbackExecutorCall.this, response);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                callbackExecutor.execute(() -> callback.onFailure(CallbackExecutorCall.this, t));
+            }
+        });
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return delegate.isExecuted();
+    }
+
+    @Override
+    public void cancel() {
+        delegate.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return delegate.isCanceled();
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<T> clone() {
+        return new CallbackExecutorCall<>(delegate.clone(), callbackExecutor);
+    }
+
+    @Override
+    public Request request() {
+        return delegate.request();
+    }
+}
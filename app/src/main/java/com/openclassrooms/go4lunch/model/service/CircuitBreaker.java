@@ -0,0 +1,125 @@
+package com.openclassrooms.go4lunch.model.service;
+
+/**
+ * Circuit breaker of an endpoint.
+ *
+ * - CLOSED : calls go through, consecutive failures are counted,
+ * - OPEN : after too many failures, calls are refused for a while,
+ * - HALF_OPEN : then a single trial call goes through, its outcome closes or opens the circuit again.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Default number of consecutive failures opening the circuit
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /**
+     * Default time the circuit stays open, in milliseconds
+     */
+    public static final long DEFAULT_OPEN_MS = 30_000;
+
+    /**
+     * States of the circuit
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /** The number of consecutive failures opening the circuit */
+    private final int failureThreshold;
+
+    /** The time the circuit stays open, in milliseconds */
+    private final long openMs;
+
+    /** The current state */
+    private State state = State.CLOSED;
+
+    /** The consecutive failures */
+    private int failures;
+
+    /** The time the circuit opened */
+    private long openedAt;
+
+    /** True while the trial call of the half open circuit runs */
+    private boolean trialRunning;
+
+    /**
+     * Constructor with the default configuration
+     */
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MS);
+    }
+
+    /**
+     * Constructor
+     * @param failureThreshold the number of consecutive failures opening the circuit
+     * @param openMs the time the circuit stays open, in milliseconds
+     */
+    public CircuitBreaker(int failureThreshold, long openMs) {
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+    }
+
+    /**
+     * Check if a call may go through
+     * @return false while the circuit is open, or while the trial call of the half open circuit runs
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && now() - openedAt >= openMs) {
+            state = State.HALF_OPEN;
+            trialRunning = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialRunning) {
+                return false;
+            }
+            trialRunning = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Check if the circuit refuses the calls, without taking the trial call of a half open circuit
+     * @return true while the circuit is open and its open time is not over
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && now() - openedAt < openMs;
+    }
+
+    /**
+     * Record a successful call, closing the circuit
+     */
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialRunning = false;
+    }
+
+    /**
+     * Record a failed call, opening the circuit after too many of them
+     */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = now();
+            trialRunning = false;
+        }
+    }
+
+    /** Getters */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Current time, in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,101 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import java.io.IOException;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A Call already completed with a local body (from a cache), so it never reaches the network.
+ * The original, never executed, call is kept to describe the request.
+ * @param <T> the type of the body
+ */
+public class CompletedCall<T> implements Call<T> {
+
+    /**
+     * The original call, never executed
+     */
+    private final Call<T> original;
+
+    /**
+     * The local body
+     */
+    private final T body;
+
+    /**
+     * Execution status
+     */
+    private volatile boolean executed;
+
+    /**
+     * Cancellation status
+     */
+    private volatile boolean canceled;
+
+    /**
+     * Constructor
+     * @param original the original call, never executed
+     * @param body the local body
+     */
+    public CompletedCall(Call<T> original, T body) {
+        this.original = original;
+        this.body = body;
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        markExecuted();
+        if (canceled) {
+            throw new IOException("Canceled");
+        }
+        return Response.success(body);
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        markExecuted();
+        if (canceled) {
+            callback.onFailure(this, new IOException("Canceled"));
+        } else {
+            callback.onResponse(this, Response.success(body));
+        }
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<T> clone() {
+        return new CompletedCall<>(original.clone(), body);
+    }
+
+    @Override
+    public Request request() {
+        return original.request();
+    }
+
+    /**
+     * A call can only be executed once, like the retrofit ones
+     */
+    private synchronized void markExecuted() {
+        if (executed) {
+            throw new IllegalStateException("Already executed.");
+        }
+        executed = true;
+    }
+}
@@ -0,0 +1,92 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies of the last calls of each endpoint, and their percentiles.
+ * Each endpoint keeps a ring of its last WINDOW latencies. Thread safe.
+ */
+public class LatencyTracker {
+
+    /**
+     * Number of latencies kept per endpoint
+     */
+    public static final int WINDOW = 256;
+
+    /**
+     * The rings of latencies, by endpoint
+     */
+    private final Map<String, Ring> rings = new TreeMap<>();
+
+    /**
+     * Record the latency of a call
+     * @param endpoint the name of the endpoint
+     * @param latencyMs the latency, in milliseconds
+     */
+    public synchronized void record(String endpoint, long latencyMs) {
+        Ring ring = rings.get(endpoint);
+        if (ring == null) {
+            ring = new Ring();
+            rings.put(endpoint, ring);
+        }
+        ring.values[ring.next] = latencyMs;
+        ring.next = (ring.next + 1) % WINDOW;
+        ring.size = Math.min(WINDOW, ring.size + 1);
+    }
+
+    /**
+     * Get a percentile of the latencies of an endpoint
+     * @param endpoint the name of the endpoint
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds, or -1 if no call was recorded
+     */
+    public synchronized long percentile(String endpoint, double percentile) {
+        Ring ring = rings.get(endpoint);
+        if (ring == null || ring.size == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(ring.values, ring.size);
+        Arrays.sort(sorted);
+        // nearest rank
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Get the number of latencies kept for an endpoint
+     * @param endpoint the name of the endpoint
+     * @return the number of samples, at most WINDOW
+     */
+    public synchronized int sampleCount(String endpoint) {
+        Ring ring = rings.get(endpoint);
+        return ring == null ? 0 : ring.size;
+    }
+
+    /**
+     * Report the p50, p95 and p99 latencies of every endpoint
+     * @return one line per endpoint
+     */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        for (String endpoint : rings.keySet()) {
+            report.append(endpoint)
+                .append(" p50=").append(percentile(endpoint, 50)).append("ms")
+                .append(" p95=").append(percentile(endpoint, 95)).append("ms")
+                .append(" p99=").append(percentile(endpoint, 99)).append("ms")
+                .append(" n=").append(sampleCount(endpoint))
+                .append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Ring of the last latencies of an endpoint
+     */
+    private static class Ring {
+        private final long[] values = new long[WINDOW];
+        private int next;
+        private int size;
+    }
+}
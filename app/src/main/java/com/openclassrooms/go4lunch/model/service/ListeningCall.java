@@ -0,0 +1,102 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import java.io.IOException;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A Call decorator notifying a listener of every successful response, whether the call is executed
+ * synchronously or enqueued. Used to feed the caches without changing the Call API of the repositories.
+ * @param <T> the type of the body
+ */
+public class ListeningCall<T> implements Call<T> {
+
+    /**
+     * Listener of the successful responses
+     * @param <T> the type of the body
+     */
+    public interface Listener<T> {
+        void onSuccess(T body);
+    }
+
+    /**
+     * The decorated call
+     */
+    private final Call<T> delegate;
+
+    /**
+     * The listener
+     */
+    private final Listener<T> listener;
+
+    /**
+     * Constructor
+     * @param delegate the decorated call
+     * @param listener the listener of the successful responses
+     */
+    public ListeningCall(Call<T> delegate, Listener<T> listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        Response<T> response = delegate.execute();
+        notifyListener(response);
+        return response;
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        delegate.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                notifyListener(response);
+                callback.onResponse(ListeningCall.this, response);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                callback.onFailure(ListeningCall.this, t);
+            }
+        });
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return delegate.isExecuted();
+    }
+
+    @Override
+    public void cancel() {
+        delegate.cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return delegate.isCanceled();
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<T> clone() {
+        return new ListeningCall<>(delegate.clone(), listener);
+    }
+
+    @Override
+    public Request request() {
+        return delegate.request();
+    }
+
+    /**
+     * Notify the listener, only for successful responses with a body
+     */
+    private void notifyListener(Response<T> response) {
+        if (response.isSuccessful() && response.body() != null) {
+            listener.onSuccess(response.body());
+        }
+    }
+}
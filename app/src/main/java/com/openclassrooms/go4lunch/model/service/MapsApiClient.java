@@ -0,0 +1,167 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.openclassrooms.go4lunch.model.bo.maps.MapsTypeAdapterFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Long-lived HTTP client layer for the Google Maps API.
+ *
+ * A single OkHttp client (connection pool, dispatcher, HTTP/2 keep-alive) and a single Gson converter
+ * are shared by every request, and one RetrofitMapsApi proxy is kept per base url.
+ * The Gson converter uses the TypeAdapters generated at build time for model.bo.maps, instead of reflection.
+ */
+public class MapsApiClient {
+
+    /**
+     * Maximum number of idle connections kept in the pool
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * How long an idle connection is kept alive, in minutes
+     */
+    private static final long KEEP_ALIVE_DURATION_MINUTES = 5;
+
+    /**
+     * Maximum number of concurrent requests, all hosts together
+     */
+    private static final int MAX_REQUESTS = 16;
+
+    /**
+     * Maximum number of concurrent requests to the same host
+     */
+    private static final int MAX_REQUESTS_PER_HOST = 6;
+
+    /**
+     * Connect, read and write timeout, in seconds
+     */
+    private static final long TIMEOUT_SECONDS = 15;
+
+    /**
+     * The singleton instance
+     */
+    private static volatile MapsApiClient instance;
+
+    /**
+     * The shared HTTP client
+     */
+    private final OkHttpClient httpClient;
+
+    /**
+     * The shared json converter factory
+     */
+    private final GsonConverterFactory converterFactory;
+
+    /**
+     * The streaming converter factory of the compact nearby search pages
+     */
+    private final NearbySearchConverterFactory nearbySearchConverterFactory;
+
+    /**
+     * One Retrofit API proxy per base url
+     */
+    private final Map<String, RetrofitMapsApi> apis = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, with the default http client
+     */
+    public MapsApiClient() {
+        this(createHttpClient());
+    }
+
+    /**
+     * Constructor
+     * @param httpClient the http client to share between all the requests
+     */
+    public MapsApiClient(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+        this.converterFactory = GsonConverterFactory.create(createGson());
+        this.nearbySearchConverterFactory = new NearbySearchConverterFactory();
+    }
+
+    /**
+     * Gets the singleton instance
+     * @return the singleton instance
+     */
+    public static MapsApiClient getInstance() {
+        if (instance == null) {
+            synchronized (MapsApiClient.class) {
+                if (instance == null) {
+                    instance = new MapsApiClient();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Build the default http client : pooled connections, bounded dispatcher, HTTP/2 when available
+     * @return the http client
+     */
+    private static OkHttpClient createHttpClient() {
+        // bound the number of concurrent requests
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        return new OkHttpClient.Builder()
+            // keep the connections (and their TLS sessions) alive between calls
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MINUTES, TimeUnit.MINUTES))
+            .dispatcher(dispatcher)
+            // multiplex the calls on a single connection when the server speaks HTTP/2
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .writeTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .retryOnConnectionFailure(true)
+            .build();
+    }
+
+    /**
+     * Build the Gson instance of the converter, with the generated TypeAdapters of model.bo.maps
+     * @return the Gson instance
+     */
+    public static Gson createGson() {
+        return new GsonBuilder()
+            .registerTypeAdapterFactory(new MapsTypeAdapterFactory())
+            .create();
+    }
+
+    /**
+     * Get the API proxy for a given base url, created only once
+     * @param baseUrl the prefix url of the Google Maps API
+     * @return the API proxy
+     */
+    public RetrofitMapsApi getApi(String baseUrl) {
+        // ConcurrentHashMap.computeIfAbsent comes with the core library desugaring below API 24
+        return apis.computeIfAbsent(baseUrl, url -> new Retrofit.Builder()
+            .baseUrl(url)
+            .client(httpClient)
+            // the streaming converter must come first, Gson accepts every type
+            .addConverterFactory(nearbySearchConverterFactory)
+            .addConverterFactory(converterFactory)
+            .build()
+            .create(RetrofitMapsApi.class));
+    }
+
+    /**
+     * Get the shared http client
+     * @return the http client
+     */
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+}
@@ -0,0 +1,650 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Quota manager of the Google Maps API key.
+ *
+ * - a token bucket limits the request rate,
+ * - a daily budget caps the number of requests per day, prefetches stop earlier than user requests,
+ *   the requests of the day are kept in a file so a restart does not reset them,
+ * - requests waiting for a token are served by priority lane : user initiated ones before prefetches,
+ * - an OVER_QUERY_LIMIT status (or HTTP 429) pauses every request with a jittered exponential backoff,
+ *   and the request is retried a few times before its last response is handed to the caller.
+ */
+public class MapsQuotaManager {
+
+    /**
+     * The tag for the log messages
+     */
+    private static final String TAG = MapsQuotaManager.class.getSimpleName();
+
+    /**
+     * Maps API status of an exhausted quota
+     */
+    public static final String STATUS_OVER_QUERY_LIMIT = "OVER_QUERY_LIMIT";
+
+    /**
+     * HTTP status of a rate limited request
+     */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Default configuration
+     */
+    public static final int DEFAULT_BUCKET_CAPACITY = 5;
+    public static final double DEFAULT_REFILL_PER_SECOND = 1;
+    public static final int DEFAULT_DAILY_BUDGET = 1_000;
+    public static final double DEFAULT_PREFETCH_BUDGET_SHARE = 0.5;
+    public static final long DEFAULT_BASE_BACKOFF_MS = 1_000;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 60_000;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+
+    /**
+     * Priority lanes
+     */
+    public enum Priority {
+        /** Requested by the user, waiting for the answer */
+        USER,
+        /** Prefetch or background refresh, can wait or be dropped */
+        PREFETCH
+    }
+
+    /**
+     * Reads the Maps API status of a body
+     * @param <T> the type of the body
+     */
+    public interface StatusReader<T> {
+        String statusOf(T body);
+    }
+
+    /**
+     * Error of a request refused because the daily budget is spent
+     */
+    public static class QuotaExceededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public QuotaExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /** Token bucket */
+    private final int bucketCapacity;
+    private final double refillPerMs;
+    private double tokens;
+    private long lastRefill;
+
+    /** Daily budget, the current day running from dayStart included to nextDayStart excluded */
+    private final int dailyBudget;
+    private final int prefetchDailyBudget;
+    private int usedToday;
+    private long dayStart;
+    private long nextDayStart;
+
+    /** The file keeping the requests of the day, null to keep them in memory only */
+    @Nullable
+    private final File counterFile;
+    private boolean counterLoaded;
+    private boolean counterSaveScheduled;
+
+    /** Backoff */
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final int maxRetries;
+    private int consecutiveFailures;
+    private long blockedUntil;
+    private final Random random = new Random();
+
+    /** The requests waiting for a token, by lane */
+    private final Queue<QueuedRequest> userLane = new ArrayDeque<>();
+    private final Queue<QueuedRequest> prefetchLane = new ArrayDeque<>();
+
+    /** Scheduler draining the lanes */
+    private final ScheduledExecutorService scheduler;
+    private boolean drainScheduled;
+
+    /** Counters */
+    private final AtomicLong grantedCount = new AtomicLong();
+    private final AtomicLong refusedCount = new AtomicLong();
+    private final AtomicLong overQueryLimitCount = new AtomicLong();
+
+    /**
+     * Constructor with the default configuration, the requests of the day being kept in memory only
+     */
+    public MapsQuotaManager() {
+        this(null);
+    }
+
+    /**
+     * Constructor with the default configuration
+     * @param counterFile the file keeping the requests of the day, or null to keep them in memory only
+     */
+    public MapsQuotaManager(@Nullable File counterFile) {
+        this(DEFAULT_BUCKET_CAPACITY, DEFAULT_REFILL_PER_SECOND, DEFAULT_DAILY_BUDGET, DEFAULT_PREFETCH_BUDGET_SHARE,
+            DEFAULT_BASE_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS, DEFAULT_MAX_RETRIES, Executors.newSingleThreadScheduledExecutor(), counterFile);
+    }
+
+    /**
+     * Constructor
+     * @param bucketCapacity the maximum burst of requests
+     * @param refillPerSecond the sustained number of requests per second
+     * @param dailyBudget the maximum number of requests per day
+     * @param prefetchBudgetShare the share of the daily budget prefetches can use, between 0 and 1
+     * @param baseBackoffMs the first backoff delay, in milliseconds
+     * @param maxBackoffMs the maximum backoff delay, in milliseconds
+     * @param maxRetries the number of retries of a request answered OVER_QUERY_LIMIT
+     * @param scheduler the scheduler draining the waiting requests
+     */
+    public MapsQuotaManager(int bucketCapacity, double refillPerSecond, int dailyBudget, double prefetchBudgetShare,
+                            long baseBackoffMs, long maxBackoffMs, int maxRetries, ScheduledExecutorService scheduler) {
+        this(bucketCapacity, refillPerSecond, dailyBudget, prefetchBudgetShare, baseBackoffMs, maxBackoffMs, maxRetries, scheduler, null);
+    }
+
+    /**
+     * Constructor
+     * @param bucketCapacity the maximum burst of requests
+     * @param refillPerSecond the sustained number of requests per second
+     * @param dailyBudget the maximum number of requests per day
+     * @param prefetchBudgetShare the share of the daily budget prefetches can use, between 0 and 1
+     * @param baseBackoffMs the first backoff delay, in milliseconds
+     * @param maxBackoffMs the maximum backoff delay, in milliseconds
+     * @param maxRetries the number of retries of a request answered OVER_QUERY_LIMIT
+     * @param scheduler the scheduler draining the waiting requests
+     * @param counterFile the file keeping the requests of the day, or null to keep them in memory only
+     */
+    public MapsQuotaManager(int bucketCapacity, double refillPerSecond, int dailyBudget, double prefetchBudgetShare,
+                            long baseBackoffMs, long maxBackoffMs, int maxRetries, ScheduledExecutorService scheduler,
+                            @Nullable File counterFile) {
+        this.bucketCapacity = bucketCapacity;
+        this.refillPerMs = refillPerSecond / 1000;
+        this.tokens = bucketCapacity;
+        this.lastRefill = now();
+        this.dailyBudget = dailyBudget;
+        this.prefetchDailyBudget = (int) (dailyBudget * prefetchBudgetShare);
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.maxRetries = maxRetries;
+        this.scheduler = scheduler;
+        this.counterFile = counterFile;
+        // read the counter on the scheduler, before any queued request is drained
+        if (counterFile != null) {
+            scheduler.execute(this::loadCounter);
+        }
+    }
+
+    /**
+     * Wrap a call, so it only reaches the network once the quota allows it
+     * @param call the call
+     * @param priority the lane of the call
+     * @param statusReader the reader of the Maps API status of the body
+     * @param <T> the type of the body
+     * @return the throttled call
+     */
+    public <T> Call<T> newCall(Call<T> call, Priority priority, StatusReader<T> statusReader) {
+        return new QuotaCall<>(call, priority, statusReader);
+    }
+
+    /**
+     * Submit a request : run it as soon as a token is available, or refuse it if the daily budget is spent
+     * @return false if the request is refused
+     */
+    private synchronized boolean submit(Priority priority, QueuedRequest request) {
+        rollDay();
+        int budget = priority == Priority.USER ? dailyBudget : prefetchDailyBudget;
+        if (usedToday >= budget) {
+            refusedCount.incrementAndGet();
+            return false;
+        }
+        (priority == Priority.USER ? userLane : prefetchLane).add(request);
+        scheduleDrain(0);
+        return true;
+    }
+
+    /**
+     * Take a token for a blocking request, which only passes the queued requests of a lower lane
+     * @return 0 if a token is taken, the milliseconds to wait before trying again, or -1 if the daily budget is spent
+     */
+    private synchronized long acquire(Priority priority) {
+        // a blocking caller never runs on the main thread, it may read the counter itself
+        loadCounter();
+        rollDay();
+        int budget = priority == Priority.USER ? dailyBudget : prefetchDailyBudget;
+        if (usedToday >= budget) {
+            refusedCount.incrementAndGet();
+            return -1;
+        }
+        long wait = Math.max(0, blockedUntil - now());
+        if (wait > 0) {
+            return wait;
+        }
+        refill();
+        boolean queuedAhead = !userLane.isEmpty() || (priority == Priority.PREFETCH && !prefetchLane.isEmpty());
+        if (tokens < 1 || queuedAhead) {
+            return Math.max(1, (long) Math.ceil((1 - tokens) / refillPerMs));
+        }
+        tokens -= 1;
+        onGranted();
+        return 0;
+    }
+
+    /**
+     * Take a token at once for an extra attempt of a granted request, its hedge or its retry, without waiting nor
+     * passing the user requests queued : the attempt is counted in the requests of the day like any other
+     * @param priority the lane of the request
+     * @return true if a token is taken, false if none is free right now or the daily budget is spent
+     */
+    public synchronized boolean tryAcquire(Priority priority) {
+        rollDay();
+        int budget = priority == Priority.USER ? dailyBudget : prefetchDailyBudget;
+        if (usedToday >= budget || now() < blockedUntil || !userLane.isEmpty()) {
+            return false;
+        }
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        onGranted();
+        return true;
+    }
+
+    /**
+     * Schedule the drain of the lanes
+     */
+    private synchronized void scheduleDrain(long delayMs) {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        scheduler.schedule(this::drain, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run the waiting requests the quota allows, user lane first, refusing them once the daily budget is spent
+     */
+    private void drain() {
+        while (true) {
+            QueuedRequest request;
+            List<QueuedRequest> refused = new ArrayList<>(0);
+            synchronized (this) {
+                drainScheduled = false;
+                // the day may have changed, and the budget may have been spent, since the requests were queued
+                rollDay();
+                if (usedToday >= dailyBudget) {
+                    refused.addAll(userLane);
+                    userLane.clear();
+                }
+                if (usedToday >= prefetchDailyBudget) {
+                    refused.addAll(prefetchLane);
+                    prefetchLane.clear();
+                }
+                refusedCount.addAndGet(refused.size());
+            }
+            for (QueuedRequest refusedRequest : refused) {
+                refusedRequest.refuse();
+            }
+            synchronized (this) {
+                if (userLane.isEmpty() && prefetchLane.isEmpty()) {
+                    return;
+                }
+                long wait = Math.max(0, blockedUntil - now());
+                if (wait == 0) {
+                    refill();
+                    if (tokens < 1) {
+                        wait = (long) Math.ceil((1 - tokens) / refillPerMs);
+                    }
+                }
+                if (wait > 0) {
+                    scheduleDrain(wait);
+                    return;
+                }
+                tokens -= 1;
+                onGranted();
+                request = !userLane.isEmpty() ? userLane.poll() : prefetchLane.poll();
+            }
+            request.run();
+        }
+    }
+
+    /**
+     * Count a granted request, and save the counter in the background
+     */
+    private synchronized void onGranted() {
+        usedToday++;
+        grantedCount.incrementAndGet();
+        if (counterFile != null && !counterSaveScheduled) {
+            counterSaveScheduled = true;
+            scheduler.execute(this::saveCounter);
+        }
+    }
+
+    /**
+     * Handle the outcome of a request, to drive the backoff
+     * @param overQueryLimit true if the API answered OVER_QUERY_LIMIT or HTTP 429
+     */
+    private synchronized void onOutcome(boolean overQueryLimit) {
+        if (!overQueryLimit) {
+            consecutiveFailures = 0;
+            return;
+        }
+        overQueryLimitCount.incrementAndGet();
+        consecutiveFailures++;
+        // full jitter : a random delay up to the exponential bound, so clients do not retry in lockstep
+        long bound = Math.min(maxBackoffMs, baseBackoffMs << Math.min(consecutiveFailures - 1, 20));
+        long delay = bound / 2 + (long) (random.nextDouble() * bound / 2);
+        blockedUntil = Math.max(blockedUntil, now() + delay);
+        Log.e(TAG, "onOutcome: OVER_QUERY_LIMIT, pausing the requests for " + delay + " ms");
+    }
+
+    /**
+     * Refill the bucket with the tokens earned since the last refill
+     */
+    private void refill() {
+        long now = now();
+        tokens = Math.min(bucketCapacity, tokens + (now - lastRefill) * refillPerMs);
+        lastRefill = now;
+    }
+
+    /**
+     * Reset the daily budget when the day changes, the bounds of the day are only computed at the change
+     */
+    private void rollDay() {
+        long now = now();
+        if (now >= dayStart && now < nextDayStart) {
+            return;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        dayStart = calendar.getTimeInMillis();
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        nextDayStart = calendar.getTimeInMillis();
+        usedToday = 0;
+    }
+
+    /**
+     * Read the requests of the day from the counter file, once
+     */
+    private synchronized void loadCounter() {
+        if (counterLoaded || counterFile == null) {
+            return;
+        }
+        counterLoaded = true;
+        rollDay();
+        if (!counterFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(counterFile)))) {
+            long savedDayStart = in.readLong();
+            int savedUsed = in.readInt();
+            // the requests of a previous day do not count anymore
+            if (savedDayStart == dayStart) {
+                usedToday = Math.max(usedToday, savedUsed);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "loadCounter: unreadable counter " + counterFile, e);
+        }
+    }
+
+    /**
+     * Write the requests of the day to the counter file, on the scheduler
+     */
+    private void saveCounter() {
+        long savedDayStart;
+        int savedUsed;
+        synchronized (this) {
+            counterSaveScheduled = false;
+            savedDayStart = dayStart;
+            savedUsed = usedToday;
+        }
+        // write in a temporary file first, so a reader never sees a partial counter
+        File tmp = new File(counterFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeLong(savedDayStart);
+            out.writeInt(savedUsed);
+        } catch (IOException e) {
+            Log.e(TAG, "saveCounter: unable to write " + counterFile, e);
+            return;
+        }
+        if (!tmp.renameTo(counterFile)) {
+            Log.e(TAG, "saveCounter: unable to replace " + counterFile);
+        }
+    }
+
+    /**
+     * A request waiting for a token
+     */
+    private interface QueuedRequest {
+        /** Run the request, a token being taken */
+        void run();
+
+        /** Refuse the request, the daily budget being spent */
+        void refuse();
+    }
+
+    /** Getters */
+    public synchronized int getUsedToday() {
+        rollDay();
+        return usedToday;
+    }
+
+    public synchronized int getRemainingToday() {
+        rollDay();
+        return Math.max(0, dailyBudget - usedToday);
+    }
+
+    public synchronized long getBlockedUntil() {
+        return blockedUntil;
+    }
+
+    public long getGrantedCount() {
+        return grantedCount.get();
+    }
+
+    public long getRefusedCount() {
+        return refusedCount.get();
+    }
+
+    public long getOverQueryLimitCount() {
+        return overQueryLimitCount.get();
+    }
+
+    /**
+     * Current time, in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * A call running only once the quota allows it, and retried on OVER_QUERY_LIMIT
+     * @param <T> the type of the body
+     */
+    private class QuotaCall<T> implements Call<T> {
+
+        /** The throttled call, never executed itself : each attempt runs a clone */
+        private final Call<T> call;
+
+        /** The lane of the call */
+        private final Priority priority;
+
+        /** The reader of the Maps API status */
+        private final StatusReader<T> statusReader;
+
+        /** The attempt running */
+        private volatile Call<T> current;
+
+        /** Status */
+        private volatile boolean executed;
+        private volatile boolean canceled;
+
+        private QuotaCall(Call<T> call, Priority priority, StatusReader<T> statusReader) {
+            this.call = call;
+            this.priority = priority;
+            this.statusReader = statusReader;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            synchronized (this) {
+                if (executed) {
+                    throw new IllegalStateException("Already executed.");
+                }
+                executed = true;
+            }
+            // blocking callers wait for their token on their own thread, then run the call there
+            for (int retry = 0; ; retry++) {
+                try {
+                    long wait;
+                    while ((wait = acquire(priority)) > 0) {
+                        Thread.sleep(wait);
+                    }
+                    if (wait < 0) {
+                        throw budgetSpent();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the quota");
+                }
+                if (canceled) {
+                    throw new IOException("Canceled");
+                }
+                Call<T> attemptCall = call.clone();
+                current = attemptCall;
+                Response<T> response = attemptCall.execute();
+                boolean overQueryLimit = isOverQueryLimit(response);
+                onOutcome(overQueryLimit);
+                if (!overQueryLimit || retry >= maxRetries || canceled) {
+                    return response;
+                }
+            }
+        }
+
+        /**
+         * True if the API answered OVER_QUERY_LIMIT or HTTP 429
+         */
+        private boolean isOverQueryLimit(Response<T> response) {
+            T body = response.body();
+            return response.code() == HTTP_TOO_MANY_REQUESTS
+                || (body != null && STATUS_OVER_QUERY_LIMIT.equals(statusReader.statusOf(body)));
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            synchronized (this) {
+                if (executed) {
+                    throw new IllegalStateException("Already executed.");
+                }
+                executed = true;
+            }
+            attempt(callback, 0);
+        }
+
+        /**
+         * Submit an attempt to the quota manager
+         */
+        private void attempt(Callback<T> callback, int retry) {
+            boolean accepted = submit(priority, new QueuedRequest() {
+                @Override
+                public void run() {
+                    if (canceled) {
+                        callback.onFailure(QuotaCall.this, new IOException("Canceled"));
+                        return;
+                    }
+                    Call<T> attemptCall = call.clone();
+                    current = attemptCall;
+                    attemptCall.enqueue(new Callback<T>() {
+                        @Override
+                        public void onResponse(Call<T> call, Response<T> response) {
+                            boolean overQueryLimit = isOverQueryLimit(response);
+                            onOutcome(overQueryLimit);
+                            if (overQueryLimit && retry < maxRetries && !canceled) {
+                                attempt(callback, retry + 1);
+                            } else {
+                                callback.onResponse(QuotaCall.this, response);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Call<T> call, Throwable t) {
+                            callback.onFailure(QuotaCall.this, t);
+                        }
+                    });
+                }
+
+                @Override
+                public void refuse() {
+                    callback.onFailure(QuotaCall.this, budgetSpent());
+                }
+            });
+            if (!accepted) {
+                callback.onFailure(this, budgetSpent());
+            }
+        }
+
+        private QuotaExceededException budgetSpent() {
+            return new QuotaExceededException("Daily Maps API budget spent for " + priority + " requests");
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            Call<T> attemptCall = current;
+            if (attemptCall != null) {
+                attemptCall.cancel();
+            }
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<T> clone() {
+            return new QuotaCall<>(call.clone(), priority, statusReader);
+        }
+
+        @Override
+        public Request request() {
+            return call.request();
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Resilience layer of the Google Maps API calls.
+ *
+ * - every call has a deadline, after which it fails (or falls back),
+ * - an enqueued call still running after the p95 latency of its endpoint gets a hedged duplicate,
+ *   the first response wins and the other attempt is canceled,
+ * - a circuit breaker per endpoint stops calling a failing API, and the fallback (e.g. the cached
+ *   restaurants) is served instead, until a trial call succeeds again,
+ * - the p50, p95 and p99 latencies of each endpoint are tracked.
+ *
+ * The deadline, the hedge and the breaker wrap the raw Retrofit call, inside the quota, so the time spent waiting
+ * for a quota token is neither timed nor bounded by the deadline. The hedge and the retry are paid requests too :
+ * each one takes a token of its own from its AttemptBudget, without waiting, and is skipped when none is free.
+ * The fallback wraps the quota, so an open circuit is answered without taking a token at all :
+ *
+ *     withFallback( quota( newCall( retrofit call ) ) )
+ *
+ * The Maps API answers some failures with HTTP 200 and an error status : those statuses count as failures too.
+ */
+public class MapsResilience {
+
+    /** The tag for the log messages */
+    private static final String TAG = MapsResilience.class.getSimpleName();
+
+    /** Default deadline of a call, in milliseconds */
+    public static final long DEFAULT_DEADLINE_MS = 10_000;
+
+    /** Minimum delay before a hedged request, in milliseconds, to never double a fast call */
+    public static final long DEFAULT_MIN_HEDGE_DELAY_MS = 300;
+
+    /** Number of latencies of an endpoint needed before hedging its calls */
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    /** The percentile of the latencies after which a call is hedged */
+    private static final double HEDGE_PERCENTILE = 95;
+
+    /** Maps API statuses of a failing API, answered with HTTP 200 */
+    private static final Set<String> FAILURE_STATUSES = new HashSet<>(Arrays.asList(
+        MapsQuotaManager.STATUS_OVER_QUERY_LIMIT, "UNKNOWN_ERROR", "REQUEST_DENIED"));
+
+    /**
+     * Supplies the answer served when the API fails or the circuit is open
+     * @param <T> the type of the body
+     */
+    public interface Fallback<T> {
+        /**
+         * @return the fallback body, or null if there is none
+         */
+        @Nullable
+        T get();
+    }
+
+    /**
+     * Grants the extra attempts of a call, its hedge or its retry, each one being a request of its own
+     */
+    public interface AttemptBudget {
+        /**
+         * @return true if the extra attempt may run, its cost being counted, false to skip it
+         */
+        boolean tryAcquire();
+    }
+
+    /** The deadline of a call, in milliseconds */
+    private final long deadlineMs;
+
+    /** The minimum delay before a hedged request, in milliseconds */
+    private final long minHedgeDelayMs;
+
+    /** The scheduler of the deadlines and of the hedged requests */
+    private final ScheduledExecutorService scheduler;
+
+    /** The latencies of the endpoints */
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+
+    /** The circuit breakers, by endpoint */
+    private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+
+    /** Counters */
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong deadlineCount = new AtomicLong();
+    private final AtomicLong skippedAttemptCount = new AtomicLong();
+
+    /**
+     * Constructor with the default configuration
+     */
+    public MapsResilience() {
+        this(DEFAULT_DEADLINE_MS, DEFAULT_MIN_HEDGE_DELAY_MS, Executors.newSingleThreadScheduledExecutor());
+    }
+
+    /**
+     * Constructor
+     * @param deadlineMs the deadline of a call, in milliseconds
+     * @param minHedgeDelayMs the minimum delay before a hedged request, in milliseconds
+     * @param scheduler the scheduler of the deadlines and of the hedged requests
+     */
+    public MapsResilience(long deadlineMs, long minHedgeDelayMs, ScheduledExecutorService scheduler) {
+        this.deadlineMs = deadlineMs;
+        this.minHedgeDelayMs = minHedgeDelayMs;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Wrap a raw call with a deadline, a hedged duplicate and the circuit breaker of its endpoint
+     * @param endpoint the name of the endpoint, for the latencies and the circuit breaker
+     * @param call the raw call, never executed itself : each attempt runs a clone
+     * @param statusReader the reader of the Maps API status of the body
+     * @param <T> the type of the body
+     * @return the resilient call, failing at once while the circuit is open
+     */
+    public <T> Call<T> newCall(String endpoint, Call<T> call, MapsQuotaManager.StatusReader<T> statusReader) {
+        return newCall(endpoint, call, statusReader, null);
+    }
+
+    /**
+     * Wrap a raw call with a deadline, a hedged duplicate and the circuit breaker of its endpoint
+     * @param endpoint the name of the endpoint, for the latencies and the circuit breaker
+     * @param call the raw call, never executed itself : each attempt runs a clone
+     * @param statusReader the reader of the Maps API status of the body
+     * @param attemptBudget the grant of the hedge and of the retry, usually the quota of the call, or null to always run them
+     * @param <T> the type of the body
+     * @return the resilient call, failing at once while the circuit is open
+     */
+    public <T> Call<T> newCall(String endpoint, Call<T> call, MapsQuotaManager.StatusReader<T> statusReader,
+                               @Nullable AttemptBudget attemptBudget) {
+        return new ResilientCall<>(endpoint, call, statusReader, attemptBudget);
+    }
+
+    /**
+     * Serve a fallback when a call fails, or without running it while the circuit of its endpoint is open
+     * @param endpoint the name of the endpoint, for the circuit breaker
+     * @param call the call, usually the quota call around the resilient one
+     * @param statusReader the reader of the Maps API status of the body
+     * @param fallback the answer served on failure or while the circuit is open, or null to fail instead
+     * @param <T> the type of the body
+     * @return the call with its fallback
+     */
+    public <T> Call<T> withFallback(String endpoint, Call<T> call, MapsQuotaManager.StatusReader<T> statusReader,
+                                    @Nullable Fallback<T> fallback) {
+        return new FallbackCall<>(endpoint, call, statusReader, fallback);
+    }
+
+    /**
+     * Check if a response is a failure of the API : a server error, or an error status of the Maps API
+     * @param response the response
+     * @param statusReader the reader of the Maps API status of the body
+     * @param <T> the type of the body
+     * @return true if the response counts as a failure
+     */
+    public static <T> boolean isFailure(Response<T> response, MapsQuotaManager.StatusReader<T> statusReader) {
+        if (response.code() >= 500) {
+            return true;
+        }
+        T body = response.body();
+        return body != null && FAILURE_STATUSES.contains(statusReader.statusOf(body));
+    }
+
+    /**
+     * Get the circuit breaker of an endpoint
+     * @param endpoint the name of the endpoint
+     * @return the circuit breaker
+     */
+    public synchronized CircuitBreaker getBreaker(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            breaker = new CircuitBreaker();
+            breakers.put(endpoint, breaker);
+        }
+        return breaker;
+    }
+
+    /**
+     * Get the latencies of the endpoints
+     * @return the latency tracker
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /** Getters */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    public long getDeadlineCount() {
+        return deadlineCount.get();
+    }
+
+    public long getSkippedAttemptCount() {
+        return skippedAttemptCount.get();
+    }
+
+    /**
+     * Delay before hedging a call of an endpoint
+     * @return the delay in milliseconds, or -1 while the endpoint has too few latencies
+     */
+    private long hedgeDelay(String endpoint) {
+        if (latencyTracker.sampleCount(endpoint) < MIN_HEDGE_SAMPLES) {
+            return -1;
+        }
+        long p95 = latencyTracker.percentile(endpoint, HEDGE_PERCENTILE);
+        return Math.min(deadlineMs / 2, Math.max(minHedgeDelayMs, p95));
+    }
+
+    /**
+     * A call with a deadline, a hedged duplicate and a circuit breaker
+     * @param <T> the type of the body
+     */
+    private class ResilientCall<T> implements Call<T> {
+
+        /** The name of the endpoint */
+        private final String endpoint;
+
+        /** The wrapped call */
+        private final Call<T> call;
+
+        /** The reader of the Maps API status */
+        private final MapsQuotaManager.StatusReader<T> statusReader;
+
+        /** The grant of the extra attempts, or null */
+        @Nullable
+        private final AttemptBudget attemptBudget;
+
+        /** The circuit breaker of the endpoint */
+        private final CircuitBreaker breaker;
+
+        /** The attempts started, the primary one and the hedged one */
+        private final List<Call<T>> attempts = new ArrayList<>();
+        private int running;
+        private boolean hedged;
+
+        /** The timers of the deadline and of the hedge */
+        private ScheduledFuture<?> deadline;
+        private ScheduledFuture<?> hedge;
+
+        /** The time the call started, in milliseconds */
+        private long startedAt;
+
+        /** The receiver of the outcome, null once settled */
+        private Callback<T> callback;
+
+        /** Status */
+        private volatile boolean executed;
+        private volatile boolean canceled;
+
+        private ResilientCall(String endpoint, Call<T> call, MapsQuotaManager.StatusReader<T> statusReader,
+                              @Nullable AttemptBudget attemptBudget) {
+            this.endpoint = endpoint;
+            this.call = call;
+            this.statusReader = statusReader;
+            this.attemptBudget = attemptBudget;
+            this.breaker = getBreaker(endpoint);
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            markExecuted();
+            if (!breaker.allowRequest()) {
+                throw circuitOpen(endpoint);
+            }
+            // blocking callers run a single attempt on their own thread, only bounded by the deadline
+            Call<T> attempt = call.clone();
+            synchronized (this) {
+                attempts.add(attempt);
+            }
+            long start = System.currentTimeMillis();
+            AtomicBoolean expired = new AtomicBoolean();
+            ScheduledFuture<?> timer = scheduler.schedule(() -> {
+                expired.set(true);
+                attempt.cancel();
+            }, deadlineMs, TimeUnit.MILLISECONDS);
+            try {
+                Response<T> response = attempt.execute();
+                timer.cancel(false);
+                onResponse(response, start);
+                return response;
+            } catch (IOException e) {
+                timer.cancel(false);
+                if (canceled) {
+                    throw e;
+                }
+                breaker.onFailure();
+                if (expired.get()) {
+                    deadlineCount.incrementAndGet();
+                    throw new InterruptedIOException("Deadline of " + deadlineMs + " ms exceeded for " + endpoint);
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            markExecuted();
+            if (!breaker.allowRequest()) {
+                callback.onFailure(this, circuitOpen(endpoint));
+                return;
+            }
+            long hedgeDelay = hedgeDelay(endpoint);
+            synchronized (this) {
+                this.callback = callback;
+                startedAt = System.currentTimeMillis();
+                deadline = scheduler.schedule(() -> {
+                    deadlineCount.incrementAndGet();
+                    breaker.onFailure();
+                    settle(null, new InterruptedIOException("Deadline of " + deadlineMs + " ms exceeded for " + endpoint));
+                }, deadlineMs, TimeUnit.MILLISECONDS);
+                if (hedgeDelay >= 0) {
+                    hedge = scheduler.schedule(this::launchHedge, hedgeDelay, TimeUnit.MILLISECONDS);
+                }
+            }
+            launch(call.clone());
+        }
+
+        /**
+         * Start the hedged duplicate, if the call is still running
+         */
+        private void launchHedge() {
+            synchronized (this) {
+                if (callback == null || hedged) {
+                    return;
+                }
+                hedged = true;
+            }
+            // without a token, the primary attempt goes on alone
+            if (!takeExtraAttempt()) {
+                return;
+            }
+            hedgeCount.incrementAndGet();
+            launch(call.clone());
+        }
+
+        /**
+         * Take the grant of an extra attempt
+         * @return true if the attempt may run
+         */
+        private boolean takeExtraAttempt() {
+            if (attemptBudget == null || attemptBudget.tryAcquire()) {
+                return true;
+            }
+            skippedAttemptCount.incrementAndGet();
+            return false;
+        }
+
+        /**
+         * Start an attempt
+         */
+        private void launch(Call<T> attempt) {
+            synchronized (this) {
+                if (callback == null) {
+                    return;
+                }
+                attempts.add(attempt);
+                running++;
+            }
+            attempt.enqueue(new Callback<T>() {
+                @Override
+                public void onResponse(Call<T> call, Response<T> response) {
+                    synchronized (ResilientCall.this) {
+                        if (callback == null) {
+                            return;
+                        }
+                    }
+                    ResilientCall.this.onResponse(response, startedAt);
+                    settle(response, null);
+                }
+
+                @Override
+                public void onFailure(Call<T> call, Throwable t) {
+                    boolean last;
+                    boolean retry;
+                    synchronized (ResilientCall.this) {
+                        if (callback == null) {
+                            return;
+                        }
+                        running--;
+                        // the primary attempt failed before the hedge : run it at once as a retry
+                        retry = !hedged && hedge != null;
+                        if (retry) {
+                            hedged = true;
+                            hedge.cancel(false);
+                        }
+                        last = running == 0 && !retry;
+                    }
+                    if (retry && takeExtraAttempt()) {
+                        launch(ResilientCall.this.call.clone());
+                    } else if (last || retry) {
+                        breaker.onFailure();
+                        settle(null, t);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Record the latency and the outcome of a response
+         */
+        private void onResponse(Response<T> response, long start) {
+            latencyTracker.record(endpoint, System.currentTimeMillis() - start);
+            if (isFailure(response, statusReader)) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+
+        /**
+         * Hand out the first outcome, cancel everything else
+         * @param response the response, or null on failure
+         * @param t the failure, or null
+         */
+        private void settle(@Nullable Response<T> response, @Nullable Throwable t) {
+            Callback<T> receiver;
+            List<Call<T>> others;
+            synchronized (this) {
+                receiver = callback;
+                if (receiver == null) {
+                    return;
+                }
+                callback = null;
+                others = new ArrayList<>(attempts);
+                if (deadline != null) {
+                    deadline.cancel(false);
+                }
+                if (hedge != null) {
+                    hedge.cancel(false);
+                }
+            }
+            for (Call<T> other : others) {
+                other.cancel();
+            }
+            if (response != null) {
+                receiver.onResponse(this, response);
+            } else {
+                receiver.onFailure(this, t);
+            }
+        }
+
+        private synchronized void markExecuted() {
+            if (executed) {
+                throw new IllegalStateException("Already executed.");
+            }
+            executed = true;
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            List<Call<T>> started;
+            synchronized (this) {
+                started = new ArrayList<>(attempts);
+            }
+            for (Call<T> attempt : started) {
+                attempt.cancel();
+            }
+            settle(null, new IOException("Canceled"));
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<T> clone() {
+            return new ResilientCall<>(endpoint, call.clone(), statusReader, attemptBudget);
+        }
+
+        @Override
+        public Request request() {
+            return call.request();
+        }
+    }
+
+    /**
+     * A call serving a fallback on failure, or at once while the circuit of its endpoint is open
+     * @param <T> the type of the body
+     */
+    private class FallbackCall<T> implements Call<T> {
+
+        /** The name of the endpoint */
+        private final String endpoint;
+
+        /** The wrapped call */
+        private final Call<T> call;
+
+        /** The reader of the Maps API status */
+        private final MapsQuotaManager.StatusReader<T> statusReader;
+
+        /** The fallback, or null */
+        @Nullable
+        private final Fallback<T> fallback;
+
+        /** The circuit breaker of the endpoint */
+        private final CircuitBreaker breaker;
+
+        /** Status */
+        private volatile boolean executed;
+
+        private FallbackCall(String endpoint, Call<T> call, MapsQuotaManager.StatusReader<T> statusReader, @Nullable Fallback<T> fallback) {
+            this.endpoint = endpoint;
+            this.call = call;
+            this.statusReader = statusReader;
+            this.fallback = fallback;
+            this.breaker = getBreaker(endpoint);
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            markExecuted();
+            if (breaker.isOpen()) {
+                return fallbackOrThrow(circuitOpen(endpoint));
+            }
+            Response<T> response;
+            try {
+                response = call.execute();
+            } catch (IOException e) {
+                if (call.isCanceled()) {
+                    throw e;
+                }
+                return fallbackOrThrow(e);
+            }
+            Response<T> fallbackResponse = isFailure(response, statusReader) ? fallbackResponse() : null;
+            return fallbackResponse != null ? fallbackResponse : response;
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            markExecuted();
+            // no quota token is spent on a call the breaker would refuse anyway
+            if (breaker.isOpen()) {
+                Response<T> response = fallbackResponse();
+                if (response != null) {
+                    callback.onResponse(this, response);
+                } else {
+                    callback.onFailure(this, circuitOpen(endpoint));
+                }
+                return;
+            }
+            call.enqueue(new Callback<T>() {
+                @Override
+                public void onResponse(Call<T> call, Response<T> response) {
+                    Response<T> fallbackResponse = isFailure(response, statusReader) ? fallbackResponse() : null;
+                    callback.onResponse(FallbackCall.this, fallbackResponse != null ? fallbackResponse : response);
+                }
+
+                @Override
+                public void onFailure(Call<T> call, Throwable t) {
+                    Response<T> fallbackResponse = call.isCanceled() ? null : fallbackResponse();
+                    if (fallbackResponse != null) {
+                        callback.onResponse(FallbackCall.this, fallbackResponse);
+                    } else {
+                        callback.onFailure(FallbackCall.this, t);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Build the response of the fallback
+         * @return the response, or null if there is no fallback answer
+         */
+        @Nullable
+        private Response<T> fallbackResponse() {
+            T body = fallback == null ? null : fallback.get();
+            if (body == null) {
+                return null;
+            }
+            fallbackCount.incrementAndGet();
+            Log.e(TAG, endpoint + " is failing, serving the fallback");
+            return Response.success(body);
+        }
+
+        private Response<T> fallbackOrThrow(IOException e) throws IOException {
+            Response<T> response = fallbackResponse();
+            if (response == null) {
+                throw e;
+            }
+            return response;
+        }
+
+        private synchronized void markExecuted() {
+            if (executed) {
+                throw new IllegalStateException("Already executed.");
+            }
+            executed = true;
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public void cancel() {
+            call.cancel();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return call.isCanceled();
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<T> clone() {
+            return new FallbackCall<>(endpoint, call.clone(), statusReader, fallback);
+        }
+
+        @Override
+        public Request request() {
+            return call.request();
+        }
+    }
+
+    /**
+     * The failure of a call refused by an open circuit
+     */
+    private static IOException circuitOpen(String endpoint) {
+        return new IOException("Circuit open for " + endpoint);
+    }
+}
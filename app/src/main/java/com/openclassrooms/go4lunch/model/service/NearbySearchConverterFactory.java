@@ -0,0 +1,31 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import com.openclassrooms.go4lunch.model.bo.NearbySearchPage;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Retrofit converter factory decoding NearbySearchPage bodies with the streaming NearbySearchDecoder.
+ * Every other type is left to the next converter factory (Gson).
+ */
+public class NearbySearchConverterFactory extends Converter.Factory {
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (type != NearbySearchPage.class) {
+            return null;
+        }
+        return (Converter<ResponseBody, NearbySearchPage>) body -> {
+            try {
+                return NearbySearchDecoder.decode(body.charStream());
+            } finally {
+                body.close();
+            }
+        };
+    }
+}
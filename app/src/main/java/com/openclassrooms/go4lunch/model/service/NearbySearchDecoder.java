@@ -0,0 +1,192 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.openclassrooms.go4lunch.model.bo.NearbyRestaurant;
+import com.openclassrooms.go4lunch.model.bo.NearbySearchPage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming decoder of a nearby search response.
+ *
+ * The json is read token by token and each result is projected straight into a NearbyRestaurant :
+ * the viewport, the plus code, the icons, the photo attributions... are skipped without being built.
+ * A json null is accepted for every field, like the reflective Gson decoding : the field keeps its default.
+ */
+public final class NearbySearchDecoder {
+
+    /** Utility class, no instance */
+    private NearbySearchDecoder() {
+    }
+
+    /**
+     * Decode a nearby search response
+     * @param reader the json response
+     * @return the projected page
+     */
+    public static NearbySearchPage decode(Reader reader) throws IOException {
+        try (JsonReader in = new JsonReader(reader)) {
+            String status = null;
+            String nextPageToken = null;
+            List<NearbyRestaurant> restaurants = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "status":
+                        status = nextStringOrNull(in);
+                        break;
+                    case "next_page_token":
+                        nextPageToken = nextStringOrNull(in);
+                        break;
+                    case "results":
+                        if (skipNull(in)) {
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            if (!skipNull(in)) {
+                                restaurants.add(readResult(in));
+                            }
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new NearbySearchPage(status, nextPageToken, restaurants);
+        }
+    }
+
+    /**
+     * Project a single result
+     */
+    private static NearbyRestaurant readResult(JsonReader in) throws IOException {
+        String placeId = null;
+        String name = null;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        float rating = NearbyRestaurant.NO_RATING;
+        int priceLevel = NearbyRestaurant.NO_PRICE_LEVEL;
+        byte openNow = NearbyRestaurant.OPEN_NOW_UNKNOWN;
+        String photoReference = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "place_id":
+                    placeId = nextStringOrNull(in);
+                    break;
+                case "name":
+                    name = nextStringOrNull(in);
+                    break;
+                case "rating":
+                    if (!skipNull(in)) {
+                        rating = (float) in.nextDouble();
+                    }
+                    break;
+                case "price_level":
+                    if (!skipNull(in)) {
+                        priceLevel = in.nextInt();
+                    }
+                    break;
+                case "geometry":
+                    if (skipNull(in)) {
+                        break;
+                    }
+                    // only geometry.location is kept
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if ("location".equals(in.nextName()) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                            in.beginObject();
+                            while (in.hasNext()) {
+                                String coordinate = in.nextName();
+                                if (skipNull(in)) {
+                                    continue;
+                                }
+                                if ("lat".equals(coordinate)) {
+                                    latitude = in.nextDouble();
+                                } else if ("lng".equals(coordinate)) {
+                                    longitude = in.nextDouble();
+                                } else {
+                                    in.skipValue();
+                                }
+                            }
+                            in.endObject();
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                case "opening_hours":
+                    if (skipNull(in)) {
+                        break;
+                    }
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if ("open_now".equals(in.nextName()) && in.peek() == JsonToken.BOOLEAN) {
+                            openNow = in.nextBoolean() ? NearbyRestaurant.OPEN_NOW_TRUE : NearbyRestaurant.OPEN_NOW_FALSE;
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    break;
+                case "photos":
+                    if (skipNull(in)) {
+                        break;
+                    }
+                    // only the reference of the first photo is kept
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        if (photoReference == null && in.peek() == JsonToken.BEGIN_OBJECT) {
+                            in.beginObject();
+                            while (in.hasNext()) {
+                                if ("photo_reference".equals(in.nextName())) {
+                                    photoReference = nextStringOrNull(in);
+                                } else {
+                                    in.skipValue();
+                                }
+                            }
+                            in.endObject();
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new NearbyRestaurant(placeId, name, latitude, longitude, rating, priceLevel, openNow, photoReference);
+    }
+
+    /**
+     * Skip a json null
+     * @return true if the value was null, and is consumed
+     */
+    private static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Read a string, or null
+     */
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextString();
+    }
+}
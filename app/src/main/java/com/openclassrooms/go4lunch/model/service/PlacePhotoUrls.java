@@ -0,0 +1,78 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Photo;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+
+import java.util.List;
+
+/**
+ * Place Photos utility class : turn a photo reference into a sized image request.
+ *
+ * The requested widths are clamped to a small set of buckets, so that the same photo shown at close sizes
+ * (list thumbnail, map info window, details header on different screens) shares one cache entry,
+ * and a prefetched thumbnail is the one the list shows. The cache keys leave out the API key.
+ */
+public final class PlacePhotoUrls {
+
+    /** Widths of the requested photos, in pixels, the Places API serves at most 1600 */
+    public static final int[] WIDTH_BUCKETS = {100, 200, 400, 800, 1600};
+
+    /** Prefix of the cache keys of the photos */
+    public static final String PHOTO_KEY_PREFIX = "photo/";
+
+    /** Utility class, no instance */
+    private PlacePhotoUrls() {
+    }
+
+    /**
+     * Get the bucket of a requested width : the smallest bucket at least as wide as the view,
+     * but not wider than needed by the original photo
+     * @param requestedWidth the width of the view, in pixels
+     * @param photoWidth the width of the original photo, in pixels, or 0 if unknown
+     * @return the width to request, one of WIDTH_BUCKETS
+     */
+    public static int bucketFor(int requestedWidth, int photoWidth) {
+        int width = photoWidth > 0 ? Math.min(requestedWidth, photoWidth) : requestedWidth;
+        for (int bucket : WIDTH_BUCKETS) {
+            if (bucket >= width) {
+                return bucket;
+            }
+        }
+        return WIDTH_BUCKETS[WIDTH_BUCKETS.length - 1];
+    }
+
+    /**
+     * Build the url of a photo
+     * @param url the prefix url of the Google Maps API (https://maps.googleapis.com/maps/api/place/)
+     * @param photoReference the photo reference
+     * @param bucket the width to request, see bucketFor
+     * @param key the API key of the Google Maps API
+     * @return the url of the photo
+     */
+    public static String url(String url, String photoReference, int bucket, String key) {
+        return url + "photo?maxwidth=" + bucket + "&photo_reference=" + photoReference + "&key=" + key;
+    }
+
+    /**
+     * Build the cache key of a photo, shared by every request of the same bucket
+     * @param photoReference the photo reference
+     * @param bucket the requested width, see bucketFor
+     * @return the cache key
+     */
+    public static String cacheKey(String photoReference, int bucket) {
+        return PHOTO_KEY_PREFIX + bucket + "/" + photoReference;
+    }
+
+    /**
+     * Get the photo shown for a place, the first one returned by the API
+     * @param result the place
+     * @return the photo, or null if the place has no photo
+     */
+    public static Photo photoOf(Result result) {
+        List<Photo> photos = result.getPhotos();
+        if (photos == null || photos.isEmpty() || photos.get(0).getPhotoReference() == null) {
+            return null;
+        }
+        return photos.get(0);
+    }
+}
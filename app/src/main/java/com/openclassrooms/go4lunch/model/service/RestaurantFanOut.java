@@ -0,0 +1,216 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Fan-out of nearby searches over several locations and types.
+ *
+ * Every (location, type) pair is a branch. At most maxParallel branches run at the same time,
+ * the next one starts as soon as one finishes. The results are merged by place id, keeping the
+ * richest copy of each place, and the merged set is handed out after every branch.
+ */
+public class RestaurantFanOut {
+
+    /**
+     * Default number of branches running at the same time
+     */
+    public static final int DEFAULT_MAX_PARALLEL = 4;
+
+    /**
+     * Maps API statuses of a successful branch
+     */
+    private static final String STATUS_OK = "OK";
+    private static final String STATUS_ZERO_RESULTS = "ZERO_RESULTS";
+
+    /**
+     * Creates the call of a branch
+     */
+    public interface BranchCallFactory {
+        Call<ListRestaurant> newCall(String location, String type);
+    }
+
+    /**
+     * Receives the merged places
+     */
+    public interface MergeListener {
+        /**
+         * Called after each branch, successful or not
+         * @param merged the places merged so far, a copy owned by the listener
+         * @param finished the number of finished branches
+         * @param total the number of branches
+         * @param failed the number of failed branches so far
+         */
+        void onMerged(List<Result> merged, int finished, int total, int failed);
+    }
+
+    /** The call factory of the branches */
+    private final BranchCallFactory callFactory;
+
+    /** The maximum number of branches running at the same time */
+    private final int maxParallel;
+
+    /** The branches not started yet : location, type */
+    private final Queue<String[]> pending = new ArrayDeque<>();
+
+    /** The merged places, by place id, in order of arrival */
+    private final Map<String, Result> merged = new LinkedHashMap<>();
+
+    /** The receiver of the merged places */
+    private final MergeListener listener;
+
+    /** The branch counters */
+    private final int total;
+    private int finished;
+    private int failed;
+
+    /** The calls started, to cancel them */
+    private final List<Call<ListRestaurant>> calls = new ArrayList<>();
+    private boolean canceled;
+
+    /**
+     * Constructor
+     * @param locations the locations to search around (latitude,longitude)
+     * @param types the types to search
+     * @param maxParallel the maximum number of branches running at the same time
+     * @param callFactory the call factory of the branches
+     * @param listener the receiver of the merged places
+     */
+    public RestaurantFanOut(List<String> locations, List<String> types, int maxParallel,
+                            BranchCallFactory callFactory, MergeListener listener) {
+        for (String location : locations) {
+            for (String type : types) {
+                pending.add(new String[]{location, type});
+            }
+        }
+        this.total = pending.size();
+        this.maxParallel = Math.max(1, maxParallel);
+        this.callFactory = callFactory;
+        this.listener = listener;
+    }
+
+    /**
+     * Start the first branches, or hand out the empty result at once when there is no branch
+     */
+    public void start() {
+        if (total == 0) {
+            listener.onMerged(new ArrayList<>(), 0, 0, 0);
+            return;
+        }
+        for (int i = 0; i < maxParallel; i++) {
+            startNext();
+        }
+    }
+
+    /**
+     * Cancel the running branches, and do not start the pending ones
+     */
+    public void cancel() {
+        List<Call<ListRestaurant>> running;
+        synchronized (this) {
+            canceled = true;
+            pending.clear();
+            running = new ArrayList<>(calls);
+        }
+        for (Call<ListRestaurant> call : running) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * Start the next pending branch, if any
+     */
+    private void startNext() {
+        String[] branch;
+        Call<ListRestaurant> call;
+        synchronized (this) {
+            branch = pending.poll();
+            if (branch == null || canceled) {
+                return;
+            }
+            call = callFactory.newCall(branch[0], branch[1]);
+            calls.add(call);
+        }
+        call.enqueue(new Callback<ListRestaurant>() {
+            @Override
+            public void onResponse(Call<ListRestaurant> call, Response<ListRestaurant> response) {
+                ListRestaurant body = response.body();
+                boolean ok = response.isSuccessful() && body != null && (STATUS_OK.equals(body.getStatus()) || STATUS_ZERO_RESULTS.equals(body.getStatus()));
+                finish(call, ok ? body.getResults() : null);
+            }
+
+            @Override
+            public void onFailure(Call<ListRestaurant> call, Throwable t) {
+                finish(call, null);
+            }
+        });
+    }
+
+    /**
+     * Merge the places of a finished branch, hand out the merged set, then start the next branch
+     * @param results the places of the branch, null if it failed
+     */
+    private void finish(Call<ListRestaurant> call, List<Result> results) {
+        synchronized (this) {
+            calls.remove(call);
+            if (canceled) {
+                return;
+            }
+            finished++;
+            if (results == null) {
+                failed++;
+            } else {
+                for (Result result : results) {
+                    merge(result);
+                }
+            }
+            // handed out under the lock, so the listener never sees an older set after a newer one
+            listener.onMerged(new ArrayList<>(merged.values()), finished, total, failed);
+        }
+        startNext();
+    }
+
+    /**
+     * Merge a place, keeping the richest copy
+     */
+    private void merge(Result result) {
+        if (result.getPlaceId() == null) {
+            return;
+        }
+        Result known = merged.get(result.getPlaceId());
+        if (known == null || richness(result) > richness(known)) {
+            merged.put(result.getPlaceId(), result);
+        }
+    }
+
+    /**
+     * Score how complete a place is : one point per filled field, plus one per photo
+     * @param result the place
+     * @return the richness of the place
+     */
+    static int richness(Result result) {
+        int score = 0;
+        if (result.getName() != null) score++;
+        if (result.getGeometry() != null && result.getGeometry().getLocation() != null) score++;
+        if (result.getRating() != null) score++;
+        if (result.getUserRatingsTotal() != null) score++;
+        if (result.getPriceLevel() != null) score++;
+        if (result.getOpeningHours() != null) score++;
+        if (result.getVicinity() != null) score++;
+        if (result.getBusinessStatus() != null) score++;
+        if (result.getTypes() != null) score += result.getTypes().isEmpty() ? 0 : 1;
+        if (result.getPhotos() != null) score += result.getPhotos().size();
+        return score;
+    }
+}
@@ -0,0 +1,220 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Walk through the pages of a nearby search, following the next_page_token of each page.
+ *
+ * Each page is handed to the listener as soon as it arrives. A next page token only becomes valid
+ * a short time after it is issued : the next page is requested after a delay, and requested again
+ * while the API answers INVALID_REQUEST. Any other status than OK or ZERO_RESULTS fails the search.
+ */
+public class RestaurantPager {
+
+    /**
+     * Maximum number of pages served by the Maps API for a nearby search
+     */
+    public static final int MAX_PAGES = 3;
+
+    /**
+     * Default delay before a next page token is used
+     */
+    public static final long DEFAULT_TOKEN_DELAY_MS = 2_000;
+
+    /**
+     * Default number of retries while a next page token is not valid yet
+     */
+    public static final int DEFAULT_TOKEN_RETRIES = 3;
+
+    /**
+     * Maps API status of a next page token not valid yet
+     */
+    private static final String STATUS_INVALID_REQUEST = "INVALID_REQUEST";
+
+    /**
+     * Maps API statuses of a successful page
+     */
+    private static final String STATUS_OK = "OK";
+    private static final String STATUS_ZERO_RESULTS = "ZERO_RESULTS";
+
+    /**
+     * Listener of the pages of a search
+     */
+    public interface PageListener {
+
+        /**
+         * A page arrived
+         * @param page the page
+         * @param pageIndex the index of the page, starting at 0
+         * @param last true if no other page will follow
+         */
+        void onPage(ListRestaurant page, int pageIndex, boolean last);
+
+        /**
+         * The search failed, no other page will follow
+         * @param t the error
+         */
+        void onFailure(Throwable t);
+    }
+
+    /**
+     * Factory of the call of a next page
+     */
+    public interface NextPageCallFactory {
+        Call<ListRestaurant> create(String pageToken);
+    }
+
+    /**
+     * Scheduler of the delayed next page requests
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Delay before a next page token is used, in milliseconds
+     */
+    private final long tokenDelayMs;
+
+    /**
+     * Number of retries while a next page token is not valid yet
+     */
+    private final int tokenRetries;
+
+    /**
+     * Constructor with the default configuration
+     */
+    public RestaurantPager() {
+        this(Executors.newSingleThreadScheduledExecutor(), DEFAULT_TOKEN_DELAY_MS, DEFAULT_TOKEN_RETRIES);
+    }
+
+    /**
+     * Constructor
+     * @param scheduler the scheduler of the delayed next page requests
+     * @param tokenDelayMs the delay before a next page token is used, in milliseconds
+     * @param tokenRetries the number of retries while a next page token is not valid yet
+     */
+    public RestaurantPager(ScheduledExecutorService scheduler, long tokenDelayMs, int tokenRetries) {
+        this.scheduler = scheduler;
+        this.tokenDelayMs = tokenDelayMs;
+        this.tokenRetries = tokenRetries;
+    }
+
+    /**
+     * Start walking through the pages of a search
+     * @param firstPage the call of the first page
+     * @param nextPageCallFactory the factory of the next page calls
+     * @param maxPages the maximum number of pages to fetch
+     * @param listener the listener of the pages
+     * @return the paging, to cancel it
+     */
+    public Paging start(Call<ListRestaurant> firstPage, NextPageCallFactory nextPageCallFactory, int maxPages, PageListener listener) {
+        Paging paging = new Paging(nextPageCallFactory, Math.max(1, Math.min(maxPages, MAX_PAGES)), listener);
+        paging.request(firstPage, 0, 0);
+        return paging;
+    }
+
+    /**
+     * A running walk through the pages of a search
+     */
+    public class Paging {
+
+        /** The factory of the next page calls */
+        private final NextPageCallFactory nextPageCallFactory;
+
+        /** The maximum number of pages */
+        private final int maxPages;
+
+        /** The listener of the pages */
+        private final PageListener listener;
+
+        /** The call running */
+        private volatile Call<ListRestaurant> current;
+
+        /** Cancellation status */
+        private volatile boolean canceled;
+
+        private Paging(NextPageCallFactory nextPageCallFactory, int maxPages, PageListener listener) {
+            this.nextPageCallFactory = nextPageCallFactory;
+            this.maxPages = maxPages;
+            this.listener = listener;
+        }
+
+        /**
+         * Request a page
+         * @param call the call of the page
+         * @param pageIndex the index of the page
+         * @param attempt the attempt number, for a next page token not valid yet
+         */
+        private void request(Call<ListRestaurant> call, int pageIndex, int attempt) {
+            if (canceled) {
+                return;
+            }
+            current = call;
+            call.enqueue(new Callback<ListRestaurant>() {
+                @Override
+                public void onResponse(Call<ListRestaurant> call, Response<ListRestaurant> response) {
+                    onPageResponse(call, response, pageIndex, attempt);
+                }
+
+                @Override
+                public void onFailure(Call<ListRestaurant> call, Throwable t) {
+                    if (!canceled) {
+                        listener.onFailure(t);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Handle the response of a page, and schedule the next one
+         */
+        private void onPageResponse(Call<ListRestaurant> call, Response<ListRestaurant> response, int pageIndex, int attempt) {
+            if (canceled) {
+                return;
+            }
+            ListRestaurant page = response.body();
+            if (!response.isSuccessful() || page == null) {
+                listener.onFailure(new IOException("Nearby search page " + pageIndex + " failed with HTTP " + response.code()));
+                return;
+            }
+
+            // the token of this page was not valid yet, ask again a bit later
+            if (pageIndex > 0 && STATUS_INVALID_REQUEST.equals(page.getStatus()) && attempt < tokenRetries) {
+                scheduler.schedule(() -> request(call.clone(), pageIndex, attempt + 1), tokenDelayMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            // OVER_QUERY_LIMIT, REQUEST_DENIED and the like come with HTTP 200, they are failures too
+            if (!STATUS_OK.equals(page.getStatus()) && !STATUS_ZERO_RESULTS.equals(page.getStatus())) {
+                listener.onFailure(new IOException("Nearby search page " + pageIndex + " failed with status " + page.getStatus()));
+                return;
+            }
+
+            String token = page.getNextPageToken();
+            boolean last = token == null || token.isEmpty() || pageIndex + 1 >= maxPages;
+            listener.onPage(page, pageIndex, last);
+            if (!last) {
+                scheduler.schedule(() -> request(nextPageCallFactory.create(token), pageIndex + 1, 0), tokenDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Stop walking through the pages, no page will be delivered anymore
+         */
+        public void cancel() {
+            canceled = true;
+            Call<ListRestaurant> call = current;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+    }
+}
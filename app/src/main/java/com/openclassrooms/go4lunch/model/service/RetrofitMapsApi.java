@@ -1,6 +1,8 @@
 package com.openclassrooms.go4lunch.model.service;
 
+import com.openclassrooms.go4lunch.model.bo.NearbySearchPage;
 import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.PlaceDetails;
 
 import retrofit2.Call;
 import retrofit2.http.GET;
@@ -25,4 +27,35 @@ public interface RetrofitMapsApi
         @Query("key") String KeyMap
     );
 
+    /** API Call to the Google Maps API Near By Search, projected into compact restaurant records */
+    @GET("nearbysearch/json")
+    Call<NearbySearchPage> getNearbyRestaurants(
+        // latitude and longitude
+        @Query("location") String Location,
+        // radius in meters
+        @Query("radius") int  radius,
+        // type of place (restaurant)
+        @Query("type") String Type,
+        // API key
+        @Query("key") String KeyMap
+    );
+
+    /** API Call to the Google Maps API Near By Search, next page of a previous search */
+    @GET("nearbysearch/json")
+    Call<ListRestaurant> getNextRestaurantPage(
+        // token of the next page, returned by the previous page
+        @Query("pagetoken") String pageToken,
+        // API key
+        @Query("key") String KeyMap
+    );
+
+    /** API Call to the Google Maps API Place Details, restricted to the fields nearby search does not return */
+    @GET("details/json?fields=place_id,formatted_phone_number,international_phone_number,website,opening_hours")
+    Call<PlaceDetails> getPlaceDetails(
+        // id of the place
+        @Query("place_id") String placeId,
+        // API key
+        @Query("key") String KeyMap
+    );
+
 }
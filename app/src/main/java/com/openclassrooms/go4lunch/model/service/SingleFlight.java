@@ -0,0 +1,300 @@
+package com.openclassrooms.go4lunch.model.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Coalesce identical in-flight requests : while a request is running for a given key, every other
+ * identical request waits for it instead of reaching the network, and gets the same response or error.
+ * @param <T> the type of the body
+ */
+public class SingleFlight<T> {
+
+    /**
+     * The running requests, by key
+     */
+    private final Map<String, Flight> flights = new HashMap<>();
+
+    /**
+     * Number of requests that actually reached the network
+     */
+    private final AtomicLong flightCount = new AtomicLong();
+
+    /**
+     * Number of duplicate requests absorbed by a running one
+     */
+    private final AtomicLong absorbedCount = new AtomicLong();
+
+    /**
+     * Wrap a call, so it joins the running request of the same key, if any
+     * @param key the key identifying identical requests
+     * @param call the call to run if no identical request is running
+     * @return the coalesced call
+     */
+    public Call<T> newCall(String key, Call<T> call) {
+        return new CoalescedCall(key, call);
+    }
+
+    /** Getters */
+    public long getFlightCount() {
+        return flightCount.get();
+    }
+
+    public long getAbsorbedCount() {
+        return absorbedCount.get();
+    }
+
+    /**
+     * Join the running request of a key, or start it
+     * @return the flight to start, or null if an identical request is already running
+     */
+    private Flight join(String key, Call<T> call, Waiter waiter) {
+        synchronized (flights) {
+            Flight flight = flights.get(key);
+            if (flight != null) {
+                flight.waiters.add(waiter);
+                absorbedCount.incrementAndGet();
+                return null;
+            }
+            flight = new Flight(key, call);
+            flight.waiters.add(waiter);
+            flights.put(key, flight);
+            flightCount.incrementAndGet();
+            return flight;
+        }
+    }
+
+    /**
+     * Complete a flight, fanning the response or the error out to every waiter
+     */
+    private void complete(Flight flight, Response<T> response, Throwable error) {
+        List<Waiter> waiters;
+        synchronized (flights) {
+            if (flights.get(flight.key) == flight) {
+                flights.remove(flight.key);
+            }
+            waiters = new ArrayList<>(flight.waiters);
+            flight.waiters.clear();
+        }
+        for (Waiter waiter : waiters) {
+            if (error == null) {
+                waiter.onResponse(response);
+            } else {
+                waiter.onFailure(error);
+            }
+        }
+    }
+
+    /**
+     * Leave a flight, the underlying request is canceled when nobody waits for it anymore
+     * @return true if the waiter was still waiting
+     */
+    private boolean leave(String key, Waiter waiter) {
+        boolean removed = false;
+        Flight canceled = null;
+        synchronized (flights) {
+            Flight flight = flights.get(key);
+            if (flight != null && flight.waiters.remove(waiter)) {
+                removed = true;
+                if (flight.waiters.isEmpty()) {
+                    flights.remove(key);
+                    canceled = flight;
+                }
+            }
+        }
+        if (canceled != null) {
+            canceled.call.cancel();
+        }
+        return removed;
+    }
+
+    /**
+     * A running request and its waiters
+     */
+    private class Flight {
+        private final String key;
+        private final Call<T> call;
+        private final List<Waiter> waiters = new ArrayList<>();
+
+        private Flight(String key, Call<T> call) {
+            this.key = key;
+            this.call = call;
+        }
+
+        /** Run the request asynchronously */
+        private void enqueue() {
+            call.enqueue(new Callback<T>() {
+                @Override
+                public void onResponse(Call<T> call, Response<T> response) {
+                    complete(Flight.this, response, null);
+                }
+
+                @Override
+                public void onFailure(Call<T> call, Throwable t) {
+                    complete(Flight.this, null, t);
+                }
+            });
+        }
+
+        /** Run the request on the caller thread */
+        private void execute() {
+            Response<T> response;
+            try {
+                response = call.execute();
+            } catch (IOException | RuntimeException e) {
+                complete(this, null, e);
+                return;
+            }
+            complete(this, response, null);
+        }
+    }
+
+    /**
+     * Someone waiting for a flight to complete
+     */
+    private interface Waiter {
+        void onResponse(Response<?> response);
+
+        void onFailure(Throwable t);
+    }
+
+    /**
+     * The call handed to the callers, joining the running request of its key
+     */
+    private class CoalescedCall implements Call<T> {
+
+        /** The key identifying identical requests */
+        private final String key;
+
+        /** The call to run if no identical request is running */
+        private final Call<T> call;
+
+        /** The waiter of this call, once executed */
+        private volatile Waiter waiter;
+
+        /** Cancellation status */
+        private volatile boolean canceled;
+
+        private CoalescedCall(String key, Call<T> call) {
+            this.key = key;
+            this.call = call;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Response<T> execute() throws IOException {
+            CountDownLatch latch = new CountDownLatch(1);
+            Object[] outcome = new Object[2];
+            Waiter syncWaiter = new Waiter() {
+                @Override
+                public void onResponse(Response<?> response) {
+                    outcome[0] = response;
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    outcome[1] = t;
+                    latch.countDown();
+                }
+            };
+            Flight flight = start(syncWaiter);
+            if (flight != null) {
+                flight.execute();
+            }
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                leave(key, syncWaiter);
+                throw new InterruptedIOException("Interrupted while waiting for " + key);
+            }
+            if (outcome[1] instanceof IOException) {
+                throw (IOException) outcome[1];
+            }
+            if (outcome[1] instanceof RuntimeException) {
+                throw (RuntimeException) outcome[1];
+            }
+            if (outcome[1] != null) {
+                throw new IOException((Throwable) outcome[1]);
+            }
+            return (Response<T>) outcome[0];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void enqueue(Callback<T> callback) {
+            Flight flight = start(new Waiter() {
+                @Override
+                public void onResponse(Response<?> response) {
+                    callback.onResponse(CoalescedCall.this, (Response<T>) response);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    callback.onFailure(CoalescedCall.this, t);
+                }
+            });
+            if (flight != null) {
+                flight.enqueue();
+            }
+        }
+
+        /**
+         * Register the waiter of this call
+         * @return the flight to run, or null if this call joined a running one
+         */
+        private synchronized Flight start(Waiter waiter) {
+            if (this.waiter != null) {
+                throw new IllegalStateException("Already executed.");
+            }
+            this.waiter = waiter;
+            if (canceled) {
+                waiter.onFailure(new IOException("Canceled"));
+                return null;
+            }
+            return join(key, call, waiter);
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return waiter != null;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            Waiter current = waiter;
+            if (current != null && leave(key, current)) {
+                current.onFailure(new IOException("Canceled"));
+            }
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<T> clone() {
+            return new CoalescedCall(key, call.clone());
+        }
+
+        @Override
+        public Request request() {
+            return call.request();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import com.openclassrooms.go4lunch.model.util.DistanceKernel;
+
+import java.util.Arrays;
+
+/**
+ * Cached column of the distances from the user to the rows of a store.
+ *
+ * The column is recomputed only when the user moves past a threshold : below it, the distances shown
+ * are at most that far off, and GPS jitter does not recompute thousands of rows at each fix.
+ * Rows appended since the last computation are computed alone, rows updated in place are invalidated one by one.
+ *
+ * Not thread safe, confined to the thread of its store.
+ */
+public class DistanceColumn {
+
+    /** Default smallest move recomputing the column, in meters */
+    public static final double DEFAULT_MIN_MOVE_METERS = 10;
+
+    /** The smallest move recomputing the column, in meters */
+    private final double minMoveMeters;
+
+    /** The distances, by row */
+    private float[] distances = new float[64];
+
+    /** The position the column was computed for, NaN until the first computation */
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+
+    /** The number of rows computed */
+    private int computed;
+
+    /** The rows updated in place since the last computation */
+    private int[] dirtyRows = new int[8];
+    private int dirtyCount;
+
+    /** The number of full computations, for the benchmarks */
+    private long recomputeCount;
+
+    /**
+     * Constructor with the default threshold
+     */
+    public DistanceColumn() {
+        this(DEFAULT_MIN_MOVE_METERS);
+    }
+
+    /**
+     * Constructor
+     * @param minMoveMeters the smallest move recomputing the column, in meters
+     */
+    public DistanceColumn(double minMoveMeters) {
+        this.minMoveMeters = minMoveMeters;
+    }
+
+    /**
+     * Bring the column up to date for a position
+     * @param latitude the latitude of the user
+     * @param longitude the longitude of the user
+     * @param latitudes the latitudes of the rows
+     * @param longitudes the longitudes of the rows
+     * @param count the number of rows
+     * @return the distances in meters, by row, valid up to count, owned by the column
+     */
+    public float[] update(double latitude, double longitude, double[] latitudes, double[] longitudes, int count) {
+        if (distances.length < count) {
+            distances = Arrays.copyOf(distances, Math.max(count, distances.length * 2));
+        }
+        if (computed > count) {
+            // the store was cleared
+            computed = 0;
+            dirtyCount = 0;
+        }
+        if (Double.isNaN(this.latitude)
+            || DistanceKernel.distance(this.latitude, this.longitude, latitude, longitude) >= minMoveMeters) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            computed = 0;
+            dirtyCount = 0;
+            recomputeCount++;
+        }
+        // the distances stay relative to the position of the last computation
+        for (int i = 0; i < dirtyCount; i++) {
+            int row = dirtyRows[i];
+            if (row < computed) {
+                DistanceKernel.distancesTo(this.latitude, this.longitude, latitudes, longitudes, row, row + 1, distances);
+            }
+        }
+        dirtyCount = 0;
+        if (computed < count) {
+            DistanceKernel.distancesTo(this.latitude, this.longitude, latitudes, longitudes, computed, count, distances);
+            computed = count;
+        }
+        return distances;
+    }
+
+    /**
+     * Invalidate a row whose coordinates changed
+     * @param row the row
+     */
+    public void invalidate(int row) {
+        if (row >= computed) {
+            return;
+        }
+        if (dirtyCount == dirtyRows.length) {
+            dirtyRows = Arrays.copyOf(dirtyRows, dirtyRows.length * 2);
+        }
+        dirtyRows[dirtyCount++] = row;
+    }
+
+    /**
+     * Invalidate every row
+     */
+    public void clear() {
+        computed = 0;
+        dirtyCount = 0;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+    }
+
+    /** Getters */
+    public long getRecomputeCount() {
+        return recomputeCount;
+    }
+
+    public long estimateBytes() {
+        return 16 + 4L * distances.length + 16 + 4L * dirtyRows.length;
+    }
+}
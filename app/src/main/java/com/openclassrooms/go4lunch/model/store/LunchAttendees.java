@@ -0,0 +1,88 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import com.openclassrooms.go4lunch.model.bo.Lunch;
+import com.openclassrooms.go4lunch.model.bo.Restaurant;
+import com.openclassrooms.go4lunch.model.bo.Workmate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lunch attendees utility class : the attendees of a page of restaurants are looked up with a few
+ * whereIn queries on the restaurant ids, instead of one query per restaurant.
+ */
+public final class LunchAttendees {
+
+    /** Maximum number of values of a whereIn query in Firestore */
+    public static final int MAX_IN_VALUES = 10;
+
+    /** Utility class, no instance */
+    private LunchAttendees() {
+    }
+
+    /**
+     * Split the ids of a page of restaurants into the values of whereIn queries
+     * @param restaurants the restaurants of the page
+     * @param chunkSize the maximum number of ids of a query, see MAX_IN_VALUES
+     * @return the ids, without duplicates nor restaurants without id, in page order
+     */
+    public static List<List<String>> restaurantIdChunks(List<Restaurant> restaurants, int chunkSize) {
+        List<String> ids = new ArrayList<>(restaurantIdsOf(restaurants));
+        List<List<String>> chunks = new ArrayList<>((ids.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(new ArrayList<>(ids.subList(from, Math.min(ids.size(), from + chunkSize))));
+        }
+        return chunks;
+    }
+
+    /**
+     * Group lunches by restaurant, for the restaurants of a page
+     * @param restaurants the restaurants of the page
+     * @param lunches the lunches returned by the queries
+     * @return the attendees by restaurant id, in page order, an empty list for a restaurant without attendee
+     */
+    public static Map<String, ArrayList<Workmate>> group(List<Restaurant> restaurants, Iterable<Lunch> lunches) {
+        Map<String, ArrayList<Workmate>> attendees = new LinkedHashMap<>();
+        for (String id : restaurantIdsOf(restaurants)) {
+            attendees.put(id, new ArrayList<>(0));
+        }
+        for (Lunch lunch : lunches) {
+            Restaurant restaurant = lunch.getChosenRestaurant();
+            ArrayList<Workmate> workmates = restaurant == null ? null : attendees.get(restaurant.getId());
+            if (workmates != null) {
+                workmates.add(lunch.getWorkmate());
+            }
+        }
+        return attendees;
+    }
+
+    /**
+     * Get the attendees of a page of restaurants from the index of today's lunches, without any query
+     * @param restaurants the restaurants of the page
+     * @param index the index of today's lunches
+     * @return the attendees by restaurant id, in page order, an empty list for a restaurant without attendee
+     */
+    public static Map<String, ArrayList<Workmate>> fromIndex(List<Restaurant> restaurants, TodayLunchIndex index) {
+        Map<String, ArrayList<Workmate>> attendees = new LinkedHashMap<>();
+        for (Restaurant restaurant : restaurants) {
+            if (restaurant.getId() != null && !attendees.containsKey(restaurant.getId())) {
+                attendees.put(restaurant.getId(), index.getWorkmatesAt(restaurant));
+            }
+        }
+        return attendees;
+    }
+
+    private static Set<String> restaurantIdsOf(List<Restaurant> restaurants) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Restaurant restaurant : restaurants) {
+            if (restaurant.getId() != null) {
+                ids.add(restaurant.getId());
+            }
+        }
+        return ids;
+    }
+}
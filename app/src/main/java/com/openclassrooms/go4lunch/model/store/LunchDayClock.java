@@ -0,0 +1,96 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import androidx.annotation.Nullable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Key of the current lunch day, in the local time zone of the workmates (yyyy-MM-dd), thread safe.
+ *
+ * The key is computed once a day : it is cached with the instant of the next local midnight,
+ * and only recomputed once that instant is passed, whether or not the rollover scheduled by its user ran
+ * (a delayed task does not count the time the device sleeps).
+ */
+public class LunchDayClock {
+
+    /** The time zone of the days, null for the default time zone of the device, read at each rollover */
+    @Nullable
+    private final ZoneId zone;
+
+    /** The key of the current day, null before the first call */
+    @Nullable
+    private String dayKey;
+
+    /** The next local midnight, in milliseconds since the epoch */
+    private long nextRollover;
+
+    /**
+     * Constructor, in the default time zone of the device
+     */
+    public LunchDayClock() {
+        this(null);
+    }
+
+    /**
+     * Constructor
+     * @param zone the time zone of the days, null for the default time zone of the device
+     */
+    public LunchDayClock(@Nullable ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Get the key of the current day
+     * @return the local date, as yyyy-MM-dd
+     */
+    public synchronized String getDayKey() {
+        long now = now();
+        if (dayKey == null || now >= nextRollover) {
+            ZoneId dayZone = zone != null ? zone : ZoneId.systemDefault();
+            LocalDate day = Instant.ofEpochMilli(now).atZone(dayZone).toLocalDate();
+            dayKey = day.toString();
+            // the start of the next day, not 24 hours later : days are 23 or 25 hours long at DST changes
+            nextRollover = day.plusDays(1).atStartOfDay(dayZone).toInstant().toEpochMilli();
+        }
+        return dayKey;
+    }
+
+    /**
+     * Get the delay until the next day
+     * @return the delay, in milliseconds
+     */
+    public synchronized long getMillisUntilRollover() {
+        getDayKey();
+        return Math.max(0, nextRollover - now());
+    }
+
+    /**
+     * Get the key of the current day as written before the partition by day : the UTC day, as an instant
+     * @return the start of the UTC day, as yyyy-MM-ddT00:00:00Z
+     */
+    public String getLegacyDayKey() {
+        return Instant.ofEpochMilli(now()).truncatedTo(ChronoUnit.DAYS).toString();
+    }
+
+    /**
+     * Get the legacy key of a local day, while the current UTC day is that day : east of UTC the UTC day is still
+     * the previous one after the local midnight, west of it the UTC day is already the next one before
+     * @param day the key of the local day, as yyyy-MM-dd
+     * @return the legacy key, null while the current UTC day is another day
+     */
+    @Nullable
+    public String getLegacyDayKey(String day) {
+        String legacyDayKey = getLegacyDayKey();
+        return legacyDayKey.startsWith(day) ? legacyDayKey : null;
+    }
+
+    /**
+     * Current time, in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+}
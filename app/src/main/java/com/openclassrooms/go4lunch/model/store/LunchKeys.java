@@ -0,0 +1,28 @@
+package com.openclassrooms.go4lunch.model.store;
+
+/**
+ * Lunch keys utility class : the id of a lunch document is derived from its day and its workmate.
+ *
+ * A workmate has at most one lunch a day : choosing a restaurant writes the document of that key, replacing
+ * any previous choice of the day, and cancelling deletes it, both without reading anything first.
+ */
+public final class LunchKeys {
+
+    /** Separator between the day and the workmate id, never part of a day key */
+    private static final char SEPARATOR = '_';
+
+    /** Utility class, no instance */
+    private LunchKeys() {
+    }
+
+    /**
+     * Get the id of the lunch document of a workmate on a day
+     * @param day the day of the lunch, as stored in the lunch
+     * @param workmateId the workmate id
+     * @return the document id
+     */
+    public static String documentId(String day, String workmateId) {
+        // a document id cannot contain a slash
+        return (day + SEPARATOR + workmateId).replace('/', SEPARATOR);
+    }
+}
@@ -0,0 +1,128 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import androidx.annotation.Nullable;
+
+import com.openclassrooms.go4lunch.model.bo.Lunch;
+import com.openclassrooms.go4lunch.model.bo.Restaurant;
+import com.openclassrooms.go4lunch.model.bo.Workmate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lunch writes utility class : the writes of choosing and of cancelling a restaurant, with the lunch keys.
+ *
+ * Choosing writes the lunch of the day under its key, replacing any previous choice, without any read.
+ * Cancelling with the index of today's lunches is checked locally and deletes without any read, without
+ * the index it reads the lunch document only, and deletes it if it is at the restaurant.
+ * The lunches of the day written under a random id before the keys, when known by the index, are deleted too.
+ *
+ * The plans are committed by LunchRepository, as one batch or as one transaction when they read first.
+ */
+public final class LunchWrites {
+
+    /** Utility class, no instance */
+    private LunchWrites() {
+    }
+
+    /**
+     * Plan the choice of a restaurant
+     * @param day the key of the day
+     * @param restaurant the chosen restaurant
+     * @param workmate the workmate
+     * @param index the index of the day's lunches, or null when it does not hold them
+     * @return the writes, one batch
+     */
+    public static Plan choose(String day, Restaurant restaurant, Workmate workmate, @Nullable TodayLunchIndex index) {
+        String documentId = LunchKeys.documentId(day, workmate.getIdWorkmate());
+        return new Plan(documentId, new Lunch(day, restaurant, workmate),
+            otherLunches(index, workmate.getIdWorkmate(), documentId), false);
+    }
+
+    /**
+     * Plan the cancellation of a restaurant
+     * @param day the key of the day
+     * @param restaurant the restaurant to cancel
+     * @param workmateId the workmate id
+     * @param index the index of the day's lunches, or null when it does not hold them
+     * @return the writes, empty if the workmate did not choose the restaurant, read first without the index
+     */
+    public static Plan cancel(String day, Restaurant restaurant, String workmateId, @Nullable TodayLunchIndex index) {
+        String documentId = LunchKeys.documentId(day, workmateId);
+        if (index == null) {
+            return new Plan(documentId, null, Collections.singletonList(documentId), true);
+        }
+        if (!index.hasChosen(workmateId, restaurant)) {
+            return new Plan(documentId, null, Collections.emptyList(), false);
+        }
+        List<String> deletions = otherLunches(index, workmateId, documentId);
+        deletions.add(0, documentId);
+        return new Plan(documentId, null, deletions, false);
+    }
+
+    /**
+     * Check if a lunch is at a restaurant, the check of a plan read first
+     * @param lunch the lunch read, or null if there is none
+     * @param restaurant the restaurant
+     * @return true if the lunch is at the restaurant
+     */
+    public static boolean isAt(@Nullable Lunch lunch, Restaurant restaurant) {
+        String restaurantKey = TodayLunchIndex.keyOf(restaurant);
+        return lunch != null && restaurantKey != null && restaurantKey.equals(TodayLunchIndex.keyOf(lunch.getChosenRestaurant()));
+    }
+
+    /**
+     * Get the lunch documents of a workmate known by the index, except one
+     */
+    private static List<String> otherLunches(@Nullable TodayLunchIndex index, String workmateId, String keptId) {
+        List<String> documentIds = new ArrayList<>(1);
+        if (index == null) {
+            return documentIds;
+        }
+        for (String documentId : index.getDocumentIdsOf(workmateId)) {
+            if (!documentId.equals(keptId)) {
+                documentIds.add(documentId);
+            }
+        }
+        return documentIds;
+    }
+
+    /**
+     * The writes of a choice or of a cancellation
+     */
+    public static class Plan {
+
+        /** The id of the lunch document of the workmate for the day */
+        private final String documentId;
+
+        /** The lunch to write under documentId, or null */
+        @Nullable
+        private final Lunch lunch;
+
+        /** The lunch documents to delete */
+        private final List<String> deletedIds;
+
+        /** True if the lunch document must be read first, the deletions only applying if it is at the restaurant */
+        private final boolean readFirst;
+
+        private Plan(String documentId, @Nullable Lunch lunch, List<String> deletedIds, boolean readFirst) {
+            this.documentId = documentId;
+            this.lunch = lunch;
+            this.deletedIds = Collections.unmodifiableList(deletedIds);
+            this.readFirst = readFirst;
+        }
+
+        /** Getters */
+        public String getDocumentId() { return documentId; }
+
+        @Nullable
+        public Lunch getLunch() { return lunch; }
+
+        public List<String> getDeletedIds() { return deletedIds; }
+
+        public boolean isReadFirst() { return readFirst; }
+
+        public boolean isEmpty() { return lunch == null && deletedIds.isEmpty(); }
+    }
+}
@@ -0,0 +1,301 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import android.util.Log;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.cache.ListRestaurantCodec;
+import com.openclassrooms.go4lunch.model.util.Geohash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent on-device database of the restaurants, for the places without network.
+ *
+ * Every nearby search response is upserted, place by place, with its coordinates, opening state and ratings.
+ * Radius and type queries are answered locally from a spatial index, shaped like a nearby search response.
+ * The number of places is capped, the places not seen for the longest time being evicted first.
+ *
+ * The database is a single file holding the places in the binary format of ListRestaurantCodec, loaded in the
+ * background at construction and rewritten in the background after the upserts : no file is read or written
+ * on the caller thread. Until the file is loaded, the queries only know the places upserted since. Thread safe.
+ */
+public class OfflineRestaurantStore {
+
+    /** The tag for the log messages */
+    private static final String TAG = OfflineRestaurantStore.class.getSimpleName();
+
+    /** Default maximum number of places */
+    public static final int DEFAULT_MAX_PLACES = 2_000;
+
+    /** Magic number at the beginning of the file */
+    private static final int MAGIC = 0x47344C44;
+
+    /** Version of the layout of the file, bumped with any change of it. The version of the codec of the places follows it */
+    private static final int VERSION = 1;
+
+    /** Maps API statuses of a search with and without results */
+    private static final String STATUS_OK = "OK";
+    private static final String STATUS_ZERO_RESULTS = "ZERO_RESULTS";
+
+    /** The database file */
+    private final File file;
+
+    /** The maximum number of places */
+    private final int maxPlaces;
+
+    /** The places and the time they were last seen in a response, by place id, least recently seen first */
+    private final LinkedHashMap<String, Place> places = new LinkedHashMap<>();
+
+    /** The spatial index of the places, updated with every upsert and eviction */
+    private final RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+
+    /** Single thread executor for the load and the writes, they never run on the caller thread */
+    private final ExecutorService ioExecutor;
+
+    /** True while a write is waiting, the upserts following it are written by it */
+    private boolean writeScheduled;
+
+    /**
+     * Constructor with the default configuration
+     * @param file the database file
+     */
+    public OfflineRestaurantStore(File file) {
+        this(file, DEFAULT_MAX_PLACES);
+    }
+
+    /**
+     * Constructor
+     * @param file the database file
+     * @param maxPlaces the maximum number of places
+     */
+    public OfflineRestaurantStore(File file, int maxPlaces) {
+        this(file, maxPlaces, Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * Constructor, loading the file on the IO executor
+     * @param file the database file
+     * @param maxPlaces the maximum number of places
+     * @param ioExecutor the single thread executor of the load and the writes
+     */
+    public OfflineRestaurantStore(File file, int maxPlaces, ExecutorService ioExecutor) {
+        this.file = file;
+        this.maxPlaces = maxPlaces;
+        this.ioExecutor = ioExecutor;
+        ioExecutor.execute(this::load);
+    }
+
+    /**
+     * Insert or update the places of a nearby search response, then write the database in the background
+     * @param listRestaurant the response
+     */
+    public synchronized void upsert(ListRestaurant listRestaurant) {
+        if (listRestaurant == null || listRestaurant.getResults() == null) {
+            return;
+        }
+        long now = now();
+        for (Result result : listRestaurant.getResults()) {
+            if (result.getPlaceId() == null || locationOf(result) == null) {
+                continue;
+            }
+            // re-inserted at the end : the most recently seen places are evicted last
+            places.remove(result.getPlaceId());
+            places.put(result.getPlaceId(), new Place(result, now));
+        }
+        index.addAll(listRestaurant);
+        evict();
+        scheduleWrite();
+    }
+
+    /**
+     * Get the places around a location, shaped like a nearby search response
+     * @param location the location to search (latitude,longitude)
+     * @param radius the radius of the search, in meters
+     * @param type the type of the search (restaurant, bar, etc.), or null for every place
+     * @return the places inside the circle, nearest first, with an OK or ZERO_RESULTS status
+     */
+    public ListRestaurant query(String location, int radius, String type) {
+        double[] latLng = Geohash.parseLocation(location);
+        List<Result> results = index.queryRadius(latLng[0], latLng[1], radius, type);
+        double cosLatitude = Math.cos(Math.toRadians(latLng[0]));
+        Collections.sort(results, (a, b) -> Double.compare(
+            squaredDistance(a, latLng, cosLatitude), squaredDistance(b, latLng, cosLatitude)));
+
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setHtmlAttributions(Collections.emptyList());
+        listRestaurant.setResults(results);
+        listRestaurant.setStatus(results.isEmpty() ? STATUS_ZERO_RESULTS : STATUS_OK);
+        return listRestaurant;
+    }
+
+    /**
+     * Get the number of places
+     * @return the number of places
+     */
+    public synchronized int size() {
+        return places.size();
+    }
+
+    /**
+     * Remove every place, and the file
+     */
+    public synchronized void clear() {
+        places.clear();
+        index.clear();
+        ioExecutor.execute(() -> {
+            if (file.exists() && !file.delete()) {
+                Log.e(TAG, "clear: unable to delete " + file);
+            }
+        });
+    }
+
+    /**
+     * Evict the least recently seen places beyond the maximum
+     */
+    private void evict() {
+        Iterator<Place> iterator = places.values().iterator();
+        while (places.size() > maxPlaces && iterator.hasNext()) {
+            index.remove(iterator.next().result.getPlaceId());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Load the file, on the IO executor, then merge it under the places upserted meanwhile
+     */
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        List<Place> stored = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != ListRestaurantCodec.VERSION) {
+                throw new IOException("Unknown database format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long seenAt = in.readLong();
+                stored.add(new Place(ListRestaurantCodec.readResult(in), seenAt));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "load: unreadable database " + file, e);
+            return;
+        }
+        synchronized (this) {
+            // the stored places were seen before the ones upserted since the start : they go first, to be evicted first
+            LinkedHashMap<String, Place> upserted = new LinkedHashMap<>(places);
+            places.clear();
+            List<Result> results = new ArrayList<>(stored.size());
+            for (Place place : stored) {
+                if (!upserted.containsKey(place.result.getPlaceId())) {
+                    places.put(place.result.getPlaceId(), place);
+                    results.add(place.result);
+                }
+            }
+            places.putAll(upserted);
+            ListRestaurant listRestaurant = new ListRestaurant();
+            listRestaurant.setResults(results);
+            index.addAll(listRestaurant);
+            evict();
+        }
+    }
+
+    /**
+     * Write the database in the background, the upserts arriving meanwhile are written by the same write
+     */
+    private void scheduleWrite() {
+        if (writeScheduled) {
+            return;
+        }
+        writeScheduled = true;
+        ioExecutor.execute(this::write);
+    }
+
+    /**
+     * Write a snapshot of the places, on the caller thread
+     */
+    void write() {
+        List<Place> snapshot;
+        synchronized (this) {
+            writeScheduled = false;
+            snapshot = new ArrayList<>(places.values());
+        }
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "write: unable to create " + directory);
+            return;
+        }
+        // write in a temporary file first, so a crash never leaves a partial database
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ListRestaurantCodec.VERSION);
+            out.writeInt(snapshot.size());
+            for (Place place : snapshot) {
+                out.writeLong(place.seenAt);
+                ListRestaurantCodec.writeResult(out, place.result);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "write: unable to write " + file, e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "write: unable to replace " + file);
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Current time, in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static double squaredDistance(Result result, double[] latLng, double cosLatitude) {
+        Location location = locationOf(result);
+        double dLat = location.getLat() - latLng[0];
+        double dLng = (location.getLng() - latLng[1]) * cosLatitude;
+        return dLat * dLat + dLng * dLng;
+    }
+
+    private static Location locationOf(Result result) {
+        if (result.getGeometry() == null || result.getGeometry().getLocation() == null) {
+            return null;
+        }
+        Location location = result.getGeometry().getLocation();
+        return location.getLat() == null || location.getLng() == null ? null : location;
+    }
+
+    /**
+     * A stored place, and the time it was last seen in a response
+     */
+    private static class Place {
+        private final Result result;
+        private final long seenAt;
+
+        private Place(Result result, long seenAt) {
+            this.result = result;
+            this.seenAt = seenAt;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import androidx.annotation.NonNull;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.util.DistanceKernel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Columnar (struct of arrays) in-memory store of the nearby restaurants.
+ *
+ * Each restaurant is a row, each attribute a primitive column : coordinates as double[], rating as float[],
+ * price level as byte[], opening state as bitsets, names and types as ids of an interned StringTable.
+ * Filtering, sorting and distance computations run over the primitive arrays, writing row numbers into
+ * buffers given by the caller, so they do not allocate.
+ *
+ * A place fetched twice (same place id) keeps its row, and is updated in place.
+ * The store is not thread safe, it must be confined to a single thread or externally synchronized.
+ */
+public class RestaurantColumnStore {
+
+    /** Rating of a place never rated */
+    public static final float NO_RATING = Float.NaN;
+
+    /** Price level of a place without any price level */
+    public static final byte NO_PRICE_LEVEL = -1;
+
+    /** Maximum number of types kept per place, the Maps API rarely returns more than 6 */
+    public static final int MAX_TYPES = 8;
+
+    /** Initial capacity, in rows */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Number of rows */
+    private int size;
+
+    /** Place ids, by row */
+    private String[] placeIds = new String[INITIAL_CAPACITY];
+
+    /** Row of each place id */
+    private final Map<String, Integer> rowByPlaceId = new HashMap<>();
+
+    /** Latitudes and longitudes, by row */
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+
+    /** Ratings, by row, NO_RATING if unknown */
+    private float[] ratings = new float[INITIAL_CAPACITY];
+
+    /** Number of user ratings, by row */
+    private int[] userRatingsTotals = new int[INITIAL_CAPACITY];
+
+    /** Price levels, by row, NO_PRICE_LEVEL if unknown */
+    private byte[] priceLevels = new byte[INITIAL_CAPACITY];
+
+    /** Open now bitset, and bitset of the rows whose opening state is known */
+    private long[] openNow = new long[INITIAL_CAPACITY / 64];
+    private long[] openKnown = new long[INITIAL_CAPACITY / 64];
+
+    /** Name ids, by row */
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+
+    /** Type ids, by row : the types of row r are typeIds[r * MAX_TYPES .. r * MAX_TYPES + typeCounts[r]] */
+    private int[] typeIds = new int[INITIAL_CAPACITY * MAX_TYPES];
+    private byte[] typeCounts = new byte[INITIAL_CAPACITY];
+
+    /** Interned names and types */
+    private final StringTable strings = new StringTable();
+
+    /** Bitsets of the filterable attributes, kept up to date by add */
+    private final RestaurantFilterIndex filterIndex = new RestaurantFilterIndex();
+
+    /** Distances of the rows to the user, see distances */
+    private final DistanceColumn distanceColumn = new DistanceColumn();
+
+    /** Buffer of the type ids of a select, the store being confined to a single thread */
+    private int[] selectTypeIds = new int[4];
+
+    /**
+     * Add or update the places of a search
+     * @param listRestaurant the result of the search
+     */
+    public void addAll(ListRestaurant listRestaurant) {
+        if (listRestaurant == null || listRestaurant.getResults() == null) {
+            return;
+        }
+        for (Result result : listRestaurant.getResults()) {
+            add(result);
+        }
+    }
+
+    /**
+     * Add or update a place, ignored without place id or location
+     * @param result the place
+     * @return the row of the place, or -1 if ignored
+     */
+    public int add(Result result) {
+        if (result.getPlaceId() == null || result.getGeometry() == null || result.getGeometry().getLocation() == null) {
+            return -1;
+        }
+        Location location = result.getGeometry().getLocation();
+        if (location.getLat() == null || location.getLng() == null) {
+            return -1;
+        }
+
+        // update in place a place already known
+        Integer existing = rowByPlaceId.get(result.getPlaceId());
+        int row;
+        if (existing != null) {
+            row = existing;
+            if (latitudes[row] != location.getLat() || longitudes[row] != location.getLng()) {
+                distanceColumn.invalidate(row);
+            }
+        } else {
+            ensureCapacity(size + 1);
+            row = size++;
+            placeIds[row] = result.getPlaceId();
+            rowByPlaceId.put(result.getPlaceId(), row);
+        }
+
+        latitudes[row] = location.getLat();
+        longitudes[row] = location.getLng();
+        ratings[row] = result.getRating() == null ? NO_RATING : result.getRating().floatValue();
+        userRatingsTotals[row] = result.getUserRatingsTotal() == null ? 0 : result.getUserRatingsTotal();
+        priceLevels[row] = result.getPriceLevel() == null ? NO_PRICE_LEVEL : result.getPriceLevel().byteValue();
+        nameIds[row] = strings.intern(result.getName());
+
+        Boolean open = result.getOpeningHours() == null ? null : result.getOpeningHours().getOpenNow();
+        setBit(openKnown, row, open != null);
+        setBit(openNow, row, open != null && open);
+
+        List<String> types = result.getTypes();
+        int typeCount = types == null ? 0 : Math.min(types.size(), MAX_TYPES);
+        for (int i = 0; i < typeCount; i++) {
+            typeIds[row * MAX_TYPES + i] = strings.intern(types.get(i));
+        }
+        typeCounts[row] = (byte) typeCount;
+
+        filterIndex.set(row, ratings[row], priceLevels[row], open != null && open, typeIds, row * MAX_TYPES, typeCount);
+        return row;
+    }
+
+    /**
+     * Filter the rows
+     * @param out the buffer receiving the matching rows, at least size() long
+     * @param minRating the minimum rating, or NaN for no constraint
+     * @param maxPriceLevel the maximum price level, or NO_PRICE_LEVEL for no constraint
+     * @param openNowOnly true to keep only the places known to be open
+     * @param type the type every matching place must have, or null for no constraint
+     * @return the number of matching rows written into out
+     */
+    public int filter(int[] out, float minRating, int maxPriceLevel, boolean openNowOnly, String type) {
+        int typeId = StringTable.NULL_ID;
+        if (type != null) {
+            typeId = strings.idOf(type);
+            if (typeId == StringTable.NULL_ID) {
+                return 0;
+            }
+        }
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (!Float.isNaN(minRating) && !(ratings[row] >= minRating)) {
+                continue;
+            }
+            if (maxPriceLevel != NO_PRICE_LEVEL && (priceLevels[row] == NO_PRICE_LEVEL || priceLevels[row] > maxPriceLevel)) {
+                continue;
+            }
+            if (openNowOnly && !getBit(openNow, row)) {
+                continue;
+            }
+            if (typeId != StringTable.NULL_ID && !hasType(row, typeId)) {
+                continue;
+            }
+            out[count++] = row;
+        }
+        return count;
+    }
+
+    /**
+     * Select the rows matching filters from the bitset index, without scanning the rows
+     * @param bits the bitset receiving the matching rows, at least getFilterIndex().wordCount() long
+     * @param minRating the minimum rating, or NaN for no constraint
+     * @param maxPriceLevel the maximum price level, or NO_PRICE_LEVEL for no constraint
+     * @param openNowOnly true to keep only the places known to be open
+     * @param types the types, a matching place must have at least one of them, or null for no constraint
+     * @return the number of matching rows, see RestaurantFilterIndex.rowsOf to list them
+     */
+    public int select(long[] bits, float minRating, int maxPriceLevel, boolean openNowOnly, String[] types) {
+        int typeCount = types == null ? 0 : types.length;
+        if (selectTypeIds.length < typeCount) {
+            selectTypeIds = new int[typeCount];
+        }
+        for (int i = 0; i < typeCount; i++) {
+            selectTypeIds[i] = strings.idOf(types[i]);
+        }
+        return filterIndex.select(bits, minRating, maxPriceLevel, openNowOnly, selectTypeIds, typeCount);
+    }
+
+    /**
+     * Compute the distance of every row to a position, see DistanceKernel
+     * @param latitude the latitude of the position
+     * @param longitude the longitude of the position
+     * @param out the buffer receiving the distances in meters, by row, at least size() long
+     */
+    public void distancesTo(double latitude, double longitude, float[] out) {
+        DistanceKernel.distancesTo(latitude, longitude, latitudes, longitudes, 0, size, out);
+    }
+
+    /**
+     * Get the distance of every row to the user, from the cached distance column
+     * recomputed only when the user moved past its threshold
+     * @param latitude the latitude of the user
+     * @param longitude the longitude of the user
+     * @return the distances in meters, by row, valid up to size(), owned by the store
+     */
+    public float[] distances(double latitude, double longitude) {
+        return distanceColumn.update(latitude, longitude, latitudes, longitudes, size);
+    }
+
+    /**
+     * Sort rows by rating, best first, the places never rated last
+     * @param rows the rows to sort, in place
+     * @param count the number of rows to sort
+     */
+    public void sortByRating(int[] rows, int count) {
+        sortRows(rows, 0, count - 1, ratings, true);
+    }
+
+    /**
+     * Sort rows by distance, nearest first
+     * @param rows the rows to sort, in place
+     * @param count the number of rows to sort
+     * @param distances the distances, by row, computed by distancesTo
+     */
+    public void sortByDistance(int[] rows, int count, float[] distances) {
+        sortRows(rows, 0, count - 1, distances, false);
+    }
+
+    /**
+     * Quick sort of rows by a float key column, without boxing. NaN keys always come last.
+     */
+    private static void sortRows(int[] rows, int low, int high, float[] keys, boolean descending) {
+        while (low < high) {
+            // small ranges : insertion sort
+            if (high - low < 16) {
+                for (int i = low + 1; i <= high; i++) {
+                    int row = rows[i];
+                    int j = i - 1;
+                    while (j >= low && before(keys[row], keys[rows[j]], descending)) {
+                        rows[j + 1] = rows[j];
+                        j--;
+                    }
+                    rows[j + 1] = row;
+                }
+                return;
+            }
+            float pivot = keys[rows[(low + high) >>> 1]];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (before(keys[rows[i]], pivot, descending)) i++;
+                while (before(pivot, keys[rows[j]], descending)) j--;
+                if (i <= j) {
+                    int tmp = rows[i];
+                    rows[i++] = rows[j];
+                    rows[j--] = tmp;
+                }
+            }
+            // recurse on the smaller half, loop on the bigger one
+            if (j - low < high - i) {
+                sortRows(rows, low, j, keys, descending);
+                low = i;
+            } else {
+                sortRows(rows, i, high, keys, descending);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * True if key a must come strictly before key b
+     */
+    private static boolean before(float a, float b, boolean descending) {
+        if (Float.isNaN(a)) {
+            return false;
+        }
+        if (Float.isNaN(b)) {
+            return true;
+        }
+        return descending ? a > b : a < b;
+    }
+
+    /**
+     * True if a row has a type
+     */
+    private boolean hasType(int row, int typeId) {
+        int start = row * MAX_TYPES;
+        for (int i = 0; i < typeCounts[row]; i++) {
+            if (typeIds[start + i] == typeId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Getters, by row */
+    public int size() { return size; }
+
+    public int rowOf(String placeId) {
+        Integer row = rowByPlaceId.get(placeId);
+        return row == null ? -1 : row;
+    }
+
+    public String getPlaceId(int row) { return placeIds[row]; }
+
+    public String getName(int row) { return strings.get(nameIds[row]); }
+
+    public double getLatitude(int row) { return latitudes[row]; }
+
+    public double getLongitude(int row) { return longitudes[row]; }
+
+    public float getRating(int row) { return ratings[row]; }
+
+    public int getUserRatingsTotal(int row) { return userRatingsTotals[row]; }
+
+    public byte getPriceLevel(int row) { return priceLevels[row]; }
+
+    public boolean isOpenNow(int row) { return getBit(openNow, row); }
+
+    public boolean isOpenNowKnown(int row) { return getBit(openKnown, row); }
+
+    public int getTypeCount(int row) { return typeCounts[row]; }
+
+    public String getType(int row, int index) { return strings.get(typeIds[row * MAX_TYPES + index]); }
+
+    public RestaurantFilterIndex getFilterIndex() { return filterIndex; }
+
+    /**
+     * Estimate the memory used by the store, in bytes
+     * @return the estimated footprint
+     */
+    public long estimateBytes() {
+        long capacity = latitudes.length;
+        long columns = capacity * (8 + 8 + 4 + 4 + 1 + 4 + 1 + 4L * MAX_TYPES + 4)
+            + 2L * openNow.length * 8;
+        long placeIdBytes = 0;
+        for (int row = 0; row < size; row++) {
+            // String object + char array, and the map entry of the row index
+            placeIdBytes += 40 + 2L * placeIds[row].length() + 48 + 16;
+        }
+        return columns + placeIdBytes + strings.estimateBytes() + filterIndex.estimateBytes()
+            + distanceColumn.estimateBytes();
+    }
+
+    /**
+     * Report the memory footprint of the store
+     * @return a human readable report
+     */
+    @NonNull
+    public String footprintReport() {
+        return String.format(Locale.ROOT,
+            "RestaurantColumnStore{rows=%d, capacity=%d, strings=%d, estimatedBytes=%d, bytesPerRow=%d}",
+            size, latitudes.length, strings.size(), estimateBytes(), size == 0 ? 0 : estimateBytes() / size);
+    }
+
+    /**
+     * Remove every row
+     */
+    public void clear() {
+        Arrays.fill(placeIds, 0, size, null);
+        Arrays.fill(openNow, 0);
+        Arrays.fill(openKnown, 0);
+        rowByPlaceId.clear();
+        filterIndex.clear();
+        distanceColumn.clear();
+        size = 0;
+    }
+
+    /**
+     * Grow the columns, doubling their capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= latitudes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, latitudes.length * 2);
+        placeIds = Arrays.copyOf(placeIds, newCapacity);
+        latitudes = Arrays.copyOf(latitudes, newCapacity);
+        longitudes = Arrays.copyOf(longitudes, newCapacity);
+        ratings = Arrays.copyOf(ratings, newCapacity);
+        userRatingsTotals = Arrays.copyOf(userRatingsTotals, newCapacity);
+        priceLevels = Arrays.copyOf(priceLevels, newCapacity);
+        nameIds = Arrays.copyOf(nameIds, newCapacity);
+        typeIds = Arrays.copyOf(typeIds, newCapacity * MAX_TYPES);
+        typeCounts = Arrays.copyOf(typeCounts, newCapacity);
+        openNow = Arrays.copyOf(openNow, (newCapacity + 63) / 64);
+        openKnown = Arrays.copyOf(openKnown, (newCapacity + 63) / 64);
+    }
+
+    /** Bitset helpers */
+    private static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        } else {
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bitset index of the filterable attributes of the rows of a RestaurantColumnStore.
+ *
+ * One bitset per attribute bucket, kept up to date as the rows are added :
+ * - rating at least n tenths of a star, for n from 0 to 50 (the Maps API rates with one decimal),
+ * - price level known and at most p, for p from 0 to 4,
+ * - known to be open now,
+ * - one bitset per type id.
+ * Any combination of filters then resolves with word-level AND (and OR between the types), without allocating.
+ */
+public class RestaurantFilterIndex {
+
+    /** Number of rating buckets, in tenths of a star */
+    public static final int RATING_STEPS = 50;
+
+    /** Highest price level of the Maps API */
+    public static final int MAX_PRICE_LEVEL = 4;
+
+    /** Number of 64 bits words per bitset */
+    private int words = 1;
+
+    /** The rows present */
+    private long[] present = new long[1];
+
+    /** ratingAtLeast[n] : the rows rated at least n tenths of a star */
+    private final long[][] ratingAtLeast = new long[RATING_STEPS + 1][1];
+
+    /** priceAtMost[p] : the rows with a known price level, at most p */
+    private final long[][] priceAtMost = new long[MAX_PRICE_LEVEL + 1][1];
+
+    /** The rows known to be open now */
+    private long[] openNow = new long[1];
+
+    /** The rows having a type, by type id */
+    private final List<long[]> byType = new ArrayList<>();
+
+    /**
+     * Index a row, replacing its previous attributes
+     * @param row the row
+     * @param rating the rating, or NaN
+     * @param priceLevel the price level, or RestaurantColumnStore.NO_PRICE_LEVEL
+     * @param open true if known to be open now
+     * @param typeIds the type ids of the row
+     * @param typeStart the index of the first type id of the row in typeIds
+     * @param typeCount the number of types of the row
+     */
+    public void set(int row, float rating, byte priceLevel, boolean open, int[] typeIds, int typeStart, int typeCount) {
+        ensureCapacity(row + 1);
+        int word = row >>> 6;
+        long bit = 1L << row;
+        long mask = ~bit;
+
+        present[word] |= bit;
+
+        int tenths = Float.isNaN(rating) ? -1 : Math.round(rating * 10);
+        for (int n = 0; n <= RATING_STEPS; n++) {
+            ratingAtLeast[n][word] = n <= tenths ? ratingAtLeast[n][word] | bit : ratingAtLeast[n][word] & mask;
+        }
+        for (int p = 0; p <= MAX_PRICE_LEVEL; p++) {
+            priceAtMost[p][word] = priceLevel >= 0 && priceLevel <= p ? priceAtMost[p][word] | bit : priceAtMost[p][word] & mask;
+        }
+        openNow[word] = open ? openNow[word] | bit : openNow[word] & mask;
+
+        // a row updated in place may have lost types
+        for (long[] bits : byType) {
+            if (bits != null) {
+                bits[word] &= mask;
+            }
+        }
+        for (int i = 0; i < typeCount; i++) {
+            typeBits(typeIds[typeStart + i], true)[word] |= bit;
+        }
+    }
+
+    /**
+     * Select the rows matching every given filter
+     * @param out the bitset receiving the matching rows, at least wordCount() long
+     * @param minRating the minimum rating, or NaN for no constraint
+     * @param maxPriceLevel the maximum price level, or RestaurantColumnStore.NO_PRICE_LEVEL for no constraint
+     * @param openNowOnly true to keep only the rows known to be open
+     * @param typeIds the type ids, a row must have at least one of them, StringTable.NULL_ID ids never match
+     * @param typeCount the number of type ids, 0 for no constraint
+     * @return the number of matching rows
+     */
+    public int select(long[] out, float minRating, int maxPriceLevel, boolean openNowOnly, int[] typeIds, int typeCount) {
+        long[] rating = null;
+        if (!Float.isNaN(minRating)) {
+            int n = Math.max(0, (int) Math.ceil(minRating * 10 - 1e-3));
+            if (n > RATING_STEPS) {
+                Arrays.fill(out, 0, words, 0);
+                return 0;
+            }
+            rating = ratingAtLeast[n];
+        }
+        long[] price = maxPriceLevel < 0 ? null : priceAtMost[Math.min(maxPriceLevel, MAX_PRICE_LEVEL)];
+        long[] open = openNowOnly ? openNow : null;
+
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = present[w];
+            if (rating != null) bits &= rating[w];
+            if (price != null) bits &= price[w];
+            if (open != null) bits &= open[w];
+            if (typeCount > 0 && bits != 0) {
+                long any = 0;
+                for (int i = 0; i < typeCount; i++) {
+                    long[] type = typeBits(typeIds[i], false);
+                    if (type != null) {
+                        any |= type[w];
+                    }
+                }
+                bits &= any;
+            }
+            out[w] = bits;
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Write the rows of a bitset into a buffer, in ascending order
+     * @param bits the bitset, as filled by select
+     * @param out the buffer receiving the rows
+     * @return the number of rows written
+     */
+    public int rowsOf(long[] bits, int[] out) {
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                out[count++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                // clear the lowest set bit
+                word &= word - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the size of the bitsets to give to select
+     * @return the number of 64 bits words
+     */
+    public int wordCount() {
+        return words;
+    }
+
+    /**
+     * Estimate the memory used by the bitsets, in bytes
+     * @return the estimated footprint
+     */
+    public long estimateBytes() {
+        long bitsets = 2 + (RATING_STEPS + 1) + (MAX_PRICE_LEVEL + 1);
+        for (long[] bits : byType) {
+            if (bits != null) {
+                bitsets++;
+            }
+        }
+        return bitsets * (16 + 8L * words);
+    }
+
+    /**
+     * Remove every row
+     */
+    public void clear() {
+        Arrays.fill(present, 0);
+        for (long[] bits : ratingAtLeast) {
+            Arrays.fill(bits, 0);
+        }
+        for (long[] bits : priceAtMost) {
+            Arrays.fill(bits, 0);
+        }
+        Arrays.fill(openNow, 0);
+        byType.clear();
+    }
+
+    /**
+     * Get the bitset of a type
+     * @param create true to create it when missing
+     * @return the bitset, or null if missing and not created
+     */
+    private long[] typeBits(int typeId, boolean create) {
+        if (typeId < 0) {
+            return null;
+        }
+        while (create && byType.size() <= typeId) {
+            byType.add(null);
+        }
+        long[] bits = typeId < byType.size() ? byType.get(typeId) : null;
+        if (bits == null && create) {
+            bits = new long[words];
+            byType.set(typeId, bits);
+        }
+        return bits;
+    }
+
+    /**
+     * Grow the bitsets, doubling their capacity
+     */
+    private void ensureCapacity(int rows) {
+        int needed = (rows + 63) >>> 6;
+        if (needed <= words) {
+            return;
+        }
+        int newWords = Math.max(needed, words * 2);
+        present = Arrays.copyOf(present, newWords);
+        for (int n = 0; n <= RATING_STEPS; n++) {
+            ratingAtLeast[n] = Arrays.copyOf(ratingAtLeast[n], newWords);
+        }
+        for (int p = 0; p <= MAX_PRICE_LEVEL; p++) {
+            priceAtMost[p] = Arrays.copyOf(priceAtMost[p], newWords);
+        }
+        openNow = Arrays.copyOf(openNow, newWords);
+        for (int i = 0; i < byType.size(); i++) {
+            if (byType.get(i) != null) {
+                byType.set(i, Arrays.copyOf(byType.get(i), newWords));
+            }
+        }
+        words = newWords;
+    }
+}
@@ -0,0 +1,248 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Grid-based clustering of the places shown on the map, in plain Java.
+ *
+ * The map is cut into square cells of about a fixed size on screen (between it and twice it), in the Web Mercator
+ * projection of Google Maps : at each zoom level the cells are halved, so the clusters of a zoom level nest
+ * into those of the level above.
+ * The places of a cell make a cluster, at the centroid of its places.
+ *
+ * Each place is reduced to a primitive key (cell, index), the keys are sorted and grouped in a single pass :
+ * no map nor boxing per place, the cost is one sort of n longs.
+ *
+ * A cluster is identified by its places, so a cluster whose places did not change between two zoom levels,
+ * or two pages of results, is the same cluster : diff only returns the clusters to remove and to add.
+ */
+public class RestaurantGridClusterer {
+
+    /** Default size of a cell on screen, in density independent pixels */
+    public static final int DEFAULT_CELL_SIZE_DP = 100;
+
+    /** Size of the world at zoom 0 in Google Maps, in density independent pixels */
+    private static final int TILE_SIZE_DP = 256;
+
+    /** Highest zoom level of Google Maps handled */
+    public static final int MAX_ZOOM = 20;
+
+    /** Maximum number of places, the index of a place takes INDEX_BITS bits of its key */
+    private static final int INDEX_BITS = 20;
+    public static final int MAX_PLACES = 1 << INDEX_BITS;
+
+    /** Maximum number of cells on each axis, the key of a cell takes at most 42 bits */
+    private static final long MAX_CELLS_PER_AXIS = 1L << 21;
+
+    /** Latitude limit of the Web Mercator projection */
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    /** The size of a cell, in density independent pixels */
+    private final int cellSizeDp;
+
+    /** Buffer of the keys of the places, reused between two clusterings */
+    private long[] keys = new long[64];
+
+    /**
+     * Constructor with the default cell size
+     */
+    public RestaurantGridClusterer() {
+        this(DEFAULT_CELL_SIZE_DP);
+    }
+
+    /**
+     * Constructor
+     * @param cellSizeDp the size of a cell on screen, in density independent pixels
+     */
+    public RestaurantGridClusterer(int cellSizeDp) {
+        this.cellSizeDp = cellSizeDp;
+    }
+
+    /**
+     * Cluster places for a zoom level, not thread safe : one clusterer per thread
+     * @param latitudes the latitudes of the places
+     * @param longitudes the longitudes of the places
+     * @param placeIds the place ids of the places
+     * @param count the number of places, at most MAX_PLACES
+     * @param zoom the zoom level of the map, the fraction is ignored so clusters only change at whole levels
+     * @return the clusters
+     */
+    public List<Cluster> cluster(double[] latitudes, double[] longitudes, String[] placeIds, int count, float zoom) {
+        if (count > MAX_PLACES) {
+            throw new IllegalArgumentException("At most " + MAX_PLACES + " places can be clustered");
+        }
+        int level = Math.max(0, Math.min(MAX_ZOOM, (int) zoom));
+        // number of cells on each axis : the world size in dp divided by the cell size, rounded down to a power of two
+        // so that each cell splits into four at the next level
+        long cellsPerAxis = Long.highestOneBit(Math.max(1, Math.min(MAX_CELLS_PER_AXIS, ((long) TILE_SIZE_DP << level) / cellSizeDp)));
+
+        if (keys.length < count) {
+            keys = new long[Math.max(count, keys.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            long cellX = Math.min(cellsPerAxis - 1, (long) (mercatorX(longitudes[i]) * cellsPerAxis));
+            long cellY = Math.min(cellsPerAxis - 1, (long) (mercatorY(latitudes[i]) * cellsPerAxis));
+            keys[i] = ((cellY * cellsPerAxis + cellX) << INDEX_BITS) | i;
+        }
+        Arrays.sort(keys, 0, count);
+
+        List<Cluster> clusters = new ArrayList<>();
+        int start = 0;
+        while (start < count) {
+            long cell = keys[start] >>> INDEX_BITS;
+            int end = start + 1;
+            while (end < count && keys[end] >>> INDEX_BITS == cell) {
+                end++;
+            }
+            double latitude = 0;
+            double longitude = 0;
+            String[] members = new String[end - start];
+            for (int k = start; k < end; k++) {
+                int i = (int) (keys[k] & (MAX_PLACES - 1));
+                latitude += latitudes[i];
+                longitude += longitudes[i];
+                members[k - start] = placeIds[i];
+            }
+            clusters.add(new Cluster(level, cell, latitude / members.length, longitude / members.length, members));
+            start = end;
+        }
+        return clusters;
+    }
+
+    /**
+     * Diff two cluster sets
+     * @param previous the clusters on screen
+     * @param next the new clusters
+     * @return the clusters to remove from the screen, and the clusters to add
+     */
+    public static Diff diff(List<Cluster> previous, List<Cluster> next) {
+        Set<Cluster> previousSet = new HashSet<>(previous);
+        Set<Cluster> nextSet = new HashSet<>(next);
+        List<Cluster> removed = new ArrayList<>();
+        for (Cluster cluster : previous) {
+            if (!nextSet.contains(cluster)) {
+                removed.add(cluster);
+            }
+        }
+        List<Cluster> added = new ArrayList<>();
+        for (Cluster cluster : next) {
+            if (!previousSet.contains(cluster)) {
+                added.add(cluster);
+            }
+        }
+        return new Diff(removed, added, next.size() - added.size(), next);
+    }
+
+    /**
+     * Horizontal Web Mercator coordinate, between 0 (west) and 1 (east)
+     */
+    private static double mercatorX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    /**
+     * Vertical Web Mercator coordinate, between 0 (north) and 1 (south)
+     */
+    private static double mercatorY(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        return Math.max(0, 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI));
+    }
+
+    /**
+     * A cluster of places, a single place being a cluster of one.
+     * Two clusters are equal when they hold the same places, whatever their zoom level.
+     */
+    public static class Cluster {
+
+        /** The zoom level and the cell of the cluster */
+        private final int zoom;
+        private final long cell;
+
+        /** The centroid of the places */
+        private final double latitude;
+        private final double longitude;
+
+        /** The place ids, sorted */
+        private final String[] placeIds;
+
+        /** The hash of the place ids, computed once */
+        private final int hash;
+
+        private Cluster(int zoom, long cell, double latitude, double longitude, String[] placeIds) {
+            this.zoom = zoom;
+            this.cell = cell;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            Arrays.sort(placeIds);
+            this.placeIds = placeIds;
+            this.hash = Arrays.hashCode(placeIds);
+        }
+
+        /** Getters */
+        public int getZoom() { return zoom; }
+
+        public long getCell() { return cell; }
+
+        public double getLatitude() { return latitude; }
+
+        public double getLongitude() { return longitude; }
+
+        public int size() { return placeIds.length; }
+
+        public String getPlaceId(int index) { return placeIds[index]; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Cluster)) return false;
+            Cluster cluster = (Cluster) o;
+            return hash == cluster.hash && Arrays.equals(placeIds, cluster.placeIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The changes between two cluster sets, to apply to the markers on screen
+     */
+    public static class Diff {
+
+        /** The clusters to remove from the screen */
+        private final List<Cluster> removed;
+
+        /** The clusters to add to the screen */
+        private final List<Cluster> added;
+
+        /** The number of clusters left untouched */
+        private final int unchanged;
+
+        /** The complete new cluster set */
+        private final List<Cluster> clusters;
+
+        private Diff(List<Cluster> removed, List<Cluster> added, int unchanged, List<Cluster> clusters) {
+            this.removed = Collections.unmodifiableList(removed);
+            this.added = Collections.unmodifiableList(added);
+            this.unchanged = unchanged;
+            this.clusters = Collections.unmodifiableList(clusters);
+        }
+
+        /** Getters */
+        public List<Cluster> getRemoved() { return removed; }
+
+        public List<Cluster> getAdded() { return added; }
+
+        public int getUnchanged() { return unchanged; }
+
+        public List<Cluster> getClusters() { return clusters; }
+
+        public boolean isEmpty() { return removed.isEmpty() && added.isEmpty(); }
+    }
+}
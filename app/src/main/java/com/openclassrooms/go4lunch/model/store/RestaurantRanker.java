@@ -0,0 +1,501 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import com.openclassrooms.go4lunch.model.bo.location.GPSStatus;
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.util.DistanceKernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental top-k ranking of the restaurants, by a blended score of :
+ * - the distance to the current position,
+ * - the rating,
+ * - the number of ratings,
+ * - the number of workmates already lunching there today.
+ *
+ * The places are split between two indexed heaps : the k best in a min-heap, the others in a max-heap.
+ * A new page or a new lunch only moves the places whose score changed, with a swap between the heaps
+ * when one of them crosses the border, in O(log n). A location fix changes every distance : the scores
+ * are recomputed and both heaps rebuilt in O(n), without sorting. Only the k best are ever sorted.
+ *
+ * Not thread safe, fed from the main thread like the LiveData it observes.
+ */
+public class RestaurantRanker {
+
+    /** Default number of ranked places */
+    public static final int DEFAULT_K = 20;
+
+    /** Default weights of the distance, the rating, the number of ratings and the workmates */
+    public static final double DEFAULT_DISTANCE_WEIGHT = 0.4;
+    public static final double DEFAULT_RATING_WEIGHT = 0.3;
+    public static final double DEFAULT_POPULARITY_WEIGHT = 0.1;
+    public static final double DEFAULT_ATTENDANCE_WEIGHT = 0.2;
+
+    /** Distance at which the distance score halves, in meters */
+    public static final double DEFAULT_DISTANCE_SCALE_METERS = 500;
+
+    /** Default smallest move rescoring the places, in meters, GPS jitter is ignored */
+    public static final double DEFAULT_MIN_MOVE_METERS = 10;
+
+    /** Number of ratings giving the full popularity score */
+    private static final double POPULARITY_SATURATION = Math.log1p(1000);
+
+    /** The number of ranked places */
+    private final int k;
+
+    /** The weights of the score */
+    private final double distanceWeight;
+    private final double ratingWeight;
+    private final double popularityWeight;
+    private final double attendanceWeight;
+
+    /** The distance at which the distance score halves, in meters */
+    private final double distanceScale;
+
+    /** The smallest move rescoring the places, in meters */
+    private final double minMoveMeters;
+
+    /** The places, by entry id */
+    private Result[] results = new Result[16];
+    private double[] latitudes = new double[16];
+    private double[] longitudes = new double[16];
+    private double[] scores = new double[16];
+
+    /** Buffer of the distances to the position, by entry id */
+    private float[] distances = new float[16];
+
+    /** The part of the score not depending on the position, by entry id */
+    private double[] staticScores = new double[16];
+
+    /** The position of each entry in its heap, and the heap holding it */
+    private int[] positions = new int[16];
+    private boolean[] inTop = new boolean[16];
+
+    /** The entry ids, by place id */
+    private final Map<String, Integer> idByPlaceId = new HashMap<>();
+
+    /** The number of workmates lunching at a place today, by place id, including the places not received yet */
+    private final Map<String, Integer> workmatesByPlaceId = new HashMap<>();
+
+    /** The number of entries */
+    private int size;
+
+    /** The k best entries, worst first (min-heap), and the other entries, best first (max-heap) */
+    private int[] top;
+    private int topSize;
+    private int[] rest = new int[16];
+    private int restSize;
+
+    /** The current position, NaN until the first fix */
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+
+    /** The number of heap moves, for the benchmarks */
+    private long moveCount;
+
+    /**
+     * Constructor with the default configuration
+     */
+    public RestaurantRanker() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Constructor with the default weights
+     * @param k the number of ranked places
+     */
+    public RestaurantRanker(int k) {
+        this(k, DEFAULT_DISTANCE_WEIGHT, DEFAULT_RATING_WEIGHT, DEFAULT_POPULARITY_WEIGHT, DEFAULT_ATTENDANCE_WEIGHT,
+            DEFAULT_DISTANCE_SCALE_METERS, DEFAULT_MIN_MOVE_METERS);
+    }
+
+    /**
+     * Constructor
+     * @param k the number of ranked places
+     * @param distanceWeight the weight of the distance score
+     * @param ratingWeight the weight of the rating score
+     * @param popularityWeight the weight of the number of ratings score
+     * @param attendanceWeight the weight of the workmates score
+     * @param distanceScale the distance at which the distance score halves, in meters
+     * @param minMoveMeters the smallest move rescoring the places, in meters
+     */
+    public RestaurantRanker(int k, double distanceWeight, double ratingWeight, double popularityWeight, double attendanceWeight,
+                            double distanceScale, double minMoveMeters) {
+        this.k = k;
+        this.distanceWeight = distanceWeight;
+        this.ratingWeight = ratingWeight;
+        this.popularityWeight = popularityWeight;
+        this.attendanceWeight = attendanceWeight;
+        this.distanceScale = distanceScale;
+        this.minMoveMeters = minMoveMeters;
+        this.top = new int[k];
+    }
+
+    /**
+     * Add or update the places of a page of results
+     * @param listRestaurant the page
+     */
+    public void addAll(ListRestaurant listRestaurant) {
+        if (listRestaurant != null && listRestaurant.getResults() != null) {
+            addAll(listRestaurant.getResults());
+        }
+    }
+
+    /**
+     * Add or update places
+     * @param places the places
+     */
+    public void addAll(List<Result> places) {
+        for (Result result : places) {
+            add(result);
+        }
+    }
+
+    /**
+     * Add or update a place, a place already ranked with the same attributes costs a lookup
+     * @param result the place
+     */
+    public void add(Result result) {
+        Location location = result.getGeometry() == null ? null : result.getGeometry().getLocation();
+        if (result.getPlaceId() == null || location == null || location.getLat() == null || location.getLng() == null) {
+            return;
+        }
+        Integer existing = idByPlaceId.get(result.getPlaceId());
+        int id;
+        if (existing == null) {
+            id = size++;
+            ensureCapacity(size);
+            idByPlaceId.put(result.getPlaceId(), id);
+        } else {
+            id = existing;
+        }
+        results[id] = result;
+        latitudes[id] = location.getLat();
+        longitudes[id] = location.getLng();
+        staticScores[id] = staticScore(result, workmatesAt(result.getPlaceId()));
+        double score = staticScores[id] + distanceScore(id);
+        if (existing == null) {
+            scores[id] = score;
+            insert(id);
+        } else if (score != scores[id]) {
+            scores[id] = score;
+            update(id);
+        }
+    }
+
+    /**
+     * Rescore the places for a new position, if the user moved far enough
+     * @param gpsStatus the GPS status, ignored without a position
+     */
+    public void onLocation(GPSStatus gpsStatus) {
+        if (gpsStatus.getLatitude() != null && gpsStatus.getLongitude() != null) {
+            onLocation(gpsStatus.getLatitude(), gpsStatus.getLongitude());
+        }
+    }
+
+    /**
+     * Rescore the places for a new position, if the user moved far enough
+     * @param latitude the latitude of the position
+     * @param longitude the longitude of the position
+     */
+    public void onLocation(double latitude, double longitude) {
+        if (!Double.isNaN(this.latitude) && DistanceKernel.distance(this.latitude, this.longitude, latitude, longitude) < minMoveMeters) {
+            return;
+        }
+        this.latitude = latitude;
+        this.longitude = longitude;
+        DistanceKernel.distancesTo(latitude, longitude, latitudes, longitudes, 0, size, distances);
+        for (int id = 0; id < size; id++) {
+            scores[id] = staticScores[id] + distanceScore(distances[id]);
+        }
+        // every score changed : rebuild both heaps in place, then swap across the border until it holds again
+        for (int i = topSize / 2 - 1; i >= 0; i--) {
+            siftDown(top, topSize, i, false);
+        }
+        for (int i = restSize / 2 - 1; i >= 0; i--) {
+            siftDown(rest, restSize, i, true);
+        }
+        rebalance();
+    }
+
+    /**
+     * Record a workmate choosing a place for today's lunch
+     * @param placeId the place id of the chosen restaurant
+     */
+    public void onLunchAdded(String placeId) {
+        setWorkmateCount(placeId, workmatesAt(placeId) + 1);
+    }
+
+    /**
+     * Record a workmate cancelling today's lunch at a place
+     * @param placeId the place id of the restaurant
+     */
+    public void onLunchRemoved(String placeId) {
+        setWorkmateCount(placeId, Math.max(0, workmatesAt(placeId) - 1));
+    }
+
+    /**
+     * Set the number of workmates lunching at a place today
+     * @param placeId the place id of the restaurant
+     * @param count the number of workmates
+     */
+    public void setWorkmateCount(String placeId, int count) {
+        if (placeId == null) {
+            return;
+        }
+        if (count == 0) {
+            workmatesByPlaceId.remove(placeId);
+        } else {
+            workmatesByPlaceId.put(placeId, count);
+        }
+        Integer id = idByPlaceId.get(placeId);
+        if (id != null) {
+            staticScores[id] = staticScore(results[id], count);
+            double score = staticScores[id] + distanceScore(id);
+            if (score != scores[id]) {
+                scores[id] = score;
+                update(id);
+            }
+        }
+    }
+
+    /**
+     * Get the k best places
+     * @return the places, best first
+     */
+    public List<Result> getTop() {
+        // only the k best are sorted
+        int[] ids = Arrays.copyOf(top, topSize);
+        Integer[] sorted = new Integer[topSize];
+        for (int i = 0; i < topSize; i++) {
+            sorted[i] = ids[i];
+        }
+        Arrays.sort(sorted, (a, b) -> better(a, b) ? -1 : better(b, a) ? 1 : 0);
+        List<Result> list = new ArrayList<>(topSize);
+        for (Integer id : sorted) {
+            list.add(results[id]);
+        }
+        return list;
+    }
+
+    /**
+     * Get the score of a place
+     * @param placeId the place id
+     * @return the score, NaN if unknown
+     */
+    public double getScore(String placeId) {
+        Integer id = idByPlaceId.get(placeId);
+        return id == null ? Double.NaN : scores[id];
+    }
+
+    /** Getters */
+    public int size() {
+        return size;
+    }
+
+    public int getWorkmateCount(String placeId) {
+        return workmatesAt(placeId);
+    }
+
+    public long getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Remove every place, the workmate counts are kept
+     */
+    public void clear() {
+        Arrays.fill(results, 0, size, null);
+        idByPlaceId.clear();
+        size = 0;
+        topSize = 0;
+        restSize = 0;
+    }
+
+    private int workmatesAt(String placeId) {
+        Integer count = workmatesByPlaceId.get(placeId);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Score of the rating, the number of ratings and the workmates, between 0 and their weights sum
+     */
+    private double staticScore(Result result, int workmates) {
+        double rating = result.getRating() == null ? 0 : result.getRating() / 5;
+        int ratingsTotal = result.getUserRatingsTotal() == null ? 0 : result.getUserRatingsTotal();
+        double popularity = Math.min(1, Math.log1p(ratingsTotal) / POPULARITY_SATURATION);
+        // the first workmates count the most
+        double attendance = workmates / (workmates + 1.0);
+        return ratingWeight * rating + popularityWeight * popularity + attendanceWeight * attendance;
+    }
+
+    /**
+     * Score of the distance to the current position, 0 until the first fix
+     */
+    private double distanceScore(int id) {
+        if (Double.isNaN(latitude)) {
+            return 0;
+        }
+        // the kernel of the rescoring on a new position : an unchanged place gets exactly the same score, and does not move
+        DistanceKernel.distancesTo(latitude, longitude, latitudes, longitudes, id, id + 1, distances);
+        return distanceScore(distances[id]);
+    }
+
+    /**
+     * Score of a distance to the current position
+     * @param meters the distance, in meters
+     */
+    private double distanceScore(float meters) {
+        return distanceWeight / (1 + meters / distanceScale);
+    }
+
+    /**
+     * Rank a new entry
+     */
+    private void insert(int id) {
+        if (topSize < k) {
+            push(top, id, false);
+            topSize++;
+            siftUp(top, topSize - 1, false);
+        } else if (k > 0 && better(id, top[0])) {
+            // the new entry pushes the worst of the k best to the others
+            int evicted = top[0];
+            top[0] = id;
+            positions[id] = 0;
+            inTop[id] = true;
+            siftDown(top, topSize, 0, false);
+            pushRest(evicted);
+        } else {
+            pushRest(id);
+        }
+    }
+
+    /**
+     * Move an entry whose score changed, then restore the border between the heaps
+     */
+    private void update(int id) {
+        if (inTop[id]) {
+            siftUp(top, positions[id], false);
+            siftDown(top, topSize, positions[id], false);
+        } else {
+            siftUp(rest, positions[id], true);
+            siftDown(rest, restSize, positions[id], true);
+        }
+        rebalance();
+    }
+
+    /**
+     * Swap the worst of the k best and the best of the others while the latter is better
+     */
+    private void rebalance() {
+        while (restSize > 0 && topSize > 0 && better(rest[0], top[0])) {
+            int up = rest[0];
+            int down = top[0];
+            top[0] = up;
+            positions[up] = 0;
+            inTop[up] = true;
+            rest[0] = down;
+            positions[down] = 0;
+            inTop[down] = false;
+            siftDown(top, topSize, 0, false);
+            siftDown(rest, restSize, 0, true);
+        }
+    }
+
+    private void pushRest(int id) {
+        if (restSize == rest.length) {
+            rest = Arrays.copyOf(rest, rest.length * 2);
+        }
+        push(rest, id, true);
+        restSize++;
+        siftUp(rest, restSize - 1, true);
+    }
+
+    private void push(int[] heap, int id, boolean max) {
+        int position = max ? restSize : topSize;
+        heap[position] = id;
+        positions[id] = position;
+        inTop[id] = !max;
+    }
+
+    /**
+     * Move an entry towards the root of its heap
+     * @param max true for the max-heap of the others, false for the min-heap of the k best
+     */
+    private void siftUp(int[] heap, int position, boolean max) {
+        int id = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!before(id, heap[parent], max)) {
+                break;
+            }
+            place(heap, heap[parent], position);
+            position = parent;
+        }
+        place(heap, id, position);
+    }
+
+    /**
+     * Move an entry towards the leaves of its heap
+     * @param max true for the max-heap of the others, false for the min-heap of the k best
+     */
+    private void siftDown(int[] heap, int heapSize, int position, boolean max) {
+        int id = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child], max)) {
+                child++;
+            }
+            if (!before(heap[child], id, max)) {
+                break;
+            }
+            place(heap, heap[child], position);
+            position = child;
+        }
+        place(heap, id, position);
+    }
+
+    private void place(int[] heap, int id, int position) {
+        heap[position] = id;
+        positions[id] = position;
+        moveCount++;
+    }
+
+    /**
+     * Check if an entry goes above another in a heap
+     */
+    private boolean before(int a, int b, boolean max) {
+        return max ? better(a, b) : better(b, a);
+    }
+
+    /**
+     * Total order of the entries : the best score first, the oldest entry on ties
+     */
+    private boolean better(int a, int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= results.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, results.length * 2);
+        results = Arrays.copyOf(results, newCapacity);
+        latitudes = Arrays.copyOf(latitudes, newCapacity);
+        longitudes = Arrays.copyOf(longitudes, newCapacity);
+        scores = Arrays.copyOf(scores, newCapacity);
+        distances = Arrays.copyOf(distances, newCapacity);
+        staticScores = Arrays.copyOf(staticScores, newCapacity);
+        positions = Arrays.copyOf(positions, newCapacity);
+        inTop = Arrays.copyOf(inTop, newCapacity);
+    }
+}
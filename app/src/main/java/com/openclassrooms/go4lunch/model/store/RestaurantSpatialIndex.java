@@ -0,0 +1,479 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.util.Geohash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index (2-d tree) over every restaurant fetched during the session.
+ *
+ * Answers "restaurants inside this viewport" and "k nearest restaurants to this point" locally.
+ * It also remembers the areas already searched (center and radius of each nearby search, by type),
+ * so the caller only falls back to the Maps API for the areas the index does not cover yet.
+ *
+ * The tree is rebuilt lazily, on the first query following new places. Thread safe.
+ */
+public class RestaurantSpatialIndex {
+
+    /** Number of sample points per side of a viewport, to check it is covered */
+    private static final int COVERAGE_SAMPLES = 5;
+
+    /** Meters per degree of latitude */
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    /** Maximum number of results of a nearby search page : a full page may leave places out of its area */
+    private static final int MAX_PAGE_RESULTS = 20;
+
+    /** Maximum number of covered areas kept by type, the oldest ones are forgotten first */
+    public static final int MAX_AREAS_PER_TYPE = 64;
+
+    /** The places, by place id */
+    private final Map<String, Result> places = new HashMap<>();
+
+    /** The places in tree order, and their coordinates */
+    private Result[] items = new Result[0];
+    private double[] latitudes = new double[0];
+    private double[] longitudes = new double[0];
+
+    /** True when places were added or removed since the last build of the tree */
+    private boolean dirty;
+
+    /** The areas already searched, by type, oldest first : latitude, longitude, radius in meters */
+    private final Map<String, List<double[]>> coveredAreas = new HashMap<>();
+
+    /**
+     * Add the places of a nearby search, and record its area as covered when the search returned every place of it
+     * @param location the location of the search (latitude,longitude)
+     * @param radius the radius of the search, in meters
+     * @param type the type of the search
+     * @param listRestaurant the result of the search
+     */
+    public synchronized void addSearch(String location, int radius, String type, ListRestaurant listRestaurant) {
+        addAll(listRestaurant);
+        addArea(location, radius, type, listRestaurant);
+    }
+
+    /**
+     * Record the area of a search fetched page after page as covered, when its last page ends the search :
+     * the places of every page were already added, see addAll
+     * @param location the location of the search (latitude,longitude)
+     * @param radius the radius of the search, in meters
+     * @param type the type of the search
+     * @param lastPage the last page of the search
+     */
+    public synchronized void addLastPage(String location, int radius, String type, ListRestaurant lastPage) {
+        addArea(location, radius, type, lastPage);
+    }
+
+    /**
+     * Record the area of a search as covered, unless its last page may have left places out
+     */
+    private void addArea(String location, int radius, String type, ListRestaurant lastPage) {
+        if (isTruncated(lastPage)) {
+            // the API capped the page, the places left out would be missing from the viewport queries
+            return;
+        }
+        double[] latLng = Geohash.parseLocation(location);
+        double[] added = {latLng[0], latLng[1], radius};
+        List<double[]> areas = coveredAreas.get(type);
+        if (areas == null) {
+            areas = new ArrayList<>();
+            coveredAreas.put(type, areas);
+        }
+        // an area inside an already covered one adds nothing, the areas inside the new one are dropped
+        for (double[] area : areas) {
+            if (contains(area, added)) {
+                return;
+            }
+        }
+        for (int i = areas.size() - 1; i >= 0; i--) {
+            if (contains(added, areas.get(i))) {
+                areas.remove(i);
+            }
+        }
+        areas.add(added);
+        if (areas.size() > MAX_AREAS_PER_TYPE) {
+            areas.remove(0);
+        }
+    }
+
+    /**
+     * Get the number of covered areas of a type
+     * @param type the type of the searches
+     * @return the number of areas kept
+     */
+    public synchronized int getCoveredAreaCount(String type) {
+        List<double[]> areas = coveredAreas.get(type);
+        return areas == null ? 0 : areas.size();
+    }
+
+    /**
+     * Add places, without recording any covered area
+     * @param listRestaurant the places to add
+     */
+    public synchronized void addAll(ListRestaurant listRestaurant) {
+        if (listRestaurant == null || listRestaurant.getResults() == null) {
+            return;
+        }
+        for (Result result : listRestaurant.getResults()) {
+            if (result.getPlaceId() != null && locationOf(result) != null) {
+                places.put(result.getPlaceId(), result);
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Check if a viewport is covered by the areas already searched for a type
+     * @param south the south latitude of the viewport
+     * @param west the west longitude of the viewport
+     * @param north the north latitude of the viewport
+     * @param east the east longitude of the viewport
+     * @param type the type of the places
+     * @return true if every sample point of the viewport lies in a searched area
+     */
+    public synchronized boolean isCovered(double south, double west, double north, double east, String type) {
+        List<double[]> areas = coveredAreas.get(type);
+        if (areas == null) {
+            return false;
+        }
+        for (int i = 0; i < COVERAGE_SAMPLES; i++) {
+            double latitude = south + (north - south) * i / (COVERAGE_SAMPLES - 1);
+            for (int j = 0; j < COVERAGE_SAMPLES; j++) {
+                double longitude = west + (east - west) * j / (COVERAGE_SAMPLES - 1);
+                if (!isInAnyArea(latitude, longitude, areas)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the places inside a viewport
+     * @param south the south latitude of the viewport
+     * @param west the west longitude of the viewport
+     * @param north the north latitude of the viewport
+     * @param east the east longitude of the viewport
+     * @param type the type every returned place must have, or null for every place
+     * @return the places inside the viewport
+     */
+    public synchronized List<Result> queryViewport(double south, double west, double north, double east, String type) {
+        build();
+        List<Result> out = new ArrayList<>();
+        queryViewport(0, items.length, 0, south, west, north, east, type, out);
+        return out;
+    }
+
+    private void queryViewport(int low, int high, int depth, double south, double west, double north, double east, String type, List<Result> out) {
+        if (low >= high) {
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        double latitude = latitudes[mid];
+        double longitude = longitudes[mid];
+        if (latitude >= south && latitude <= north && longitude >= west && longitude <= east && hasType(items[mid], type)) {
+            out.add(items[mid]);
+        }
+        // even depth splits on latitude, odd depth on longitude
+        double split = depth % 2 == 0 ? latitude : longitude;
+        double min = depth % 2 == 0 ? south : west;
+        double max = depth % 2 == 0 ? north : east;
+        if (min <= split) {
+            queryViewport(low, mid, depth + 1, south, west, north, east, type, out);
+        }
+        if (max >= split) {
+            queryViewport(mid + 1, high, depth + 1, south, west, north, east, type, out);
+        }
+    }
+
+    /**
+     * Get the places within a radius of a point
+     * @param latitude the latitude of the center
+     * @param longitude the longitude of the center
+     * @param radius the radius, in meters
+     * @param type the type every returned place must have, or null for every place
+     * @return the places inside the circle
+     */
+    public synchronized List<Result> queryRadius(double latitude, double longitude, int radius, String type) {
+        double dLat = radius / METERS_PER_DEGREE;
+        double dLng = radius / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+        List<Result> out = new ArrayList<>();
+        List<double[]> circle = new ArrayList<>();
+        circle.add(new double[]{latitude, longitude, radius});
+        // the bounding box from the tree, then the corners cut off
+        for (Result result : queryViewport(latitude - dLat, longitude - dLng, latitude + dLat, longitude + dLng, type)) {
+            Location location = locationOf(result);
+            if (isInAnyArea(location.getLat(), location.getLng(), circle)) {
+                out.add(result);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Get the k nearest places to a point
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     * @param k the number of places
+     * @param type the type every returned place must have, or null for every place
+     * @return the nearest places, nearest first
+     */
+    public synchronized List<Result> nearest(double latitude, double longitude, int k, String type) {
+        build();
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        // bounded max-heap of the best candidates, on squared local distances
+        Nearest nearest = new Nearest(k, Math.cos(Math.toRadians(latitude)));
+        nearest(0, items.length, 0, latitude, longitude, type, nearest);
+        return nearest.sorted();
+    }
+
+    private void nearest(int low, int high, int depth, double latitude, double longitude, String type, Nearest nearest) {
+        if (low >= high) {
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        if (hasType(items[mid], type)) {
+            double dLat = latitudes[mid] - latitude;
+            double dLng = (longitudes[mid] - longitude) * nearest.lngScale;
+            nearest.offer(mid, dLat * dLat + dLng * dLng);
+        }
+        double delta = depth % 2 == 0 ? latitude - latitudes[mid] : (longitude - longitudes[mid]) * nearest.lngScale;
+        // visit the side of the point first, the other one only if it may hold a better candidate
+        if (delta < 0) {
+            nearest(low, mid, depth + 1, latitude, longitude, type, nearest);
+            if (!nearest.isFull() || delta * delta < nearest.worst()) {
+                nearest(mid + 1, high, depth + 1, latitude, longitude, type, nearest);
+            }
+        } else {
+            nearest(mid + 1, high, depth + 1, latitude, longitude, type, nearest);
+            if (!nearest.isFull() || delta * delta < nearest.worst()) {
+                nearest(low, mid, depth + 1, latitude, longitude, type, nearest);
+            }
+        }
+    }
+
+    /**
+     * Remove a place, keeping the covered areas
+     * @param placeId the id of the place
+     */
+    public synchronized void remove(String placeId) {
+        if (places.remove(placeId) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Get the number of indexed places
+     * @return the number of places
+     */
+    public synchronized int size() {
+        return places.size();
+    }
+
+    /**
+     * Remove every place and covered area
+     */
+    public synchronized void clear() {
+        places.clear();
+        coveredAreas.clear();
+        dirty = true;
+    }
+
+    /**
+     * Rebuild the tree if places were added or removed
+     */
+    private void build() {
+        if (!dirty) {
+            return;
+        }
+        items = places.values().toArray(new Result[0]);
+        latitudes = new double[items.length];
+        longitudes = new double[items.length];
+        for (int i = 0; i < items.length; i++) {
+            Location location = locationOf(items[i]);
+            latitudes[i] = location.getLat();
+            longitudes[i] = location.getLng();
+        }
+        build(0, items.length, 0);
+        dirty = false;
+    }
+
+    /**
+     * Put the median of the range at its middle, lower values before, higher values after, and recurse
+     */
+    private void build(int low, int high, int depth) {
+        if (high - low <= 1) {
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        select(low, high - 1, mid, depth % 2 == 0 ? latitudes : longitudes);
+        build(low, mid, depth + 1);
+        build(mid + 1, high, depth + 1);
+    }
+
+    /**
+     * Quick select : put the k-th smallest key of the range at index k
+     */
+    private void select(int low, int high, int k, double[] keys) {
+        while (high > low) {
+            double pivot = keys[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        Result item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        double latitude = latitudes[i];
+        latitudes[i] = latitudes[j];
+        latitudes[j] = latitude;
+        double longitude = longitudes[i];
+        longitudes[i] = longitudes[j];
+        longitudes[j] = longitude;
+    }
+
+    /**
+     * Check if a search may have left places of its area out : a full page, or a next page.
+     * A full last page counts as truncated too : the API never gives more than 60 places, in 3 pages
+     */
+    private static boolean isTruncated(ListRestaurant listRestaurant) {
+        if (listRestaurant == null) {
+            return true;
+        }
+        String token = listRestaurant.getNextPageToken();
+        return (token != null && !token.isEmpty())
+            || (listRestaurant.getResults() != null && listRestaurant.getResults().size() >= MAX_PAGE_RESULTS);
+    }
+
+    /**
+     * Check if an area lies entirely inside another one
+     */
+    private static boolean contains(double[] outer, double[] inner) {
+        double dLat = (inner[0] - outer[0]) * METERS_PER_DEGREE;
+        double dLng = (inner[1] - outer[1]) * METERS_PER_DEGREE * Math.cos(Math.toRadians(outer[0]));
+        return Math.sqrt(dLat * dLat + dLng * dLng) + inner[2] <= outer[2];
+    }
+
+    /**
+     * True if a point lies in one of the areas
+     */
+    private static boolean isInAnyArea(double latitude, double longitude, List<double[]> areas) {
+        for (double[] area : areas) {
+            double dLat = (latitude - area[0]) * METERS_PER_DEGREE;
+            double dLng = (longitude - area[1]) * METERS_PER_DEGREE * Math.cos(Math.toRadians(area[0]));
+            if (dLat * dLat + dLng * dLng <= area[2] * area[2]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasType(Result result, String type) {
+        return type == null || (result.getTypes() != null && result.getTypes().contains(type));
+    }
+
+    private static Location locationOf(Result result) {
+        if (result.getGeometry() == null || result.getGeometry().getLocation() == null) {
+            return null;
+        }
+        Location location = result.getGeometry().getLocation();
+        return location.getLat() == null || location.getLng() == null ? null : location;
+    }
+
+    /**
+     * Bounded max-heap of the k best candidates of a nearest query
+     */
+    private class Nearest {
+        private final int[] heap;
+        private final double[] distances;
+        private final double lngScale;
+        private int size;
+
+        private Nearest(int k, double lngScale) {
+            this.heap = new int[k];
+            this.distances = new double[k];
+            this.lngScale = lngScale;
+        }
+
+        private boolean isFull() {
+            return size == heap.length;
+        }
+
+        private double worst() {
+            return distances[0];
+        }
+
+        private void offer(int index, double distance) {
+            if (size < heap.length) {
+                // sift up
+                int i = size++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    heap[i] = heap[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = index;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                // replace the worst, sift down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && distances[child + 1] > distances[child]) {
+                        child++;
+                    }
+                    if (distances[child] <= distance) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                heap[i] = index;
+                distances[i] = distance;
+            }
+        }
+
+        private List<Result> sorted() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+            List<Result> out = new ArrayList<>(size);
+            for (Integer i : order) {
+                out.add(items[heap[i]]);
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interned string table : each distinct string is stored once and referenced by an int id.
+ * Restaurant names and types repeat a lot between searches, the columns only keep their ids.
+ */
+public class StringTable {
+
+    /**
+     * Id of a null string
+     */
+    public static final int NULL_ID = -1;
+
+    /**
+     * The strings, by id
+     */
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * The ids, by string
+     */
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * Get the id of a string, adding it to the table if needed
+     * @param value the string
+     * @return the id of the string, or NULL_ID
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Get the id of a string, without adding it
+     * @param value the string
+     * @return the id of the string, or NULL_ID if unknown
+     */
+    public int idOf(String value) {
+        Integer id = value == null ? null : ids.get(value);
+        return id == null ? NULL_ID : id;
+    }
+
+    /**
+     * Get a string by id
+     * @param id the id
+     * @return the string, or null for NULL_ID
+     */
+    public String get(int id) {
+        return id == NULL_ID ? null : strings.get(id);
+    }
+
+    /**
+     * Get the number of distinct strings
+     * @return the size of the table
+     */
+    public int size() {
+        return strings.size();
+    }
+
+    /**
+     * Estimate the memory used by the table, in bytes
+     * @return the estimated footprint
+     */
+    public long estimateBytes() {
+        long bytes = 0;
+        for (String value : strings) {
+            // String object + char array, and the map entry pointing to it
+            bytes += 40 + 2L * value.length() + 48;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,211 @@
+package com.openclassrooms.go4lunch.model.store;
+
+import com.openclassrooms.go4lunch.model.bo.Lunch;
+import com.openclassrooms.go4lunch.model.bo.Restaurant;
+import com.openclassrooms.go4lunch.model.bo.Workmate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the day's lunches, by restaurant and by workmate.
+ *
+ * Filled by one bulk load or by the changes of a live feed, keyed by lunch document id, so that a lunch
+ * modified or removed leaves both indexes consistent. The attendees of a restaurant, their number,
+ * and the lunch of a workmate are then answered in O(1), without any Firestore query.
+ *
+ * A restaurant is keyed by its id (its place id), or by its name when it has no id.
+ * Not thread safe, used from the main thread like the Firestore listeners feeding it.
+ */
+public class TodayLunchIndex {
+
+    /** The lunches, by document id, in the order they were put */
+    private final Map<String, Lunch> lunchByDocumentId = new LinkedHashMap<>();
+
+    /** The lunches, by restaurant key */
+    private final Map<String, List<Lunch>> lunchesByRestaurant = new HashMap<>();
+
+    /** The lunch of each workmate, by workmate id */
+    private final Map<String, Lunch> lunchByWorkmate = new HashMap<>();
+
+    /**
+     * Add or replace a lunch
+     * @param documentId the id of the lunch document
+     * @param lunch the lunch
+     */
+    public void put(String documentId, Lunch lunch) {
+        remove(documentId);
+        lunchByDocumentId.put(documentId, lunch);
+        String restaurantKey = keyOf(lunch.getChosenRestaurant());
+        if (restaurantKey != null) {
+            List<Lunch> lunches = lunchesByRestaurant.get(restaurantKey);
+            if (lunches == null) {
+                lunches = new ArrayList<>(4);
+                lunchesByRestaurant.put(restaurantKey, lunches);
+            }
+            lunches.add(lunch);
+        }
+        String workmateId = workmateIdOf(lunch);
+        if (workmateId != null) {
+            lunchByWorkmate.put(workmateId, lunch);
+        }
+    }
+
+    /**
+     * Remove a lunch
+     * @param documentId the id of the lunch document
+     */
+    public void remove(String documentId) {
+        Lunch lunch = lunchByDocumentId.remove(documentId);
+        if (lunch == null) {
+            return;
+        }
+        String restaurantKey = keyOf(lunch.getChosenRestaurant());
+        List<Lunch> lunches = restaurantKey == null ? null : lunchesByRestaurant.get(restaurantKey);
+        if (lunches != null) {
+            lunches.remove(lunch);
+            if (lunches.isEmpty()) {
+                lunchesByRestaurant.remove(restaurantKey);
+            }
+        }
+        String workmateId = workmateIdOf(lunch);
+        // the workmate may have another lunch document, the most recently put one stays : the last one in put order
+        if (workmateId != null && lunchByWorkmate.get(workmateId) == lunch) {
+            lunchByWorkmate.remove(workmateId);
+            for (Lunch other : lunchByDocumentId.values()) {
+                if (workmateId.equals(workmateIdOf(other))) {
+                    lunchByWorkmate.put(workmateId, other);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove every lunch
+     */
+    public void clear() {
+        lunchByDocumentId.clear();
+        lunchesByRestaurant.clear();
+        lunchByWorkmate.clear();
+    }
+
+    /**
+     * Get the lunch of a workmate
+     * @param workmateId the workmate id
+     * @return the lunch, or null if the workmate has not chosen yet
+     */
+    public Lunch getLunchOf(String workmateId) {
+        return lunchByWorkmate.get(workmateId);
+    }
+
+    /**
+     * Get the ids of the lunch documents of a workmate, several only for lunches written before the lunch keys
+     * @param workmateId the workmate id
+     * @return the document ids, empty if none
+     */
+    public List<String> getDocumentIdsOf(String workmateId) {
+        List<String> documentIds = new ArrayList<>(1);
+        if (!lunchByWorkmate.containsKey(workmateId)) {
+            return documentIds;
+        }
+        for (Map.Entry<String, Lunch> entry : lunchByDocumentId.entrySet()) {
+            if (workmateId.equals(workmateIdOf(entry.getValue()))) {
+                documentIds.add(entry.getKey());
+            }
+        }
+        return documentIds;
+    }
+
+    /**
+     * Get the workmates lunching at a restaurant
+     * @param restaurant the restaurant
+     * @return the workmates, empty if none
+     */
+    public ArrayList<Workmate> getWorkmatesAt(Restaurant restaurant) {
+        List<Lunch> lunches = lunchesByRestaurant.get(keyOf(restaurant));
+        ArrayList<Workmate> workmates = new ArrayList<>(lunches == null ? 0 : lunches.size());
+        if (lunches != null) {
+            for (Lunch lunch : lunches) {
+                workmates.add(lunch.getWorkmate());
+            }
+        }
+        return workmates;
+    }
+
+    /**
+     * Get the number of workmates lunching at a restaurant
+     * @param restaurantKey the id of the restaurant (its place id), or its name when it has no id
+     * @return the number of workmates
+     */
+    public int countAt(String restaurantKey) {
+        List<Lunch> lunches = lunchesByRestaurant.get(restaurantKey);
+        return lunches == null ? 0 : lunches.size();
+    }
+
+    /**
+     * Get the number of workmates lunching at each restaurant of a list
+     * @param restaurantKeys the ids of the restaurants (their place ids)
+     * @param out the buffer receiving the numbers, by index in the list
+     */
+    public void countsAt(List<String> restaurantKeys, int[] out) {
+        for (int i = 0; i < restaurantKeys.size(); i++) {
+            out[i] = countAt(restaurantKeys.get(i));
+        }
+    }
+
+    /**
+     * Check if a workmate chose a restaurant
+     * @param workmateId the workmate id
+     * @param restaurant the restaurant
+     * @return true if the lunch of the workmate is at the restaurant
+     */
+    public boolean hasChosen(String workmateId, Restaurant restaurant) {
+        Lunch lunch = lunchByWorkmate.get(workmateId);
+        String restaurantKey = keyOf(restaurant);
+        return lunch != null && restaurantKey != null && restaurantKey.equals(keyOf(lunch.getChosenRestaurant()));
+    }
+
+    /**
+     * Get the number of attendees of every restaurant
+     * @return the numbers, by restaurant key
+     */
+    public Map<String, Integer> getCounts() {
+        Map<String, Integer> counts = new HashMap<>(lunchesByRestaurant.size() * 2);
+        for (Map.Entry<String, List<Lunch>> entry : lunchesByRestaurant.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+        return counts;
+    }
+
+    /**
+     * Get every lunch
+     * @return the lunches, unmodifiable
+     */
+    public List<Lunch> getLunches() {
+        return Collections.unmodifiableList(new ArrayList<>(lunchByDocumentId.values()));
+    }
+
+    public int size() {
+        return lunchByDocumentId.size();
+    }
+
+    /**
+     * Get the key of a restaurant in the index
+     * @param restaurant the restaurant
+     * @return its id, or its name when it has no id, null for no restaurant
+     */
+    public static String keyOf(Restaurant restaurant) {
+        if (restaurant == null) {
+            return null;
+        }
+        return restaurant.getId() != null ? restaurant.getId() : restaurant.getName();
+    }
+
+    private static String workmateIdOf(Lunch lunch) {
+        return lunch.getWorkmate() == null ? null : lunch.getWorkmate().getIdWorkmate();
+    }
+}
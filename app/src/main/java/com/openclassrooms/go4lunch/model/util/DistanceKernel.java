@@ -0,0 +1,132 @@
+package com.openclassrooms.go4lunch.model.util;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+
+import java.util.List;
+
+/**
+ * Distance utility class : distances between positions, in meters, over primitive arrays.
+ *
+ * Nearby restaurants are a few kilometers away, where the equirectangular projection is as accurate
+ * as the haversine formula (relative error below 0.01% under FAST_PATH_MAX_DEGREES) for a fraction of its cost :
+ * no trigonometry per position, a square root only. Positions further away, or close to the poles,
+ * fall back to the haversine formula.
+ *
+ * The array kernel is a straight loop without branches nor allocations, the kind the JIT unrolls and vectorizes,
+ * the fallback runs in a second pass only when a position is out of range.
+ */
+public final class DistanceKernel {
+
+    /** Mean earth radius, in meters */
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    /** Largest latitude or longitude difference of the equirectangular fast path, in degrees (about 110 km) */
+    public static final double FAST_PATH_MAX_DEGREES = 1.0;
+
+    /** Largest absolute latitude of the equirectangular fast path, in degrees */
+    public static final double FAST_PATH_MAX_LATITUDE = 80;
+
+    /** Meters per degree of latitude */
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180;
+
+    /** Utility class, no instance */
+    private DistanceKernel() {
+    }
+
+    /**
+     * Distance between two positions, equirectangular for short ranges, haversine otherwise
+     * @return the distance, in meters
+     */
+    public static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = lat2 - lat1;
+        double dLng = lng2 - lng1;
+        if (Math.abs(dLat) > FAST_PATH_MAX_DEGREES || Math.abs(dLng) > FAST_PATH_MAX_DEGREES
+            || Math.abs(lat1) > FAST_PATH_MAX_LATITUDE) {
+            return haversine(lat1, lng1, lat2, lng2);
+        }
+        return equirectangular(lat1, lng1, lat2, lng2);
+    }
+
+    /**
+     * Distance between two positions with the equirectangular projection, accurate for short ranges only
+     * @return the distance, in meters
+     */
+    public static double equirectangular(double lat1, double lng1, double lat2, double lng2) {
+        double x = (lng2 - lng1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = lat2 - lat1;
+        return METERS_PER_DEGREE * Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Distance between two positions with the haversine formula, accurate at any range
+     * @return the distance, in meters
+     */
+    public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Distances from a position to many positions
+     * @param latitude the latitude of the position
+     * @param longitude the longitude of the position
+     * @param latitudes the latitudes of the positions
+     * @param longitudes the longitudes of the positions
+     * @param from the first position to compute
+     * @param to the position after the last one to compute
+     * @param out the buffer receiving the distances in meters, at the index of each position, NaN for a NaN position
+     */
+    public static void distancesTo(double latitude, double longitude, double[] latitudes, double[] longitudes,
+                                   int from, int to, float[] out) {
+        // the cosine of the mean latitude, linearized around the position : cos(a + d) ~ cos(a) - sin(a) * d
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        double halfSinLat = Math.sin(Math.toRadians(latitude)) * Math.toRadians(1) / 2;
+        double maxDelta = 0;
+        for (int i = from; i < to; i++) {
+            double y = latitudes[i] - latitude;
+            double dLng = longitudes[i] - longitude;
+            double x = dLng * (cosLat - halfSinLat * y);
+            out[i] = (float) (METERS_PER_DEGREE * Math.sqrt(x * x + y * y));
+            maxDelta = Math.max(maxDelta, Math.max(Math.abs(y), Math.abs(dLng)));
+        }
+        if (maxDelta <= FAST_PATH_MAX_DEGREES && Math.abs(latitude) <= FAST_PATH_MAX_LATITUDE) {
+            return;
+        }
+        // some positions are out of the fast path range
+        for (int i = from; i < to; i++) {
+            if (Math.abs(latitudes[i] - latitude) > FAST_PATH_MAX_DEGREES || Math.abs(longitudes[i] - longitude) > FAST_PATH_MAX_DEGREES
+                || Math.abs(latitude) > FAST_PATH_MAX_LATITUDE) {
+                out[i] = (float) haversine(latitude, longitude, latitudes[i], longitudes[i]);
+            }
+        }
+    }
+
+    /**
+     * Copy the coordinates of places into primitive arrays, at the index of each place
+     * @param results the places
+     * @param latitudes the array receiving the latitudes, at least results.size() long
+     * @param longitudes the array receiving the longitudes, at least results.size() long
+     * @return the number of places with a location, the places without one get NaN coordinates, and so NaN distances
+     */
+    public static int coordinatesOf(List<Result> results, double[] latitudes, double[] longitudes) {
+        int located = 0;
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            Location location = result.getGeometry() == null ? null : result.getGeometry().getLocation();
+            if (location == null || location.getLat() == null || location.getLng() == null) {
+                latitudes[i] = Double.NaN;
+                longitudes[i] = Double.NaN;
+                continue;
+            }
+            latitudes[i] = location.getLat();
+            longitudes[i] = location.getLng();
+            located++;
+        }
+        return located;
+    }
+}
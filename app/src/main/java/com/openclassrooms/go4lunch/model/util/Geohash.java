@@ -0,0 +1,99 @@
+package com.openclassrooms.go4lunch.model.util;
+
+/**
+ * Geohash utility class : quantize a latitude / longitude into a base 32 cell identifier.
+ * Two positions sharing the same geohash are in the same cell, the longer the hash the smaller the cell.
+ */
+public final class Geohash {
+
+    /**
+     * Geohash base 32 alphabet
+     */
+    private static final char[] BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    /**
+     * Maximum supported precision, in characters
+     */
+    public static final int MAX_PRECISION = 12;
+
+    /** Utility class, no instance */
+    private Geohash() {
+    }
+
+    /**
+     * Encode a position into a geohash
+     * @param latitude the latitude, in degrees
+     * @param longitude the longitude, in degrees
+     * @param precision the number of characters of the hash, between 1 and MAX_PRECISION
+     * @return the geohash of the cell containing the position
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_PRECISION);
+        }
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+        int position = 0;
+        while (position < precision) {
+            // even bits refine the longitude, odd bits refine the latitude
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    index = (index << 1) | 1;
+                    minLng = mid;
+                } else {
+                    index = index << 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    index = (index << 1) | 1;
+                    minLat = mid;
+                } else {
+                    index = index << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            // every 5 bits, emit a character
+            if (++bit == 5) {
+                hash[position++] = BASE_32[index];
+                bit = 0;
+                index = 0;
+            }
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Encode a Google Maps API "latitude,longitude" location into a geohash
+     * @param location the location, as "latitude,longitude"
+     * @param precision the number of characters of the hash
+     * @return the geohash of the cell containing the location
+     */
+    public static String encode(String location, int precision) {
+        double[] latLng = parseLocation(location);
+        return encode(latLng[0], latLng[1], precision);
+    }
+
+    /**
+     * Parse a Google Maps API "latitude,longitude" location
+     * @param location the location, as "latitude,longitude"
+     * @return the latitude and the longitude
+     */
+    public static double[] parseLocation(String location) {
+        int comma = location.indexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("Location must be formatted as latitude,longitude : " + location);
+        }
+        return new double[]{
+            Double.parseDouble(location.substring(0, comma).trim()),
+            Double.parseDouble(location.substring(comma + 1).trim())
+        };
+    }
+}
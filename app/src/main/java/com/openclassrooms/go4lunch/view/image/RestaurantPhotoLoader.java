@@ -0,0 +1,231 @@
+package com.openclassrooms.go4lunch.view.image;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.openclassrooms.go4lunch.BuildConfig;
+import com.openclassrooms.go4lunch.MainApplication;
+import com.openclassrooms.go4lunch.model.bo.Workmate;
+import com.openclassrooms.go4lunch.model.bo.maps.Photo;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.cache.ImageCacheGlideModule;
+import com.openclassrooms.go4lunch.model.cache.ImageCacheStats;
+import com.openclassrooms.go4lunch.model.repository.RestaurantRepository;
+import com.openclassrooms.go4lunch.model.service.PlacePhotoUrls;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the restaurant photos and the workmate avatars into image views, with Glide.
+ *
+ * - the photo references are turned into Places Photos requests of a bucketed width, see PlacePhotoUrls,
+ * - the thumbnails of the next screenful of a list are prefetched into the disk cache,
+ * - photos and avatars have separate cache budgets, see ImageCacheGlideModule,
+ * - each category counts where its images were served from.
+ */
+public class RestaurantPhotoLoader {
+
+    /** The tag for the log messages */
+    private static final String TAG = RestaurantPhotoLoader.class.getSimpleName();
+
+    /** Number of prefetched photos remembered, not to prefetch them again */
+    private static final int MAX_PREFETCHED = 256;
+
+    /** The application context */
+    private final Context context;
+
+    /** The API key of the Google Maps API */
+    private final String key;
+
+    /** Counters of the restaurant photos and of the workmate avatars */
+    private final ImageCacheStats photoStats = new ImageCacheStats();
+    private final ImageCacheStats avatarStats = new ImageCacheStats();
+
+    /** The cache keys prefetched lately, least recent first */
+    private final Map<String, Boolean> prefetched = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_PREFETCHED;
+        }
+    };
+
+    /**
+     * Loader singleton
+     */
+    private static volatile RestaurantPhotoLoader instance;
+
+    public static RestaurantPhotoLoader getInstance() {
+        if (instance == null) {
+            instance = new RestaurantPhotoLoader(MainApplication.getApplication(), BuildConfig.google_maps_api);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor
+     * @param context the context, the application context is kept
+     * @param key the API key of the Google Maps API
+     */
+    public RestaurantPhotoLoader(Context context, String key) {
+        this.context = context.getApplicationContext();
+        this.key = key;
+    }
+
+    /**
+     * Load the photo of a restaurant into a view
+     * @param view the view, its size should be known (fixed in the layout)
+     * @param result the restaurant
+     * @param widthPx the width of the view, in pixels
+     */
+    public void loadPhoto(ImageView view, Result result, int widthPx) {
+        GlideUrl url = photoUrl(result, widthPx);
+        if (url == null) {
+            Glide.with(view).clear(view);
+            return;
+        }
+        Glide.with(view)
+            .load(url)
+            .listener(counting(photoStats))
+            .into(view);
+    }
+
+    /**
+     * Prefetch the thumbnails of the next screenful of a list, into the disk cache
+     * @param results the restaurants of the list
+     * @param firstVisible the position of the first visible row
+     * @param visibleCount the number of visible rows
+     * @param thumbnailWidthPx the width of the thumbnails, in pixels
+     */
+    public void prefetch(List<Result> results, int firstVisible, int visibleCount, int thumbnailWidthPx) {
+        int from = Math.max(0, firstVisible + visibleCount);
+        int to = Math.min(results.size(), from + visibleCount);
+        for (int i = from; i < to; i++) {
+            GlideUrl url = photoUrl(results.get(i), thumbnailWidthPx);
+            if (url == null || prefetched.put(url.getCacheKey(), Boolean.TRUE) != null) {
+                continue;
+            }
+            // the source bytes only : the list decodes them at the size of its views
+            Glide.with(context)
+                .downloadOnly()
+                .load(url)
+                .diskCacheStrategy(DiskCacheStrategy.DATA)
+                .submit();
+            photoStats.recordPrefetch();
+        }
+    }
+
+    /**
+     * Load the avatar of a workmate into a view
+     * @param view the view
+     * @param workmate the workmate
+     */
+    public void loadAvatar(ImageView view, Workmate workmate) {
+        String url = workmate.getUrlPicture();
+        if (url == null) {
+            Glide.with(view).clear(view);
+            return;
+        }
+        Glide.with(view)
+            .load(url)
+            .signature(ImageCacheGlideModule.AvatarSignature.INSTANCE)
+            .circleCrop()
+            .listener(counting(avatarStats))
+            .into(view);
+    }
+
+    /** Getters */
+    public ImageCacheStats getPhotoStats() {
+        return photoStats;
+    }
+
+    public ImageCacheStats getAvatarStats() {
+        return avatarStats;
+    }
+
+    /**
+     * Log the counters of both categories
+     */
+    public void logStats() {
+        Log.d(TAG, "photos: " + photoStats.report());
+        Log.d(TAG, "avatars: " + avatarStats.report());
+    }
+
+    /**
+     * Build the request of the photo of a restaurant, at the bucket of a width
+     * @return the request, or null if the restaurant has no photo
+     */
+    @Nullable
+    private GlideUrl photoUrl(Result result, int widthPx) {
+        Photo photo = PlacePhotoUrls.photoOf(result);
+        if (photo == null) {
+            return null;
+        }
+        int bucket = PlacePhotoUrls.bucketFor(widthPx, photo.getWidth() == null ? 0 : photo.getWidth());
+        return new KeyedGlideUrl(
+            PlacePhotoUrls.url(RestaurantRepository.MAPS_API_URL, photo.getPhotoReference(), bucket, key),
+            PlacePhotoUrls.cacheKey(photo.getPhotoReference(), bucket));
+    }
+
+    /**
+     * Listener counting where the images are served from
+     */
+    private static RequestListener<Drawable> counting(ImageCacheStats stats) {
+        return new RequestListener<Drawable>() {
+            @Override
+            public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
+                stats.recordFailure();
+                return false;
+            }
+
+            @Override
+            public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
+                switch (dataSource) {
+                    case MEMORY_CACHE:
+                        stats.recordMemoryHit();
+                        break;
+                    case RESOURCE_DISK_CACHE:
+                    case DATA_DISK_CACHE:
+                        stats.recordDiskHit();
+                        break;
+                    default:
+                        stats.recordNetworkLoad();
+                        break;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Glide url with its own cache key : the Places Photos urls carry the API key
+     */
+    private static class KeyedGlideUrl extends GlideUrl {
+
+        private final String cacheKey;
+
+        KeyedGlideUrl(String url, String cacheKey) {
+            super(url);
+            this.cacheKey = cacheKey;
+        }
+
+        @NonNull
+        @Override
+        public String getCacheKey() {
+            return cacheKey;
+        }
+    }
+}
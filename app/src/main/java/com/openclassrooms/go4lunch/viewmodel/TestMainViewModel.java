@@ -14,13 +14,25 @@ import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.openclassrooms.go4lunch.BuildConfig;
 import com.openclassrooms.go4lunch.MainApplication;
 import com.openclassrooms.go4lunch.model.bo.Lunch;
 import com.openclassrooms.go4lunch.model.bo.Restaurant;
 import com.openclassrooms.go4lunch.model.bo.Workmate;
 import com.openclassrooms.go4lunch.model.bo.location.GPSStatus;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
 import com.openclassrooms.go4lunch.model.repository.LocationRepository;
 import com.openclassrooms.go4lunch.model.repository.LunchRepository;
+import com.openclassrooms.go4lunch.model.repository.RestaurantClusterPipeline;
+import com.openclassrooms.go4lunch.model.repository.RestaurantPrefetcher;
+import com.openclassrooms.go4lunch.model.repository.RestaurantRepository;
+import com.openclassrooms.go4lunch.model.store.RestaurantRanker;
+import com.openclassrooms.go4lunch.model.store.TodayLunchIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ViewModel that includes GPS LiveData
@@ -38,6 +50,54 @@ public class TestMainViewModel extends ViewModel {
      */
     private final LunchRepository lunchRepository = LunchRepository.getInstance();
 
+    /**
+     * Prefetcher warming the restaurant searches ahead of the user, fed with the location fixes
+     */
+    private final RestaurantPrefetcher restaurantPrefetcher = new RestaurantPrefetcher(
+            RestaurantRepository.getInstance(),
+            RestaurantRepository.MAPS_API_URL,
+            RestaurantRepository.SEARCH_RADIUS_METERS,
+            RestaurantRepository.SEARCH_TYPE,
+            BuildConfig.google_maps_api
+    );
+
+    /**
+     * Ranking of the restaurants by distance, rating and workmates, fed with the location fixes, the lunches and the pages
+     */
+    private final RestaurantRanker restaurantRanker = new RestaurantRanker();
+
+    /**
+     * The number of workmates lunching at each restaurant today, as last given to the ranking
+     */
+    private Map<String, Integer> workmateCounts = new HashMap<>();
+
+    /**
+     * The best ranked restaurants, best first
+     */
+    private final MediatorLiveData<List<Result>> rankedRestaurantsLiveData = new MediatorLiveData<>();
+
+    /**
+     * The restaurants of the search being ranked, replaced by the next search
+     */
+    @Nullable
+    private LiveData<ArrayList<Result>> rankedSource;
+
+    /**
+     * Marker clustering of the restaurants shown on the map, off the main thread
+     */
+    private final RestaurantClusterPipeline restaurantClusterPipeline = new RestaurantClusterPipeline();
+
+    /**
+     * The changes of the marker clusters, each one carrying the complete clusters for the markers of another generation
+     */
+    private final MediatorLiveData<RestaurantClusterPipeline.Update> clusterUpdatesLiveData = new MediatorLiveData<>();
+
+    /**
+     * The restaurants of the search being clustered, replaced by the next search
+     */
+    @Nullable
+    private LiveData<ArrayList<Result>> clusteredSource;
+
     /**
      * LiveData that indicates if the app has GPS permission
      * MutableLiveData is a subclass of LiveData thats exposes the setValue and postValue methods
@@ -68,12 +128,47 @@ public class TestMainViewModel extends ViewModel {
         LiveData<Location> locationLiveData = locationRepository.getLocationLiveData();
 
         // add the locationLiveData and hasGpsPermissionLiveData to the MediatorLiveData
-        gpsMessageLiveData.addSource(locationLiveData, location ->
-                combine(location, hasGpsPermissionLiveData.getValue())
-        );
+        gpsMessageLiveData.addSource(locationLiveData, location -> {
+                combine(location, hasGpsPermissionLiveData.getValue());
+                // warm the restaurant searches of the cells the user is walking to
+                if (location != null) {
+                    restaurantPrefetcher.onLocation(location);
+                }
+        });
         gpsMessageLiveData.addSource(hasGpsPermissionLiveData, hasGpsPermission ->
                 combine(locationLiveData.getValue(), hasGpsPermission)
         );
+
+        // the cluster changes computed in the background are delivered through the ViewModel
+        clusterUpdatesLiveData.addSource(restaurantClusterPipeline.getUpdates(), clusterUpdatesLiveData::setValue);
+
+        // today's lunches follow the colleagues' choices live, and weigh in the ranking
+        lunchRepository.startLiveMode();
+        rankedRestaurantsLiveData.addSource(lunchRepository.getTodayLunchIndex(), index -> {
+            if (index != null) {
+                updateWorkmateCounts(index);
+                rankedRestaurantsLiveData.setValue(restaurantRanker.getTop());
+            }
+        });
+    }
+
+    /**
+     * Give the ranking the number of workmates lunching at each restaurant
+     * @param index the index of today's lunches
+     */
+    private void updateWorkmateCounts(TodayLunchIndex index) {
+        Map<String, Integer> counts = index.getCounts();
+        for (String restaurantId : workmateCounts.keySet()) {
+            if (!counts.containsKey(restaurantId)) {
+                restaurantRanker.setWorkmateCount(restaurantId, 0);
+            }
+        }
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            if (!count.getValue().equals(workmateCounts.get(count.getKey()))) {
+                restaurantRanker.setWorkmateCount(count.getKey(), count.getValue());
+            }
+        }
+        workmateCounts = counts;
     }
 
     /**
@@ -121,8 +216,80 @@ public class TestMainViewModel extends ViewModel {
                 gpsMessageLiveData.setValue(new GPSStatus(false, true));
             }
         } else {
-            gpsMessageLiveData.setValue(new GPSStatus(location.getLongitude(),location.getLatitude()));
+            GPSStatus gpsStatus = new GPSStatus(location.getLongitude(),location.getLatitude());
+            gpsMessageLiveData.setValue(gpsStatus);
+            restaurantRanker.onLocation(gpsStatus);
+            rankedRestaurantsLiveData.setValue(restaurantRanker.getTop());
+        }
+    }
+
+    /**
+     * Get the best ranked restaurants
+     * @return LiveData of the restaurants, best first
+     */
+    public LiveData<List<Result>> getRankedRestaurants() {
+        return rankedRestaurantsLiveData;
+    }
+
+    /**
+     * Rank the restaurants of a search, as soon as each page arrives, in place of the previous search
+     * @param restaurants the restaurants of the search, as returned by RestaurantRepository
+     */
+    public void rankRestaurants(LiveData<ArrayList<Result>> restaurants) {
+        // the places of the previous search leave the ranking, and its late pages are ignored
+        if (rankedSource != null) {
+            rankedRestaurantsLiveData.removeSource(rankedSource);
+            restaurantRanker.clear();
+        }
+        rankedSource = restaurants;
+        rankedRestaurantsLiveData.addSource(restaurants, results -> {
+            if (results != null) {
+                // the places already ranked with the same attributes are skipped
+                restaurantRanker.addAll(results);
+                rankedRestaurantsLiveData.setValue(restaurantRanker.getTop());
+            }
+        });
+    }
+
+    /**
+     * Get the changes of the marker clusters of the map. An observer keeps the generation of its markers :
+     * it applies the diff of an update of that base generation, the markers to remove then the markers to add,
+     * and redraws every marker from the complete clusters of any other update, e.g. after it was stopped or recreated
+     * @return LiveData of the changes
+     */
+    public LiveData<RestaurantClusterPipeline.Update> getClusterUpdates() {
+        return clusterUpdatesLiveData;
+    }
+
+    /**
+     * Cluster the restaurants of a search on the map, as soon as each page arrives, in place of the previous search
+     * @param restaurants the restaurants of the search, as returned by RestaurantRepository
+     */
+    public void clusterRestaurants(LiveData<ArrayList<Result>> restaurants) {
+        // the late pages of the previous search would replace the places of this one
+        if (clusteredSource != null) {
+            clusterUpdatesLiveData.removeSource(clusteredSource);
         }
+        clusteredSource = restaurants;
+        clusterUpdatesLiveData.addSource(restaurants, restaurantClusterPipeline::setPlaces);
+    }
+
+    /**
+     * Recluster the map when the camera changes zoom level
+     * @param zoom the zoom of the camera
+     */
+    public void onCameraZoom(float zoom) {
+        restaurantClusterPipeline.setZoom(zoom);
+    }
+
+    /**
+     * Stop the clustering thread and the prefetches with the ViewModel
+     */
+    @Override
+    protected void onCleared() {
+        restaurantClusterPipeline.shutdown();
+        restaurantPrefetcher.stop();
+        lunchRepository.stopLiveMode();
     }
 
     /**
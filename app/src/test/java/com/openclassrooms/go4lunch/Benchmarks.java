@@ -0,0 +1,98 @@
+package com.openclassrooms.go4lunch;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures shared by the benchmark tests : elapsed time and bytes allocated by the test thread, or by every thread.
+ *
+ * The benchmarks assert on deterministic measures only, allocated bytes or counts, never on the elapsed time
+ * of a shared machine ; their figures are only printed with -Dbenchmark.verbose=true.
+ */
+final class Benchmarks {
+
+    /** True to print the figures of the benchmarks */
+    private static final boolean VERBOSE = Boolean.getBoolean("benchmark.verbose");
+
+    /**
+     * A measured body, repeated
+     */
+    interface Body {
+        void run() throws Exception;
+    }
+
+    /** Utility class, no instance */
+    private Benchmarks() {
+    }
+
+    /**
+     * Measure the elapsed time and the allocated bytes of repeated runs, after a warm up
+     * @param warmUps the number of runs before the measure
+     * @param runs the number of measured runs
+     * @param body the body to repeat
+     * @return the elapsed nanoseconds and the allocated bytes of the measured runs
+     */
+    static long[] measure(int warmUps, int runs, Body body) {
+        return measure(warmUps, runs, body, false);
+    }
+
+    /**
+     * Measure the elapsed time and the bytes allocated by every thread of repeated runs, after a warm up,
+     * for the bodies handing their work to other threads : dispatchers, schedulers, executors
+     * @param warmUps the number of runs before the measure
+     * @param runs the number of measured runs
+     * @param body the body to repeat
+     * @return the elapsed nanoseconds and the allocated bytes of the measured runs
+     */
+    static long[] measureAllThreads(int warmUps, int runs, Body body) {
+        return measure(warmUps, runs, body, true);
+    }
+
+    private static long[] measure(int warmUps, int runs, Body body, boolean allThreads) {
+        try {
+            for (int i = 0; i < warmUps; i++) {
+                body.run();
+            }
+            long allocatedBefore = allThreads ? allocatedBytesOfAllThreads() : allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                body.run();
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocatedAfter = allThreads ? allocatedBytesOfAllThreads() : allocatedBytes();
+            return new long[]{elapsed, allocatedAfter - allocatedBefore};
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the bytes allocated by the current thread so far
+     */
+    static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Get the bytes allocated so far by the live threads, the threads which ended meanwhile are not counted
+     */
+    static long allocatedBytesOfAllThreads() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+            // -1 for a thread which ended since the ids were read
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    /**
+     * Print a line of figures, only with -Dbenchmark.verbose=true
+     * @param line the figures
+     */
+    static void report(String line) {
+        if (VERBOSE) {
+            System.out.println(line);
+        }
+    }
+}
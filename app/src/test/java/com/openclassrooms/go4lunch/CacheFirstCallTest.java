@@ -0,0 +1,124 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.service.CacheFirstCall;
+import com.openclassrooms.go4lunch.model.service.CallbackExecutorCall;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Lookup of the disk cache on its IO thread, before the network
+ */
+public class CacheFirstCallTest {
+
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    /** Stands in for the main thread of the application */
+    private final ExecutorService mainExecutor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+        mainExecutor.shutdownNow();
+    }
+
+    /** A cached body is served without reaching the network, the lookup runs off the caller thread */
+    @Test
+    public void hitSkipsTheNetwork() throws InterruptedException {
+        PendingCall<String> network = new PendingCall<>();
+        AtomicReference<Thread> lookupThread = new AtomicReference<>();
+        Call<String> call = new CacheFirstCall<>(network, ioExecutor, () -> {
+            lookupThread.set(Thread.currentThread());
+            return "cached";
+        });
+        assertEquals("cached", await(call));
+        assertNotSame(Thread.currentThread(), lookupThread.get());
+        assertTrue(network.launched.isEmpty());
+    }
+
+    /** A miss runs the network call */
+    @Test
+    public void missReachesTheNetwork() throws InterruptedException {
+        PendingCall<String> network = new PendingCall<>();
+        CountDownLatch launched = new CountDownLatch(1);
+        Call<String> call = new CacheFirstCall<>(network, ioExecutor, () -> null);
+        AtomicReference<String> body = new AtomicReference<>();
+        call.enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                body.set(response.body());
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+            }
+        });
+        ioExecutor.execute(launched::countDown);
+        assertTrue(launched.await(5, TimeUnit.SECONDS));
+        assertEquals(1, network.launched.size());
+        network.respond("fetched");
+        assertEquals("fetched", body.get());
+    }
+
+    /** Wrapped by the repository, a hit is delivered on the callback executor, not on the IO thread */
+    @Test
+    public void hitIsDeliveredOnTheCallbackExecutor() throws Exception {
+        Thread mainThread = mainExecutor.submit(Thread::currentThread).get();
+        AtomicReference<Thread> lookupThread = new AtomicReference<>();
+        AtomicReference<Thread> callbackThread = new AtomicReference<>();
+        Call<String> call = new CallbackExecutorCall<>(new CacheFirstCall<>(new PendingCall<>(), ioExecutor, () -> {
+            lookupThread.set(Thread.currentThread());
+            return "cached";
+        }), mainExecutor);
+        CountDownLatch done = new CountDownLatch(1);
+        call.enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                callbackThread.set(Thread.currentThread());
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(mainThread, callbackThread.get());
+        assertNotSame(mainThread, lookupThread.get());
+    }
+
+    private static String await(Call<String> call) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<String> body = new AtomicReference<>();
+        call.enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                body.set(response.body());
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return body.get();
+    }
+}
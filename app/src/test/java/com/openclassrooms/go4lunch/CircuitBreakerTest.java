@@ -0,0 +1,80 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.service.CircuitBreaker;
+
+import org.junit.Test;
+
+/**
+ * States of the circuit breaker : closed, open after the failures, half open for a trial call, closed again
+ */
+public class CircuitBreakerTest {
+
+    private static final int THRESHOLD = 3;
+    private static final long OPEN_MS = 30_000;
+
+    private long clock = 1_000_000;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(THRESHOLD, OPEN_MS) {
+        @Override
+        protected long now() {
+            return clock;
+        }
+    };
+
+    /** Closed, then open after the consecutive failures, then half open, then closed by a successful trial */
+    @Test
+    public void closedOpenHalfOpenClosed() {
+        for (int i = 0; i < THRESHOLD - 1; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+
+        clock += OPEN_MS;
+        assertFalse(breaker.isOpen());
+        // a single trial call goes through
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    /** A failed trial opens the circuit again, for a whole open time */
+    @Test
+    public void failedTrialOpensAgain() {
+        for (int i = 0; i < THRESHOLD; i++) {
+            breaker.onFailure();
+        }
+        clock += OPEN_MS;
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        clock += OPEN_MS - 1;
+        assertFalse(breaker.allowRequest());
+        clock += 1;
+        assertTrue(breaker.allowRequest());
+    }
+
+    /** A success in between resets the count of consecutive failures */
+    @Test
+    public void successResetsTheFailures() {
+        for (int i = 0; i < 10; i++) {
+            for (int failure = 0; failure < THRESHOLD - 1; failure++) {
+                breaker.onFailure();
+            }
+            breaker.onSuccess();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
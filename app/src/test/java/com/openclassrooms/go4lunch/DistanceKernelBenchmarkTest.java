@@ -0,0 +1,161 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Geometry;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.store.DistanceColumn;
+import com.openclassrooms.go4lunch.model.util.DistanceKernel;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Accuracy and throughput benchmarks of the distance kernel, and of the cached distance column
+ */
+public class DistanceKernelBenchmarkTest {
+
+    /** Number of positions */
+    private static final int POSITIONS = 10_000;
+
+    /** Number of measured passes over the positions */
+    private static final int PASSES = 500;
+
+    /** Ranges of the accuracy benchmark, in meters */
+    private static final double[] RANGES = {100, 1_000, 5_000, 20_000, 100_000, 500_000};
+
+    /** Reference latitudes of the accuracy benchmark */
+    private static final double[] LATITUDES = {0, 48.1, 65, 79};
+
+    /** The fast path stays within 0.01% of the haversine formula, and the fallback takes over beyond its range */
+    @Test
+    public void accuracyAgainstHaversine() {
+        Random random = new Random(1);
+        float[] out = new float[POSITIONS];
+        double[] latitudes = new double[POSITIONS];
+        double[] longitudes = new double[POSITIONS];
+        for (double latitude : LATITUDES) {
+            for (double range : RANGES) {
+                fillAround(random, latitude, 2.35, range, latitudes, longitudes);
+                DistanceKernel.distancesTo(latitude, 2.35, latitudes, longitudes, 0, POSITIONS, out);
+                double maxScalarError = 0;
+                double maxArrayError = 0;
+                for (int i = 0; i < POSITIONS; i++) {
+                    double expected = DistanceKernel.haversine(latitude, 2.35, latitudes[i], longitudes[i]);
+                    double scalar = DistanceKernel.distance(latitude, 2.35, latitudes[i], longitudes[i]);
+                    maxScalarError = Math.max(maxScalarError, Math.abs(scalar - expected) / expected);
+                    // the array kernel returns floats
+                    maxArrayError = Math.max(maxArrayError, Math.abs(out[i] - expected) / expected);
+                }
+                Benchmarks.report(String.format("latitude %4.1f, range %7.0f m : max relative error %.2e (scalar), %.2e (array)",
+                    latitude, range, maxScalarError, maxArrayError));
+                assertTrue(maxScalarError < 1e-4);
+                assertTrue(maxArrayError < 1e-4);
+            }
+        }
+    }
+
+    /** The array kernel allocates nothing per position ; its time against a haversine per position is only reported */
+    @Test
+    public void throughputAgainstHaversine() {
+        Random random = new Random(2);
+        double[] latitudes = new double[POSITIONS];
+        double[] longitudes = new double[POSITIONS];
+        fillAround(random, 48.1, -1.68, 5_000, latitudes, longitudes);
+        float[] out = new float[POSITIONS];
+
+        long haversineNanos = Benchmarks.measure(PASSES, PASSES, () -> {
+            for (int i = 0; i < POSITIONS; i++) {
+                out[i] = (float) DistanceKernel.haversine(48.1, -1.68, latitudes[i], longitudes[i]);
+            }
+        })[0];
+        long[] kernel = Benchmarks.measure(PASSES, PASSES, () -> DistanceKernel.distancesTo(48.1, -1.68, latitudes, longitudes, 0, POSITIONS, out));
+        long kernelNanos = kernel[0];
+
+        Benchmarks.report("haversine    : " + haversineNanos * 1000 / ((long) PASSES * POSITIONS) / 1000.0 + " ns/position");
+        Benchmarks.report("array kernel : " + kernelNanos * 1000 / ((long) PASSES * POSITIONS) / 1000.0 + " ns/position");
+        // no boxing nor array per position : only the fixed cost of the measure, whatever the load of the machine
+        assertTrue(kernel[1] < POSITIONS);
+    }
+
+    /** GPS jitter reuses the column, a real move recomputes it, appended and moved rows are computed alone */
+    @Test
+    public void distanceColumnIsRecomputedPastTheThreshold() {
+        Random random = new Random(3);
+        double[] latitudes = new double[POSITIONS];
+        double[] longitudes = new double[POSITIONS];
+        fillAround(random, 48.1, -1.68, 5_000, latitudes, longitudes);
+        DistanceColumn column = new DistanceColumn(10);
+
+        float[] distances = column.update(48.1, -1.68, latitudes, longitudes, POSITIONS / 2);
+        assertEquals(1, column.getRecomputeCount());
+
+        // a few meters of jitter, and a page of new rows
+        distances = column.update(48.10002, -1.68002, latitudes, longitudes, POSITIONS);
+        assertEquals(1, column.getRecomputeCount());
+        assertEquals(DistanceKernel.distance(48.1, -1.68, latitudes[POSITIONS - 1], longitudes[POSITIONS - 1]),
+            distances[POSITIONS - 1], 0.01);
+
+        // a row updated in place
+        latitudes[3] += 0.001;
+        column.invalidate(3);
+        distances = column.update(48.1, -1.68, latitudes, longitudes, POSITIONS);
+        assertEquals(DistanceKernel.distance(48.1, -1.68, latitudes[3], longitudes[3]), distances[3], 0.01);
+        assertEquals(1, column.getRecomputeCount());
+
+        // a real move
+        distances = column.update(48.1005, -1.68, latitudes, longitudes, POSITIONS);
+        assertEquals(2, column.getRecomputeCount());
+        assertEquals(DistanceKernel.distance(48.1005, -1.68, latitudes[0], longitudes[0]), distances[0], 0.01);
+
+        // the user stands still : no work at all
+        long start = System.nanoTime();
+        for (int i = 0; i < PASSES; i++) {
+            column.update(48.1005 + (i % 2) * 0.00001, -1.68, latitudes, longitudes, POSITIONS);
+        }
+        long cachedNanos = System.nanoTime() - start;
+        Benchmarks.report("cached column : " + cachedNanos / PASSES + " ns/fix for " + POSITIONS + " rows");
+        assertEquals(2, column.getRecomputeCount());
+    }
+
+    /** The coordinates stay at the index of their place, a place without location gets a NaN distance */
+    @Test
+    public void coordinatesKeepTheIndexOfThePlaces() {
+        Location location = new Location();
+        location.setLat(48.101);
+        location.setLng(-1.68);
+        Geometry geometry = new Geometry();
+        geometry.setLocation(location);
+        Result located = new Result();
+        located.setGeometry(geometry);
+        Result unlocated = new Result();
+
+        double[] latitudes = new double[3];
+        double[] longitudes = new double[3];
+        assertEquals(2, DistanceKernel.coordinatesOf(Arrays.asList(unlocated, located, located), latitudes, longitudes));
+        float[] out = new float[3];
+        DistanceKernel.distancesTo(48.1, -1.68, latitudes, longitudes, 0, 3, out);
+        assertTrue(Float.isNaN(out[0]));
+        assertEquals(DistanceKernel.distance(48.1, -1.68, 48.101, -1.68), out[1], 0.01);
+        assertEquals(out[1], out[2], 0);
+    }
+
+    /**
+     * Fill positions at a random bearing and a random distance up to a range, around a position
+     */
+    private static void fillAround(Random random, double latitude, double longitude, double range,
+                                   double[] latitudes, double[] longitudes) {
+        for (int i = 0; i < latitudes.length; i++) {
+            double meters = range * (0.1 + 0.9 * random.nextDouble());
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double dLat = meters * Math.cos(bearing) / 111_195;
+            double dLng = meters * Math.sin(bearing) / (111_195 * Math.cos(Math.toRadians(latitude)));
+            latitudes[i] = latitude + dLat;
+            longitudes[i] = longitude + dLng;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.util.Geohash;
+
+import org.junit.Test;
+
+/**
+ * Encoding of the positions into geohash cells
+ */
+public class GeohashTest {
+
+    /** Reference hashes of the geohash specification */
+    @Test
+    public void encodesReferencePositions() {
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", Geohash.encode(42.6, -5.6, 5));
+        assertEquals("s00000000000", Geohash.encode(0, 0, Geohash.MAX_PRECISION));
+        assertEquals("0", Geohash.encode(-90, -180, 1));
+        assertEquals("z", Geohash.encode(89.999, 179.999, 1));
+    }
+
+    /** A shorter hash is the prefix of a longer one : its cell contains the smaller cell */
+    @Test
+    public void shorterHashIsPrefix() {
+        String full = Geohash.encode(48.8566, 2.3522, Geohash.MAX_PRECISION);
+        for (int precision = 1; precision < Geohash.MAX_PRECISION; precision++) {
+            assertTrue(full.startsWith(Geohash.encode(48.8566, 2.3522, precision)));
+        }
+    }
+
+    /** Close positions share a cell, distant ones do not */
+    @Test
+    public void closePositionsShareTheCell() {
+        assertEquals(Geohash.encode(48.85660, 2.35220, 7), Geohash.encode(48.85665, 2.35230, 7));
+        assertNotEquals(Geohash.encode(48.85660, 2.35220, 7), Geohash.encode(48.86560, 2.35220, 7));
+    }
+
+    /** A Maps API location is parsed as latitude,longitude, spaces allowed */
+    @Test
+    public void encodesMapsLocation() {
+        assertArrayEquals(new double[]{42.6, -5.6}, Geohash.parseLocation("42.6, -5.6"), 0);
+        assertEquals("ezs42", Geohash.encode("42.6,-5.6", 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLocationWithoutComma() {
+        Geohash.parseLocation("42.6 -5.6");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPrecisionOutOfRange() {
+        Geohash.encode(42.6, -5.6, Geohash.MAX_PRECISION + 1);
+    }
+}
@@ -0,0 +1,238 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.MemoryCache;
+import com.openclassrooms.go4lunch.model.cache.ImageCacheGlideModule;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Partitions of the Glide caches : the avatars never share the budget of the restaurant photos
+ */
+public class ImageCacheGlideModuleTest {
+
+    /** The small resources go to the avatar budget, a lookup finds a resource in either partition */
+    @Test
+    public void memoryPartitionBySize() {
+        MapMemoryCache photos = new MapMemoryCache();
+        MapMemoryCache avatars = new MapMemoryCache();
+        MemoryCache cache = new ImageCacheGlideModule.PartitionedMemoryCache(photos, avatars, ImageCacheGlideModule.AVATAR_MAX_BYTES);
+
+        Key avatarKey = new NamedKey("avatar");
+        Key photoKey = new NamedKey("photo");
+        FakeResource avatar = new FakeResource(ImageCacheGlideModule.AVATAR_MAX_BYTES);
+        FakeResource photo = new FakeResource(ImageCacheGlideModule.AVATAR_MAX_BYTES + 1);
+        cache.put(avatarKey, avatar);
+        cache.put(photoKey, photo);
+        assertSame(avatar, avatars.resources.get(avatarKey));
+        assertSame(photo, photos.resources.get(photoKey));
+        assertEquals(2L * ImageCacheGlideModule.AVATAR_MAX_BYTES + 1, cache.getCurrentSize());
+
+        assertSame(avatar, cache.remove(avatarKey));
+        assertSame(photo, cache.remove(photoKey));
+        assertNull(cache.remove(photoKey));
+        assertEquals(0, cache.getCurrentSize());
+    }
+
+    /** The disk keys holding the avatar signature go to the avatar partition, read through the Key API only */
+    @Test
+    public void diskPartitionBySignature() {
+        MapDiskCache photos = new MapDiskCache();
+        MapDiskCache avatars = new MapDiskCache();
+        DiskCache cache = new ImageCacheGlideModule.PartitionedDiskCache(photos, avatars);
+
+        // like the data and resource cache keys of Glide, made of the source key and the signature
+        Key avatarKey = new SignedKey(new NamedKey("https://example.com/avatar.png"), ImageCacheGlideModule.AvatarSignature.INSTANCE);
+        Key photoKey = new SignedKey(new NamedKey("photo/reference/400"), new NamedKey("empty"));
+        cache.put(avatarKey, file -> true);
+        cache.put(photoKey, file -> true);
+        assertTrue(avatars.files.containsKey(avatarKey));
+        assertTrue(photos.files.containsKey(photoKey));
+        assertEquals(1, avatars.files.size());
+        assertEquals(1, photos.files.size());
+
+        assertSame(avatars.files.get(avatarKey), cache.get(avatarKey));
+        cache.delete(avatarKey);
+        assertTrue(avatars.files.isEmpty());
+        cache.clear();
+        assertTrue(photos.files.isEmpty());
+    }
+
+    /** A key identified by a name */
+    private static final class NamedKey implements Key {
+
+        private final String name;
+
+        NamedKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+            messageDigest.update(name.getBytes(CHARSET));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NamedKey && ((NamedKey) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    /** A key made of a source key and a signature */
+    private static final class SignedKey implements Key {
+
+        private final Key sourceKey;
+        private final Key signature;
+
+        SignedKey(Key sourceKey, Key signature) {
+            this.sourceKey = sourceKey;
+            this.signature = signature;
+        }
+
+        @Override
+        public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+            sourceKey.updateDiskCacheKey(messageDigest);
+            signature.updateDiskCacheKey(messageDigest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SignedKey && ((SignedKey) o).sourceKey.equals(sourceKey) && ((SignedKey) o).signature.equals(signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sourceKey.hashCode() + signature.hashCode();
+        }
+    }
+
+    /** A resource of a given size */
+    private static final class FakeResource implements Resource<Object> {
+
+        private final int size;
+
+        FakeResource(int size) {
+            this.size = size;
+        }
+
+        @NonNull
+        @Override
+        public Class<Object> getResourceClass() {
+            return Object.class;
+        }
+
+        @NonNull
+        @Override
+        public Object get() {
+            return this;
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public void recycle() {
+        }
+    }
+
+    /** A memory cache without any budget */
+    private static final class MapMemoryCache implements MemoryCache {
+
+        private final Map<Key, Resource<?>> resources = new HashMap<>();
+
+        @Override
+        public long getCurrentSize() {
+            long size = 0;
+            for (Resource<?> resource : resources.values()) {
+                size += resource.getSize();
+            }
+            return size;
+        }
+
+        @Override
+        public long getMaxSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public void setSizeMultiplier(float multiplier) {
+        }
+
+        @Nullable
+        @Override
+        public Resource<?> remove(@NonNull Key key) {
+            return resources.remove(key);
+        }
+
+        @Nullable
+        @Override
+        public Resource<?> put(@NonNull Key key, @Nullable Resource<?> resource) {
+            return resources.put(key, resource);
+        }
+
+        @Override
+        public void setResourceRemovedListener(@NonNull ResourceRemovedListener listener) {
+        }
+
+        @Override
+        public void clearMemory() {
+            resources.clear();
+        }
+
+        @Override
+        public void trimMemory(int level) {
+        }
+    }
+
+    /** A disk cache keeping the written keys */
+    private static final class MapDiskCache implements DiskCache {
+
+        private final Map<Key, File> files = new HashMap<>();
+
+        @Nullable
+        @Override
+        public File get(Key key) {
+            return files.get(key);
+        }
+
+        @Override
+        public void put(Key key, Writer writer) {
+            File file = new File("cache", Integer.toHexString(key.hashCode()));
+            if (writer.write(file)) {
+                files.put(key, file);
+            }
+        }
+
+        @Override
+        public void delete(Key key) {
+            files.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            files.clear();
+        }
+    }
+}
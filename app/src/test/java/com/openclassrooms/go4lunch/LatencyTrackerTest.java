@@ -0,0 +1,45 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.service.LatencyTracker;
+
+import org.junit.Test;
+
+/**
+ * Percentiles of the latencies of the endpoints, over their last calls
+ */
+public class LatencyTrackerTest {
+
+    /** Nearest rank percentiles, per endpoint */
+    @Test
+    public void percentiles() {
+        LatencyTracker tracker = new LatencyTracker();
+        assertEquals(-1, tracker.percentile("nearbysearch", 50));
+        for (int latency = 100; latency >= 1; latency--) {
+            tracker.record("nearbysearch", latency);
+        }
+        tracker.record("details", 7);
+        assertEquals(50, tracker.percentile("nearbysearch", 50));
+        assertEquals(95, tracker.percentile("nearbysearch", 95));
+        assertEquals(99, tracker.percentile("nearbysearch", 99));
+        assertEquals(100, tracker.sampleCount("nearbysearch"));
+        assertEquals(7, tracker.percentile("details", 99));
+        assertTrue(tracker.report().contains("nearbysearch p50=50ms p95=95ms p99=99ms n=100"));
+    }
+
+    /** Only the last WINDOW latencies count */
+    @Test
+    public void oldLatenciesAreForgotten() {
+        LatencyTracker tracker = new LatencyTracker();
+        for (int i = 0; i < LatencyTracker.WINDOW; i++) {
+            tracker.record("nearbysearch", 10_000);
+        }
+        for (int i = 0; i < LatencyTracker.WINDOW; i++) {
+            tracker.record("nearbysearch", 10);
+        }
+        assertEquals(LatencyTracker.WINDOW, tracker.sampleCount("nearbysearch"));
+        assertEquals(10, tracker.percentile("nearbysearch", 99));
+    }
+}
@@ -0,0 +1,164 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.Lunch;
+import com.openclassrooms.go4lunch.model.bo.Restaurant;
+import com.openclassrooms.go4lunch.model.bo.Workmate;
+import com.openclassrooms.go4lunch.model.store.LunchAttendees;
+import com.openclassrooms.go4lunch.model.store.LunchKeys;
+import com.openclassrooms.go4lunch.model.store.TodayLunchIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark of the round trips needed to bind the attendees of a page of restaurants, against a local stand-in
+ * of today's lunches : one query per restaurant, compared to chunked whereIn queries and to the index.
+ */
+public class LunchAttendeesBenchmarkTest {
+
+    /** Sizes of the pages, the Nearby Search returns 20 places a page, up to 60 */
+    private static final int[] PAGE_SIZES = {5, 20, 60};
+
+    /** Number of workmates lunching today, and of restaurants around */
+    private static final int WORKMATES = 200;
+    private static final int RESTAURANTS = 300;
+
+    /** The three lookups return the same attendees, in page order */
+    @Test
+    public void lookupsAgree() {
+        Random random = new Random(11);
+        List<Lunch> lunches = buildLunches(random);
+        TodayLunchIndex index = indexOf(lunches);
+        List<Restaurant> page = buildPage(random, 20);
+        // a duplicate and a restaurant without id are ignored
+        page.add(page.get(0));
+        page.add(new Restaurant(null, "No id", null, 3f, null, null, null, null, "14:00"));
+
+        Map<String, ArrayList<Workmate>> batched = batched(new StandInLunches(lunches), page);
+        Map<String, ArrayList<Workmate>> perRestaurant = perRestaurant(new StandInLunches(lunches), page);
+        Map<String, ArrayList<Workmate>> indexed = LunchAttendees.fromIndex(page, index);
+        assertEquals(20, batched.size());
+        assertEquals(new ArrayList<>(perRestaurant.keySet()), new ArrayList<>(batched.keySet()));
+        for (String id : perRestaurant.keySet()) {
+            assertEquals(idsOf(perRestaurant.get(id)), idsOf(batched.get(id)));
+            assertEquals(idsOf(perRestaurant.get(id)), idsOf(indexed.get(id)));
+        }
+    }
+
+    /** A page costs one round trip per restaurant, one per MAX_IN_VALUES restaurants batched, none indexed */
+    @Test
+    public void roundTripsPerPage() {
+        Random random = new Random(5);
+        List<Lunch> lunches = buildLunches(random);
+        for (int size : PAGE_SIZES) {
+            List<Restaurant> page = buildPage(random, size);
+            StandInLunches perRestaurantLunches = new StandInLunches(lunches);
+            StandInLunches batchedLunches = new StandInLunches(lunches);
+            perRestaurant(perRestaurantLunches, page);
+            batched(batchedLunches, page);
+
+            int expected = (size + LunchAttendees.MAX_IN_VALUES - 1) / LunchAttendees.MAX_IN_VALUES;
+            Benchmarks.report("page of " + size + " : round trips per restaurant " + perRestaurantLunches.roundTrips
+                + ", batched " + batchedLunches.roundTrips + ", indexed 0"
+                + " ; documents read per restaurant " + perRestaurantLunches.reads + ", batched " + batchedLunches.reads);
+            assertEquals(size, perRestaurantLunches.roundTrips);
+            assertEquals(expected, batchedLunches.roundTrips);
+            assertTrue(batchedLunches.reads <= perRestaurantLunches.reads);
+        }
+    }
+
+    /** The attendees with one query per restaurant, like getTodayLunchByRestaurantTask */
+    private static Map<String, ArrayList<Workmate>> perRestaurant(StandInLunches lunches, List<Restaurant> page) {
+        List<Lunch> found = new ArrayList<>();
+        for (List<String> ids : LunchAttendees.restaurantIdChunks(page, 1)) {
+            found.addAll(lunches.whereIn(ids));
+        }
+        return LunchAttendees.group(page, found);
+    }
+
+    /** The attendees with chunked whereIn queries, like LunchRepository */
+    private static Map<String, ArrayList<Workmate>> batched(StandInLunches lunches, List<Restaurant> page) {
+        List<Lunch> found = new ArrayList<>();
+        for (List<String> ids : LunchAttendees.restaurantIdChunks(page, LunchAttendees.MAX_IN_VALUES)) {
+            found.addAll(lunches.whereIn(ids));
+        }
+        return LunchAttendees.group(page, found);
+    }
+
+    private static TodayLunchIndex indexOf(List<Lunch> lunches) {
+        TodayLunchIndex index = new TodayLunchIndex();
+        for (Lunch lunch : lunches) {
+            index.put(LunchKeys.documentId(lunch.getDateLunch(), lunch.getWorkmate().getIdWorkmate()), lunch);
+        }
+        return index;
+    }
+
+    private static List<String> idsOf(List<Workmate> workmates) {
+        List<String> ids = new ArrayList<>();
+        for (Workmate workmate : workmates) {
+            ids.add(workmate.getIdWorkmate());
+        }
+        ids.sort(String::compareTo);
+        return ids;
+    }
+
+    /**
+     * Build today's lunches, a few restaurants being more popular
+     */
+    private static List<Lunch> buildLunches(Random random) {
+        List<Lunch> lunches = new ArrayList<>(WORKMATES);
+        for (int i = 0; i < WORKMATES; i++) {
+            int place = random.nextBoolean() ? random.nextInt(10) : random.nextInt(RESTAURANTS);
+            Workmate workmate = new Workmate("w" + i, "w" + i, "w" + i + "@go4lunch.com", null);
+            lunches.add(new Lunch("2026-10-18", restaurant(place), workmate));
+        }
+        return lunches;
+    }
+
+    private static List<Restaurant> buildPage(Random random, int size) {
+        List<Restaurant> page = new ArrayList<>(size);
+        int first = random.nextInt(RESTAURANTS - size);
+        for (int i = 0; i < size; i++) {
+            page.add(restaurant(first + i));
+        }
+        return page;
+    }
+
+    private static Restaurant restaurant(int i) {
+        return new Restaurant("place" + i, "Restaurant " + i, null, 4f, null, null, null, null, "14:00");
+    }
+
+    /**
+     * Local stand-in of today's lunches, counting the queries and the documents read like Firestore :
+     * a query reads every matching document, at least one
+     */
+    private static class StandInLunches {
+
+        private final List<Lunch> lunches;
+        private int roundTrips;
+        private int reads;
+
+        StandInLunches(List<Lunch> lunches) {
+            this.lunches = lunches;
+        }
+
+        List<Lunch> whereIn(List<String> restaurantIds) {
+            List<Lunch> found = new ArrayList<>();
+            for (Lunch lunch : lunches) {
+                if (restaurantIds.contains(lunch.getChosenRestaurant().getId())) {
+                    found.add(lunch);
+                }
+            }
+            roundTrips++;
+            reads += Math.max(1, found.size());
+            return found;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.openclassrooms.go4lunch.model.store.LunchDayClock;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Key of the lunch day in the local time zone : DST days, rollover at midnight
+ */
+public class LunchDayClockTest {
+
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LunchDayClock dayClock = new LunchDayClock(PARIS) {
+        @Override
+        protected long now() {
+            return clock.get();
+        }
+    };
+
+    /** The day after a DST change starts at local midnight, not 24 hours after the previous one */
+    @Test
+    public void dstDaysAre23Or25HoursLong() {
+        // 2026-03-29, clocks go forward at 2am : a 23 hours day
+        clock.set(at(2026, 3, 29, 0, 30));
+        assertEquals("2026-03-29", dayClock.getDayKey());
+        assertEquals(TimeUnit.MINUTES.toMillis(22 * 60 + 30), dayClock.getMillisUntilRollover());
+
+        // 2026-10-25, clocks go back at 3am : a 25 hours day
+        clock.set(at(2026, 10, 25, 0, 30));
+        assertEquals("2026-10-25", dayClock.getDayKey());
+        assertEquals(TimeUnit.MINUTES.toMillis(24 * 60 + 30), dayClock.getMillisUntilRollover());
+        // 23:30, 24 hours later, is still the same day
+        clock.addAndGet(TimeUnit.HOURS.toMillis(24));
+        assertEquals("2026-10-25", dayClock.getDayKey());
+        assertEquals(TimeUnit.MINUTES.toMillis(30), dayClock.getMillisUntilRollover());
+    }
+
+    /** The key changes at local midnight exactly, and after a sleep across several midnights */
+    @Test
+    public void rolloverAtMidnight() {
+        long midnight = at(2026, 10, 19, 0, 0);
+        clock.set(midnight - 1);
+        assertEquals("2026-10-18", dayClock.getDayKey());
+        assertEquals(1, dayClock.getMillisUntilRollover());
+
+        clock.set(midnight);
+        assertEquals("2026-10-19", dayClock.getDayKey());
+        assertEquals(TimeUnit.DAYS.toMillis(1), dayClock.getMillisUntilRollover());
+
+        // no rollover ran while the device slept
+        clock.addAndGet(TimeUnit.DAYS.toMillis(3) + TimeUnit.HOURS.toMillis(12));
+        assertEquals("2026-10-22", dayClock.getDayKey());
+        assertEquals(TimeUnit.HOURS.toMillis(12), dayClock.getMillisUntilRollover());
+    }
+
+    /** The key written before the partition by day is the UTC day, which may differ from the local one */
+    @Test
+    public void legacyDayKeyIsTheUtcDay() {
+        clock.set(at(2026, 10, 18, 1, 0));
+        assertEquals("2026-10-18", dayClock.getDayKey());
+        assertEquals("2026-10-17T00:00:00Z", dayClock.getLegacyDayKey());
+        clock.set(at(2026, 10, 18, 12, 0));
+        assertEquals("2026-10-18T00:00:00Z", dayClock.getLegacyDayKey());
+    }
+
+    /** The legacy key of a local day is only given while the UTC day is that day */
+    @Test
+    public void legacyDayKeyOnlyWhileTheUtcDayIsTheLocalDay() {
+        // 00:30 in Paris, still the 17th in UTC : the legacy lunches are yesterday's
+        clock.set(at(2026, 10, 18, 0, 30));
+        assertNull(dayClock.getLegacyDayKey(dayClock.getDayKey()));
+        clock.set(at(2026, 10, 18, 2, 0));
+        assertEquals("2026-10-18T00:00:00Z", dayClock.getLegacyDayKey(dayClock.getDayKey()));
+        clock.set(at(2026, 10, 18, 23, 59));
+        assertEquals("2026-10-18T00:00:00Z", dayClock.getLegacyDayKey(dayClock.getDayKey()));
+    }
+
+    /** A local time in Paris, in milliseconds since the epoch */
+    private static long at(int year, int month, int dayOfMonth, int hour, int minute) {
+        return LocalDate.of(year, month, dayOfMonth).atTime(hour, minute).atZone(PARIS).toInstant().toEpochMilli();
+    }
+}
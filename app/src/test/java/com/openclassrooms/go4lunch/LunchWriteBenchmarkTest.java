@@ -0,0 +1,272 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.Lunch;
+import com.openclassrooms.go4lunch.model.bo.Restaurant;
+import com.openclassrooms.go4lunch.model.bo.Workmate;
+import com.openclassrooms.go4lunch.model.store.LunchWrites;
+import com.openclassrooms.go4lunch.model.store.TodayLunchIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark of the reads and round trips of choosing then cancelling a restaurant, against a local stand-in
+ * of the lunch collection : random ids with a query before each deletion, compared to the writes of LunchWrites
+ * under the lunch keys, with a transaction reading one document or with the index of today's lunches.
+ */
+public class LunchWriteBenchmarkTest {
+
+    /** Number of workmates and of restaurants */
+    private static final int WORKMATES = 30;
+    private static final int RESTAURANTS = 10;
+
+    /** Number of days of history, and of toggles a day */
+    private static final int DAYS = 60;
+    private static final int TOGGLES_PER_DAY = 200;
+
+    /** With the lunch keys, a workmate holds one lunch a day, whatever the choices */
+    @Test
+    public void keyedChoiceReplacesPreviousOne() {
+        StandInCollection collection = new StandInCollection();
+        TodayLunchIndex index = new TodayLunchIndex();
+        Workmate workmate = new Workmate("w0", "w0", "w0@go4lunch.com", null);
+        keyedChoose(collection, index, "2026-10-18", restaurant(1), workmate);
+        keyedChoose(collection, index, "2026-10-18", restaurant(2), workmate);
+        assertEquals(1, collection.countOf("2026-10-18", "w0"));
+        assertTrue(index.hasChosen("w0", restaurant(2)));
+
+        // cancelling another restaurant keeps the choice
+        keyedCancel(collection, index, "2026-10-18", restaurant(1), "w0");
+        assertEquals(1, collection.countOf("2026-10-18", "w0"));
+        keyedCancel(collection, index, "2026-10-18", restaurant(2), "w0");
+        assertEquals(0, collection.countOf("2026-10-18", "w0"));
+
+        // the random ids pile up a lunch per choice
+        StandInCollection legacy = new StandInCollection();
+        legacy.add(new Lunch("2026-10-18", restaurant(1), workmate));
+        legacy.add(new Lunch("2026-10-18", restaurant(2), workmate));
+        assertEquals(2, legacy.countOf("2026-10-18", "w0"));
+    }
+
+    /**
+     * With random ids every cancellation queries the lunches of the workmate at the restaurant, of every day,
+     * with the keys only a cancellation out of the index reads, one document
+     */
+    @Test
+    public void readsPerToggle() {
+        StandInCollection legacy = new StandInCollection();
+        StandInCollection transactional = new StandInCollection();
+        StandInCollection indexed = new StandInCollection();
+        Random random = new Random(3);
+        long legacyNanos = 0;
+        long transactionalNanos = 0;
+        long indexedNanos = 0;
+        long legacyReads = 0;
+        long transactionalReads = 0;
+        for (int day = 0; day < DAYS; day++) {
+            String today = "day" + day;
+            TodayLunchIndex index = new TodayLunchIndex();
+            Map<String, Restaurant> choices = new HashMap<>();
+            legacy.resetCounters();
+            transactional.resetCounters();
+            indexed.resetCounters();
+            for (int i = 0; i < TOGGLES_PER_DAY; i++) {
+                // a workmate changes their mind, or cancels their choice, the choices of the day stay
+                Workmate workmate = workmate(random.nextInt(WORKMATES));
+                Restaurant chosen = choices.get(workmate.getIdWorkmate());
+                boolean cancel = chosen != null && random.nextInt(3) == 0;
+                Restaurant restaurant = cancel ? chosen : restaurant(random.nextInt(RESTAURANTS));
+                if (cancel) {
+                    choices.remove(workmate.getIdWorkmate());
+                } else {
+                    choices.put(workmate.getIdWorkmate(), restaurant);
+                }
+
+                long start = System.nanoTime();
+                if (cancel) {
+                    legacyCancel(legacy, restaurant, workmate.getIdWorkmate());
+                } else {
+                    legacyChoose(legacy, today, restaurant, workmate);
+                }
+                legacyNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                if (cancel) {
+                    keyedCancel(transactional, null, today, restaurant, workmate.getIdWorkmate());
+                } else {
+                    keyedChoose(transactional, null, today, restaurant, workmate);
+                }
+                transactionalNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                if (cancel) {
+                    keyedCancel(indexed, index, today, restaurant, workmate.getIdWorkmate());
+                } else {
+                    keyedChoose(indexed, index, today, restaurant, workmate);
+                }
+                indexedNanos += System.nanoTime() - start;
+            }
+            if (day % 20 == 19 || day == 0) {
+                Benchmarks.report("day " + (day + 1) + " : reads per toggle"
+                    + " random ids " + legacy.reads / (double) TOGGLES_PER_DAY
+                    + ", keys " + transactional.reads / (double) TOGGLES_PER_DAY
+                    + ", keys and index " + indexed.reads / (double) TOGGLES_PER_DAY
+                    + " ; round trips per toggle"
+                    + " random ids " + legacy.roundTrips / (double) TOGGLES_PER_DAY
+                    + ", keys " + transactional.roundTrips / (double) TOGGLES_PER_DAY
+                    + ", keys and index " + indexed.roundTrips / (double) TOGGLES_PER_DAY);
+            }
+            assertTrue(transactional.reads <= legacy.reads);
+            assertEquals(0, indexed.reads);
+            legacyReads += legacy.reads;
+            transactionalReads += transactional.reads;
+        }
+        // the lunches added under random ids and never cancelled are read again by the later queries
+        assertTrue(transactionalReads < legacyReads);
+        int toggles = DAYS * TOGGLES_PER_DAY;
+        Benchmarks.report("stand-in throughput : random ids " + toggles * 1_000_000_000L / legacyNanos + " toggles/s"
+            + ", keys " + toggles * 1_000_000_000L / transactionalNanos + " toggles/s"
+            + ", keys and index " + toggles * 1_000_000_000L / indexedNanos + " toggles/s");
+    }
+
+    /**
+     * Choose a restaurant like before the lunch keys : add a lunch under a random id, without any read
+     */
+    private static void legacyChoose(StandInCollection collection, String day, Restaurant restaurant, Workmate workmate) {
+        collection.add(new Lunch(day, restaurant, workmate));
+    }
+
+    /**
+     * Cancel a choice like before the lunch keys : query the lunches of the workmate at the restaurant,
+     * of every day as LunchRepository did, then delete each one
+     */
+    private static void legacyCancel(StandInCollection collection, Restaurant restaurant, String workmateId) {
+        for (String documentId : collection.query(restaurant.getName(), workmateId, null)) {
+            collection.delete(documentId);
+        }
+    }
+
+    /**
+     * Choose a restaurant like LunchRepository, with the writes planned by LunchWrites
+     */
+    private static void keyedChoose(StandInCollection collection, TodayLunchIndex index, String day,
+                                    Restaurant restaurant, Workmate workmate) {
+        apply(collection, index, LunchWrites.choose(day, restaurant, workmate, index), restaurant);
+    }
+
+    /**
+     * Cancel a choice like LunchRepository, with the writes planned by LunchWrites
+     */
+    private static void keyedCancel(StandInCollection collection, TodayLunchIndex index, String day,
+                                    Restaurant restaurant, String workmateId) {
+        apply(collection, index, LunchWrites.cancel(day, restaurant, workmateId, index), restaurant);
+    }
+
+    /**
+     * Commit a plan like LunchRepository : one transaction when it reads first, one batch otherwise, nothing when empty
+     */
+    private static void apply(StandInCollection collection, TodayLunchIndex index, LunchWrites.Plan plan, Restaurant restaurant) {
+        if (plan.isEmpty()) {
+            return;
+        }
+        collection.commit();
+        if (plan.isReadFirst() && !LunchWrites.isAt(collection.get(plan.getDocumentId()), restaurant)) {
+            return;
+        }
+        if (plan.getLunch() != null) {
+            collection.set(plan.getDocumentId(), plan.getLunch());
+            // the live feed of the index follows the writes
+            if (index != null) {
+                index.put(plan.getDocumentId(), plan.getLunch());
+            }
+        }
+        for (String documentId : plan.getDeletedIds()) {
+            collection.delete(documentId);
+            if (index != null) {
+                index.remove(documentId);
+            }
+        }
+    }
+
+    private static Workmate workmate(int i) {
+        return new Workmate("w" + i, "w" + i, "w" + i + "@go4lunch.com", null);
+    }
+
+    private static Restaurant restaurant(int i) {
+        return new Restaurant("place" + i, "Restaurant " + i, null, 4f, null, null, null, null, "14:00");
+    }
+
+    /**
+     * Local stand-in of the lunch collection, counting the documents read and the round trips like Firestore :
+     * a query reads every matching document, at least one
+     */
+    private static class StandInCollection {
+
+        private final Map<String, Lunch> documents = new HashMap<>();
+        private int nextId;
+        private long reads;
+        private long roundTrips;
+
+        void add(Lunch lunch) {
+            roundTrips++;
+            documents.put("random" + nextId++, lunch);
+        }
+
+        void set(String documentId, Lunch lunch) {
+            documents.put(documentId, lunch);
+        }
+
+        void delete(String documentId) {
+            documents.remove(documentId);
+        }
+
+        /** A batch or a transaction, one round trip whatever its writes */
+        void commit() {
+            roundTrips++;
+        }
+
+        Lunch get(String documentId) {
+            reads++;
+            return documents.get(documentId);
+        }
+
+        /** A query on the workmate, and on the restaurant name or the day, followed by a deletion per match */
+        List<String> query(String restaurantName, String workmateId, String day) {
+            List<String> documentIds = new ArrayList<>();
+            for (Map.Entry<String, Lunch> entry : documents.entrySet()) {
+                Lunch lunch = entry.getValue();
+                if ((restaurantName == null || restaurantName.equals(lunch.getChosenRestaurant().getName()))
+                    && (day == null || day.equals(lunch.getDateLunch()))
+                    && workmateId.equals(lunch.getWorkmate().getIdWorkmate())) {
+                    documentIds.add(entry.getKey());
+                }
+            }
+            reads += Math.max(1, documentIds.size());
+            roundTrips += 1 + documentIds.size();
+            return documentIds;
+        }
+
+        int countOf(String day, String workmateId) {
+            int count = 0;
+            for (Lunch lunch : documents.values()) {
+                if (day.equals(lunch.getDateLunch()) && workmateId.equals(lunch.getWorkmate().getIdWorkmate())) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        void resetCounters() {
+            reads = 0;
+            roundTrips = 0;
+        }
+    }
+}
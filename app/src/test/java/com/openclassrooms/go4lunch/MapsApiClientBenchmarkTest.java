@@ -0,0 +1,114 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.cache.RestaurantTileCache;
+import com.openclassrooms.go4lunch.model.repository.RestaurantRepository;
+import com.openclassrooms.go4lunch.model.service.MapsApiClient;
+import com.openclassrooms.go4lunch.model.service.MapsQuotaManager;
+import com.openclassrooms.go4lunch.model.service.RetrofitMapsApi;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Benchmark of repeated nearby searches : a Retrofit client built per call versus the shared MapsApiClient.
+ * Both go through the same repository stack (quota, resilience, single flight, tile cache without time to live),
+ * only the client differs. A local HTTP server stands for the Google Maps API, so only the client side cost is measured,
+ * and the allocations of every thread are counted, the stack running the calls on its dispatcher and scheduler threads.
+ */
+public class MapsApiClientBenchmarkTest {
+
+    /** Canned nearbysearch response */
+    private static final String NEARBY_JSON = "{\"html_attributions\":[],\"results\":[{\"name\":\"Le Resto\",\"place_id\":\"p1\","
+        + "\"geometry\":{\"location\":{\"lat\":48.11,\"lng\":-1.72}},\"rating\":4.2}],\"status\":\"OK\"}";
+
+    /** Number of warm up calls */
+    private static final int WARM_UP_CALLS = 20;
+
+    /** Number of measured calls */
+    private static final int MEASURED_CALLS = 200;
+
+    /** Local stand-in for the Google Maps API */
+    private HttpServer server;
+
+    /** Base url of the local server */
+    private String baseUrl;
+
+    /** Start the local server */
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = NEARBY_JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /** Stop the local server */
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    /** Compare latency and allocations of both paths */
+    @Test
+    public void sharedClientIsCheaperThanPerCallClient() throws IOException {
+
+        // the old path : a new http client, converter, retrofit and proxy for every call
+        RestaurantRepository perCall = repositoryOf(new MapsApiClient() {
+            @Override
+            public RetrofitMapsApi getApi(String baseUrl) {
+                return new MapsApiClient(new OkHttpClient()).getApi(baseUrl);
+            }
+        });
+
+        // the new path : the shared client
+        RestaurantRepository shared = repositoryOf(new MapsApiClient());
+
+        long[] perCallResult = Benchmarks.measureAllThreads(WARM_UP_CALLS, MEASURED_CALLS, () -> execute(perCall));
+        long[] sharedResult = Benchmarks.measureAllThreads(WARM_UP_CALLS, MEASURED_CALLS, () -> execute(shared));
+
+        Benchmarks.report("per call client : " + perCallResult[0] / MEASURED_CALLS + " ns/call, " + perCallResult[1] / MEASURED_CALLS + " bytes/call");
+        Benchmarks.report("shared client   : " + sharedResult[0] / MEASURED_CALLS + " ns/call, " + sharedResult[1] / MEASURED_CALLS + " bytes/call");
+
+        // the shared client never rebuilds the converter, the proxy nor the connection pool
+        assertTrue(sharedResult[1] < perCallResult[1]);
+    }
+
+    /**
+     * Build the repository stack of a client : tile cache disabled (no time to live), no disk cache, quota out of the way
+     */
+    private static RestaurantRepository repositoryOf(MapsApiClient mapsApiClient) {
+        MapsQuotaManager unlimited = new MapsQuotaManager(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 1,
+            0, 0, 0, Executors.newSingleThreadScheduledExecutor());
+        return new RestaurantRepository(mapsApiClient, new RestaurantTileCache(RestaurantTileCache.DEFAULT_PRECISION, 0, 1), null, unlimited);
+    }
+
+    /**
+     * Execute one nearby search
+     * @param repository the repository to use
+     */
+    private void execute(RestaurantRepository repository) throws IOException {
+        ListRestaurant list = repository.getAllRestaurant(baseUrl, "48.11,-1.72", 1000, "restaurant", "key").execute().body();
+        assertEquals(1, list.getResults().size());
+    }
+}
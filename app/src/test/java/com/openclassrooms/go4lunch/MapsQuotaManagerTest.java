@@ -0,0 +1,218 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.service.MapsQuotaManager;
+import com.openclassrooms.go4lunch.model.service.MapsResilience;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Daily budget of the Maps API quota : kept across restarts, enforced on the queued requests, reset every day
+ */
+public class MapsQuotaManagerTest {
+
+    /** 2026-10-18 12:00 in the default time zone, far from both midnights */
+    private static final long NOON = LocalDate.of(2026, 10, 18).atTime(12, 0)
+        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<ScheduledExecutorService> schedulers = new ArrayList<>();
+
+    private final AtomicLong clock = new AtomicLong(NOON);
+
+    @After
+    public void tearDown() {
+        for (ScheduledExecutorService scheduler : schedulers) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** The requests of the day survive a restart, not the ones of the day before */
+    @Test
+    public void counterSurvivesRestart() throws Exception {
+        File counter = new File(folder.getRoot(), "maps_quota.bin");
+        MapsQuotaManager quota = newQuota(10, counter);
+        for (int i = 0; i < 3; i++) {
+            run(quota, MapsQuotaManager.Priority.USER);
+        }
+        assertEquals(3, quota.getUsedToday());
+        awaitIdle();
+
+        MapsQuotaManager restarted = newQuota(10, counter);
+        awaitIdle();
+        assertEquals(3, restarted.getUsedToday());
+
+        clock.addAndGet(TimeUnit.DAYS.toMillis(1));
+        MapsQuotaManager nextDay = newQuota(10, counter);
+        awaitIdle();
+        assertEquals(0, nextDay.getUsedToday());
+    }
+
+    /** Requests queued before the budget was spent are refused when their turn comes */
+    @Test
+    public void drainChecksTheBudget() throws Exception {
+        MapsQuotaManager quota = newQuota(2, null);
+        PendingCall<String> network = new PendingCall<>();
+        List<Object> outcomes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        // queued from the scheduler, so the three requests wait in the lane before the first drain
+        schedulers.get(0).execute(() -> {
+            for (int i = 0; i < 3; i++) {
+                Call<String> call = quota.newCall(i == 0 ? network : network.clone(), MapsQuotaManager.Priority.USER, body -> "OK");
+                call.enqueue(new Callback<String>() {
+                    @Override
+                    public void onResponse(Call<String> call, Response<String> response) {
+                        outcomes.add(response.body());
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(Call<String> call, Throwable t) {
+                        outcomes.add(t);
+                        done.countDown();
+                    }
+                });
+            }
+        });
+        // the first two reach the network, the third one is refused
+        while (network.launched.size() < 2 || outcomes.isEmpty()) {
+            Thread.sleep(10);
+        }
+        for (PendingCall<String> launched : new ArrayList<>(network.launched)) {
+            launched.respond("restaurants");
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, network.launched.size());
+        assertEquals(1, quota.getRefusedCount());
+        int refused = 0;
+        for (Object outcome : outcomes) {
+            if (outcome instanceof MapsQuotaManager.QuotaExceededException) {
+                refused++;
+            }
+        }
+        assertEquals(1, refused);
+    }
+
+    /** The budget is reset at midnight */
+    @Test
+    public void budgetResetsEveryDay() throws Exception {
+        MapsQuotaManager quota = newQuota(1, null);
+        run(quota, MapsQuotaManager.Priority.USER);
+        assertEquals(0, quota.getRemainingToday());
+        clock.addAndGet(TimeUnit.HOURS.toMillis(12));
+        assertEquals(1, quota.getRemainingToday());
+    }
+
+    /** An extra attempt, hedge or retry, takes a token at once and counts in the day, or is refused without waiting */
+    @Test
+    public void extraAttemptsCountInTheDay() throws Exception {
+        MapsQuotaManager quota = newQuota(3, null);
+        run(quota, MapsQuotaManager.Priority.USER);
+        assertTrue(quota.tryAcquire(MapsQuotaManager.Priority.USER));
+        assertEquals(2, quota.getUsedToday());
+        // the prefetch share of the budget, half of 3, is spent
+        assertFalse(quota.tryAcquire(MapsQuotaManager.Priority.PREFETCH));
+        assertTrue(quota.tryAcquire(MapsQuotaManager.Priority.USER));
+        assertFalse(quota.tryAcquire(MapsQuotaManager.Priority.USER));
+        assertEquals(3, quota.getUsedToday());
+        assertEquals(0, quota.getRefusedCount());
+    }
+
+    /** A hedge behind the quota is charged to the day, the daily budget covering every paid request */
+    @Test
+    public void hedgeIsChargedToTheQuota() throws Exception {
+        MapsQuotaManager quota = newQuota(10, null);
+        MapsResilience resilience = new MapsResilience(10_000, 20, schedulers.get(0));
+        for (int i = 0; i < 20; i++) {
+            resilience.getLatencyTracker().record("nearbysearch", 5);
+        }
+        PendingCall<String> network = new PendingCall<>();
+        Call<String> call = quota.newCall(resilience.newCall("nearbysearch", network, body -> "OK",
+            () -> quota.tryAcquire(MapsQuotaManager.Priority.USER)), MapsQuotaManager.Priority.USER, body -> "OK");
+        call.enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (network.launched.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, network.launched.size());
+        assertEquals(2, quota.getUsedToday());
+        network.launched.get(1).respond("restaurants");
+    }
+
+    private MapsQuotaManager newQuota(int dailyBudget, File counter) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        schedulers.add(scheduler);
+        // a bucket large enough to never throttle, the budget is what is tested
+        return new MapsQuotaManager(100, 100, dailyBudget, 0.5, 1, 1, 0, scheduler, counter) {
+            @Override
+            protected long now() {
+                return clock.get();
+            }
+        };
+    }
+
+    /** Run a request granted by the quota to completion */
+    private static void run(MapsQuotaManager quota, MapsQuotaManager.Priority priority) throws IOException {
+        PendingCall<String> network = new PendingCall<>();
+        Call<String> call = quota.newCall(network, priority, body -> "OK");
+        call.enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (network.launched.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        if (network.launched.isEmpty()) {
+            throw new IOException("The request never reached the network");
+        }
+        network.launched.get(0).respond("restaurants");
+    }
+
+    /** Wait for the tasks queued on the schedulers, like the counter reads and writes */
+    private void awaitIdle() throws InterruptedException {
+        for (ScheduledExecutorService scheduler : schedulers) {
+            CountDownLatch idle = new CountDownLatch(1);
+            scheduler.execute(idle::countDown);
+            assertTrue(idle.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
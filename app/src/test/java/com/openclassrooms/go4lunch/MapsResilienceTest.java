@@ -0,0 +1,169 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.service.CircuitBreaker;
+import com.openclassrooms.go4lunch.model.service.MapsResilience;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Deadline, hedged requests, circuit breaker and fallback of the Maps API calls
+ */
+public class MapsResilienceTest {
+
+    private static final String ENDPOINT = "nearbysearch";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /** A call still running at its deadline fails, and its attempt is canceled */
+    @Test
+    public void deadlineFailsTheCall() throws InterruptedException {
+        MapsResilience resilience = new MapsResilience(50, 10, scheduler);
+        PendingCall<String> network = new PendingCall<>();
+        Outcome outcome = enqueue(resilience.newCall(ENDPOINT, network, body -> body));
+        assertTrue(outcome.done.await(5, TimeUnit.SECONDS));
+        assertTrue(outcome.error instanceof InterruptedIOException);
+        assertEquals(1, resilience.getDeadlineCount());
+        assertTrue(network.launched.get(0).isCanceled());
+    }
+
+    /** A call slower than the p95 of its endpoint is hedged, the first response wins and the other attempt is canceled */
+    @Test
+    public void slowCallIsHedged() throws InterruptedException {
+        MapsResilience resilience = new MapsResilience(10_000, 20, scheduler);
+        for (int i = 0; i < 20; i++) {
+            resilience.getLatencyTracker().record(ENDPOINT, 5);
+        }
+        PendingCall<String> network = new PendingCall<>();
+        Outcome outcome = enqueue(resilience.newCall(ENDPOINT, network, body -> body));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (network.launched.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, network.launched.size());
+        network.launched.get(1).respond("OK");
+        assertEquals("OK", outcome.body);
+        assertTrue(network.launched.get(0).isCanceled());
+        assertEquals(1, resilience.getHedgeCount());
+    }
+
+    /** The hedge and the retry are requests of their own : they run only when their budget grants them */
+    @Test
+    public void extraAttemptsNeedTheBudget() throws InterruptedException {
+        MapsResilience resilience = new MapsResilience(10_000, 20, scheduler);
+        for (int i = 0; i < 20; i++) {
+            resilience.getLatencyTracker().record(ENDPOINT, 5);
+        }
+        AtomicInteger granted = new AtomicInteger();
+        // no extra attempt granted : the slow call is not hedged, the failed one is not retried
+        PendingCall<String> network = new PendingCall<>();
+        Outcome outcome = enqueue(resilience.newCall(ENDPOINT, network, body -> body, () -> false));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (resilience.getSkippedAttemptCount() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, resilience.getSkippedAttemptCount());
+        assertEquals(1, network.launched.size());
+        assertEquals(0, resilience.getHedgeCount());
+        network.launched.get(0).fail(new IOException("reset"));
+        assertTrue(outcome.error instanceof IOException);
+        assertEquals(1, network.launched.size());
+
+        // granted : the retry runs at once, and is counted by the budget
+        network = new PendingCall<>();
+        outcome = enqueue(resilience.newCall(ENDPOINT, network, body -> body, () -> granted.incrementAndGet() > 0));
+        network.launched.get(0).fail(new IOException("reset"));
+        assertEquals(2, network.launched.size());
+        assertEquals(1, granted.get());
+        network.launched.get(1).respond("OK");
+        assertEquals("OK", outcome.body);
+    }
+
+    /** Error statuses answered with HTTP 200 count as failures : they open the circuit, and the fallback is served */
+    @Test
+    public void errorStatusesOpenTheCircuit() throws InterruptedException {
+        MapsResilience resilience = new MapsResilience(10_000, 10_000, scheduler);
+        for (int i = 0; i < CircuitBreaker.DEFAULT_FAILURE_THRESHOLD; i++) {
+            PendingCall<String> network = new PendingCall<>();
+            Call<String> call = resilience.withFallback(ENDPOINT, resilience.newCall(ENDPOINT, network, body -> body),
+                body -> body, () -> "cached");
+            Outcome outcome = enqueue(call);
+            network.launched.get(0).respond(i % 2 == 0 ? "UNKNOWN_ERROR" : "REQUEST_DENIED");
+            assertEquals("cached", outcome.body);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, resilience.getBreaker(ENDPOINT).getState());
+
+        // the open circuit is answered before the wrapped call, so no quota token is taken
+        PendingCall<String> network = new PendingCall<>();
+        Outcome outcome = enqueue(resilience.withFallback(ENDPOINT, network, body -> body, () -> "cached"));
+        assertEquals("cached", outcome.body);
+        assertTrue(network.launched.isEmpty());
+
+        // without a fallback, the open circuit fails the call
+        outcome = enqueue(resilience.withFallback(ENDPOINT, new PendingCall<>(), body -> body, null));
+        assertNull(outcome.body);
+        assertTrue(outcome.error instanceof IOException);
+    }
+
+    /** A successful status is a success, even while the fallback is there */
+    @Test
+    public void okStatusIsServed() throws InterruptedException {
+        MapsResilience resilience = new MapsResilience(10_000, 10_000, scheduler);
+        PendingCall<String> network = new PendingCall<>();
+        Outcome outcome = enqueue(resilience.withFallback(ENDPOINT, resilience.newCall(ENDPOINT, network, body -> body),
+            body -> body, () -> "cached"));
+        network.launched.get(0).respond("OK");
+        assertEquals("OK", outcome.body);
+        assertFalse(resilience.getBreaker(ENDPOINT).isOpen());
+        assertEquals(0, resilience.getFallbackCount());
+    }
+
+    private static Outcome enqueue(Call<String> call) {
+        Outcome outcome = new Outcome();
+        call.enqueue(new Callback<String>() {
+            @Override
+            public void onResponse(Call<String> call, Response<String> response) {
+                outcome.body = response.body();
+                outcome.done.countDown();
+            }
+
+            @Override
+            public void onFailure(Call<String> call, Throwable t) {
+                outcome.error = t;
+                outcome.done.countDown();
+            }
+        });
+        return outcome;
+    }
+
+    /**
+     * The outcome of an enqueued call
+     */
+    private static class Outcome {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String body;
+        private volatile Throwable error;
+    }
+}
@@ -0,0 +1,102 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.service.MapsApiClient;
+
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+/**
+ * Benchmark of the generated TypeAdapters of model.bo.maps against the reflective Gson adapters.
+ * Cold : the first parse with a new Gson instance, which builds the adapters. Warm : later parses.
+ *
+ * The gain is on first use : no reflective bound fields to build. Once built, both adapters do the same
+ * token work on the JsonReader, so warm parses are on par ; the warm rounds of both alternate and the best
+ * round of each is kept, so neither one pays for the JIT or the GC of the other.
+ * The timings are only reported : the asserts are on the allocated bytes, which a loaded machine does not change.
+ */
+public class MapsTypeAdapterBenchmarkTest {
+
+    /** Number of results in the payload */
+    private static final int RESULT_COUNT = 20;
+
+    /** Number of new Gson instances, each parsing once */
+    private static final int COLD_PARSES = 200;
+
+    /** Number of warm rounds of each adapter, and of parses a round */
+    private static final int WARM_ROUNDS = 10;
+    private static final int WARM_PARSES = 500;
+
+    /** Margin of the warm allocations, for the buffers of the JsonReader growing in either one first */
+    private static final double WARM_MARGIN = 1.5;
+
+    /** Compare cold and warm parses of both adapters */
+    @Test
+    public void generatedAdaptersAreCheaperOnFirstUse() {
+        String payload = NearbySearchDecoderBenchmarkTest.buildPayload(RESULT_COUNT);
+
+        // both adapters read and write the same data, which also loads the classes of both before the cold measures
+        ListRestaurant reflective = new Gson().fromJson(payload, ListRestaurant.class);
+        ListRestaurant generated = MapsApiClient.createGson().fromJson(payload, ListRestaurant.class);
+        assertEquals(new Gson().toJson(reflective), MapsApiClient.createGson().toJson(generated));
+        Result result = generated.getResults().get(RESULT_COUNT - 1);
+        assertEquals("place" + (RESULT_COUNT - 1), result.getPlaceId());
+        assertEquals(4, result.getTypes().size());
+        assertEquals("token", generated.getNextPageToken());
+
+        long[] reflectiveCold = measureCold(Gson::new, payload);
+        long[] generatedCold = measureCold(MapsApiClient::createGson, payload);
+
+        Gson reflectiveGson = new Gson();
+        Gson generatedGson = MapsApiClient.createGson();
+        long[] reflectiveWarm = {Long.MAX_VALUE, 0};
+        long[] generatedWarm = {Long.MAX_VALUE, 0};
+        for (int round = 0; round < WARM_ROUNDS; round++) {
+            keepBest(reflectiveWarm, Benchmarks.measure(1, WARM_PARSES, () -> reflectiveGson.fromJson(payload, ListRestaurant.class)));
+            keepBest(generatedWarm, Benchmarks.measure(1, WARM_PARSES, () -> generatedGson.fromJson(payload, ListRestaurant.class)));
+        }
+
+        Benchmarks.report("reflective cold : " + reflectiveCold[0] / COLD_PARSES / 1000 + " us/parse, " + reflectiveCold[1] / COLD_PARSES / 1024 + " KB/parse");
+        Benchmarks.report("generated cold  : " + generatedCold[0] / COLD_PARSES / 1000 + " us/parse, " + generatedCold[1] / COLD_PARSES / 1024 + " KB/parse");
+        Benchmarks.report("reflective warm : " + reflectiveWarm[0] / WARM_PARSES / 1000 + " us/parse, " + reflectiveWarm[1] / WARM_PARSES / 1024 + " KB/parse");
+        Benchmarks.report("generated warm  : " + generatedWarm[0] / WARM_PARSES / 1000 + " us/parse, " + generatedWarm[1] / WARM_PARSES / 1024 + " KB/parse");
+
+        // the first use allocates less, no reflective bound fields to build
+        assertTrue(generatedCold[1] < reflectiveCold[1]);
+        // and the later parses do not allocate more
+        assertTrue(generatedWarm[1] <= reflectiveWarm[1] * WARM_MARGIN);
+    }
+
+    /**
+     * Measure the first parse of new Gson instances, each building its adapters
+     * @param gsonFactory the factory of the Gson instances
+     * @return the elapsed nanoseconds and the allocated bytes of COLD_PARSES first parses
+     */
+    private static long[] measureCold(Supplier<Gson> gsonFactory, String payload) {
+        long elapsed = 0;
+        long allocated = 0;
+        for (int i = 0; i < COLD_PARSES; i++) {
+            Gson gson = gsonFactory.get();
+            long[] result = Benchmarks.measure(0, 1, () -> gson.fromJson(payload, ListRestaurant.class));
+            elapsed += result[0];
+            allocated += result[1];
+        }
+        return new long[]{elapsed, allocated};
+    }
+
+    /**
+     * Keep the fastest round
+     */
+    private static void keepBest(long[] best, long[] round) {
+        if (round[0] < best[0]) {
+            best[0] = round[0];
+            best[1] = round[1];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.NearbyRestaurant;
+import com.openclassrooms.go4lunch.model.bo.NearbySearchPage;
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.service.NearbySearchConverterFactory;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Benchmark of the decoding of a large nearby search payload :
+ * the Gson converter building the whole jsonschema2pojo graph versus the streaming projection.
+ */
+public class NearbySearchDecoderBenchmarkTest {
+
+    /** Number of results in the payload */
+    private static final int RESULT_COUNT = 2_000;
+
+    /** Number of warm up decodings */
+    private static final int WARM_UP = 10;
+
+    /** Number of measured decodings */
+    private static final int MEASURED = 20;
+
+    /** Json media type */
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    /** Compare parse time and allocations of both decoders */
+    @Test
+    public void streamingProjectionAllocatesLessThanGson() throws IOException {
+        String payload = buildPayload(RESULT_COUNT);
+        Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+
+        Converter<ResponseBody, ?> gson = GsonConverterFactory.create()
+            .responseBodyConverter(ListRestaurant.class, new Annotation[0], retrofit);
+        Converter<ResponseBody, ?> streaming = new NearbySearchConverterFactory()
+            .responseBodyConverter(NearbySearchPage.class, new Annotation[0], retrofit);
+
+        // both decoders read the same data
+        ListRestaurant list = (ListRestaurant) gson.convert(ResponseBody.create(JSON, payload));
+        NearbySearchPage page = (NearbySearchPage) streaming.convert(ResponseBody.create(JSON, payload));
+        assertEquals(RESULT_COUNT, page.getRestaurants().size());
+        assertEquals("token", page.getNextPageToken());
+        for (int i = 0; i < RESULT_COUNT; i += 97) {
+            Result result = list.getResults().get(i);
+            NearbyRestaurant restaurant = page.getRestaurants().get(i);
+            assertEquals(result.getPlaceId(), restaurant.getPlaceId());
+            assertEquals(result.getName(), restaurant.getName());
+            assertEquals(result.getGeometry().getLocation().getLat(), restaurant.getLatitude(), 0);
+            assertEquals(result.getGeometry().getLocation().getLng(), restaurant.getLongitude(), 0);
+            assertEquals(result.getRating().floatValue(), restaurant.getRating(), 0);
+            assertEquals(result.getPriceLevel().intValue(), restaurant.getPriceLevel());
+            assertEquals(result.getOpeningHours().getOpenNow(), restaurant.isOpenNow());
+            assertEquals(result.getPhotos().get(0).getPhotoReference(), restaurant.getPhotoReference());
+        }
+
+        long[] gsonResult = Benchmarks.measure(WARM_UP, MEASURED, () -> gson.convert(ResponseBody.create(JSON, payload)));
+        long[] streamingResult = Benchmarks.measure(WARM_UP, MEASURED, () -> streaming.convert(ResponseBody.create(JSON, payload)));
+
+        Benchmarks.report("payload           : " + payload.length() / 1024 + " KB, " + RESULT_COUNT + " results");
+        Benchmarks.report("gson converter    : " + gsonResult[0] / MEASURED / 1000 + " us/parse, " + gsonResult[1] / MEASURED / 1024 + " KB/parse");
+        Benchmarks.report("streaming decoder : " + streamingResult[0] / MEASURED / 1000 + " us/parse, " + streamingResult[1] / MEASURED / 1024 + " KB/parse");
+
+        assertTrue(streamingResult[1] < gsonResult[1]);
+    }
+
+    /**
+     * Build a nearby search payload with every field the API returns
+     * @param count the number of results
+     * @return the json payload
+     */
+    static String buildPayload(int count) {
+        StringBuilder json = new StringBuilder("{\"html_attributions\":[],\"next_page_token\":\"token\",\"results\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            double lat = 48.1 + (i % 100) * 0.001;
+            double lng = -1.7 + (i / 100) * 0.001;
+            json.append("{\"business_status\":\"OPERATIONAL\",")
+                .append("\"geometry\":{\"location\":{\"lat\":").append(lat).append(",\"lng\":").append(lng).append("},")
+                .append("\"viewport\":{\"northeast\":{\"lat\":").append(lat + 0.001).append(",\"lng\":").append(lng + 0.001).append("},")
+                .append("\"southwest\":{\"lat\":").append(lat - 0.001).append(",\"lng\":").append(lng - 0.001).append("}}},")
+                .append("\"icon\":\"https://maps.gstatic.com/mapfiles/place_api/icons/v1/png_71/restaurant-71.png\",")
+                .append("\"icon_background_color\":\"#FF9E67\",")
+                .append("\"icon_mask_base_uri\":\"https://maps.gstatic.com/mapfiles/place_api/icons/v2/restaurant_pinlet\",")
+                .append("\"name\":\"Restaurant ").append(i).append("\",")
+                .append("\"opening_hours\":{\"open_now\":").append(i % 3 != 0).append("},")
+                .append("\"photos\":[{\"height\":3024,\"html_attributions\":[\"<a href=\\\"https://maps.google.com/maps/contrib/1\\\">Someone</a>\"],")
+                .append("\"photo_reference\":\"ref").append(i).append("\",\"width\":4032}],")
+                .append("\"place_id\":\"place").append(i).append("\",")
+                .append("\"plus_code\":{\"compound_code\":\"4748+9Q Rennes, France\",\"global_code\":\"8CXV4748+9Q\"},")
+                .append("\"price_level\":").append(i % 5).append(',')
+                .append("\"rating\":").append(1 + (i % 40) / 10.0).append(',')
+                .append("\"reference\":\"place").append(i).append("\",\"scope\":\"GOOGLE\",")
+                .append("\"types\":[\"restaurant\",\"food\",\"point_of_interest\",\"establishment\"],")
+                .append("\"user_ratings_total\":").append(i * 7 % 1000).append(',')
+                .append("\"vicinity\":\"").append(i).append(" Rue de Rennes, Rennes\"}");
+        }
+        return json.append("],\"status\":\"OK\"}").toString();
+    }
+}
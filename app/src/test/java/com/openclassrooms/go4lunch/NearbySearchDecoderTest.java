@@ -0,0 +1,87 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.NearbyRestaurant;
+import com.openclassrooms.go4lunch.model.bo.NearbySearchPage;
+import com.openclassrooms.go4lunch.model.service.NearbySearchDecoder;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Streaming projection of a nearby search : kept fields, skipped fields, json nulls
+ */
+public class NearbySearchDecoderTest {
+
+    /** Every kept field is read, the others are skipped */
+    @Test
+    public void projectsTheKeptFields() throws IOException {
+        NearbySearchPage page = decode("{'html_attributions':[],'next_page_token':'token','status':'OK','results':[{"
+            + "'geometry':{'location':{'lat':48.8566,'lng':2.3522},'viewport':{'northeast':{'lat':1,'lng':2}}},"
+            + "'icon':'icon.png','name':'Chez Paul','opening_hours':{'open_now':true,'weekday_text':[]},"
+            + "'photos':[{'height':400,'photo_reference':'first','html_attributions':['a']},{'photo_reference':'second'}],"
+            + "'place_id':'p1','price_level':2,'rating':4.5,'types':['restaurant','food'],'user_ratings_total':12}]}");
+        assertEquals("OK", page.getStatus());
+        assertEquals("token", page.getNextPageToken());
+        assertEquals(1, page.getRestaurants().size());
+        NearbyRestaurant restaurant = page.getRestaurants().get(0);
+        assertEquals("p1", restaurant.getPlaceId());
+        assertEquals("Chez Paul", restaurant.getName());
+        assertEquals(48.8566, restaurant.getLatitude(), 0);
+        assertEquals(2.3522, restaurant.getLongitude(), 0);
+        assertEquals(4.5f, restaurant.getRating(), 0);
+        assertEquals(2, restaurant.getPriceLevel());
+        assertEquals(NearbyRestaurant.OPEN_NOW_TRUE, restaurant.getOpenNow());
+        assertEquals("first", restaurant.getPhotoReference());
+    }
+
+    /** A json null keeps the default of the field, as the reflective Gson decoding does */
+    @Test
+    public void nullFieldsKeepTheirDefault() throws IOException {
+        NearbySearchPage page = decode("{'next_page_token':null,'status':'OK','results':[{"
+            + "'place_id':null,'name':null,'rating':null,'price_level':null,'geometry':null,"
+            + "'opening_hours':null,'photos':null},"
+            + "{'place_id':'p2','geometry':{'location':null},'opening_hours':{'open_now':null},'photos':[null,{'photo_reference':'ref'}]},"
+            + "{'place_id':'p3','geometry':{'location':{'lat':null,'lng':2.5}}},"
+            + "null]}");
+        assertNull(page.getNextPageToken());
+        assertEquals(3, page.getRestaurants().size());
+
+        NearbyRestaurant empty = page.getRestaurants().get(0);
+        assertNull(empty.getPlaceId());
+        assertNull(empty.getName());
+        assertTrue(Float.isNaN(empty.getRating()));
+        assertEquals(NearbyRestaurant.NO_PRICE_LEVEL, empty.getPriceLevel());
+        assertTrue(Double.isNaN(empty.getLatitude()));
+        assertTrue(Double.isNaN(empty.getLongitude()));
+        assertEquals(NearbyRestaurant.OPEN_NOW_UNKNOWN, empty.getOpenNow());
+        assertNull(empty.getPhotoReference());
+
+        NearbyRestaurant nested = page.getRestaurants().get(1);
+        assertTrue(Double.isNaN(nested.getLatitude()));
+        assertEquals(NearbyRestaurant.OPEN_NOW_UNKNOWN, nested.getOpenNow());
+        assertEquals("ref", nested.getPhotoReference());
+
+        NearbyRestaurant coordinate = page.getRestaurants().get(2);
+        assertTrue(Double.isNaN(coordinate.getLatitude()));
+        assertEquals(2.5, coordinate.getLongitude(), 0);
+    }
+
+    /** A null list of results is an empty page */
+    @Test
+    public void nullResultsIsAnEmptyPage() throws IOException {
+        NearbySearchPage page = decode("{'status':'ZERO_RESULTS','results':null}");
+        assertEquals("ZERO_RESULTS", page.getStatus());
+        assertTrue(page.getRestaurants().isEmpty());
+    }
+
+    /** Decode a payload written with single quotes */
+    private static NearbySearchPage decode(String json) throws IOException {
+        return NearbySearchDecoder.decode(new StringReader(json.replace('\'', '"')));
+    }
+}
@@ -0,0 +1,144 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Geometry;
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.store.OfflineRestaurantStore;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-device database of the restaurants : loaded in the background, queried by radius, bounded
+ */
+public class OfflineRestaurantStoreTest {
+
+    private static final String CENTER = "48.8566,2.3522";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+    }
+
+    /** The places survive a restart, nearest first */
+    @Test
+    public void placesSurviveRestart() throws InterruptedException {
+        File file = new File(folder.getRoot(), "restaurants.bin");
+        OfflineRestaurantStore store = newStore(file, 100);
+        store.upsert(page("far", 0.005, "near", 0.001));
+        awaitIdle();
+
+        OfflineRestaurantStore restarted = newStore(file, 100);
+        awaitIdle();
+        ListRestaurant around = restarted.query(CENTER, 1000, "restaurant");
+        assertEquals("OK", around.getStatus());
+        assertEquals("near", around.getResults().get(0).getPlaceId());
+        assertEquals("far", around.getResults().get(1).getPlaceId());
+        assertEquals("ZERO_RESULTS", restarted.query(CENTER, 50, "restaurant").getStatus());
+    }
+
+    /** The places upserted while the file loads are kept, and win over their stored copies */
+    @Test
+    public void upsertsBeforeTheLoadAreKept() throws InterruptedException {
+        File file = new File(folder.getRoot(), "restaurants.bin");
+        OfflineRestaurantStore store = newStore(file, 100);
+        store.upsert(page("a", 0.001, "b", 0.002));
+        awaitIdle();
+
+        // the load waits behind a blocked task of the IO executor
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executors.add(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        OfflineRestaurantStore restarted = new OfflineRestaurantStore(file, 100, executor);
+        restarted.upsert(page("b", 0.020, "c", 0.003));
+        assertEquals(2, restarted.size());
+        release.countDown();
+        awaitIdle();
+
+        assertEquals(3, restarted.size());
+        ListRestaurant around = restarted.query(CENTER, 1000, "restaurant");
+        assertEquals(2, around.getResults().size());
+        assertEquals("a", around.getResults().get(0).getPlaceId());
+        assertEquals("c", around.getResults().get(1).getPlaceId());
+    }
+
+    /** The least recently seen places are evicted, from the queries too */
+    @Test
+    public void leastRecentlySeenAreEvicted() throws InterruptedException {
+        OfflineRestaurantStore store = newStore(new File(folder.getRoot(), "restaurants.bin"), 2);
+        awaitIdle();
+        store.upsert(page("a", 0.001, "b", 0.002));
+        store.upsert(page("c", 0.003));
+        assertEquals(2, store.size());
+        List<Result> around = store.query(CENTER, 1000, "restaurant").getResults();
+        assertEquals(2, around.size());
+        assertEquals("b", around.get(0).getPlaceId());
+        assertEquals("c", around.get(1).getPlaceId());
+    }
+
+    private OfflineRestaurantStore newStore(File file, int maxPlaces) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executors.add(executor);
+        return new OfflineRestaurantStore(file, maxPlaces, executor);
+    }
+
+    /** Wait for the loads and writes queued on the executors */
+    private void awaitIdle() throws InterruptedException {
+        for (ExecutorService executor : executors) {
+            CountDownLatch idle = new CountDownLatch(1);
+            executor.execute(idle::countDown);
+            assertTrue(idle.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /** A page of places north of the center, each one followed by its latitude offset */
+    private static ListRestaurant page(Object... placeIdsAndOffsets) {
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < placeIdsAndOffsets.length; i += 2) {
+            Location location = new Location();
+            location.setLat(48.8566 + (Double) placeIdsAndOffsets[i + 1]);
+            location.setLng(2.3522);
+            Geometry geometry = new Geometry();
+            geometry.setLocation(location);
+            Result result = new Result();
+            result.setPlaceId((String) placeIdsAndOffsets[i]);
+            result.setName((String) placeIdsAndOffsets[i]);
+            result.setGeometry(geometry);
+            result.setTypes(Collections.singletonList("restaurant"));
+            results.add(result);
+        }
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setStatus("OK");
+        listRestaurant.setResults(results);
+        return listRestaurant;
+    }
+}
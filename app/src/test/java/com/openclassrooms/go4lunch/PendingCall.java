@@ -0,0 +1,93 @@
+package com.openclassrooms.go4lunch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A Call standing in for the network in the tests : it stays pending until the test completes it.
+ * Its clones share the list of the launched calls, so a test sees every request that reached the "network".
+ * @param <T> the type of the body
+ */
+final class PendingCall<T> implements Call<T> {
+
+    /** Every call launched, this one and its clones, in launch order */
+    final List<PendingCall<T>> launched;
+
+    /** The callback of the call, once enqueued */
+    private volatile Callback<T> callback;
+
+    /** Cancellation status */
+    private volatile boolean canceled;
+
+    /** Constructor */
+    PendingCall() {
+        this(new ArrayList<>());
+    }
+
+    private PendingCall(List<PendingCall<T>> launched) {
+        this.launched = launched;
+    }
+
+    /** Complete the call with a successful response */
+    void respond(T body) {
+        respond(Response.success(body));
+    }
+
+    /** Complete the call with a response */
+    void respond(Response<T> response) {
+        callback.onResponse(this, response);
+    }
+
+    /** Complete the call with an error */
+    void fail(IOException e) {
+        callback.onFailure(this, e);
+    }
+
+    @Override
+    public Response<T> execute() {
+        throw new UnsupportedOperationException("A pending call is only enqueued");
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        if (this.callback != null) {
+            throw new IllegalStateException("Already executed.");
+        }
+        this.callback = callback;
+        synchronized (launched) {
+            launched.add(this);
+        }
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return callback != null;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Call<T> clone() {
+        return new PendingCall<>(launched);
+    }
+
+    @Override
+    public Request request() {
+        return new Request.Builder().url("http://localhost/").build();
+    }
+}
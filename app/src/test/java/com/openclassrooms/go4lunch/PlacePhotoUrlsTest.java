@@ -0,0 +1,63 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Photo;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.service.PlacePhotoUrls;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Width buckets and cache keys of the Places photos
+ */
+public class PlacePhotoUrlsTest {
+
+    /** The smallest bucket at least as wide as the view, never wider than the original photo needs */
+    @Test
+    public void bucketFor() {
+        assertEquals(100, PlacePhotoUrls.bucketFor(1, 0));
+        assertEquals(100, PlacePhotoUrls.bucketFor(100, 0));
+        assertEquals(200, PlacePhotoUrls.bucketFor(101, 0));
+        assertEquals(800, PlacePhotoUrls.bucketFor(720, 4000));
+        // a small original photo is not requested larger than it is
+        assertEquals(400, PlacePhotoUrls.bucketFor(1080, 320));
+        // the Places API serves at most 1600 pixels
+        assertEquals(1600, PlacePhotoUrls.bucketFor(2560, 0));
+    }
+
+    /** Close widths share a cache key, which leaves the API key out */
+    @Test
+    public void cacheKeyIsSharedByTheBucket() {
+        String thumbnail = PlacePhotoUrls.cacheKey("ref", PlacePhotoUrls.bucketFor(180, 0));
+        assertEquals(thumbnail, PlacePhotoUrls.cacheKey("ref", PlacePhotoUrls.bucketFor(150, 0)));
+        assertEquals("photo/200/ref", thumbnail);
+        assertFalse(thumbnail.equals(PlacePhotoUrls.cacheKey("ref", PlacePhotoUrls.bucketFor(300, 0))));
+
+        String url = PlacePhotoUrls.url("https://maps.googleapis.com/maps/api/place/", "ref", 200, "secret");
+        assertEquals("https://maps.googleapis.com/maps/api/place/photo?maxwidth=200&photo_reference=ref&key=secret", url);
+        assertFalse(thumbnail.contains("secret"));
+    }
+
+    /** The first photo with a reference is shown, a place without one has no photo */
+    @Test
+    public void photoOf() {
+        Result result = new Result();
+        assertNull(PlacePhotoUrls.photoOf(result));
+        result.setPhotos(Collections.emptyList());
+        assertNull(PlacePhotoUrls.photoOf(result));
+
+        Photo first = new Photo();
+        first.setPhotoReference("first");
+        Photo second = new Photo();
+        second.setPhotoReference("second");
+        result.setPhotos(Arrays.asList(first, second));
+        assertSame(first, PlacePhotoUrls.photoOf(result));
+    }
+}
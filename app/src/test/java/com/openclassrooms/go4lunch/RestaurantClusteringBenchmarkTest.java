@@ -0,0 +1,139 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.store.RestaurantGridClusterer;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmark of the grid clustering of the map markers, and of the size of the changes between zoom levels
+ */
+public class RestaurantClusteringBenchmarkTest {
+
+    /** Numbers of places */
+    private static final int[] SIZES = {500, 2_000, 10_000};
+
+    /** Zoom levels of the benchmark, from the city to the street */
+    private static final int MIN_ZOOM = 11;
+    private static final int MAX_ZOOM = 19;
+
+    /** Number of measured clusterings per zoom level */
+    private static final int ROUNDS = 50;
+
+    /** Number of places of a page of results */
+    private static final int PAGE_SIZE = 20;
+
+    /** Every place is in one cluster, the clusters nest between levels, and a diff turns a set into the next */
+    @Test
+    public void clustersNestAndDiffsApply() {
+        int n = 2_000;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        String[] placeIds = new String[n];
+        fill(new Random(5), latitudes, longitudes, placeIds, 0, n);
+        RestaurantGridClusterer clusterer = new RestaurantGridClusterer();
+
+        List<RestaurantGridClusterer.Cluster> previous = null;
+        for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+            List<RestaurantGridClusterer.Cluster> clusters = clusterer.cluster(latitudes, longitudes, placeIds, n, zoom + 0.7f);
+            Map<String, RestaurantGridClusterer.Cluster> clusterOf = new HashMap<>();
+            for (RestaurantGridClusterer.Cluster cluster : clusters) {
+                assertEquals(zoom, cluster.getZoom());
+                for (int i = 0; i < cluster.size(); i++) {
+                    assertEquals(null, clusterOf.put(cluster.getPlaceId(i), cluster));
+                }
+            }
+            assertEquals(n, clusterOf.size());
+
+            if (previous != null) {
+                // each cluster is inside a cluster of the level above
+                Map<String, RestaurantGridClusterer.Cluster> parentOf = new HashMap<>();
+                for (RestaurantGridClusterer.Cluster parent : previous) {
+                    for (int i = 0; i < parent.size(); i++) {
+                        parentOf.put(parent.getPlaceId(i), parent);
+                    }
+                }
+                for (RestaurantGridClusterer.Cluster cluster : clusters) {
+                    RestaurantGridClusterer.Cluster parent = parentOf.get(cluster.getPlaceId(0));
+                    for (int i = 1; i < cluster.size(); i++) {
+                        assertTrue(parent == parentOf.get(cluster.getPlaceId(i)));
+                    }
+                }
+
+                RestaurantGridClusterer.Diff diff = RestaurantGridClusterer.diff(previous, clusters);
+                Set<RestaurantGridClusterer.Cluster> onScreen = new HashSet<>(previous);
+                onScreen.removeAll(diff.getRemoved());
+                onScreen.addAll(diff.getAdded());
+                assertEquals(new HashSet<>(clusters), onScreen);
+                assertEquals(clusters.size(), diff.getUnchanged() + diff.getAdded().size());
+            }
+            previous = clusters;
+        }
+    }
+
+    /** Clustering cost against the number of places, and changes published against a full redraw */
+    @Test
+    public void clusteringCostAndDiffSizes() {
+        for (int n : SIZES) {
+            double[] latitudes = new double[n + PAGE_SIZE];
+            double[] longitudes = new double[n + PAGE_SIZE];
+            String[] placeIds = new String[n + PAGE_SIZE];
+            Random random = new Random(n);
+            fill(random, latitudes, longitudes, placeIds, 0, n + PAGE_SIZE);
+            RestaurantGridClusterer clusterer = new RestaurantGridClusterer();
+
+            long nanos = 0;
+            int changes = 0;
+            int redraws = 0;
+            List<RestaurantGridClusterer.Cluster> previous = clusterer.cluster(latitudes, longitudes, placeIds, n, MIN_ZOOM);
+            for (int zoom = MIN_ZOOM + 1; zoom <= MAX_ZOOM; zoom++) {
+                for (int i = 0; i < ROUNDS / 5; i++) {
+                    clusterer.cluster(latitudes, longitudes, placeIds, n, zoom);
+                }
+                long start = System.nanoTime();
+                List<RestaurantGridClusterer.Cluster> clusters = null;
+                RestaurantGridClusterer.Diff diff = null;
+                for (int i = 0; i < ROUNDS; i++) {
+                    clusters = clusterer.cluster(latitudes, longitudes, placeIds, n, zoom);
+                    diff = RestaurantGridClusterer.diff(previous, clusters);
+                }
+                nanos += (System.nanoTime() - start) / ROUNDS;
+                changes += diff.getRemoved().size() + diff.getAdded().size();
+                redraws += previous.size() + clusters.size();
+                previous = clusters;
+            }
+            int levels = MAX_ZOOM - MIN_ZOOM;
+
+            // a new page of results at the same zoom level only touches the cells of its places
+            List<RestaurantGridClusterer.Cluster> paged = clusterer.cluster(latitudes, longitudes, placeIds, n + PAGE_SIZE, MAX_ZOOM);
+            RestaurantGridClusterer.Diff pageDiff = RestaurantGridClusterer.diff(previous, paged);
+
+            Benchmarks.report("n=" + n + " : cluster + diff " + nanos / levels / 1000 + " us/zoom level"
+                + ", " + changes / levels + " marker changes/level instead of " + redraws / levels
+                + ", page of " + PAGE_SIZE + " : " + (pageDiff.getRemoved().size() + pageDiff.getAdded().size()) + " changes");
+            assertTrue(changes < redraws);
+            assertTrue(pageDiff.getRemoved().size() + pageDiff.getAdded().size() <= 2 * PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Fill places spread over a city
+     */
+    private static void fill(Random random, double[] latitudes, double[] longitudes, String[] placeIds, int from, int to) {
+        for (int i = from; i < to; i++) {
+            // denser in the center, like restaurants
+            latitudes[i] = 48.11 + random.nextGaussian() * 0.02;
+            longitudes[i] = -1.68 + random.nextGaussian() * 0.03;
+            placeIds[i] = "place" + i;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Geometry;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.OpeningHours;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.store.RestaurantColumnStore;
+import com.openclassrooms.go4lunch.model.store.StringTable;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Columnar store of the restaurants and its interned strings : update in place, sorts, footprint
+ */
+public class RestaurantColumnStoreTest {
+
+    /** The same strings get the same id, null and unknown strings the null id */
+    @Test
+    public void stringTableInterns() {
+        StringTable table = new StringTable();
+        int restaurant = table.intern("restaurant");
+        assertEquals(restaurant, table.intern(new String("restaurant")));
+        assertNotEquals(restaurant, table.intern("cafe"));
+        assertEquals(2, table.size());
+        assertEquals(StringTable.NULL_ID, table.intern(null));
+        assertEquals(StringTable.NULL_ID, table.idOf("bar"));
+        assertEquals(restaurant, table.idOf("restaurant"));
+        assertEquals("cafe", table.get(table.idOf("cafe")));
+        assertNull(table.get(StringTable.NULL_ID));
+        assertEquals(2, table.size());
+    }
+
+    /** A place received again keeps its row, every column taking its new values */
+    @Test
+    public void updateInPlace() {
+        RestaurantColumnStore store = new RestaurantColumnStore();
+        assertEquals(0, store.add(place("p1", 48.85, 2.35, 4.0, true, "restaurant", "cafe")));
+        assertEquals(1, store.add(place("p2", 48.86, 2.35, 3.0, true, "restaurant")));
+        float before = store.distances(48.85, 2.35)[0];
+
+        assertEquals(0, store.add(place("p1", 48.87, 2.35, null, null, "bar")));
+        assertEquals(2, store.size());
+        assertEquals(0, store.rowOf("p1"));
+        assertTrue(Float.isNaN(store.getRating(0)));
+        assertFalse(store.isOpenNowKnown(0));
+        assertFalse(store.isOpenNow(0));
+        assertEquals(1, store.getTypeCount(0));
+        assertEquals("bar", store.getType(0, 0));
+        // the moved place gets a new distance
+        assertNotEquals(before, store.distances(48.85, 2.35)[0], 1);
+
+        // the filters see the new values
+        int[] rows = new int[store.size()];
+        assertEquals(1, store.filter(rows, Float.NaN, RestaurantColumnStore.NO_PRICE_LEVEL, true, null));
+        assertEquals(1, rows[0]);
+        assertEquals(0, store.filter(rows, Float.NaN, RestaurantColumnStore.NO_PRICE_LEVEL, false, "cafe"));
+        assertEquals(1, store.filter(rows, Float.NaN, RestaurantColumnStore.NO_PRICE_LEVEL, false, "bar"));
+        assertEquals(0, rows[0]);
+    }
+
+    /** The places never rated, or without a distance, sort last */
+    @Test
+    public void nanSortsLast() {
+        RestaurantColumnStore store = new RestaurantColumnStore();
+        Double[] ratings = {3.0, null, 5.0, null, 4.0, 1.0};
+        for (int i = 0; i < ratings.length; i++) {
+            store.add(place("p" + i, 48.85 + i * 0.001, 2.35, ratings[i], null, "restaurant"));
+        }
+        int[] rows = {0, 1, 2, 3, 4, 5};
+        store.sortByRating(rows, rows.length);
+        assertEquals(Arrays.asList(2, 4, 0, 5), Arrays.asList(rows[0], rows[1], rows[2], rows[3]));
+        assertTrue(Float.isNaN(store.getRating(rows[4])));
+        assertTrue(Float.isNaN(store.getRating(rows[5])));
+
+        float[] distances = {300, Float.NaN, 100, 200, Float.NaN, 50};
+        int[] byDistance = {0, 1, 2, 3, 4, 5};
+        store.sortByDistance(byDistance, byDistance.length, distances);
+        assertEquals(Arrays.asList(5, 2, 3, 0), Arrays.asList(byDistance[0], byDistance[1], byDistance[2], byDistance[3]));
+        assertTrue(Float.isNaN(distances[byDistance[4]]));
+        assertTrue(Float.isNaN(distances[byDistance[5]]));
+    }
+
+    /** The footprint counts the rows and the interned strings once, and drops with clear */
+    @Test
+    public void footprintReport() {
+        RestaurantColumnStore store = new RestaurantColumnStore();
+        long empty = store.estimateBytes();
+        assertEquals(RestaurantColumnStore.class.getSimpleName() + "{rows=0, capacity=" + capacityOf(store)
+            + ", strings=0, estimatedBytes=" + empty + ", bytesPerRow=0}", store.footprintReport());
+
+        for (int i = 0; i < 10; i++) {
+            store.add(place("p" + i, 48.85, 2.35, 4.0, true, "restaurant", "food"));
+        }
+        // the name and both types are shared by every row
+        assertTrue(store.footprintReport().contains("rows=10,"));
+        assertTrue(store.footprintReport().contains("strings=3,"));
+        assertTrue(store.estimateBytes() > empty);
+        assertTrue(store.footprintReport().contains("bytesPerRow=" + store.estimateBytes() / 10 + "}"));
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertTrue(store.footprintReport().contains("rows=0,"));
+        assertTrue(store.footprintReport().endsWith("bytesPerRow=0}"));
+    }
+
+    /** Read the capacity out of the report */
+    private static String capacityOf(RestaurantColumnStore store) {
+        String report = store.footprintReport();
+        int start = report.indexOf("capacity=") + "capacity=".length();
+        return report.substring(start, report.indexOf(',', start));
+    }
+
+    private static Result place(String placeId, double latitude, double longitude, Double rating, Boolean openNow, String... types) {
+        Location location = new Location();
+        location.setLat(latitude);
+        location.setLng(longitude);
+        Geometry geometry = new Geometry();
+        geometry.setLocation(location);
+        Result result = new Result();
+        result.setPlaceId(placeId);
+        result.setName("Chez Paul");
+        result.setGeometry(geometry);
+        result.setRating(rating);
+        if (openNow != null) {
+            OpeningHours openingHours = new OpeningHours();
+            openingHours.setOpenNow(openNow);
+            result.setOpeningHours(openingHours);
+        }
+        result.setTypes(Arrays.asList(types));
+        return result;
+    }
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Close;
+import com.openclassrooms.go4lunch.model.bo.maps.Open;
+import com.openclassrooms.go4lunch.model.bo.maps.OpeningHours;
+import com.openclassrooms.go4lunch.model.bo.maps.Period;
+import com.openclassrooms.go4lunch.model.repository.RestaurantDetailsEnricher;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * Closing hour of the day, from the opening periods of the Place Details
+ */
+public class RestaurantDetailsEnricherTest {
+
+    /** Google days, from 0 (sunday) */
+    private static final int THURSDAY = 4;
+    private static final int FRIDAY = 5;
+    private static final int SATURDAY = 6;
+    private static final int SUNDAY = 0;
+
+    /** A bar open at lunch and in the evening, till 2am on thursday and saturday nights */
+    private static final OpeningHours HOURS = hours(
+        period(THURSDAY, "1800", FRIDAY, "0200"),
+        period(FRIDAY, "1100", FRIDAY, "1400"),
+        period(FRIDAY, "1900", FRIDAY, "2300"),
+        period(SATURDAY, "1800", SUNDAY, "0200"));
+
+    /** The period open now gives the closing hour */
+    @Test
+    public void currentPeriodCloses() {
+        assertEquals("14:00", RestaurantDetailsEnricher.closingHour(HOURS, at(16, 12, 0)));
+        assertEquals("23:00", RestaurantDetailsEnricher.closingHour(HOURS, at(16, 20, 0)));
+    }
+
+    /** Outside of any period, the latest period of the day gives the closing hour */
+    @Test
+    public void latestPeriodOfTheDay() {
+        assertEquals("23:00", RestaurantDetailsEnricher.closingHour(HOURS, at(16, 9, 0)));
+        assertEquals("02:00", RestaurantDetailsEnricher.closingHour(HOURS, at(17, 12, 0)));
+    }
+
+    /** After midnight, the period opened the day before is still the current one */
+    @Test
+    public void periodOpenedYesterday() {
+        assertEquals("02:00", RestaurantDetailsEnricher.closingHour(HOURS, at(16, 1, 0)));
+        // across the end of the week too, saturday night to sunday
+        assertEquals("02:00", RestaurantDetailsEnricher.closingHour(HOURS, at(18, 0, 30)));
+        // once it closed, the periods of the day count again
+        assertEquals("23:00", RestaurantDetailsEnricher.closingHour(HOURS, at(16, 3, 0)));
+        assertNull(RestaurantDetailsEnricher.closingHour(HOURS, at(18, 3, 0)));
+    }
+
+    /** A place without periods, or open all day long, has no closing hour */
+    @Test
+    public void unknownHours() {
+        assertNull(RestaurantDetailsEnricher.closingHour(null, at(16, 12, 0)));
+        Period allDayLong = new Period();
+        Open open = new Open();
+        open.setDay(SUNDAY);
+        open.setTime("0000");
+        allDayLong.setOpen(open);
+        assertNull(RestaurantDetailsEnricher.closingHour(hours(allDayLong), at(16, 12, 0)));
+    }
+
+    /** A time of october 2026, the 16th being a friday */
+    private static Calendar at(int dayOfMonth, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2026, Calendar.OCTOBER, dayOfMonth, hour, minute);
+        return calendar;
+    }
+
+    private static OpeningHours hours(Period... periods) {
+        OpeningHours openingHours = new OpeningHours();
+        openingHours.setPeriods(Arrays.asList(periods));
+        return openingHours;
+    }
+
+    private static Period period(int openDay, String openTime, int closeDay, String closeTime) {
+        Open open = new Open();
+        open.setDay(openDay);
+        open.setTime(openTime);
+        Close close = new Close();
+        close.setDay(closeDay);
+        close.setTime(closeTime);
+        Period period = new Period();
+        period.setOpen(open);
+        period.setClose(close);
+        return period;
+    }
+}
@@ -0,0 +1,214 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import com.openclassrooms.go4lunch.model.bo.maps.Geometry;
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Northeast;
+import com.openclassrooms.go4lunch.model.bo.maps.OpeningHours;
+import com.openclassrooms.go4lunch.model.bo.maps.Photo;
+import com.openclassrooms.go4lunch.model.bo.maps.PlusCode;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.bo.maps.Southwest;
+import com.openclassrooms.go4lunch.model.bo.maps.Viewport;
+import com.openclassrooms.go4lunch.model.cache.ListRestaurantCodec;
+import com.openclassrooms.go4lunch.model.cache.RestaurantDiskCache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Binary codec of the searches and disk cache : round trip, format version, freshness, size-capped LRU eviction
+ */
+public class RestaurantDiskCacheTest {
+
+    private static final long FRESH_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final long MAX_STALE_MS = TimeUnit.DAYS.toMillis(7);
+
+    /** Size of the header of a cache file : magic number, version, time of the store */
+    private static final int HEADER_BYTES = 16;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    /** Every field, set or null, reads back as written, the html attributions excepted */
+    @Test
+    public void codecRoundTrip() throws IOException {
+        ListRestaurant written = page(fullResult("p1"), new Result(), fullResult("p2"));
+        ListRestaurant read = ListRestaurantCodec.read(new DataInputStream(new ByteArrayInputStream(encode(written))));
+        assertEquals(new Gson().toJson(written), new Gson().toJson(read));
+        assertNull(read.getResults().get(1).getTypes());
+        assertNull(read.getResults().get(1).getOpeningHours());
+    }
+
+    /** An entry is fresh, then stale but served, then deleted */
+    @Test
+    public void freshnessWindow() throws Exception {
+        RestaurantDiskCache cache = newCache(Long.MAX_VALUE);
+        long storedAt = clock.get();
+        put(cache, "key", page(fullResult("p1")));
+
+        clock.set(storedAt + FRESH_MS - 1);
+        RestaurantDiskCache.Entry entry = get(cache, "key");
+        assertTrue(entry.isFresh());
+        assertEquals(storedAt, entry.getStoredAt());
+        assertEquals("p1", entry.getListRestaurant().getResults().get(0).getPlaceId());
+
+        clock.set(storedAt + FRESH_MS);
+        assertFalse(get(cache, "key").isFresh());
+
+        clock.set(storedAt + MAX_STALE_MS);
+        assertNull(get(cache, "key"));
+        assertEquals(0, cache.size());
+    }
+
+    /** An entry of another format version is dropped, not decoded */
+    @Test
+    public void otherVersionIsDropped() throws Exception {
+        RestaurantDiskCache cache = newCache(Long.MAX_VALUE);
+        put(cache, "key", page(fullResult("p1")));
+        assertNotNull(get(cache, "key"));
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(folder.getRoot(), "key.bin"), "rw")) {
+            file.seek(4);
+            file.writeInt(ListRestaurantCodec.VERSION + 1);
+        }
+        assertNull(get(cache, "key"));
+        assertEquals(0, cache.size());
+    }
+
+    /** Past its maximum size, the least recently read entries are deleted first */
+    @Test
+    public void leastRecentlyUsedAreEvicted() throws Exception {
+        ListRestaurant listRestaurant = page(fullResult("p1"));
+        long entryBytes = HEADER_BYTES + encode(listRestaurant).length;
+        RestaurantDiskCache cache = newCache(entryBytes * 5 / 2);
+        put(cache, "a", listRestaurant);
+        clock.addAndGet(1_000);
+        put(cache, "b", listRestaurant);
+        assertEquals(2 * entryBytes, cache.size());
+
+        // reading a makes b the least recently used
+        clock.addAndGet(1_000);
+        assertNotNull(get(cache, "a"));
+        clock.addAndGet(1_000);
+        put(cache, "c", listRestaurant);
+        assertEquals(2 * entryBytes, cache.size());
+        assertNotNull(get(cache, "a"));
+        assertNull(get(cache, "b"));
+        assertNotNull(get(cache, "c"));
+    }
+
+    private RestaurantDiskCache newCache(long maxBytes) {
+        return new RestaurantDiskCache(folder.getRoot(), maxBytes, FRESH_MS, MAX_STALE_MS) {
+            @Override
+            protected long now() {
+                return clock.get();
+            }
+        };
+    }
+
+    /** Store an entry, and wait for its write on the IO thread of the cache */
+    private static void put(RestaurantDiskCache cache, String key, ListRestaurant listRestaurant) throws Exception {
+        cache.put(key, listRestaurant);
+        FutureTask<Void> written = new FutureTask<>(() -> null);
+        cache.getIoExecutor().execute(written);
+        written.get(5, TimeUnit.SECONDS);
+    }
+
+    /** Read an entry on the IO thread of the cache, after the writes queued before */
+    private static RestaurantDiskCache.Entry get(RestaurantDiskCache cache, String key) throws Exception {
+        FutureTask<RestaurantDiskCache.Entry> read = new FutureTask<>(() -> cache.get(key));
+        cache.getIoExecutor().execute(read);
+        return read.get(5, TimeUnit.SECONDS);
+    }
+
+    private static byte[] encode(ListRestaurant listRestaurant) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ListRestaurantCodec.write(new DataOutputStream(bytes), listRestaurant);
+        return bytes.toByteArray();
+    }
+
+    private static ListRestaurant page(Result... results) {
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setHtmlAttributions(Collections.emptyList());
+        listRestaurant.setStatus("OK");
+        listRestaurant.setResults(Arrays.asList(results));
+        return listRestaurant;
+    }
+
+    /** A place with every field the codec keeps */
+    private static Result fullResult(String placeId) {
+        Result result = new Result();
+        result.setPlaceId(placeId);
+        result.setName("Chez Paul");
+        result.setVicinity("13 rue de Charonne, Paris");
+        result.setBusinessStatus("OPERATIONAL");
+        result.setIcon("icon.png");
+        result.setIconBackgroundColor("#FF9E67");
+        result.setIconMaskBaseUri("mask");
+        result.setReference("reference");
+        result.setScope("GOOGLE");
+        result.setRating(4.3);
+        result.setPriceLevel(2);
+        result.setUserRatingsTotal(1_234);
+
+        OpeningHours openingHours = new OpeningHours();
+        openingHours.setOpenNow(false);
+        result.setOpeningHours(openingHours);
+
+        Location location = new Location();
+        location.setLat(48.8534);
+        location.setLng(2.3488);
+        Northeast northeast = new Northeast();
+        northeast.setLat(48.8547);
+        northeast.setLng(2.3501);
+        Southwest southwest = new Southwest();
+        southwest.setLat(48.8520);
+        southwest.setLng(2.3474);
+        Viewport viewport = new Viewport();
+        viewport.setNortheast(northeast);
+        viewport.setSouthwest(southwest);
+        Geometry geometry = new Geometry();
+        geometry.setLocation(location);
+        geometry.setViewport(viewport);
+        result.setGeometry(geometry);
+
+        PlusCode plusCode = new PlusCode();
+        plusCode.setCompoundCode("V8VX+9G Paris");
+        plusCode.setGlobalCode("8FW4V8VX+9G");
+        result.setPlusCode(plusCode);
+
+        result.setTypes(new ArrayList<>(Arrays.asList("restaurant", "food")));
+        Photo photo = new Photo();
+        photo.setPhotoReference("photo");
+        photo.setWidth(4_032);
+        photo.setHeight(3_024);
+        photo.setHtmlAttributions(Collections.emptyList());
+        result.setPhotos(new ArrayList<>(Collections.singletonList(photo)));
+        return result;
+    }
+}
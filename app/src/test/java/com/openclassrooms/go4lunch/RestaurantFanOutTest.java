@@ -0,0 +1,136 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Photo;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.service.RestaurantFanOut;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fan-out of the nearby searches : bounded parallelism, streaming after each branch, richest copy, cancellation
+ */
+public class RestaurantFanOutTest {
+
+    private static final List<String> LOCATIONS = Arrays.asList("48.8566,2.3522", "48.8606,2.3376");
+    private static final List<String> TYPES = Arrays.asList("restaurant", "cafe", "bakery");
+
+    /** At most maxParallel branches run, the next one starts as soon as one finishes */
+    @Test
+    public void parallelismIsBounded() {
+        PendingCall<ListRestaurant> network = new PendingCall<>();
+        Merges merges = new Merges();
+        new RestaurantFanOut(LOCATIONS, TYPES, 2, (location, type) -> network.clone(), merges).start();
+        assertEquals(2, network.launched.size());
+        network.launched.get(0).respond(page(place("a", 1)));
+        assertEquals(3, network.launched.size());
+        network.launched.get(1).fail(new IOException("reset"));
+        assertEquals(4, network.launched.size());
+    }
+
+    /** The merged places are handed out after every branch, failed or not */
+    @Test
+    public void mergesStreamAfterEachBranch() {
+        PendingCall<ListRestaurant> network = new PendingCall<>();
+        Merges merges = new Merges();
+        new RestaurantFanOut(LOCATIONS, TYPES, 6, (location, type) -> network.clone(), merges).start();
+        network.launched.get(0).respond(page(place("a", 1), place("b", 1)));
+        assertEquals(1, merges.finished.size());
+        assertEquals(2, merges.last.size());
+        network.launched.get(1).fail(new IOException("reset"));
+        network.launched.get(2).respond(page(place("c", 1)));
+        assertEquals(Arrays.asList(1, 2, 3), merges.finished);
+        assertEquals(1, merges.failed);
+        assertEquals(6, merges.total);
+        assertEquals(3, merges.last.size());
+    }
+
+    /** A place found by several branches is kept once, in its richest copy */
+    @Test
+    public void richestCopyIsKept() {
+        PendingCall<ListRestaurant> network = new PendingCall<>();
+        Merges merges = new Merges();
+        new RestaurantFanOut(LOCATIONS, TYPES, 6, (location, type) -> network.clone(), merges).start();
+        Result poor = place("a", 0);
+        Result rich = place("a", 3);
+        network.launched.get(0).respond(page(poor));
+        network.launched.get(1).respond(page(rich));
+        assertEquals(1, merges.last.size());
+        assertSame(rich, merges.last.get(0));
+        // a poorer copy arriving later does not replace it
+        network.launched.get(2).respond(page(place("a", 1)));
+        assertSame(rich, merges.last.get(0));
+    }
+
+    /** A canceled fan-out cancels the running branches, starts no other one, and hands nothing out */
+    @Test
+    public void cancelStopsEveryBranch() {
+        PendingCall<ListRestaurant> network = new PendingCall<>();
+        Merges merges = new Merges();
+        RestaurantFanOut fanOut = new RestaurantFanOut(LOCATIONS, TYPES, 2, (location, type) -> network.clone(), merges);
+        fanOut.start();
+        fanOut.cancel();
+        assertTrue(network.launched.get(0).isCanceled());
+        assertTrue(network.launched.get(1).isCanceled());
+        network.launched.get(0).respond(page(place("a", 1)));
+        assertEquals(2, network.launched.size());
+        assertTrue(merges.finished.isEmpty());
+    }
+
+    /** Without any location or type, the empty result is handed out at once */
+    @Test
+    public void noBranchHandsOutAnEmptyResult() {
+        PendingCall<ListRestaurant> network = new PendingCall<>();
+        Merges merges = new Merges();
+        new RestaurantFanOut(Collections.emptyList(), TYPES, 2, (location, type) -> network.clone(), merges).start();
+        assertTrue(network.launched.isEmpty());
+        assertEquals(Collections.singletonList(0), merges.finished);
+        assertEquals(0, merges.total);
+        assertTrue(merges.last.isEmpty());
+    }
+
+    /** A place with a name and some photos, the richness growing with the photos */
+    private static Result place(String placeId, int photos) {
+        Result result = new Result();
+        result.setPlaceId(placeId);
+        result.setName("Restaurant " + placeId);
+        result.setPhotos(new ArrayList<>(Collections.nCopies(photos, new Photo())));
+        return result;
+    }
+
+    private static ListRestaurant page(Result... results) {
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setStatus("OK");
+        listRestaurant.setResults(Arrays.asList(results));
+        return listRestaurant;
+    }
+
+    /**
+     * The merged places handed out
+     */
+    private static class Merges implements RestaurantFanOut.MergeListener {
+
+        private final List<Integer> finished = new ArrayList<>();
+        private List<Result> last;
+        private int total;
+        private int failed;
+
+        @Override
+        public void onMerged(List<Result> merged, int finished, int total, int failed) {
+            this.finished.add(finished);
+            this.last = merged;
+            this.total = total;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Geometry;
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.OpeningHours;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.store.RestaurantColumnStore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmark of the restaurant filters at 10k cached places :
+ * stream passes over the Result objects, row scan of the column store, and the bitset index.
+ */
+public class RestaurantFilterBenchmarkTest {
+
+    /** Number of cached places */
+    private static final int PLACE_COUNT = 10_000;
+
+    /** Number of measured rounds, each round runs every filter combination */
+    private static final int ROUNDS = 200;
+
+    /** Types of the generated places */
+    private static final String[] TYPES = {"restaurant", "cafe", "bakery", "bar", "meal_takeaway"};
+
+    /** Filter combinations, as typed by a user : min rating, max price level, open now, types */
+    private static final Object[][] FILTERS = {
+        {Float.NaN, -1, false, null},
+        {4.0f, -1, false, null},
+        {4.0f, 2, false, null},
+        {4.0f, 2, true, null},
+        {4.0f, 2, true, new String[]{"restaurant"}},
+        {3.5f, 3, true, new String[]{"restaurant", "cafe"}},
+        {Float.NaN, 1, false, new String[]{"bakery"}},
+        {4.5f, -1, true, new String[]{"bar", "cafe"}},
+    };
+
+    /** Compare the three paths on every filter combination */
+    @Test
+    public void bitsetIndexMatchesRowScanWithoutAllocating() {
+        List<Result> results = buildResults(PLACE_COUNT);
+        RestaurantColumnStore store = new RestaurantColumnStore();
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setResults(results);
+        store.addAll(listRestaurant);
+
+        long[] bits = new long[store.getFilterIndex().wordCount()];
+        int[] scanRows = new int[store.size()];
+        int[] bitsetRows = new int[store.size()];
+
+        // the three paths select the same places
+        for (Object[] filter : FILTERS) {
+            int scanCount = scan(store, scanRows, filter);
+            int bitsetCount = select(store, bits, filter);
+            assertEquals(bitsetCount, store.getFilterIndex().rowsOf(bits, bitsetRows));
+            assertEquals(scanCount, bitsetCount);
+            assertArrayEquals(Arrays.copyOf(scanRows, scanCount), Arrays.copyOf(bitsetRows, bitsetCount));
+            assertEquals(scanCount, stream(results, filter).size());
+        }
+
+        long[] streamResult = Benchmarks.measure(ROUNDS / 4, ROUNDS, () -> {
+            for (Object[] filter : FILTERS) {
+                stream(results, filter);
+            }
+        });
+        long[] scanResult = Benchmarks.measure(ROUNDS / 4, ROUNDS, () -> {
+            for (Object[] filter : FILTERS) {
+                scan(store, scanRows, filter);
+            }
+        });
+        long[] bitsetResult = Benchmarks.measure(ROUNDS / 4, ROUNDS, () -> {
+            for (Object[] filter : FILTERS) {
+                select(store, bits, filter);
+                store.getFilterIndex().rowsOf(bits, bitsetRows);
+            }
+        });
+
+        int filters = ROUNDS * FILTERS.length;
+        Benchmarks.report("places        : " + PLACE_COUNT + ", index " + store.getFilterIndex().estimateBytes() / 1024 + " KB");
+        Benchmarks.report("stream passes : " + streamResult[0] / filters / 1000 + " us/filter, " + streamResult[1] / filters + " bytes/filter");
+        Benchmarks.report("row scan      : " + scanResult[0] / filters / 1000 + " us/filter, " + scanResult[1] / filters + " bytes/filter");
+        Benchmarks.report("bitset index  : " + bitsetResult[0] / filters / 1000 + " us/filter, " + bitsetResult[1] / filters + " bytes/filter");
+
+        // a keystroke no longer allocates
+        assertTrue(bitsetResult[1] < streamResult[1]);
+        assertTrue(bitsetResult[1] / filters < 64);
+    }
+
+    /**
+     * Filter with stream passes over the boxed attributes of the Result objects
+     */
+    private static List<Result> stream(List<Result> results, Object[] filter) {
+        float minRating = (Float) filter[0];
+        int maxPriceLevel = (Integer) filter[1];
+        boolean openNowOnly = (Boolean) filter[2];
+        List<String> types = filter[3] == null ? null : Arrays.asList((String[]) filter[3]);
+        return results.stream()
+            .filter(r -> Float.isNaN(minRating) || (r.getRating() != null && r.getRating() >= minRating))
+            .filter(r -> maxPriceLevel < 0 || (r.getPriceLevel() != null && r.getPriceLevel() <= maxPriceLevel))
+            .filter(r -> !openNowOnly || (r.getOpeningHours() != null && Boolean.TRUE.equals(r.getOpeningHours().getOpenNow())))
+            .filter(r -> types == null || r.getTypes().stream().anyMatch(types::contains))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Filter with a row scan of the column store, a type at a time
+     */
+    private static int scan(RestaurantColumnStore store, int[] out, Object[] filter) {
+        float minRating = (Float) filter[0];
+        int maxPriceLevel = (Integer) filter[1];
+        boolean openNowOnly = (Boolean) filter[2];
+        String[] types = (String[]) filter[3];
+        if (types == null || types.length == 1) {
+            return store.filter(out, minRating, maxPriceLevel, openNowOnly, types == null ? null : types[0]);
+        }
+        // OR between the types : merge the sorted row lists of each type
+        int count = 0;
+        int[] typeRows = new int[store.size()];
+        boolean[] seen = new boolean[store.size()];
+        for (String type : types) {
+            int typeCount = store.filter(typeRows, minRating, maxPriceLevel, openNowOnly, type);
+            for (int i = 0; i < typeCount; i++) {
+                seen[typeRows[i]] = true;
+            }
+        }
+        for (int row = 0; row < seen.length; row++) {
+            if (seen[row]) {
+                out[count++] = row;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Filter with the bitset index
+     */
+    private static int select(RestaurantColumnStore store, long[] bits, Object[] filter) {
+        return store.select(bits, (Float) filter[0], (Integer) filter[1], (Boolean) filter[2], (String[]) filter[3]);
+    }
+
+    /**
+     * Build places with random attributes
+     */
+    private static List<Result> buildResults(int count) {
+        Random random = new Random(42);
+        List<Result> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Result result = new Result();
+            result.setPlaceId("place" + i);
+            result.setName("Restaurant " + i);
+            Location location = new Location();
+            location.setLat(48.0 + random.nextDouble() * 0.2);
+            location.setLng(-1.8 + random.nextDouble() * 0.2);
+            Geometry geometry = new Geometry();
+            geometry.setLocation(location);
+            result.setGeometry(geometry);
+            if (random.nextInt(10) > 0) {
+                result.setRating((10 + random.nextInt(41)) / 10.0);
+            }
+            if (random.nextInt(4) > 0) {
+                result.setPriceLevel(random.nextInt(5));
+            }
+            if (random.nextInt(5) > 0) {
+                OpeningHours openingHours = new OpeningHours();
+                openingHours.setOpenNow(random.nextBoolean());
+                result.setOpeningHours(openingHours);
+            }
+            List<String> types = new ArrayList<>();
+            types.add(TYPES[random.nextInt(TYPES.length)]);
+            if (random.nextBoolean()) {
+                types.add(TYPES[random.nextInt(TYPES.length)]);
+            }
+            types.add("food");
+            result.setTypes(types);
+            results.add(result);
+        }
+        return results;
+    }
+}
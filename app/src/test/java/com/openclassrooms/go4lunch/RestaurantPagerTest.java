@@ -0,0 +1,102 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.service.RestaurantPager;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walk through the pages of a nearby search, and the statuses failing it
+ */
+public class RestaurantPagerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final RestaurantPager pager = new RestaurantPager(scheduler, 0, 1);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /** An error status on the first page fails the search, even with HTTP 200 */
+    @Test
+    public void errorStatusOnFirstPageFails() {
+        PendingCall<ListRestaurant> firstPage = new PendingCall<>();
+        Pages pages = new Pages();
+        pager.start(firstPage, token -> new PendingCall<>(), RestaurantPager.MAX_PAGES, pages);
+        firstPage.respond(page("OVER_QUERY_LIMIT", null));
+        assertTrue(pages.received.isEmpty());
+        assertTrue(pages.error.getMessage().contains("OVER_QUERY_LIMIT"));
+    }
+
+    /** The next page is requested with the token of the previous one, and an error status stops the walk */
+    @Test
+    public void followsTheTokens() throws InterruptedException {
+        PendingCall<ListRestaurant> firstPage = new PendingCall<>();
+        PendingCall<ListRestaurant> secondPage = new PendingCall<>();
+        List<String> tokens = new ArrayList<>();
+        CountDownLatch requested = new CountDownLatch(1);
+        Pages pages = new Pages();
+        pager.start(firstPage, token -> {
+            tokens.add(token);
+            requested.countDown();
+            return secondPage;
+        }, RestaurantPager.MAX_PAGES, pages);
+        firstPage.respond(page("OK", "token1"));
+        assertEquals(1, pages.received.size());
+        assertNull(pages.error);
+
+        assertTrue(requested.await(5, TimeUnit.SECONDS));
+        awaitIdle();
+        assertEquals("token1", tokens.get(0));
+        secondPage.respond(page("REQUEST_DENIED", null));
+        assertEquals(1, pages.received.size());
+        assertTrue(pages.error.getMessage().contains("REQUEST_DENIED"));
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        CountDownLatch idle = new CountDownLatch(1);
+        scheduler.execute(idle::countDown);
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+    }
+
+    private static ListRestaurant page(String status, String nextPageToken) {
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setStatus(status);
+        listRestaurant.setNextPageToken(nextPageToken);
+        listRestaurant.setResults(new ArrayList<>());
+        return listRestaurant;
+    }
+
+    /**
+     * The pages and the error received
+     */
+    private static class Pages implements RestaurantPager.PageListener {
+
+        private final List<ListRestaurant> received = new ArrayList<>();
+        private Throwable error;
+
+        @Override
+        public void onPage(ListRestaurant page, int pageIndex, boolean last) {
+            received.add(page);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            error = t;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.repository.RestaurantPrefetcher;
+import com.openclassrooms.go4lunch.model.repository.RestaurantRepository;
+import com.openclassrooms.go4lunch.model.service.MapsApiClient;
+import com.openclassrooms.go4lunch.model.service.MapsQuotaManager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit2.Call;
+
+/**
+ * Movement-predictive prefetch : speed and heading of the trail, idle gate, hourly budget
+ */
+public class RestaurantPrefetcherTest {
+
+    /** Meters per degree of latitude */
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private static final double LATITUDE = 48.8566;
+    private static final double LONGITUDE = 2.3522;
+
+    /** 2026-10-18 12:00 UTC */
+    private static final long NOON = 1_792_324_800_000L;
+
+    /** The searches prefetched, their calls staying pending until the test answers them */
+    private final List<String> prefetched = new ArrayList<>();
+    private final PendingCall<ListRestaurant> network = new PendingCall<>();
+
+    /** The time of the last search the user waited for */
+    private long lastUserSearch;
+
+    private final RestaurantRepository repository = new RestaurantRepository(new MapsApiClient()) {
+        @Override
+        public Call<ListRestaurant> getAllRestaurant(String url, String location, int radius, String type, String key,
+                                                     MapsQuotaManager.Priority priority) {
+            assertEquals(MapsQuotaManager.Priority.PREFETCH, priority);
+            prefetched.add(location);
+            return network.clone();
+        }
+
+        @Override
+        public long getLastUserSearchTime() {
+            return lastUserSearch;
+        }
+    };
+
+    private final RestaurantPrefetcher prefetcher = new RestaurantPrefetcher(repository, RestaurantRepository.MAPS_API_URL,
+        RestaurantRepository.SEARCH_RADIUS_METERS, RestaurantRepository.SEARCH_TYPE, "key");
+
+    /** The speed and the heading come from the oldest and the newest fixes, and the cells ahead are prefetched */
+    @Test
+    public void walkingNorthPrefetchesAhead() {
+        // 30 m north in 20 s
+        prefetcher.onLocation(LATITUDE, LONGITUDE, NOON);
+        prefetcher.onLocation(LATITUDE + 30 / METERS_PER_DEGREE, LONGITUDE, NOON + 20_000);
+        assertEquals(1.5, prefetcher.getSpeed(), 0.01);
+        assertEquals(0, Math.min(prefetcher.getHeading(), 360 - prefetcher.getHeading()), 0.5);
+        assertFalse(prefetched.isEmpty());
+        for (String point : prefetched) {
+            assertTrue(Double.parseDouble(point.split(",")[0]) > LATITUDE + 30 / METERS_PER_DEGREE);
+        }
+    }
+
+    /** Heading east, and no prefetch while standing still or driving */
+    @Test
+    public void onlyWalkingPrefetches() {
+        double metersPerDegreeEast = METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE));
+        prefetcher.onLocation(LATITUDE, LONGITUDE, NOON);
+        // 200 m in 10 s, 20 m/s : driving
+        prefetcher.onLocation(LATITUDE, LONGITUDE + 200 / metersPerDegreeEast, NOON + 10_000);
+        assertEquals(90, prefetcher.getHeading(), 0.5);
+        assertEquals(20, prefetcher.getSpeed(), 0.1);
+        assertTrue(prefetched.isEmpty());
+
+        // standing still
+        RestaurantPrefetcher still = new RestaurantPrefetcher(repository, RestaurantRepository.MAPS_API_URL,
+            RestaurantRepository.SEARCH_RADIUS_METERS, RestaurantRepository.SEARCH_TYPE, "key");
+        still.onLocation(LATITUDE, LONGITUDE, NOON);
+        still.onLocation(LATITUDE + 1 / METERS_PER_DEGREE, LONGITUDE, NOON + 60_000);
+        assertTrue(still.getSpeed() < 0.5);
+        assertTrue(prefetched.isEmpty());
+    }
+
+    /** No prefetch until the user waited for no search for a while */
+    @Test
+    public void waitsForTheUserToBeIdle() {
+        lastUserSearch = NOON + 15_000;
+        prefetcher.onLocation(LATITUDE, LONGITUDE, NOON);
+        prefetcher.onLocation(LATITUDE + 30 / METERS_PER_DEGREE, LONGITUDE, NOON + 20_000);
+        assertTrue(prefetched.isEmpty());
+        prefetcher.onLocation(LATITUDE + 45 / METERS_PER_DEGREE, LONGITUDE, NOON + 30_000);
+        assertFalse(prefetched.isEmpty());
+    }
+
+    /** Stopping cancels the running prefetches, and the next fixes start none */
+    @Test
+    public void stopCancelsTheRunningPrefetches() {
+        prefetcher.onLocation(LATITUDE, LONGITUDE, NOON);
+        prefetcher.onLocation(LATITUDE + 30 / METERS_PER_DEGREE, LONGITUDE, NOON + 20_000);
+        int launched = network.launched.size();
+        assertTrue(launched > 0);
+        prefetcher.stop();
+        for (PendingCall<ListRestaurant> call : network.launched) {
+            assertTrue(call.isCanceled());
+        }
+        prefetcher.onLocation(LATITUDE + 60 / METERS_PER_DEGREE, LONGITUDE, NOON + 40_000);
+        prefetcher.onLocation(LATITUDE + 90 / METERS_PER_DEGREE, LONGITUDE, NOON + 60_000);
+        assertEquals(launched, network.launched.size());
+    }
+
+    /** At most 20 prefetches an hour, a batch starting once the previous one answered */
+    @Test
+    public void hourlyBudget() {
+        long time = NOON;
+        double latitude = LATITUDE;
+        int answered = 0;
+        for (int i = 0; i < 100; i++) {
+            int before = network.launched.size();
+            prefetcher.onLocation(latitude, LONGITUDE, time);
+            int launched = network.launched.size();
+            latitude += 50 / METERS_PER_DEGREE;
+            time += 10_000;
+            // while a batch runs, the next fix starts none
+            prefetcher.onLocation(latitude, LONGITUDE, time);
+            if (launched > before) {
+                assertEquals(launched, network.launched.size());
+            }
+            while (answered < network.launched.size()) {
+                network.launched.get(answered++).respond(new ListRestaurant());
+            }
+            latitude += 50 / METERS_PER_DEGREE;
+            time += 10_000;
+        }
+        assertEquals(20, prefetcher.getPrefetchCount());
+
+        // an hour later, the budget is back
+        time += 3_600_000;
+        prefetcher.onLocation(latitude, LONGITUDE, time);
+        prefetcher.onLocation(latitude + 50 / METERS_PER_DEGREE, LONGITUDE, time + 10_000);
+        assertTrue(prefetcher.getPrefetchCount() > 20);
+    }
+}
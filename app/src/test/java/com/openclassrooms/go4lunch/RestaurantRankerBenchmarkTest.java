@@ -0,0 +1,165 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Geometry;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.store.RestaurantRanker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of the update cost of the incremental top-k ranking against the size of the ranked set,
+ * compared to a full sort of the set after each update.
+ */
+public class RestaurantRankerBenchmarkTest {
+
+    /** Sizes of the ranked set */
+    private static final int[] SIZES = {1_000, 10_000, 50_000};
+
+    /** Number of measured updates of each kind */
+    private static final int UPDATES = 2_000;
+
+    /** Number of places of a page of results */
+    private static final int PAGE_SIZE = 20;
+
+    /** The top k is always the one of a full sort, whatever the order of the updates */
+    @Test
+    public void topMatchesFullSort() {
+        Random random = new Random(7);
+        RestaurantRanker ranker = new RestaurantRanker(10);
+        List<Result> places = buildPlaces(random, 500, 0);
+        for (int i = 0; i < 2_000; i++) {
+            int action = random.nextInt(4);
+            if (action == 0) {
+                ranker.add(places.get(random.nextInt(places.size())));
+            } else if (action == 1) {
+                ranker.onLocation(48.1 + random.nextDouble() * 0.01, -1.7 + random.nextDouble() * 0.01);
+            } else if (action == 2) {
+                ranker.onLunchAdded(places.get(random.nextInt(places.size())).getPlaceId());
+            } else {
+                ranker.onLunchRemoved(places.get(random.nextInt(places.size())).getPlaceId());
+            }
+            List<String> expected = fullSort(ranker, places, 10);
+            List<String> actual = new ArrayList<>();
+            for (Result result : ranker.getTop()) {
+                actual.add(result.getPlaceId());
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    /** After a location fix, a page received again unchanged keeps every score and moves no entry */
+    @Test
+    public void unchangedPageMovesNothing() {
+        Random random = new Random(11);
+        RestaurantRanker ranker = new RestaurantRanker(10);
+        List<Result> places = buildPlaces(random, 200, 0);
+        ranker.onLocation(48.1, -1.7);
+        ranker.addAll(places);
+        ranker.onLocation(48.12, -1.68);
+        long moves = ranker.getMoveCount();
+        ranker.addAll(places);
+        ranker.onLunchAdded("unknown");
+        assertEquals(moves, ranker.getMoveCount());
+    }
+
+    /** A lunch or a page moves O(log n) entries, a location fix O(n) without sorting */
+    @Test
+    public void updateCostAgainstSetSize() {
+        for (int n : SIZES) {
+            Random random = new Random(n);
+            RestaurantRanker ranker = new RestaurantRanker(RestaurantRanker.DEFAULT_K);
+            List<Result> places = buildPlaces(random, n, 0);
+            ranker.onLocation(48.1, -1.7);
+            ranker.addAll(places);
+
+            // a workmate chooses a restaurant
+            long moves = ranker.getMoveCount();
+            long start = System.nanoTime();
+            for (int i = 0; i < UPDATES; i++) {
+                ranker.onLunchAdded(places.get(random.nextInt(n)).getPlaceId());
+            }
+            long lunchNanos = (System.nanoTime() - start) / UPDATES;
+            long lunchMoves = (ranker.getMoveCount() - moves) / UPDATES;
+
+            // a new page of results arrives
+            List<Result> pages = buildPlaces(random, UPDATES / 10 * PAGE_SIZE, n);
+            moves = ranker.getMoveCount();
+            start = System.nanoTime();
+            for (int i = 0; i < pages.size(); i += PAGE_SIZE) {
+                ranker.addAll(pages.subList(i, i + PAGE_SIZE));
+            }
+            long pageNanos = (System.nanoTime() - start) / (UPDATES / 10);
+
+            // the user walks
+            int fixes = Math.max(10, UPDATES * 1_000 / n);
+            start = System.nanoTime();
+            for (int i = 0; i < fixes; i++) {
+                ranker.onLocation(48.1 + i * 0.0005, -1.7);
+            }
+            long fixNanos = (System.nanoTime() - start) / fixes;
+
+            // the baseline sorts the whole set after each update
+            int sorts = Math.max(5, UPDATES * 100 / n);
+            start = System.nanoTime();
+            for (int i = 0; i < sorts; i++) {
+                fullSort(ranker, places, RestaurantRanker.DEFAULT_K);
+            }
+            long sortNanos = (System.nanoTime() - start) / sorts;
+
+            Benchmarks.report("n=" + n
+                + " : lunch " + lunchNanos / 1000.0 + " us (" + lunchMoves + " moves)"
+                + ", page of " + PAGE_SIZE + " " + pageNanos / 1000.0 + " us"
+                + ", location fix " + fixNanos / 1000 + " us"
+                + ", full sort " + sortNanos / 1000 + " us");
+
+            int log2 = 32 - Integer.numberOfLeadingZeros(ranker.size());
+            assertTrue(lunchMoves <= 4L * log2 + 8);
+        }
+    }
+
+    /**
+     * Rank every place by score with a full sort
+     */
+    private static List<String> fullSort(RestaurantRanker ranker, List<Result> places, int k) {
+        List<String> placeIds = new ArrayList<>();
+        for (Result result : places) {
+            if (!Double.isNaN(ranker.getScore(result.getPlaceId()))) {
+                placeIds.add(result.getPlaceId());
+            }
+        }
+        // the ranker breaks the ties by insertion order, the places are built in that order
+        placeIds.sort(Comparator.comparingDouble((String placeId) -> -ranker.getScore(placeId))
+            .thenComparingInt(placeId -> Integer.parseInt(placeId.substring(5))));
+        return placeIds.subList(0, Math.min(k, placeIds.size()));
+    }
+
+    /**
+     * Build places around a position, with random ratings
+     */
+    private static List<Result> buildPlaces(Random random, int count, int firstId) {
+        List<Result> places = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Result result = new Result();
+            result.setPlaceId("place" + (firstId + i));
+            Location location = new Location();
+            location.setLat(48.1 + random.nextDouble() * 0.05);
+            location.setLng(-1.7 + random.nextDouble() * 0.05);
+            Geometry geometry = new Geometry();
+            geometry.setLocation(location);
+            result.setGeometry(geometry);
+            result.setRating((10 + random.nextInt(41)) / 10.0);
+            result.setUserRatingsTotal(random.nextInt(2_000));
+            places.add(result);
+        }
+        return places;
+    }
+}
@@ -0,0 +1,111 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.Geometry;
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.bo.maps.Location;
+import com.openclassrooms.go4lunch.model.bo.maps.Result;
+import com.openclassrooms.go4lunch.model.store.RestaurantSpatialIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Areas covered by the searches of the spatial index
+ */
+public class RestaurantSpatialIndexTest {
+
+    /** A viewport of about 200m x 200m around 48.8566,2.3522 */
+    private static final double SOUTH = 48.8557;
+    private static final double WEST = 2.3508;
+    private static final double NORTH = 48.8575;
+    private static final double EAST = 2.3536;
+
+    /** A search returning every place of its area covers it */
+    @Test
+    public void completeSearchCoversItsArea() {
+        RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+        assertFalse(index.isCovered(SOUTH, WEST, NORTH, EAST, "restaurant"));
+        index.addSearch("48.8566,2.3522", 1000, "restaurant", search(5, null));
+        assertTrue(index.isCovered(SOUTH, WEST, NORTH, EAST, "restaurant"));
+        assertFalse(index.isCovered(SOUTH, WEST, NORTH, EAST, "bar"));
+    }
+
+    /** A full page, or a page with a next one, may have left places out : its area is not covered */
+    @Test
+    public void truncatedSearchDoesNotCover() {
+        RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+        index.addSearch("48.8566,2.3522", 1000, "restaurant", search(20, null));
+        index.addSearch("48.8566,2.3522", 1000, "restaurant", search(5, "token"));
+        assertFalse(index.isCovered(SOUTH, WEST, NORTH, EAST, "restaurant"));
+        assertEquals(0, index.getCoveredAreaCount("restaurant"));
+        // the places are indexed anyway
+        assertEquals(20, index.size());
+    }
+
+    /** A search fetched page after page covers its area once its last page is not capped */
+    @Test
+    public void lastPageCoversTheArea() {
+        RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+        index.addSearch("48.8566,2.3522", 1000, "restaurant", search(20, "token"));
+        // the third page, full : the API gives no more than 60 places, some may be left out
+        index.addLastPage("48.8566,2.3522", 1000, "restaurant", search(20, null));
+        assertFalse(index.isCovered(SOUTH, WEST, NORTH, EAST, "restaurant"));
+        index.addLastPage("48.8566,2.3522", 1000, "restaurant", search(7, null));
+        assertTrue(index.isCovered(SOUTH, WEST, NORTH, EAST, "restaurant"));
+    }
+
+    /** Repeated and nested searches keep one area, the largest one */
+    @Test
+    public void nestedAreasAreMerged() {
+        RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+        for (int i = 0; i < 10; i++) {
+            index.addSearch("48.8566,2.3522", 500, "restaurant", search(5, null));
+        }
+        assertEquals(1, index.getCoveredAreaCount("restaurant"));
+        index.addSearch("48.8566,2.3522", 1000, "restaurant", search(5, null));
+        assertEquals(1, index.getCoveredAreaCount("restaurant"));
+        index.addSearch("48.8567,2.3523", 100, "restaurant", search(5, null));
+        assertEquals(1, index.getCoveredAreaCount("restaurant"));
+    }
+
+    /** The areas are bounded, the oldest ones are forgotten first */
+    @Test
+    public void areasAreBounded() {
+        RestaurantSpatialIndex index = new RestaurantSpatialIndex();
+        index.addSearch("48.8566,2.3522", 200, "restaurant", search(5, null));
+        for (int i = 1; i <= RestaurantSpatialIndex.MAX_AREAS_PER_TYPE; i++) {
+            // 1 km apart, none inside another
+            index.addSearch((48.8566 + i * 0.01) + ",2.3522", 200, "restaurant", search(5, null));
+        }
+        assertEquals(RestaurantSpatialIndex.MAX_AREAS_PER_TYPE, index.getCoveredAreaCount("restaurant"));
+        assertFalse(index.isCovered(48.8565, 2.3521, 48.8567, 2.3523, "restaurant"));
+    }
+
+    private static ListRestaurant search(int size, String nextPageToken) {
+        List<Result> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Location location = new Location();
+            location.setLat(48.8566 + i * 0.0001);
+            location.setLng(2.3522);
+            Geometry geometry = new Geometry();
+            geometry.setLocation(location);
+            Result result = new Result();
+            result.setPlaceId("place" + i);
+            result.setGeometry(geometry);
+            result.setTypes(Collections.singletonList("restaurant"));
+            results.add(result);
+        }
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setStatus("OK");
+        listRestaurant.setNextPageToken(nextPageToken);
+        listRestaurant.setResults(results);
+        return listRestaurant;
+    }
+}
@@ -0,0 +1,109 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.maps.ListRestaurant;
+import com.openclassrooms.go4lunch.model.cache.RestaurantTileCache;
+
+import org.junit.Test;
+
+/**
+ * Time to live and least recently used eviction of the geohash tiled cache of the searches
+ */
+public class RestaurantTileCacheTest {
+
+    /** Two positions about 10 meters apart, in the same cell of precision 7, and one 1 km away */
+    private static final String HERE = "48.85660,2.35220";
+    private static final String NEXT_DOOR = "48.85665,2.35230";
+    private static final String FAR_AWAY = "48.86560,2.35220";
+
+    private static final long TTL_MS = 60_000;
+
+    /** Searches from the same cell share one entry, other radius, type or cell do not */
+    @Test
+    public void sameCellSharesTheEntry() {
+        TestCache cache = new TestCache(3);
+        ListRestaurant search = search("OK");
+        cache.put(HERE, 1000, "restaurant", search);
+        assertSame(search, cache.get(NEXT_DOOR, 1000, "restaurant"));
+        assertNull(cache.get(FAR_AWAY, 1000, "restaurant"));
+        assertNull(cache.get(HERE, 500, "restaurant"));
+        assertNull(cache.get(HERE, 1000, "bar"));
+        assertEquals(cache.keyOf(HERE, 1000, "restaurant"), cache.keyOf(NEXT_DOOR, 1000, "restaurant"));
+        assertNotEquals(cache.keyOf(HERE, 1000, "restaurant"), cache.keyOf(FAR_AWAY, 1000, "restaurant"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(0.25, cache.getHitRate(), 1e-9);
+    }
+
+    /** An entry is served until its time to live, then dropped */
+    @Test
+    public void entryExpires() {
+        TestCache cache = new TestCache(3);
+        cache.put(HERE, 1000, "restaurant", search("OK"));
+        cache.time += TTL_MS - 1;
+        assertTrue(cache.contains(HERE, 1000, "restaurant"));
+        assertTrue(cache.get(HERE, 1000, "restaurant") != null);
+
+        cache.time += 1;
+        assertFalse(cache.contains(HERE, 1000, "restaurant"));
+        assertNull(cache.get(HERE, 1000, "restaurant"));
+        assertEquals(0, cache.size());
+    }
+
+    /** When full, the least recently used entry is evicted, not the oldest one */
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        TestCache cache = new TestCache(2);
+        cache.put(HERE, 1000, "restaurant", search("OK"));
+        cache.put(HERE, 1000, "bar", search("OK"));
+        // reading the first entry makes the second one the least recently used
+        cache.get(HERE, 1000, "restaurant");
+        cache.put(HERE, 1000, "cafe", search("OK"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.contains(HERE, 1000, "restaurant"));
+        assertFalse(cache.contains(HERE, 1000, "bar"));
+        assertTrue(cache.contains(HERE, 1000, "cafe"));
+    }
+
+    /** Failed searches are not cached, they must be retried */
+    @Test
+    public void errorsAreNotCached() {
+        TestCache cache = new TestCache(3);
+        cache.put(HERE, 1000, "restaurant", search("OVER_QUERY_LIMIT"));
+        cache.put(HERE, 1000, "bar", search("REQUEST_DENIED"));
+        cache.put(HERE, 1000, "cafe", null);
+        cache.put(HERE, 1000, "bakery", search("ZERO_RESULTS"));
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains(HERE, 1000, "bakery"));
+    }
+
+    private static ListRestaurant search(String status) {
+        ListRestaurant listRestaurant = new ListRestaurant();
+        listRestaurant.setStatus(status);
+        return listRestaurant;
+    }
+
+    /**
+     * The cache, on a clock driven by the test
+     */
+    private static class TestCache extends RestaurantTileCache {
+
+        private long time = 1_000_000;
+
+        TestCache(int maxEntries) {
+            super(DEFAULT_PRECISION, TTL_MS, maxEntries);
+        }
+
+        @Override
+        protected long now() {
+            return time;
+        }
+    }
+}
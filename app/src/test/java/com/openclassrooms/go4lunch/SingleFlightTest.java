@@ -0,0 +1,132 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.service.SingleFlight;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Coalescing of the identical requests running at the same time, and their cancellation
+ */
+public class SingleFlightTest {
+
+    /** Identical requests share one network call and its response, the next one starts a new call */
+    @Test
+    public void identicalRequestsShareOneCall() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        PendingCall<String> network = new PendingCall<>();
+        Outcome first = new Outcome();
+        Outcome second = new Outcome();
+        singleFlight.newCall("search", network).enqueue(first);
+        singleFlight.newCall("search", network.clone()).enqueue(second);
+        assertEquals(1, network.launched.size());
+        assertEquals(1, singleFlight.getFlightCount());
+        assertEquals(1, singleFlight.getAbsorbedCount());
+
+        network.respond("restaurants");
+        assertEquals("restaurants", first.body);
+        assertSame(first.body, second.body);
+
+        // the flight is over, an identical request reaches the network again
+        singleFlight.newCall("search", network.clone()).enqueue(new Outcome());
+        assertEquals(2, network.launched.size());
+        assertEquals(2, singleFlight.getFlightCount());
+    }
+
+    /** Requests of different keys are not coalesced */
+    @Test
+    public void differentKeysRunApart() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        PendingCall<String> network = new PendingCall<>();
+        singleFlight.newCall("here", network).enqueue(new Outcome());
+        singleFlight.newCall("there", network.clone()).enqueue(new Outcome());
+        assertEquals(2, network.launched.size());
+        assertEquals(0, singleFlight.getAbsorbedCount());
+    }
+
+    /** An error reaches every waiter */
+    @Test
+    public void errorFansOut() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        PendingCall<String> network = new PendingCall<>();
+        Outcome first = new Outcome();
+        Outcome second = new Outcome();
+        singleFlight.newCall("search", network).enqueue(first);
+        singleFlight.newCall("search", network.clone()).enqueue(second);
+        IOException error = new IOException("offline");
+        network.fail(error);
+        assertSame(error, first.error);
+        assertSame(error, second.error);
+    }
+
+    /** A canceled waiter leaves the flight, the network call is only canceled once nobody waits for it */
+    @Test
+    public void cancelLeavesTheFlight() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        PendingCall<String> network = new PendingCall<>();
+        Outcome first = new Outcome();
+        Outcome second = new Outcome();
+        Call<String> firstCall = singleFlight.newCall("search", network);
+        Call<String> secondCall = singleFlight.newCall("search", network.clone());
+        firstCall.enqueue(first);
+        secondCall.enqueue(second);
+
+        firstCall.cancel();
+        assertTrue(first.error instanceof IOException);
+        assertFalse(network.isCanceled());
+
+        secondCall.cancel();
+        assertTrue(second.error instanceof IOException);
+        assertTrue(network.isCanceled());
+
+        // a late response of the canceled call reaches nobody
+        network.respond("restaurants");
+        assertEquals(1, first.count);
+        assertEquals(1, second.count);
+    }
+
+    /** A call canceled before it runs fails at once, without reaching the network */
+    @Test
+    public void canceledBeforeRunning() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        PendingCall<String> network = new PendingCall<>();
+        Call<String> call = singleFlight.newCall("search", network);
+        call.cancel();
+        Outcome outcome = new Outcome();
+        call.enqueue(outcome);
+        assertTrue(outcome.error instanceof IOException);
+        assertTrue(network.launched.isEmpty());
+    }
+
+    /**
+     * The outcome of a call, and the number of times it was delivered
+     */
+    private static class Outcome implements Callback<String> {
+
+        private String body;
+        private Throwable error;
+        private int count;
+
+        @Override
+        public void onResponse(Call<String> call, Response<String> response) {
+            body = response.body();
+            count++;
+        }
+
+        @Override
+        public void onFailure(Call<String> call, Throwable t) {
+            error = t;
+            count++;
+        }
+    }
+}
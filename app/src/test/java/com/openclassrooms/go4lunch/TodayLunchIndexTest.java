@@ -0,0 +1,101 @@
+package com.openclassrooms.go4lunch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.openclassrooms.go4lunch.model.bo.Lunch;
+import com.openclassrooms.go4lunch.model.bo.Restaurant;
+import com.openclassrooms.go4lunch.model.bo.Workmate;
+import com.openclassrooms.go4lunch.model.store.TodayLunchIndex;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Index of the day's lunches, by restaurant and by workmate
+ */
+public class TodayLunchIndexTest {
+
+    private static final Restaurant PIZZERIA = restaurant("place1", "Pizzeria");
+    private static final Restaurant BISTRO = restaurant("place2", "Bistro");
+
+    private final TodayLunchIndex index = new TodayLunchIndex();
+
+    /** The attendees and the counts follow the lunches put and removed */
+    @Test
+    public void attendeesAndCounts() {
+        index.put("doc1", lunch(PIZZERIA, "alice"));
+        index.put("doc2", lunch(PIZZERIA, "bob"));
+        index.put("doc3", lunch(BISTRO, "carol"));
+        assertEquals(2, index.countAt("place1"));
+        assertEquals(2, index.getWorkmatesAt(PIZZERIA).size());
+        assertTrue(index.hasChosen("alice", PIZZERIA));
+        assertFalse(index.hasChosen("alice", BISTRO));
+
+        index.remove("doc1");
+        assertEquals(1, index.countAt("place1"));
+        assertEquals("bob", index.getWorkmatesAt(PIZZERIA).get(0).getIdWorkmate());
+        assertNull(index.getLunchOf("alice"));
+        int[] counts = new int[3];
+        index.countsAt(Arrays.asList("place1", "place2", "place3"), counts);
+        assertEquals(Arrays.asList(1, 1, 0), Arrays.asList(counts[0], counts[1], counts[2]));
+        assertEquals(2, index.getCounts().size());
+    }
+
+    /** A lunch modified in place moves from one restaurant to the other */
+    @Test
+    public void putReplacesTheDocument() {
+        index.put("doc1", lunch(PIZZERIA, "alice"));
+        index.put("doc1", lunch(BISTRO, "alice"));
+        assertEquals(1, index.size());
+        assertEquals(0, index.countAt("place1"));
+        assertTrue(index.getCounts().containsKey("place2"));
+        assertTrue(index.hasChosen("alice", BISTRO));
+    }
+
+    /** With several documents of a workmate, removing the current one falls back to the most recently put of the others */
+    @Test
+    public void mostRecentlyPutStays() {
+        Lunch first = lunch(PIZZERIA, "alice");
+        Lunch second = lunch(BISTRO, "alice");
+        Lunch third = lunch(restaurant(null, "Canteen"), "alice");
+        // document ids in an order a HashMap would not keep
+        index.put("zz", first);
+        index.put("aa", second);
+        index.put("mm", third);
+        assertSame(third, index.getLunchOf("alice"));
+        assertEquals(Arrays.asList("zz", "aa", "mm"), index.getDocumentIdsOf("alice"));
+
+        index.remove("mm");
+        assertSame(second, index.getLunchOf("alice"));
+        // put again, the first one is now the most recent
+        index.put("zz", first);
+        index.remove("aa");
+        assertSame(first, index.getLunchOf("alice"));
+        assertEquals(Collections.singletonList("zz"), index.getDocumentIdsOf("alice"));
+    }
+
+    /** A restaurant without id is keyed by its name */
+    @Test
+    public void keyOf() {
+        assertEquals("place1", TodayLunchIndex.keyOf(PIZZERIA));
+        assertEquals("Canteen", TodayLunchIndex.keyOf(restaurant(null, "Canteen")));
+        assertNull(TodayLunchIndex.keyOf(null));
+    }
+
+    private static Lunch lunch(Restaurant restaurant, String workmateId) {
+        return new Lunch("2026-10-18", restaurant, new Workmate(workmateId, workmateId, workmateId + "@example.com", null));
+    }
+
+    private static Restaurant restaurant(String id, String name) {
+        Restaurant restaurant = new Restaurant();
+        restaurant.setId(id);
+        restaurant.setName(name);
+        return restaurant;
+    }
+}